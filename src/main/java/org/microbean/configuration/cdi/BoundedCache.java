@@ -0,0 +1,637 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.util.Objects;
+import java.util.Queue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size-bounded, concurrent cache that decides which entries to
+ * keep by comparing how often their keys have been requested, in the
+ * manner of <a href="https://arxiv.org/abs/1512.00727"
+ * target="_parent">TinyLFU</a>.
+ *
+ * <p>Entries are kept in a {@link ConcurrentHashMap} and queued in
+ * insertion order.  When an insertion makes the cache too large,
+ * the oldest entry is nominated as a victim and the frequencies of
+ * the victim's key and the new key are estimated with a compact
+ * <a href="https://en.wikipedia.org/wiki/Count%E2%80%93min_sketch"
+ * target="_parent">count-min sketch</a> of 4-bit counters.  Whichever
+ * is requested less often is evicted; a surviving victim goes to the
+ * back of the queue.  The counters are periodically halved so that
+ * the frequencies reflect recent history.</p>
+ *
+ * <p>No operation takes a lock that spans the whole cache; the
+ * sketch is updated with compare-and-set operations and the bound
+ * is enforced on a best-effort basis, so that the cache may exceed
+ * its {@linkplain #getMaximumSize() maximum size} briefly while
+ * several threads are inserting at once.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @param <K> the type of the keys; keys must have well-behaved
+ * {@link Object#hashCode()} and {@link Object#equals(Object)}
+ * implementations
+ *
+ * @param <V> the type of the values
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+final class BoundedCache<K, V> {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The maximum number of entries this {@link BoundedCache} will
+   * hold.
+   */
+  private final int maximumSize;
+
+  /**
+   * The entries.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConcurrentMap<K, Node<K, V>> map;
+
+  /**
+   * The {@link Node}s of the entries, in insertion order, from which
+   * eviction victims are nominated.
+   *
+   * <p>The {@link Queue} may contain {@link Node}s that are no longer
+   * present in the {@link #map}, because they were removed or
+   * rejected; these are stale, even if their keys have since been
+   * cached again under new {@link Node}s, and are discarded as they
+   * are encountered.</p>
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Queue<Node<K, V>> insertionOrder;
+
+  /**
+   * An estimate of the number of stale {@link Node}s in the {@link
+   * #insertionOrder} {@link Queue}, used to purge them before they
+   * can accumulate.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final AtomicInteger staleCount;
+
+  /**
+   * The {@link FrequencySketch} estimating how often each key has
+   * been requested.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final FrequencySketch sketch;
+
+  /**
+   * The number of requests that found an entry.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final LongAdder hitCount;
+
+  /**
+   * The number of requests that found no entry.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final LongAdder missCount;
+
+  /**
+   * The number of entries evicted, including new entries that were
+   * rejected in favor of more frequently requested ones.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final LongAdder evictionCount;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link BoundedCache}.
+   *
+   * @param maximumSize the maximum number of entries the new {@link
+   * BoundedCache} will hold; must not be negative; if {@code 0},
+   * nothing will be cached
+   *
+   * @exception IllegalArgumentException if {@code maximumSize} is
+   * negative
+   */
+  BoundedCache(final int maximumSize) {
+    super();
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximumSize < 0: " + maximumSize);
+    }
+    this.maximumSize = maximumSize;
+    this.map = new ConcurrentHashMap<>();
+    this.insertionOrder = new ConcurrentLinkedQueue<>();
+    this.staleCount = new AtomicInteger();
+    this.sketch = new FrequencySketch(Math.max(1, maximumSize));
+    this.hitCount = new LongAdder();
+    this.missCount = new LongAdder();
+    this.evictionCount = new LongAdder();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the value cached under the supplied key, or {@code null}
+   * if there is none, and records the request.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * <p>If the {@linkplain #getMaximumSize() maximum size} is {@code
+   * 0}, this method returns {@code null} at once and records
+   * nothing, so that a disabled cache costs its callers next to
+   * nothing.</p>
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @return the cached value, or {@code null}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   */
+  final V get(final K key) {
+    if (this.maximumSize <= 0) {
+      return null;
+    }
+    this.sketch.increment(key.hashCode());
+    final Node<K, V> node = this.map.get(key);
+    if (node == null) {
+      this.missCount.increment();
+      return null;
+    }
+    this.hitCount.increment();
+    return node.value;
+  }
+
+  /**
+   * Caches the supplied value under the supplied key, unless the
+   * key is requested less often than the key that would have to be
+   * evicted to make room for it.
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @param value the value; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  final void put(final K key, final V value) {
+    Objects.requireNonNull(value);
+    if (this.maximumSize <= 0) {
+      return;
+    }
+    final Node<K, V> existingNode = this.map.get(key);
+    if (existingNode != null) {
+      // Replacing a value keeps the entry's place in line.
+      existingNode.value = value;
+      return;
+    }
+    final Node<K, V> node = new Node<>(key, value);
+    final Node<K, V> racingNode = this.map.putIfAbsent(key, node);
+    if (racingNode == null) {
+      this.insertionOrder.offer(node);
+      this.evict(node);
+    } else {
+      racingNode.value = value;
+    }
+  }
+
+  /**
+   * Removes the entry for the supplied key, but only if it is
+   * currently mapped to the supplied value.
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @param value the value; must not be {@code null}
+   *
+   * @return {@code true} if an entry was removed
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  final boolean remove(final K key, final V value) {
+    final Node<K, V> node = this.map.get(key);
+    if (node != null && node.value.equals(value) && this.map.remove(key, node)) {
+      this.markStale();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Records that a {@link Node} in the {@link #insertionOrder} {@link
+   * Queue} has become stale, and purges all stale {@link Node}s from
+   * it once there could be as many of them as there are entries, so
+   * that repeated removals cannot make it grow without bound.
+   */
+  private final void markStale() {
+    if (this.staleCount.incrementAndGet() > Math.max(16, this.maximumSize)) {
+      this.staleCount.set(0);
+      this.insertionOrder.removeIf(node -> this.map.get(node.key) != node);
+    }
+  }
+
+  /**
+   * Evicts entries until this {@link BoundedCache} is no larger than
+   * its {@linkplain #getMaximumSize() maximum size}, pitting each
+   * nominated victim against the supplied candidate.
+   *
+   * @param candidate the {@link Node} that was just inserted; must
+   * not be {@code null}
+   */
+  private final void evict(final Node<K, V> candidate) {
+    while (this.map.size() > this.maximumSize) {
+      final Node<K, V> victim = this.insertionOrder.poll();
+      if (victim == null) {
+        break;
+      } else if (this.map.get(victim.key) != victim) {
+        // Stale; its entry was already removed.
+        this.staleCount.decrementAndGet();
+        continue;
+      } else if (victim == candidate) {
+        // The candidate is the oldest entry; let it go.
+        if (this.map.remove(victim.key, victim)) {
+          this.evictionCount.increment();
+        }
+        break;
+      } else if (this.sketch.frequency(candidate.key.hashCode()) > this.sketch.frequency(victim.key.hashCode())) {
+        if (this.map.remove(victim.key, victim)) {
+          this.evictionCount.increment();
+        }
+      } else {
+        // The victim is at least as popular; keep it and reject the
+        // candidate.  The candidate's queue entry becomes stale.
+        this.insertionOrder.offer(victim);
+        if (this.map.remove(candidate.key, candidate)) {
+          this.evictionCount.increment();
+          this.markStale();
+        }
+        break;
+      }
+    }
+  }
+
+  /**
+   * Removes all entries from this {@link BoundedCache}.
+   *
+   * <p>Statistics and frequency estimates are retained.</p>
+   */
+  final void clear() {
+    this.map.clear();
+    this.insertionOrder.clear();
+    this.staleCount.set(0);
+  }
+
+  /**
+   * Returns the number of {@link Node}s, stale or not, awaiting
+   * nomination as eviction victims.
+   *
+   * <p>This method is intended for testing.</p>
+   *
+   * @return the number of queued {@link Node}s
+   */
+  final int getQueueSize() {
+    return this.insertionOrder.size();
+  }
+
+  /**
+   * Returns the number of entries currently in this {@link
+   * BoundedCache}.
+   *
+   * @return the number of entries
+   */
+  final int size() {
+    return this.map.size();
+  }
+
+  /**
+   * Returns the maximum number of entries this {@link BoundedCache}
+   * will hold.
+   *
+   * @return the maximum size
+   */
+  final int getMaximumSize() {
+    return this.maximumSize;
+  }
+
+  /**
+   * Returns the number of {@linkplain #get(Object) requests} that
+   * found an entry.
+   *
+   * @return the hit count
+   */
+  final long getHitCount() {
+    return this.hitCount.sum();
+  }
+
+  /**
+   * Returns the number of {@linkplain #get(Object) requests} that
+   * found no entry.
+   *
+   * @return the miss count
+   */
+  final long getMissCount() {
+    return this.missCount.sum();
+  }
+
+  /**
+   * Returns the number of entries that have been evicted, including
+   * new entries that were rejected.
+   *
+   * @return the eviction count
+   */
+  final long getEvictionCount() {
+    return this.evictionCount.sum();
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * BoundedCache}'s statistics.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    return "size: " + this.size() + "/" + this.maximumSize +
+      "; hits: " + this.getHitCount() +
+      "; misses: " + this.getMissCount() +
+      "; evictions: " + this.getEvictionCount();
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An entry in a {@link BoundedCache}, which identifies the
+   * insertion it records, so that it can be told apart from a later
+   * insertion under the same key.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Node<K, V> {
+
+    /**
+     * The key.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final K key;
+
+    /**
+     * The value.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private volatile V value;
+
+    /**
+     * Creates a new {@link Node}.
+     *
+     * @param key the key; must not be {@code null}
+     *
+     * @param value the value; must not be {@code null}
+     */
+    private Node(final K key, final V value) {
+      super();
+      this.key = key;
+      this.value = value;
+    }
+
+  }
+
+
+  /**
+   * A count-min sketch of 4-bit counters, four rows deep, that
+   * estimates how often a given hashcode has been seen recently.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  static final class FrequencySketch {
+
+
+    /*
+     * Static fields.
+     */
+
+
+    /**
+     * Seeds used to derive an independent hash for each row.
+     */
+    private static final long[] SEEDS = {
+      0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+    };
+
+    /**
+     * A mask selecting the low three bits of every 4-bit counter in
+     * a {@code long}, used when halving all counters at once.
+     */
+    private static final long HALF_MASK = 0x7777777777777777L;
+
+
+    /*
+     * Instance fields.
+     */
+
+
+    /**
+     * The counters, sixteen per {@code long}.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final AtomicLongArray table;
+
+    /**
+     * A mask selecting a counter index; one less than the number of
+     * counters, which is a power of two.
+     */
+    private final int counterMask;
+
+    /**
+     * The number of increments after which all counters are halved.
+     */
+    private final int sampleSize;
+
+    /**
+     * The number of increments since the counters were last halved.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final AtomicInteger additions;
+
+
+    /*
+     * Constructors.
+     */
+
+
+    /**
+     * Creates a new {@link FrequencySketch} suitable for tracking
+     * roughly {@code capacity} distinct hot items.
+     *
+     * @param capacity the number of distinct items expected to be
+     * tracked; must be greater than {@code 0}
+     */
+    FrequencySketch(final int capacity) {
+      super();
+      // One long (sixteen counters) per expected item, rounded up to
+      // a power of two, keeps collisions across all four rows rare.
+      final int longs = Math.max(8, Integer.highestOneBit(Math.max(1, Math.min(capacity, 1 << 24) - 1)) << 1);
+      this.table = new AtomicLongArray(longs);
+      this.counterMask = (longs << 4) - 1;
+      this.sampleSize = Math.max(1, Math.min(capacity, Integer.MAX_VALUE / 10) * 10);
+      this.additions = new AtomicInteger();
+    }
+
+
+    /*
+     * Instance methods.
+     */
+
+
+    /**
+     * Returns the estimated number of times the supplied hashcode
+     * has been seen recently; never greater than {@code 15}.
+     *
+     * @param hashCode the hashcode
+     *
+     * @return the estimated frequency
+     */
+    final int frequency(final int hashCode) {
+      int frequency = 15;
+      for (int row = 0; row < SEEDS.length; row++) {
+        final int counter = this.counterIndex(hashCode, row);
+        final int shift = (counter & 15) << 2;
+        frequency = Math.min(frequency, (int)((this.table.get(counter >>> 4) >>> shift) & 0xFL));
+      }
+      return frequency;
+    }
+
+    /**
+     * Records that the supplied hashcode has been seen.
+     *
+     * @param hashCode the hashcode
+     */
+    final void increment(final int hashCode) {
+      for (int row = 0; row < SEEDS.length; row++) {
+        final int counter = this.counterIndex(hashCode, row);
+        final int index = counter >>> 4;
+        final int shift = (counter & 15) << 2;
+        long current;
+        do {
+          current = this.table.get(index);
+          if (((current >>> shift) & 0xFL) == 0xFL) {
+            break;
+          }
+        } while (!this.table.compareAndSet(index, current, current + (1L << shift)));
+      }
+      if (this.additions.incrementAndGet() >= this.sampleSize) {
+        this.age();
+      }
+    }
+
+    /**
+     * Halves every counter, so that old requests count for less
+     * than recent ones.
+     *
+     * <p>Only one of several threads that call this method at the
+     * same time will actually perform the halving.</p>
+     */
+    private final void age() {
+      final int additions = this.additions.get();
+      if (additions >= this.sampleSize && this.additions.compareAndSet(additions, additions / 2)) {
+        for (int i = 0; i < this.table.length(); i++) {
+          long current;
+          do {
+            current = this.table.get(i);
+          } while (!this.table.compareAndSet(i, current, (current >>> 1) & HALF_MASK));
+        }
+      }
+    }
+
+    /**
+     * Returns the index of the counter for the supplied hashcode in
+     * the supplied row.
+     *
+     * @param hashCode the hashcode
+     *
+     * @param row the row
+     *
+     * @return the counter index
+     */
+    private final int counterIndex(final int hashCode, final int row) {
+      long hash = (spread(hashCode) + SEEDS[row]) * SEEDS[row];
+      hash += hash >>> 32;
+      return (int)hash & this.counterMask;
+    }
+
+
+    /*
+     * Static methods.
+     */
+
+
+    /**
+     * Mixes the bits of the supplied hashcode so that hashcodes that
+     * differ only slightly, such as those of consecutive {@link
+     * Integer}s, select unrelated counters.
+     *
+     * @param hashCode the hashcode to mix
+     *
+     * @return the mixed hashcode
+     */
+    private static final int spread(int hashCode) {
+      hashCode = ((hashCode >>> 16) ^ hashCode) * 0x45D9F3B;
+      hashCode = ((hashCode >>> 16) ^ hashCode) * 0x45D9F3B;
+      return (hashCode >>> 16) ^ hashCode;
+    }
+
+  }
+
+}
@@ -0,0 +1,547 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Type;
+
+import java.net.URL;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import java.util.function.Supplier;
+
+import org.microbean.configuration.api.ConfigurationException;
+import org.microbean.configuration.api.Configurations;
+
+/**
+ * A {@link Configurations} implementation that consults a list of
+ * other {@link Configurations}, in priority order, returning the
+ * first non-{@code null} value any of them supplies.
+ *
+ * <p>The {@link #newInstance(ClassLoader)} method creates a {@link
+ * CompositeConfigurations} from every {@link Configurations}
+ * implementation declared as a service provider, creating them in
+ * parallel so that slow configuration sources load concurrently
+ * rather than one after another.</p>
+ *
+ * <p>A {@link CompositeConfigurations} made this way does not behave
+ * like the {@link Configurations} returned by {@link
+ * Configurations#newInstance()}, which uses only the first declared
+ * implementation: values supplied only by other implementations are
+ * found too, and the {@linkplain #getConversionTypes() conversion
+ * types} are those of all of them.  A delegate that cannot convert
+ * to a requested {@link Type} is simply not consulted for it; a
+ * {@link ConfigurationException} is thrown only if no delegate
+ * can.  {@link ConfigurationsExtension} therefore only uses this
+ * class when asked to explicitly.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #newInstance(ClassLoader)
+ */
+final class CompositeConfigurations extends Configurations {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The name of the classpath resource that lists {@link
+   * Configurations} service providers.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final String SERVICE_RESOURCE_NAME = "META-INF/services/" + Configurations.class.getName();
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * An {@linkplain Collections#unmodifiableList(List) immutable}
+   * {@link List} of {@link Configurations}, in priority order.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final List<Configurations> delegates;
+
+  /**
+   * An {@linkplain Collections#unmodifiableSet(Set) immutable} {@link
+   * Set} of every {@link Type} any of the {@linkplain #delegates
+   * delegates} can convert to.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Set<Type> conversionTypes;
+
+  /**
+   * An {@linkplain Collections#unmodifiableMap(Map) immutable} {@link
+   * Map} of configuration coordinates merged from those of the
+   * {@linkplain #delegates delegates}; where two delegates disagree,
+   * the one with the higher priority wins.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, String> configurationCoordinates;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link CompositeConfigurations}.
+   *
+   * @param delegates the {@link Configurations} to consult, in
+   * priority order; must not be {@code null} or empty, and must not
+   * contain {@code null} elements
+   *
+   * @exception NullPointerException if {@code delegates} is {@code
+   * null} or contains {@code null}
+   *
+   * @exception IllegalArgumentException if {@code delegates} is
+   * empty
+   */
+  CompositeConfigurations(final List<? extends Configurations> delegates) {
+    super();
+    Objects.requireNonNull(delegates);
+    if (delegates.isEmpty()) {
+      throw new IllegalArgumentException("delegates.isEmpty()");
+    }
+    this.delegates = Collections.unmodifiableList(new ArrayList<>(delegates));
+    final Set<Type> conversionTypes = new LinkedHashSet<>();
+    final Map<String, String> configurationCoordinates = new HashMap<>();
+    for (final Configurations delegate : this.delegates) {
+      Objects.requireNonNull(delegate);
+      final Set<Type> delegateConversionTypes = delegate.getConversionTypes();
+      if (delegateConversionTypes != null) {
+        conversionTypes.addAll(delegateConversionTypes);
+      }
+      final Map<String, String> delegateCoordinates = delegate.getConfigurationCoordinates();
+      if (delegateCoordinates != null) {
+        for (final Map.Entry<String, String> entry : delegateCoordinates.entrySet()) {
+          configurationCoordinates.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    this.conversionTypes = Collections.unmodifiableSet(conversionTypes);
+    this.configurationCoordinates = Collections.unmodifiableMap(configurationCoordinates);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns an {@linkplain Collections#unmodifiableList(List)
+   * immutable} {@link List} of the {@link Configurations} this {@link
+   * CompositeConfigurations} consults, in priority order.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, non-empty {@link List} of {@link
+   * Configurations}
+   */
+  final List<Configurations> getDelegates() {
+    return this.delegates;
+  }
+
+  /**
+   * Returns the union of the {@linkplain
+   * Configurations#getConversionTypes() conversion types} of every
+   * delegate.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, immutable {@link Set} of {@link Type}s
+   */
+  @Override
+  public final Set<Type> getConversionTypes() {
+    return this.conversionTypes;
+  }
+
+  /**
+   * Returns the {@linkplain
+   * Configurations#getConfigurationCoordinates() configuration
+   * coordinates} of every delegate, merged so that those of
+   * higher-priority delegates win.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, immutable {@link Map} of
+   * configuration coordinates
+   */
+  @Override
+  public final Map<String, String> getConfigurationCoordinates() {
+    return this.configurationCoordinates;
+  }
+
+  /**
+   * Returns the union of the {@linkplain Configurations#getNames()
+   * names} known to every delegate.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, immutable {@link Set} of names
+   */
+  @Override
+  public final Set<String> getNames() {
+    final Set<String> names = new LinkedHashSet<>();
+    for (final Configurations delegate : this.delegates) {
+      final Set<String> delegateNames = delegate.getNames();
+      if (delegateNames != null) {
+        names.addAll(delegateNames);
+      }
+    }
+    return Collections.unmodifiableSet(names);
+  }
+
+  /**
+   * Returns the first non-{@code null} value for the supplied {@code
+   * name}, converted to the supplied {@link Type}, that any delegate
+   * able to convert to that {@link Type} supplies, consulting the
+   * delegates in priority order.
+   *
+   * <p>If no delegate supplies a value, then the supplied {@code
+   * defaultValue} is converted by the first delegate able to convert
+   * to the supplied {@link Type}.</p>
+   *
+   * @param coordinates the configuration coordinates; may be {@code
+   * null}
+   *
+   * @param name the name of the configuration value; may be {@code
+   * null}
+   *
+   * @param type the {@link Type} to convert to; must not be {@code
+   * null}
+   *
+   * @param defaultValue the value to convert if no delegate supplies
+   * one; may be {@code null}
+   *
+   * @return the converted value, or {@code null}
+   *
+   * @exception ConfigurationException if no delegate can convert to
+   * the supplied {@link Type}, or if conversion fails
+   */
+  @Override
+  public final <T> T getValue(final Map<String, String> coordinates, final String name, final Type type, final String defaultValue) {
+    Configurations converter = null;
+    if (name != null) {
+      for (final Configurations delegate : this.delegates) {
+        final Set<Type> delegateConversionTypes = delegate.getConversionTypes();
+        if (delegateConversionTypes != null && delegateConversionTypes.contains(type)) {
+          final T value = delegate.getValue(coordinates, name, type, null);
+          if (value != null) {
+            return value;
+          }
+          if (converter == null) {
+            converter = delegate;
+          }
+        }
+      }
+    } else {
+      for (final Configurations delegate : this.delegates) {
+        final Set<Type> delegateConversionTypes = delegate.getConversionTypes();
+        if (delegateConversionTypes != null && delegateConversionTypes.contains(type)) {
+          converter = delegate;
+          break;
+        }
+      }
+    }
+    if (converter == null) {
+      throw new ConfigurationException("No converter for " + type);
+    }
+    if (defaultValue == null) {
+      return null;
+    }
+    return converter.getValue(coordinates, (String)null, type, defaultValue);
+  }
+
+  /**
+   * Returns the first non-{@code null} value for each of the supplied
+   * {@code names}, converted to the supplied {@link Type}, exactly as
+   * the {@link #getValue(Map, String, Type, String)} method would
+   * with a {@code null} default value, but consulting each delegate
+   * only once for all of them.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>Delegates are consulted in priority order.  Each delegate's
+   * {@linkplain Configurations#getConversionTypes() conversion types}
+   * are examined once per call, rather than once per name, and each
+   * delegate is asked only for the names that no higher-priority
+   * delegate supplied.</p>
+   *
+   * <p>A conversion failure affects only the name whose value could
+   * not be converted: it is recorded in the supplied {@code problems}
+   * {@link Map}, and that name is not sought any further.</p>
+   *
+   * @param coordinates the configuration coordinates; may be {@code
+   * null}
+   *
+   * @param names the names of the configuration values; must not be
+   * {@code null}; {@code null} elements are ignored
+   *
+   * @param type the {@link Type} to convert to; must not be {@code
+   * null}
+   *
+   * @param problems a mutable {@link Map} into which any {@link
+   * RuntimeException} thrown while converting the value of a name
+   * will be put, indexed by that name; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link Map} of the converted values
+   * that were found, indexed by name
+   *
+   * @exception NullPointerException if {@code names}, {@code type} or
+   * {@code problems} is {@code null}
+   *
+   * @exception ConfigurationException if no delegate can convert to
+   * the supplied {@link Type}
+   */
+  final Map<String, Object> getValues(final Map<String, String> coordinates,
+                                      final Collection<? extends String> names,
+                                      final Type type,
+                                      final Map<String, RuntimeException> problems) {
+    Objects.requireNonNull(type);
+    Objects.requireNonNull(problems);
+    final Set<String> pendingNames = new LinkedHashSet<>(names);
+    pendingNames.remove(null);
+    final Map<String, Object> values = new HashMap<>();
+    boolean converter = false;
+    for (final Configurations delegate : this.delegates) {
+      if (pendingNames.isEmpty()) {
+        break;
+      }
+      final Set<Type> delegateConversionTypes = delegate.getConversionTypes();
+      if (delegateConversionTypes != null && delegateConversionTypes.contains(type)) {
+        converter = true;
+        final Iterator<String> iterator = pendingNames.iterator();
+        while (iterator.hasNext()) {
+          final String name = iterator.next();
+          try {
+            final Object value = delegate.getValue(coordinates, name, type, null);
+            if (value != null) {
+              values.put(name, value);
+              iterator.remove();
+            }
+          } catch (final RuntimeException exception) {
+            problems.put(name, exception);
+            iterator.remove();
+          }
+        }
+      }
+    }
+    if (!converter && !pendingNames.isEmpty()) {
+      throw new ConfigurationException("No converter for " + type);
+    }
+    return values;
+  }
+
+  @Override
+  public final String toString() {
+    return this.getClass().getSimpleName() + this.delegates;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Creates a new {@link CompositeConfigurations} from every {@link
+   * Configurations} implementation named in a {@code
+   * META-INF/services/org.microbean.configuration.api.Configurations}
+   * resource visible to the supplied {@link ClassLoader}.
+   *
+   * <p>The implementations are instantiated in parallel.  Their
+   * priority order is the order in which they are named, which is
+   * also the order that {@link Configurations#newInstance()} would
+   * have considered them in.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param classLoader the {@link ClassLoader} to use; may be {@code
+   * null} in which case the system classloader will be used
+   *
+   * @return a non-{@code null} {@link CompositeConfigurations}
+   *
+   * @exception ConfigurationException if no implementations are
+   * named, or if any of them could not be instantiated
+   *
+   * @see #newInstance(List)
+   */
+  static final CompositeConfigurations newInstance(ClassLoader classLoader) {
+    if (classLoader == null) {
+      classLoader = ClassLoader.getSystemClassLoader();
+    }
+    final ClassLoader loader = classLoader;
+    final Set<String> classNames;
+    try {
+      classNames = getProviderClassNames(loader);
+    } catch (final IOException ioException) {
+      throw new ConfigurationException(ioException);
+    }
+    final List<Supplier<? extends Configurations>> suppliers = new ArrayList<>(classNames.size());
+    for (final String className : classNames) {
+      suppliers.add(() -> {
+          try {
+            return Class.forName(className, true, loader).asSubclass(Configurations.class).getDeclaredConstructor().newInstance();
+          } catch (final InvocationTargetException invocationTargetException) {
+            final Throwable cause = invocationTargetException.getCause();
+            if (cause instanceof ConfigurationException) {
+              throw (ConfigurationException)cause;
+            } else if (cause instanceof Error) {
+              throw (Error)cause;
+            } else {
+              throw new ConfigurationException(className + " could not be instantiated", cause);
+            }
+          } catch (final ReflectiveOperationException | ClassCastException exception) {
+            throw new ConfigurationException(className + " could not be instantiated", exception);
+          }
+        });
+    }
+    return newInstance(suppliers);
+  }
+
+  /**
+   * Creates a new {@link CompositeConfigurations} from the {@link
+   * Configurations} produced by the supplied {@link Supplier}s, which
+   * are invoked in parallel.
+   *
+   * <p>Each {@link Supplier} is invoked on a thread belonging to a
+   * {@link ForkJoinPool} created for the purpose and shut down
+   * afterwards, since configuration sources typically block on I/O
+   * while they load.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param suppliers the {@link Supplier}s, in priority order; must
+   * not be {@code null}; no {@link Supplier} may return {@code null}
+   *
+   * @return a non-{@code null} {@link CompositeConfigurations}
+   *
+   * @exception NullPointerException if {@code suppliers} is {@code
+   * null}
+   *
+   * @exception ConfigurationException if {@code suppliers} is empty,
+   * or if any {@link Supplier} fails
+   */
+  static final CompositeConfigurations newInstance(final List<? extends Supplier<? extends Configurations>> suppliers) {
+    Objects.requireNonNull(suppliers);
+    if (suppliers.isEmpty()) {
+      throw new ConfigurationException("No " + Configurations.class.getName() + " implementations are available");
+    }
+    final List<Configurations> delegates = new ArrayList<>(suppliers.size());
+    if (suppliers.size() == 1) {
+      delegates.add(Objects.requireNonNull(suppliers.get(0).get()));
+    } else {
+      final ForkJoinPool pool = new ForkJoinPool(suppliers.size());
+      try {
+        final List<ForkJoinTask<? extends Configurations>> tasks = new ArrayList<>(suppliers.size());
+        for (final Supplier<? extends Configurations> supplier : suppliers) {
+          tasks.add(pool.submit((Callable<? extends Configurations>)supplier::get));
+        }
+        for (final ForkJoinTask<? extends Configurations> task : tasks) {
+          delegates.add(Objects.requireNonNull(task.get()));
+        }
+      } catch (final ExecutionException executionException) {
+        final Throwable cause = executionException.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException)cause;
+        } else if (cause instanceof Error) {
+          throw (Error)cause;
+        }
+        throw new ConfigurationException(cause);
+      } catch (final InterruptedException interruptedException) {
+        Thread.currentThread().interrupt();
+        throw new ConfigurationException(interruptedException);
+      } finally {
+        pool.shutdownNow();
+      }
+    }
+    return new CompositeConfigurations(delegates);
+  }
+
+  /**
+   * Returns the names of the {@link Configurations} service providers
+   * visible to the supplied {@link ClassLoader}, in the order in
+   * which the {@link java.util.ServiceLoader} class would find them.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param classLoader the {@link ClassLoader} to use; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null}, ordered {@link Set} of class names
+   *
+   * @exception IOException if a provider-configuration file could not
+   * be read
+   */
+  static final Set<String> getProviderClassNames(final ClassLoader classLoader) throws IOException {
+    final Set<String> classNames = new LinkedHashSet<>();
+    final Enumeration<URL> resources = classLoader.getResources(SERVICE_RESOURCE_NAME);
+    while (resources.hasMoreElements()) {
+      try (final BufferedReader reader =
+           new BufferedReader(new InputStreamReader(resources.nextElement().openStream(), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          final int hash = line.indexOf('#');
+          if (hash >= 0) {
+            line = line.substring(0, hash);
+          }
+          line = line.trim();
+          if (!line.isEmpty()) {
+            classNames.add(line);
+          }
+        }
+      }
+    }
+    return classNames;
+  }
+
+}
@@ -0,0 +1,514 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.microbean.configuration.api.ConfigurationException;
+
+import org.microbean.configuration.cdi.annotation.Configured; // for javadoc only
+
+/**
+ * An object that creates instances of a particular class and sets
+ * their properties from configuration values, using {@link
+ * MethodHandle}s computed once per class.
+ *
+ * <p>A class can be bound if it is a concrete, top-level or {@code
+ * static} nested class that either has a zero-argument constructor
+ * and at least one setter method, in which case its setters are
+ * used, or has a constructor whose parameter names are available via
+ * reflection, in which case the constructor with the most such
+ * parameters is used.  A class whose setters are used may have only
+ * one setter per property; overloaded setters are rejected rather
+ * than one of them being chosen arbitrarily.</p>
+ *
+ * <p>Everything about a property that does not depend on the
+ * configuration values themselves, such as its name, its {@link
+ * Type} and whether that {@link Type} can itself be bound, is
+ * computed once, when the {@link ConfigurationBinder} is
+ * created.</p>
+ *
+ * <p>Instances of this class are immutable and safe for concurrent
+ * use by multiple threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #of(Class)
+ *
+ * @see Configured
+ */
+final class ConfigurationBinder {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The {@link ConfigurationBinder}s computed so far, one per class.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final ClassValue<ConfigurationBinder> binders = new ClassValue<ConfigurationBinder>() {
+      @Override
+      protected final ConfigurationBinder computeValue(final Class<?> c) {
+        return new ConfigurationBinder(c);
+      }
+    };
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The class whose instances are created.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Class<?> type;
+
+  /**
+   * The names of the properties that are set, in order.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final String[] names;
+
+  /**
+   * The {@link Type}s of the properties that are set, in the same
+   * order as the {@link #names} array.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Type[] types;
+
+  /**
+   * Whether each property's {@link Type}, in the same order as the
+   * {@link #types} array, is one that {@linkplain #isBindable(Type)
+   * can itself be bound}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final boolean[] bindable;
+
+  /**
+   * A {@link MethodHandle} of type {@code (Object[])Object} that
+   * invokes the constructor in use.
+   *
+   * <p>If {@link #setters} is {@code null}, the array's elements are
+   * the values of the properties; otherwise it must be empty.</p>
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final MethodHandle constructor;
+
+  /**
+   * {@link MethodHandle}s of type {@code (Object,Object)void} that
+   * invoke the setters for the properties, in the same order as the
+   * {@link #names} array, or {@code null} if properties are set by
+   * the constructor.
+   */
+  private final MethodHandle[] setters;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ConfigurationBinder}.
+   *
+   * @param type the class whose instances will be created; must not
+   * be {@code null}
+   *
+   * @exception NullPointerException if {@code type} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code type} cannot be
+   * bound, or has more than one setter for the same property
+   */
+  private ConfigurationBinder(final Class<?> type) {
+    super();
+    this.type = Objects.requireNonNull(type);
+    final int modifiers = type.getModifiers();
+    if (type.isPrimitive() || type.isArray() || type.isInterface() || type.isEnum() || Modifier.isAbstract(modifiers) ||
+        (type.getEnclosingClass() != null && !Modifier.isStatic(modifiers))) {
+      throw new IllegalArgumentException(type + " is not a concrete top-level or static nested class");
+    }
+    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    final Map<String, Method> setterMethods = new TreeMap<>();
+    for (final Method method : type.getMethods()) {
+      final String methodName = method.getName();
+      // Bridge methods duplicate the setters they bridge to.
+      if (methodName.length() > 3 && methodName.startsWith("set") && Character.isUpperCase(methodName.charAt(3)) &&
+          method.getParameterCount() == 1 && !Modifier.isStatic(method.getModifiers()) &&
+          !method.isBridge() && !method.isSynthetic()) {
+        final String name = decapitalize(methodName.substring(3));
+        final Method existing = setterMethods.put(name, method);
+        if (existing != null) {
+          throw new IllegalArgumentException(type + " has more than one setter for the property " + name +
+                                             " (" + existing + " and " + method + ")");
+        }
+      }
+    }
+    Constructor<?> zeroArgumentConstructor = null;
+    Constructor<?> propertyConstructor = null;
+    boolean ambiguous = false;
+    for (final Constructor<?> c : type.getDeclaredConstructors()) {
+      final int parameterCount = c.getParameterCount();
+      if (parameterCount == 0) {
+        zeroArgumentConstructor = c;
+      } else if (allNamesPresent(c.getParameters())) {
+        if (propertyConstructor == null || parameterCount > propertyConstructor.getParameterCount()) {
+          propertyConstructor = c;
+          ambiguous = false;
+        } else if (parameterCount == propertyConstructor.getParameterCount()) {
+          ambiguous = true;
+        }
+      }
+    }
+
+    final boolean useSetters = zeroArgumentConstructor != null && !setterMethods.isEmpty();
+    if (!useSetters && (propertyConstructor == null || ambiguous)) {
+      throw new IllegalArgumentException(type + " has neither a zero-argument constructor and setter methods" +
+                                         " nor a single longest constructor with parameter names available via" +
+                                         " reflection; make sure it was compiled with the -parameters option" +
+                                         " supplied to javac");
+    }
+    try {
+      if (useSetters) {
+        this.constructor = unreflect(lookup, zeroArgumentConstructor);
+        final int size = setterMethods.size();
+        this.names = new String[size];
+        this.types = new Type[size];
+        this.setters = new MethodHandle[size];
+        int i = 0;
+        for (final Map.Entry<String, Method> entry : setterMethods.entrySet()) {
+          final Method setter = entry.getValue();
+          setter.setAccessible(true);
+          this.names[i] = entry.getKey();
+          this.types[i] = setter.getGenericParameterTypes()[0];
+          this.setters[i] = lookup.unreflect(setter).asType(MethodType.methodType(void.class, Object.class, Object.class));
+          i++;
+        }
+      } else {
+        this.constructor = unreflect(lookup, propertyConstructor);
+        final Parameter[] parameters = propertyConstructor.getParameters();
+        this.names = new String[parameters.length];
+        this.types = new Type[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+          this.names[i] = parameters[i].getName();
+          this.types[i] = parameters[i].getParameterizedType();
+        }
+        this.setters = null;
+      }
+    } catch (final IllegalAccessException | RuntimeException exception) {
+      // setAccessible() may fail, for example.
+      throw new IllegalArgumentException(type + " cannot be bound", exception);
+    }
+    this.bindable = new boolean[this.types.length];
+    for (int i = 0; i < this.bindable.length; i++) {
+      this.bindable[i] = isBindable(this.types[i]);
+    }
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Creates a new instance of this {@link ConfigurationBinder}'s
+   * class from the configuration values beneath the supplied prefix.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>A property whose {@link Type} the supplied {@link Source}
+   * cannot convert to, and which can itself be bound, is bound from
+   * the configuration values beneath the property's name, provided
+   * that there are any.</p>
+   *
+   * <p>A property for which there is no value is left at whatever
+   * value the class gives it if it is set by a setter method, and is
+   * {@code null}, or the uninitialized value of its primitive type,
+   * if it is set by the constructor.</p>
+   *
+   * @param prefix the prefix, relative to the injection point,
+   * beneath which the configuration values are found; must not be
+   * {@code null} but may be empty
+   *
+   * @param source the {@link Source} of configuration values; must
+   * not be {@code null}
+   *
+   * @return a new, non-{@code null} instance
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception ConfigurationException if the instance could not be
+   * created or a configuration value could not be resolved
+   */
+  final Object bind(final String prefix, final Source source) {
+    Objects.requireNonNull(prefix);
+    Objects.requireNonNull(source);
+    final Object[] values = new Object[this.names.length];
+    final String[] names = new String[values.length];
+    final boolean[] scalar = new boolean[values.length];
+    int scalarCount = 0;
+    for (int i = 0; i < values.length; i++) {
+      names[i] = prefix.isEmpty() ? this.names[i] : prefix + '.' + this.names[i];
+      final Type type = this.types[i];
+      if (!this.bindable[i] || source.isConvertible(type)) {
+        scalar[i] = true;
+        scalarCount++;
+      } else if (source.hasValuesBeneath(names[i])) {
+        values[i] = of((Class<?>)type).bind(names[i], source);
+      }
+    }
+    if (scalarCount > 0) {
+      // Resolve all scalar properties in one batch.
+      final String[] scalarNames = new String[scalarCount];
+      final Type[] scalarTypes = new Type[scalarCount];
+      for (int i = 0, j = 0; i < values.length; i++) {
+        if (scalar[i]) {
+          scalarNames[j] = names[i];
+          scalarTypes[j++] = this.types[i];
+        }
+      }
+      final Object[] scalarValues = source.getValues(scalarNames, scalarTypes);
+      for (int i = 0, j = 0; i < values.length; i++) {
+        if (scalar[i]) {
+          values[i] = scalarValues[j++];
+        }
+      }
+    }
+    try {
+      final Object returnValue;
+      if (this.setters == null) {
+        for (int i = 0; i < values.length; i++) {
+          if (values[i] == null && this.types[i] instanceof Class && ((Class<?>)this.types[i]).isPrimitive()) {
+            // The default value of a primitive type, e.g. 0 for int.
+            values[i] = Array.get(Array.newInstance((Class<?>)this.types[i], 1), 0);
+          }
+        }
+        returnValue = (Object)this.constructor.invokeExact(values);
+      } else {
+        returnValue = (Object)this.constructor.invokeExact(new Object[0]);
+        for (int i = 0; i < values.length; i++) {
+          // Leave absent properties at whatever the class defaults
+          // them to.
+          if (values[i] != null) {
+            this.setters[i].invokeExact(returnValue, values[i]);
+          }
+        }
+      }
+      return returnValue;
+    } catch (final RuntimeException | Error exception) {
+      throw exception;
+    } catch (final Throwable throwable) {
+      throw new ConfigurationException("Could not bind " + this.type.getName(), throwable);
+    }
+  }
+
+  @Override
+  public final String toString() {
+    return "Binder for " + this.type.getName();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the {@link ConfigurationBinder} for the supplied class,
+   * computing it if necessary.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param type the class; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link ConfigurationBinder}
+   *
+   * @exception NullPointerException if {@code type} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code type} cannot be
+   * bound
+   */
+  static final ConfigurationBinder of(final Class<?> type) {
+    return binders.get(type);
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link Type} is one that
+   * should be bound, as opposed to converted, when it is the type of
+   * a property.
+   *
+   * @param type the {@link Type} in question; may be {@code null}
+   *
+   * @return {@code true} if the supplied {@link Type} is a concrete
+   * class outside the {@code java} and {@code javax} packages
+   */
+  static final boolean isBindable(final Type type) {
+    if (!(type instanceof Class)) {
+      return false;
+    }
+    final Class<?> c = (Class<?>)type;
+    final String name = c.getName();
+    return
+      !c.isPrimitive() &&
+      !c.isArray() &&
+      !c.isInterface() &&
+      !c.isEnum() &&
+      !Modifier.isAbstract(c.getModifiers()) &&
+      !name.startsWith("java.") &&
+      !name.startsWith("javax.");
+  }
+
+  private static final MethodHandle unreflect(final MethodHandles.Lookup lookup, final Constructor<?> constructor)
+    throws IllegalAccessException {
+    constructor.setAccessible(true);
+    final int parameterCount = constructor.getParameterCount();
+    return lookup.unreflectConstructor(constructor)
+      .asType(MethodType.genericMethodType(parameterCount))
+      .asSpreader(Object[].class, parameterCount);
+  }
+
+  private static final boolean allNamesPresent(final Parameter[] parameters) {
+    for (final Parameter parameter : parameters) {
+      if (!parameter.isNamePresent()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static final String decapitalize(final String name) {
+    // As java.beans.Introspector#decapitalize(String) does: leave
+    // "URL" alone but turn "Url" into "url".
+    if (name.length() > 1 && Character.isUpperCase(name.charAt(1))) {
+      return name;
+    }
+    return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A source of configuration values for a {@link
+   * ConfigurationBinder}.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  interface Source {
+
+    /**
+     * Returns the configuration value with the supplied name,
+     * relative to the injection point, converted to the supplied
+     * {@link Type}.
+     *
+     * <p>This method may return {@code null}, including for
+     * primitive {@link Type}s.</p>
+     *
+     * @param name the relative name; must not be {@code null}
+     *
+     * @param type the {@link Type}; must not be {@code null}
+     *
+     * @return the configuration value, or {@code null}
+     */
+    Object getValue(String name, Type type);
+
+    /**
+     * Returns the configuration values with the supplied names,
+     * relative to the injection point, converted to the
+     * corresponding supplied {@link Type}s.
+     *
+     * <p>This method never returns {@code null}.  Elements of the
+     * returned array may be {@code null}, including for primitive
+     * {@link Type}s.</p>
+     *
+     * <p>The default implementation calls the {@link
+     * #getValue(String, Type)} method once for each name.
+     * Implementations that can resolve many configuration values at
+     * once more cheaply should override it.</p>
+     *
+     * @param names the relative names; must not be {@code null}
+     *
+     * @param types the {@link Type}s, one for each name; must not be
+     * {@code null}
+     *
+     * @return a non-{@code null} array of configuration values, one
+     * for each name
+     */
+    default Object[] getValues(final String[] names, final Type[] types) {
+      final Object[] values = new Object[names.length];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = this.getValue(names[i], types[i]);
+      }
+      return values;
+    }
+
+    /**
+     * Returns {@code true} if configuration values can be converted
+     * to the supplied {@link Type}.
+     *
+     * @param type the {@link Type}; must not be {@code null}
+     *
+     * @return {@code true} if configuration values can be converted
+     * to the supplied {@link Type}
+     */
+    boolean isConvertible(Type type);
+
+    /**
+     * Returns {@code true} if there are any configuration values
+     * beneath the supplied name, relative to the injection point.
+     *
+     * @param name the relative name; must not be {@code null}
+     *
+     * @return {@code true} if there are any configuration values
+     * beneath the supplied name
+     */
+    boolean hasValuesBeneath(String name);
+
+  }
+
+}
@@ -0,0 +1,323 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+import org.microbean.configuration.cdi.annotation.Configuration; // for javadoc only
+
+/**
+ * An {@link InvocationHandler} that implements a {@link
+ * Configuration}-annotated interface by returning a configuration
+ * value from each of its methods.
+ *
+ * <p>All of the interface's configuration values are resolved
+ * together, once, when the {@link ConfigurationInterfaceHandler} is
+ * created, and are then returned from an array.  They are resolved
+ * together again, the next time any of them is requested, after the
+ * {@link ConfigurationValueResolver} in use has been {@linkplain
+ * ConfigurationValueResolver#invalidate() invalidated}.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #newInstance(Class, Map, ConfigurationValueResolver)
+ *
+ * @see ConfigurationsExtension
+ */
+final class ConfigurationInterfaceHandler implements InvocationHandler {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The interface being implemented.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Class<?> configurationInterface;
+
+  /**
+   * The {@link Method}s of the interface being implemented.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Method[] methods;
+
+  /**
+   * The {@link ConfigurationValueResolver.Key}s describing the
+   * configuration values returned by the elements of the {@link
+   * #methods} array at the same indices.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConfigurationValueResolver.Key[] keys;
+
+  /**
+   * The indices in the {@link #methods} array of its elements.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<Method, Integer> indices;
+
+  /**
+   * The {@link ConfigurationValueResolver} to use.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConfigurationValueResolver resolver;
+
+  /**
+   * The most recently resolved configuration values.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private volatile Snapshot snapshot;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ConfigurationInterfaceHandler}, resolving
+   * all of the configuration values it will return.
+   *
+   * @param configurationInterface the interface being implemented;
+   * must not be {@code null}
+   *
+   * @param keys a {@link Map} of {@link
+   * ConfigurationValueResolver.Key}s describing the configuration
+   * value to be returned by each of the interface's {@link Method}s;
+   * must not be {@code null}
+   *
+   * @param resolver the {@link ConfigurationValueResolver} to use;
+   * must not be {@code null}
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if a configuration value could not be resolved
+   */
+  private ConfigurationInterfaceHandler(final Class<?> configurationInterface,
+                                        final Map<? extends Method, ? extends ConfigurationValueResolver.Key> keys,
+                                        final ConfigurationValueResolver resolver) {
+    super();
+    this.configurationInterface = Objects.requireNonNull(configurationInterface);
+    this.resolver = Objects.requireNonNull(resolver);
+    final int size = keys.size();
+    this.methods = new Method[size];
+    this.keys = new ConfigurationValueResolver.Key[size];
+    this.indices = new HashMap<>();
+    int i = 0;
+    for (final Entry<? extends Method, ? extends ConfigurationValueResolver.Key> entry : keys.entrySet()) {
+      this.methods[i] = Objects.requireNonNull(entry.getKey());
+      this.keys[i] = Objects.requireNonNull(entry.getValue());
+      this.indices.put(this.methods[i], Integer.valueOf(i));
+      i++;
+    }
+    this.snapshot = this.resolve();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the configuration value corresponding to the supplied
+   * {@link Method}, or implements the supplied {@link Object} {@link
+   * Method}.
+   *
+   * @param proxy the proxy on which the {@link Method} was invoked;
+   * must not be {@code null}
+   *
+   * @param method the {@link Method} that was invoked; must not be
+   * {@code null}
+   *
+   * @param arguments the arguments to the invocation; may be {@code
+   * null}
+   *
+   * @return the configuration value or {@link Object} {@link Method}
+   * result, which may be {@code null}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if configuration values had to be resolved again and one could
+   * not be
+   */
+  @Override
+  public final Object invoke(final Object proxy, final Method method, final Object[] arguments) {
+    final Object returnValue;
+    final Integer index = this.indices.get(method);
+    if (index == null) {
+      switch (method.getName()) {
+      case "equals":
+        returnValue = Boolean.valueOf(arguments != null && arguments.length == 1 && proxy == arguments[0]);
+        break;
+      case "hashCode":
+        returnValue = Integer.valueOf(System.identityHashCode(proxy));
+        break;
+      case "toString":
+        returnValue = this.toString();
+        break;
+      default:
+        throw new UnsupportedOperationException(method.toString());
+      }
+    } else {
+      Snapshot snapshot = this.snapshot;
+      if (snapshot.generation != this.resolver.getGeneration()) {
+        snapshot = this.resolve();
+        this.snapshot = snapshot;
+      }
+      returnValue = snapshot.values[index.intValue()];
+    }
+    return returnValue;
+  }
+
+  /**
+   * Resolves all of the configuration values this {@link
+   * ConfigurationInterfaceHandler} returns.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a new, non-{@code null} {@link Snapshot}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if a configuration value could not be resolved
+   */
+  private final Snapshot resolve() {
+    // Read the generation first so that values resolved across an
+    // invalidation are resolved again on the next call.
+    final long generation = this.resolver.getGeneration();
+    final Object[] values = new Object[this.keys.length];
+    for (int i = 0; i < values.length; i++) {
+      final ConfigurationValueResolver.Key key = this.keys[i];
+      values[i] = ConfigurationsExtension.getConfigurationValue(this.resolver, key);
+    }
+    return new Snapshot(generation, values);
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * ConfigurationInterfaceHandler}, listing the configuration values
+   * it most recently resolved.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    final Object[] values = this.snapshot.values;
+    final StringBuilder sb = new StringBuilder(this.configurationInterface.getName()).append('[');
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(this.methods[i].getName()).append('=').append(values[i]);
+    }
+    return sb.append(']').toString();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns a new implementation of the supplied interface whose
+   * methods return the configuration values described by the
+   * supplied {@link Map}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>The implementation class is generated once per interface, and
+   * is cached, by the {@link Proxy} machinery.</p>
+   *
+   * @param <T> the type of the interface
+   *
+   * @param configurationInterface the interface to implement; must
+   * not be {@code null}
+   *
+   * @param keys a {@link Map} of {@link
+   * ConfigurationValueResolver.Key}s describing the configuration
+   * value to be returned by each of the interface's {@link Method}s;
+   * must not be {@code null}
+   *
+   * @param resolver the {@link ConfigurationValueResolver} to use;
+   * must not be {@code null}
+   *
+   * @return a new, non-{@code null} implementation of the supplied
+   * interface
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if a configuration value could not be resolved
+   */
+  static final <T> T newInstance(final Class<T> configurationInterface,
+                                 final Map<? extends Method, ? extends ConfigurationValueResolver.Key> keys,
+                                 final ConfigurationValueResolver resolver) {
+    return configurationInterface.cast(Proxy.newProxyInstance(configurationInterface.getClassLoader(),
+                                                              new Class<?>[] { configurationInterface },
+                                                              new ConfigurationInterfaceHandler(configurationInterface,
+                                                                                                keys,
+                                                                                                resolver)));
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An immutable set of configuration values resolved during a
+   * particular {@linkplain ConfigurationValueResolver#getGeneration()
+   * generation}.
+   */
+  private static final class Snapshot {
+
+    private final long generation;
+
+    private final Object[] values;
+
+    private Snapshot(final long generation, final Object[] values) {
+      super();
+      this.generation = generation;
+      this.values = values;
+    }
+
+  }
+
+}
@@ -0,0 +1,354 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.reflect.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.enterprise.inject.Instance; // for javadoc only
+
+import javax.enterprise.util.TypeLiteral;
+
+import org.microbean.configuration.cdi.annotation.Configuration; // for javadoc only
+import org.microbean.configuration.cdi.annotation.ConfigurationValue;
+
+/**
+ * An immutable, precompiled description of a configuration value
+ * that can be {@linkplain ConfigurationLookup#get(ConfigurationKey)
+ * looked up programmatically} by a {@link ConfigurationLookup}.
+ *
+ * <p>A {@link ConfigurationKey} carries everything a {@link
+ * ConfigurationValue}-qualified injection point would: the names of
+ * the configuration value, the {@link Configuration} prefix that
+ * applies to them, the configuration coordinates in effect, the
+ * {@link Type} to which the value should be converted, and its
+ * default value.  All of this is worked out once, when the {@link
+ * ConfigurationKey} is created, rather than on every lookup as it is
+ * when {@link Instance#select(java.lang.annotation.Annotation...)}
+ * is used with {@link ConfigurationValue.Literal} qualifiers.
+ * {@link ConfigurationKey}s are therefore best stored in {@code
+ * static final} fields and reused.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @param <T> the type of the configuration value
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ConfigurationLookup
+ */
+public final class ConfigurationKey<T> {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link Type} to which the configuration value is to be
+   * converted.
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * @see #getType()
+   */
+  private final Type type;
+
+  /**
+   * The fully prefixed names of the configuration value, in the
+   * order in which they are to be tried.
+   *
+   * <p>This field is never {@code null} and is never empty.</p>
+   *
+   * @see #getNames()
+   */
+  private final List<String> names;
+
+  /**
+   * The configuration coordinates that apply to the configuration
+   * value, in addition to the application's own.
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * @see #getConfigurationCoordinates()
+   */
+  private final Map<String, String> configurationCoordinates;
+
+  /**
+   * The default value of the configuration value.
+   *
+   * <p>This field may be {@code null}.</p>
+   *
+   * @see #getDefaultValue()
+   */
+  private final String defaultValue;
+
+  /**
+   * The precomputed hashcode of this {@link ConfigurationKey}.
+   */
+  private final int hashCode;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ConfigurationKey} with a single name, no
+   * prefix, no additional configuration coordinates and no default
+   * value.
+   *
+   * @param type the {@link Class} to which the configuration value
+   * is to be converted; must not be {@code null}
+   *
+   * @param name the name of the configuration value; must not be
+   * {@code null} or empty
+   *
+   * @exception NullPointerException if {@code type} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code name} is {@code
+   * null} or empty
+   *
+   * @see #ConfigurationKey(Class, String, Map, String, String...)
+   */
+  public ConfigurationKey(final Class<T> type, final String name) {
+    this((Type)type, null, null, null, name);
+  }
+
+  /**
+   * Creates a new {@link ConfigurationKey}.
+   *
+   * @param type the {@link Class} to which the configuration value
+   * is to be converted; must not be {@code null}
+   *
+   * @param prefix the prefix, as it would be supplied by a {@link
+   * Configuration} annotation, that applies to each of the supplied
+   * {@code names}; may be {@code null}
+   *
+   * @param configurationCoordinates configuration coordinates that
+   * apply to the configuration value in addition to, and in
+   * preference to, the application's own; may be {@code null}
+   *
+   * @param defaultValue the default value of the configuration
+   * value; may be {@code null}
+   *
+   * @param names the names of the configuration value, in the order
+   * in which they are to be tried; must not be {@code null} and must
+   * contain at least one non-empty name
+   *
+   * @exception NullPointerException if {@code type} or {@code names}
+   * is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code names} contains no
+   * non-empty name
+   */
+  public ConfigurationKey(final Class<T> type,
+                          final String prefix,
+                          final Map<String, String> configurationCoordinates,
+                          final String defaultValue,
+                          final String... names) {
+    this((Type)type, prefix, configurationCoordinates, defaultValue, names);
+  }
+
+  /**
+   * Creates a new {@link ConfigurationKey} for a configuration value
+   * of a parameterized type.
+   *
+   * @param type a {@link TypeLiteral} representing the {@link Type}
+   * to which the configuration value is to be converted; must not be
+   * {@code null}
+   *
+   * @param prefix the prefix, as it would be supplied by a {@link
+   * Configuration} annotation, that applies to each of the supplied
+   * {@code names}; may be {@code null}
+   *
+   * @param configurationCoordinates configuration coordinates that
+   * apply to the configuration value in addition to, and in
+   * preference to, the application's own; may be {@code null}
+   *
+   * @param defaultValue the default value of the configuration
+   * value; may be {@code null}
+   *
+   * @param names the names of the configuration value, in the order
+   * in which they are to be tried; must not be {@code null} and must
+   * contain at least one non-empty name
+   *
+   * @exception NullPointerException if {@code type} or {@code names}
+   * is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code names} contains no
+   * non-empty name
+   */
+  public ConfigurationKey(final TypeLiteral<T> type,
+                          final String prefix,
+                          final Map<String, String> configurationCoordinates,
+                          final String defaultValue,
+                          final String... names) {
+    this(type.getType(), prefix, configurationCoordinates, defaultValue, names);
+  }
+
+  private ConfigurationKey(final Type type,
+                           String prefix,
+                           final Map<String, String> configurationCoordinates,
+                           final String defaultValue,
+                           final String... names) {
+    super();
+    this.type = Objects.requireNonNull(type);
+    Objects.requireNonNull(names);
+    prefix = prefix == null ? "" : prefix.trim();
+    final List<String> prefixedNames = new ArrayList<>(names.length);
+    for (final String name : names) {
+      // Skip the same names, and apply the prefix in the same way,
+      // as ConfigurationsExtension does for injection points.
+      if (name != null && !name.isEmpty() && !name.equals(ConfigurationValue.NULL)) {
+        prefixedNames.add(prefix.isEmpty() ? name : new StringBuilder(prefix).append('.').append(name).toString());
+      }
+    }
+    if (prefixedNames.isEmpty()) {
+      throw new IllegalArgumentException("No names: " + Arrays.toString(names));
+    }
+    this.names = Collections.unmodifiableList(prefixedNames);
+    if (configurationCoordinates == null || configurationCoordinates.isEmpty()) {
+      this.configurationCoordinates = Collections.emptyMap();
+    } else {
+      this.configurationCoordinates = Collections.unmodifiableMap(new HashMap<>(configurationCoordinates));
+    }
+    if (defaultValue == null || defaultValue.equals(ConfigurationValue.NULL)) {
+      this.defaultValue = null;
+    } else {
+      this.defaultValue = defaultValue.trim();
+    }
+    this.hashCode = Objects.hash(this.type, this.names, this.configurationCoordinates, this.defaultValue);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@link Type} to which the configuration value is to
+   * be converted.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link Type}
+   */
+  public final Type getType() {
+    return this.type;
+  }
+
+  /**
+   * Returns the fully prefixed names of the configuration value, in
+   * the order in which they are to be tried.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, non-empty, immutable {@link List} of
+   * names
+   */
+  public final List<String> getNames() {
+    return this.names;
+  }
+
+  /**
+   * Returns the configuration coordinates that apply to the
+   * configuration value in addition to the application's own.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, immutable {@link Map} of
+   * configuration coordinates
+   */
+  public final Map<String, String> getConfigurationCoordinates() {
+    return this.configurationCoordinates;
+  }
+
+  /**
+   * Returns the default value of the configuration value.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the default value, or {@code null}
+   */
+  public final String getDefaultValue() {
+    return this.defaultValue;
+  }
+
+  /**
+   * Returns a hashcode for this {@link ConfigurationKey}.
+   *
+   * @return a hashcode
+   */
+  @Override
+  public final int hashCode() {
+    return this.hashCode;
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link Object} is a {@link
+   * ConfigurationKey} describing the same configuration value as
+   * this {@link ConfigurationKey}.
+   *
+   * @param other the {@link Object} to test; may be {@code null}
+   *
+   * @return {@code true} if {@code other} is equal to this {@link
+   * ConfigurationKey}; {@code false} otherwise
+   */
+  @Override
+  public final boolean equals(final Object other) {
+    if (other == this) {
+      return true;
+    } else if (other instanceof ConfigurationKey) {
+      final ConfigurationKey<?> her = (ConfigurationKey<?>)other;
+      return
+        this.hashCode == her.hashCode &&
+        this.type.equals(her.type) &&
+        this.names.equals(her.names) &&
+        this.configurationCoordinates.equals(her.configurationCoordinates) &&
+        Objects.equals(this.defaultValue, her.defaultValue);
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * ConfigurationKey}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    return this.names + " as " + this.type.getTypeName();
+  }
+
+}
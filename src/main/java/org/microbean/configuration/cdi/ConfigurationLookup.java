@@ -0,0 +1,417 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.reflect.Type;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.enterprise.inject.Instance; // for javadoc only
+
+import javax.enterprise.util.TypeLiteral;
+
+import org.microbean.configuration.cdi.annotation.ConfigurationValue; // for javadoc only
+
+/**
+ * Looks up configuration values described by {@link
+ * ConfigurationKey}s.
+ *
+ * <p>A {@link ConfigurationLookup} is available for injection as a
+ * {@link javax.inject.Singleton Singleton}-scoped bean in any CDI
+ * container in which the {@link ConfigurationsExtension} is
+ * installed.  It is the programmatic counterpart of {@link
+ * ConfigurationValue}-qualified injection points, and is much
+ * cheaper to use repeatedly than {@link
+ * Instance#select(java.lang.annotation.Annotation...)}: a {@link
+ * ConfigurationKey} is compiled against the application's
+ * configuration coordinates the first time it is looked up, and each
+ * subsequent lookup of a configuration value that has already been
+ * resolved and {@linkplain ConfigurationValueResolver cached}, if
+ * caching is enabled, performs no allocation at all.</p>
+ *
+ * <p>Configuration values are resolved, cached and {@linkplain
+ * ConfigurationValueResolver#invalidate() invalidated} exactly as
+ * they are for injection points.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #get(ConfigurationKey)
+ *
+ * @see ConfigurationKey
+ */
+public final class ConfigurationLookup {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The maximum number of {@linkplain #compile(ConfigurationKey)
+   * compiled} {@link ConfigurationKey}s each {@link
+   * ConfigurationLookup} remembers.
+   */
+  static final int MAXIMUM_COMPILED_KEYS = 4096;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link ConfigurationValueResolver} to which resolution is
+   * delegated.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConfigurationValueResolver resolver;
+
+  /**
+   * The application's configuration coordinates.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, String> configurationCoordinates;
+
+  /**
+   * The {@link ConfigurationValueResolver.Key}s {@linkplain
+   * #compile(ConfigurationKey) compiled} from {@link
+   * ConfigurationKey}s by this {@link ConfigurationLookup}, indexed
+   * by those {@link ConfigurationKey}s.
+   *
+   * <p>Compiled forms are kept here, rather than on the {@link
+   * ConfigurationKey}s themselves, so that a {@link ConfigurationKey}
+   * held in a {@code static} field, and used with several {@link
+   * ConfigurationLookup}s, neither keeps any of them reachable nor
+   * has to be compiled again every time it is used with a different
+   * one.</p>
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final BoundedCache<ConfigurationKey<?>, ConfigurationValueResolver.Key> compiledKeys;
+
+  /**
+   * The {@link Logger} used by this {@link ConfigurationLookup}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Logger logger;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ConfigurationLookup}.
+   *
+   * @param resolver the {@link ConfigurationValueResolver} to which
+   * resolution will be delegated; must not be {@code null}
+   *
+   * @param configurationCoordinates the application's configuration
+   * coordinates; may be {@code null}
+   *
+   * @exception NullPointerException if {@code resolver} is {@code
+   * null}
+   */
+  ConfigurationLookup(final ConfigurationValueResolver resolver, final Map<String, String> configurationCoordinates) {
+    super();
+    this.resolver = Objects.requireNonNull(resolver);
+    if (configurationCoordinates == null || configurationCoordinates.isEmpty()) {
+      this.configurationCoordinates = Collections.emptyMap();
+    } else {
+      this.configurationCoordinates = Collections.unmodifiableMap(new HashMap<>(configurationCoordinates));
+    }
+    this.compiledKeys = new BoundedCache<>(MAXIMUM_COMPILED_KEYS);
+    this.logger = Logger.getLogger(this.getClass().getName());
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the configuration value described by the supplied {@link
+   * ConfigurationKey}.
+   *
+   * <p>This method may return {@code null}.  If the {@link
+   * ConfigurationKey}'s {@linkplain ConfigurationKey#getType() type}
+   * is primitive, and there is neither a configuration value nor a
+   * default value, the primitive type's uninitialized value (e.g.
+   * {@code 0} for {@code int.class}) is returned instead.</p>
+   *
+   * <p>Non-{@code null} values are shared by all callers and must
+   * not be modified.</p>
+   *
+   * @param <T> the type of the configuration value
+   *
+   * @param key the {@link ConfigurationKey} describing the
+   * configuration value; must not be {@code null}
+   *
+   * @return the configuration value, or {@code null}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   *
+   * @exception IllegalArgumentException if there is no conversion
+   * available for the {@link ConfigurationKey}'s {@linkplain
+   * ConfigurationKey#getType() type}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if the configuration value could not be converted
+   */
+  @SuppressWarnings("unchecked")
+  public final <T> T get(final ConfigurationKey<T> key) {
+    final String cn = this.getClass().getName();
+    final String mn = "get";
+    final Logger logger = this.logger;
+    if (logger.isLoggable(Level.FINER)) {
+      logger.entering(cn, mn, key);
+    }
+    ConfigurationValueResolver.Key compiledKey = this.compiledKeys.get(key);
+    if (compiledKey == null) {
+      compiledKey = this.compile(key);
+      this.compiledKeys.put(key, compiledKey);
+    }
+    final T returnValue = (T)ConfigurationsExtension.getConfigurationValue(this.resolver, compiledKey);
+    if (logger.isLoggable(Level.FINER)) {
+      logger.exiting(cn, mn, returnValue);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the configuration values with the supplied names,
+   * converted to the supplied {@link Class}, resolving all of them
+   * at once.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type of the configuration values
+   *
+   * @param configurationCoordinates configuration coordinates that
+   * apply to every name in addition to, and in preference to, the
+   * application's own; may be {@code null}
+   *
+   * @param names the names of the configuration values; must not be
+   * {@code null}
+   *
+   * @param type the {@link Class} to which the configuration values
+   * are to be converted; must not be {@code null}
+   *
+   * @return a non-{@code null}, immutable {@link Map} of the
+   * configuration values that are present, indexed by name, in the
+   * order of the supplied {@code names}
+   *
+   * @exception NullPointerException if {@code names} or {@code type}
+   * is {@code null}
+   *
+   * @exception IllegalArgumentException if there is no conversion
+   * available for the supplied {@code type}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if a configuration value could not be converted
+   *
+   * @see #getAll(Map, Collection, TypeLiteral)
+   */
+  public final <T> Map<String, T> getAll(final Map<String, String> configurationCoordinates,
+                                         final Collection<? extends String> names,
+                                         final Class<T> type) {
+    return this.getAll(configurationCoordinates, names, (Type)type);
+  }
+
+  /**
+   * Returns the configuration values with the supplied names,
+   * converted to the {@link Type} represented by the supplied {@link
+   * TypeLiteral}, resolving all of them at once.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>All of the names are gathered into a single {@linkplain
+   * ConfigurationValueResolver#resolveAll(Collection, Map) batch}, so
+   * that the underlying configuration sources are traversed as few
+   * times as possible, rather than once per name as they would be by
+   * repeated calls to the {@link #get(ConfigurationKey)} method.
+   * Values that are already cached are not sought again.</p>
+   *
+   * @param <T> the type of the configuration values
+   *
+   * @param configurationCoordinates configuration coordinates that
+   * apply to every name in addition to, and in preference to, the
+   * application's own; may be {@code null}
+   *
+   * @param names the names of the configuration values; must not be
+   * {@code null}
+   *
+   * @param type a {@link TypeLiteral} representing the {@link Type}
+   * to which the configuration values are to be converted; must not
+   * be {@code null}
+   *
+   * @return a non-{@code null}, immutable {@link Map} of the
+   * configuration values that are present, indexed by name, in the
+   * order of the supplied {@code names}
+   *
+   * @exception NullPointerException if {@code names} or {@code type}
+   * is {@code null}
+   *
+   * @exception IllegalArgumentException if there is no conversion
+   * available for the supplied {@code type}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if a configuration value could not be converted
+   */
+  public final <T> Map<String, T> getAll(final Map<String, String> configurationCoordinates,
+                                         final Collection<? extends String> names,
+                                         final TypeLiteral<T> type) {
+    return this.getAll(configurationCoordinates, names, type.getType());
+  }
+
+  @SuppressWarnings("unchecked")
+  private final <T> Map<String, T> getAll(final Map<String, String> configurationCoordinates,
+                                          final Collection<? extends String> names,
+                                          final Type type) {
+    final String cn = this.getClass().getName();
+    final String mn = "getAll";
+    final Logger logger = this.logger;
+    if (logger.isLoggable(Level.FINER)) {
+      logger.entering(cn, mn, new Object[] { configurationCoordinates, names, type });
+    }
+    Objects.requireNonNull(names);
+    this.checkConvertible(type);
+    final Map<String, String> coordinates = this.getConfigurationCoordinates(configurationCoordinates);
+    final Map<String, ConfigurationValueResolver.Key> keys = new LinkedHashMap<>();
+    for (final String name : names) {
+      if (name != null && !keys.containsKey(name)) {
+        keys.put(name,
+                 new ConfigurationValueResolver.Key(new ConfigurationsExtension.ConfigurationValueMetadata(coordinates,
+                                                                                                             Collections.singleton(name),
+                                                                                                             null),
+                                                    type));
+      }
+    }
+    final Map<ConfigurationValueResolver.Key, Object> values = this.resolver.resolveAll(keys.values(), null);
+    final Map<String, T> returnValue;
+    if (values.isEmpty()) {
+      returnValue = Collections.emptyMap();
+    } else {
+      final Map<String, T> map = new LinkedHashMap<>(values.size() * 4 / 3 + 1);
+      for (final Entry<String, ConfigurationValueResolver.Key> entry : keys.entrySet()) {
+        final Object value = values.get(entry.getValue());
+        if (value != null) {
+          map.put(entry.getKey(), (T)value);
+        }
+      }
+      returnValue = Collections.unmodifiableMap(map);
+    }
+    if (logger.isLoggable(Level.FINER)) {
+      logger.exiting(cn, mn, returnValue);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link ConfigurationValueResolver.Key} describing the
+   * same configuration value as the supplied {@link
+   * ConfigurationKey}, under this {@link ConfigurationLookup}'s
+   * configuration coordinates.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param key the {@link ConfigurationKey} to compile; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link ConfigurationValueResolver.Key}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   *
+   * @exception IllegalArgumentException if there is no conversion
+   * available for the {@link ConfigurationKey}'s {@linkplain
+   * ConfigurationKey#getType() type}
+   */
+  final ConfigurationValueResolver.Key compile(final ConfigurationKey<?> key) {
+    final Type type = key.getType();
+    this.checkConvertible(type);
+    final Map<String, String> coordinates = this.getConfigurationCoordinates(key.getConfigurationCoordinates());
+    return new ConfigurationValueResolver.Key(new ConfigurationsExtension.ConfigurationValueMetadata(coordinates,
+                                                                                                       key.getNames(),
+                                                                                                       key.getDefaultValue()),
+                                              type);
+  }
+
+  /**
+   * Throws an {@link IllegalArgumentException} if there is no
+   * conversion available for the supplied {@link Type}.
+   *
+   * @param type the {@link Type} to check; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code type} is {@code null}
+   *
+   * @exception IllegalArgumentException if there is no conversion
+   * available for the supplied {@link Type}
+   */
+  private final void checkConvertible(final Type type) {
+    Objects.requireNonNull(type);
+    final Set<Type> conversionTypes = this.resolver.getConfigurations().getConversionTypes();
+    if (conversionTypes == null || !conversionTypes.contains(type)) {
+      throw new IllegalArgumentException("No conversion is available for " + type.getTypeName());
+    }
+  }
+
+  /**
+   * Returns the application's configuration coordinates, overridden
+   * by the supplied ones.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param configurationCoordinates the configuration coordinates
+   * that take precedence; may be {@code null}
+   *
+   * @return a non-{@code null} {@link Map} of configuration
+   * coordinates
+   */
+  private final Map<String, String> getConfigurationCoordinates(final Map<String, String> configurationCoordinates) {
+    final Map<String, String> returnValue;
+    if (configurationCoordinates == null || configurationCoordinates.isEmpty()) {
+      returnValue = this.configurationCoordinates;
+    } else {
+      // The supplied coordinates take precedence, just as those on
+      // an injection point do.
+      returnValue = new HashMap<>(this.configurationCoordinates);
+      returnValue.putAll(configurationCoordinates);
+    }
+    return returnValue;
+  }
+
+}
@@ -0,0 +1,213 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.microbean.configuration.api.Configurations; // for javadoc only
+
+/**
+ * An immutable index of configuration value names, organized by their
+ * {@code .}-separated segments, so that the names beneath a given
+ * prefix can be found without examining any others.
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #getNamesBeneath(String)
+ *
+ * @see Configurations#getNames()
+ */
+final class ConfigurationNameTrie {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The root {@link Node}, which represents the empty prefix.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Node root;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ConfigurationNameTrie}.
+   *
+   * @param names the configuration value names to index; may be
+   * {@code null}; {@code null} elements are ignored
+   */
+  ConfigurationNameTrie(final Collection<? extends String> names) {
+    super();
+    this.root = new Node();
+    if (names != null) {
+      for (final String name : names) {
+        if (name != null) {
+          Node node = this.root;
+          int start = 0;
+          int dot;
+          while ((dot = name.indexOf('.', start)) >= 0) {
+            node = node.child(name.substring(start, dot));
+            start = dot + 1;
+          }
+          node.child(name.substring(start)).name = name;
+        }
+      }
+    }
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the indexed names that begin with the supplied prefix
+   * followed by a {@code .}, in lexicographic order of their
+   * segments.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>The cost of this method is proportional to the length of the
+   * prefix and the number of names returned, not to the number of
+   * names indexed.</p>
+   *
+   * @param prefix the prefix; must not be {@code null}; if empty,
+   * all indexed names are returned
+   *
+   * @return a non-{@code null}, immutable {@link List} of names
+   *
+   * @exception NullPointerException if {@code prefix} is {@code null}
+   */
+  final List<String> getNamesBeneath(final String prefix) {
+    final Node node = this.find(prefix);
+    if (node == null || node.children == null) {
+      return Collections.emptyList();
+    }
+    final List<String> names = new ArrayList<>();
+    collect(node, names);
+    return Collections.unmodifiableList(names);
+  }
+
+  /**
+   * Returns {@code true} if any indexed name begins with the supplied
+   * prefix followed by a {@code .}.
+   *
+   * @param prefix the prefix; must not be {@code null}
+   *
+   * @return {@code true} if there are names beneath the supplied
+   * prefix
+   *
+   * @exception NullPointerException if {@code prefix} is {@code null}
+   */
+  final boolean hasNamesBeneath(final String prefix) {
+    final Node node = this.find(prefix);
+    // Every leaf is a name, so any child means at least one name.
+    return node != null && node.children != null;
+  }
+
+  private final Node find(final String prefix) {
+    Node node = this.root;
+    if (!prefix.isEmpty()) {
+      int start = 0;
+      int dot;
+      do {
+        dot = prefix.indexOf('.', start);
+        node = node.children == null ? null : node.children.get(dot < 0 ? prefix.substring(start) : prefix.substring(start, dot));
+        start = dot + 1;
+      } while (node != null && dot >= 0);
+    }
+    return node;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final void collect(final Node node, final List<String> names) {
+    for (final Node child : node.children.values()) {
+      if (child.name != null) {
+        names.add(child.name);
+      }
+      if (child.children != null) {
+        collect(child, names);
+      }
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A node in a {@link ConfigurationNameTrie}, representing one
+   * segment of one or more names.
+   */
+  private static final class Node {
+
+    /**
+     * The child {@link Node}s, indexed by segment, or {@code null} if
+     * there are none.
+     */
+    private Map<String, Node> children;
+
+    /**
+     * The full name that ends at this {@link Node}, or {@code null}
+     * if no name ends here.
+     */
+    private String name;
+
+    private Node() {
+      super();
+    }
+
+    private final Node child(final String segment) {
+      if (this.children == null) {
+        this.children = new TreeMap<>();
+      }
+      Node child = this.children.get(segment);
+      if (child == null) {
+        child = new Node();
+        this.children.put(segment, child);
+      }
+      return child;
+    }
+
+  }
+
+}
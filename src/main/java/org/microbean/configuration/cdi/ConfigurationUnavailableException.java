@@ -0,0 +1,98 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import org.microbean.configuration.api.ConfigurationException;
+
+/**
+ * A {@link ConfigurationException} indicating that a configuration
+ * source could not supply a configuration value in time, or at all,
+ * as opposed to having supplied one that could not be converted.
+ *
+ * <p>Instances of this class do not record a stack trace, since they
+ * are expected to be thrown often while a configuration source is
+ * slow or failing, and are usually handled by falling back to the
+ * last known good value.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see GuardedConfigurations
+ *
+ * @see ConfigurationValueResolver#resolve(ConfigurationValueResolver.Key)
+ */
+final class ConfigurationUnavailableException extends ConfigurationException {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The version of this class for {@linkplain java.io.Serializable
+   * serialization purposes}.
+   */
+  private static final long serialVersionUID = 1L;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ConfigurationUnavailableException}.
+   *
+   * @param message a description of the problem; may be {@code null}
+   */
+  ConfigurationUnavailableException(final String message) {
+    super(message);
+  }
+
+  /**
+   * Creates a new {@link ConfigurationUnavailableException}.
+   *
+   * @param message a description of the problem; may be {@code null}
+   *
+   * @param cause the {@link Throwable} that caused this {@link
+   * ConfigurationUnavailableException} to be thrown; may be {@code
+   * null}
+   */
+  ConfigurationUnavailableException(final String message, final Throwable cause) {
+    super(message, cause);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Does nothing and returns this {@link
+   * ConfigurationUnavailableException}, so that no stack trace is
+   * recorded.
+   *
+   * @return this {@link ConfigurationUnavailableException}
+   */
+  @Override
+  public final synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+
+}
@@ -0,0 +1,1723 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.reflect.Type;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import java.net.URI;
+
+import java.nio.charset.Charset;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import java.util.function.Function;
+
+import java.util.regex.Pattern;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.microbean.configuration.api.ConfigurationException;
+import org.microbean.configuration.api.Configurations;
+
+/**
+ * Resolves configuration values described by {@link
+ * ConfigurationsExtension.ConfigurationValueMetadata} instances
+ * using a {@link Configurations} and, if caching is enabled,
+ * remembering, in {@linkplain BoundedCache bounded caches}, the
+ * resolved values themselves, which configuration value names are
+ * known to be absent so that they need not be sought again, and
+ * which name supplied the value for a given piece of metadata so
+ * that it can be tried first next time.
+ *
+ * <p>Resolution follows exactly the same rules as the {@link
+ * Configurations#getValue(Map, Collection, Type, String)} method:
+ * each name is tried in order, the first non-{@code null} value
+ * wins, and the default value is used only if no name yields a
+ * value.  Trying a remembered winning name first does not change
+ * this, because every name that precedes it was found to be absent
+ * when it won, and nothing is remembered across an {@linkplain
+ * #invalidate() invalidation}.</p>
+ *
+ * <p>Everything that is remembered, other than {@linkplain
+ * #getDefaultValue(Key) converted default values}, is forgotten when
+ * the {@link #invalidate()} method is called, which happens whenever
+ * the underlying configuration sources are known to have
+ * changed.</p>
+ *
+ * <p>Caching is optional, and off {@linkplain
+ * #DEFAULT_MAXIMUM_CACHE_SIZE by default}, because it changes what
+ * callers see: a cached value is returned until the next
+ * invalidation, even if the configuration sources have changed in
+ * the meantime, and even if the name that supplied it has vanished;
+ * likewise, a value that appears under a name already found to be
+ * absent, including one that precedes the remembered winning name,
+ * is not seen until then.  It is therefore only appropriate when
+ * the configuration sources are {@linkplain Pollable polled}, or do
+ * not change.  Without it, every resolution consults the
+ * configuration sources, trying each name in order, and nothing but
+ * converted default values is remembered.  Only values of
+ * {@linkplain #isShareable(Object) immutable types} are ever cached,
+ * since a cached value is shared by every caller.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ConfigurationsExtension
+ */
+final class ConfigurationValueResolver {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The default maximum number of resolved values to cache, which is
+   * {@code 0}: resolved values are not cached unless caching is
+   * requested explicitly.
+   *
+   * @see #ConfigurationValueResolver(Configurations, int)
+   */
+  static final int DEFAULT_MAXIMUM_CACHE_SIZE = 0;
+
+  /**
+   * The maximum number of {@linkplain #lastGoodValues last known good
+   * values} to remember.
+   */
+  static final int MAXIMUM_LAST_GOOD_VALUES = 10000;
+
+  /**
+   * The maximum number of {@linkplain #absentNames absent names}, and
+   * of {@linkplain #winningNames winning names}, to remember when
+   * caching is enabled.
+   */
+  static final int MAXIMUM_REMEMBERED_NAMES = 10000;
+
+  /**
+   * The maximum number of {@linkplain #defaultValues converted
+   * default values} to remember.
+   */
+  static final int MAXIMUM_DEFAULT_VALUES = 10000;
+
+  /**
+   * The {@link Class}es whose instances are immutable, and so may be
+   * cached and shared by every caller.
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * @see #isShareable(Object)
+   */
+  private static final Set<Class<?>> immutableTypes =
+    Collections.unmodifiableSet(new HashSet<>(Arrays.asList(String.class,
+                                                            Boolean.class,
+                                                            Character.class,
+                                                            Byte.class,
+                                                            Short.class,
+                                                            Integer.class,
+                                                            Long.class,
+                                                            Float.class,
+                                                            Double.class,
+                                                            BigInteger.class,
+                                                            BigDecimal.class,
+                                                            URI.class,
+                                                            UUID.class,
+                                                            Locale.class,
+                                                            Pattern.class,
+                                                            Duration.class,
+                                                            Instant.class,
+                                                            LocalDate.class,
+                                                            LocalDateTime.class,
+                                                            LocalTime.class,
+                                                            OffsetDateTime.class,
+                                                            OffsetTime.class,
+                                                            Period.class,
+                                                            ZonedDateTime.class)));
+
+  /**
+   * An {@link Object} standing in for a default value that was
+   * converted to {@code null}, or for a configuration value that was
+   * resolved to {@code null}, since {@link ConcurrentMap}s cannot
+   * store {@code null} values.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final Object NULL = new Object();
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link Configurations} to which resolution is delegated.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Configurations configurations;
+
+  /**
+   * Whether caching is enabled, and so whether absent and winning
+   * names are remembered.
+   *
+   * @see #ConfigurationValueResolver(Configurations, int)
+   */
+  private final boolean memoizing;
+
+  /**
+   * A {@link BoundedCache} whose keys are {@link NameKey}s
+   * identifying configuration value names that are known to be
+   * absent under particular configuration coordinates.
+   *
+   * <p>This field is never {@code null}.  It holds nothing unless
+   * {@linkplain #memoizing caching is enabled}.  It is replaced,
+   * rather than cleared, by the {@link #invalidate()} method, so that
+   * a resolution that is in progress during invalidation cannot
+   * record a stale absence in the new {@link BoundedCache}.</p>
+   */
+  private volatile BoundedCache<NameKey, Boolean> absentNames;
+
+  /**
+   * A {@link BoundedCache} of the names that most recently supplied
+   * configuration values, indexed by the {@link Key}s describing
+   * those values.
+   *
+   * <p>This field is never {@code null}.  Like the {@link
+   * #absentNames} field, it holds nothing unless {@linkplain
+   * #memoizing caching is enabled}, and is replaced, rather than
+   * cleared, by the {@link #invalidate()} method.</p>
+   */
+  private volatile BoundedCache<Key, String> winningNames;
+
+  /**
+   * A {@link BoundedCache} of {@linkplain #getDefaultValue(Key)
+   * default values that have already been converted}, indexed by
+   * the {@link Key}s describing the configuration values to which
+   * they belong.
+   *
+   * <p>This field is never {@code null}.  Its contents survive
+   * {@linkplain #invalidate() invalidation}, and are remembered
+   * whether or not caching is enabled, since default values do not
+   * come from configuration sources.</p>
+   */
+  private final BoundedCache<Key, Object> defaultValues;
+
+  /**
+   * A {@link BoundedCache} of resolved configuration values, indexed
+   * by the {@link Key}s describing them.
+   *
+   * <p>A configuration value that was resolved to {@code null}, most
+   * commonly because it is absent and has no default value, is
+   * represented by {@link #NULL}, so that its absence is remembered
+   * as cheaply as any other value's presence.</p>
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final BoundedCache<Key, Object> values;
+
+  /**
+   * A {@link ConcurrentMap} of {@link CompletableFuture}s
+   * representing {@linkplain #resolveAsync(Key, Executor)
+   * asynchronous resolutions} that are still in progress, indexed by
+   * the {@link Key}s describing the configuration values being
+   * resolved.
+   *
+   * <p>This field is never {@code null}.  It is cleared by the {@link
+   * #invalidate()} method, so that a resolution begun before an
+   * invalidation is not joined by callers that arrive after it.</p>
+   */
+  private final ConcurrentMap<Key, CompletableFuture<Object>> pendingResolutions;
+
+  /**
+   * The number of times this {@link ConfigurationValueResolver} has
+   * been {@linkplain #invalidate() invalidated}, used to keep a
+   * resolution that straddles an invalidation from caching a stale
+   * value.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final AtomicLong generation;
+
+  /**
+   * A {@link ConfigurationNameTrie} indexing the {@linkplain
+   * Configurations#getNames() names of the configuration values}
+   * available, or {@code null} if one has not been built since the
+   * last {@linkplain #invalidate() invalidation}, or if {@linkplain
+   * #memoizing caching is not enabled}.
+   *
+   * @see #getNameTrie()
+   */
+  private volatile ConfigurationNameTrie nameTrie;
+
+  /**
+   * A {@link BoundedCache} of the configuration values most recently
+   * resolved, indexed by the {@link Key}s describing them, which,
+   * unlike the {@link #values} field, survives {@linkplain
+   * #invalidate() invalidation}.
+   *
+   * <p>These last known good values are returned when a configuration
+   * source is {@linkplain ConfigurationUnavailableException
+   * unavailable} or the {@linkplain #deadlineNanos deadline} passes.
+   * As in the {@link #values} field, {@link #NULL} represents a
+   * configuration value that was resolved to {@code null}.</p>
+   *
+   * <p>This field is never {@code null}.  It holds nothing unless
+   * there is a deadline or the {@link Configurations} in use is
+   * {@linkplain #isGuarded(Configurations) guarded}, since otherwise
+   * neither can happen.</p>
+   */
+  private final BoundedCache<Key, Object> lastGoodValues;
+
+  /**
+   * The number of nanoseconds the {@link #resolve(Key)} method will
+   * wait for a configuration value that is not cached to be
+   * resolved, or {@code 0} if it will wait indefinitely.
+   */
+  private final long deadlineNanos;
+
+  /**
+   * The {@link Executor} on which configuration values are resolved
+   * when there is a {@linkplain #deadlineNanos deadline}.
+   *
+   * <p>This field is {@code null} if and only if {@link
+   * #deadlineNanos} is {@code 0}.</p>
+   */
+  private final Executor executor;
+
+  /**
+   * The {@link Logger} used by this {@link
+   * ConfigurationValueResolver}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Logger logger;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ConfigurationValueResolver} that caches up
+   * to {@link #DEFAULT_MAXIMUM_CACHE_SIZE} resolved values, which is
+   * to say none.
+   *
+   * @param configurations the {@link Configurations} to which
+   * resolution will be delegated; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code configurations} is
+   * {@code null}
+   *
+   * @see #ConfigurationValueResolver(Configurations, int)
+   */
+  ConfigurationValueResolver(final Configurations configurations) {
+    this(configurations, DEFAULT_MAXIMUM_CACHE_SIZE);
+  }
+
+  /**
+   * Creates a new {@link ConfigurationValueResolver}.
+   *
+   * @param configurations the {@link Configurations} to which
+   * resolution will be delegated; must not be {@code null}
+   *
+   * @param maximumCacheSize the maximum number of resolved values to
+   * cache, or {@code 0} to cache none, and to remember nothing about
+   * which names are absent or supplied values; must not be negative
+   *
+   * @exception NullPointerException if {@code configurations} is
+   * {@code null}
+   *
+   * @exception IllegalArgumentException if {@code maximumCacheSize}
+   * is negative
+   *
+   * @see #ConfigurationValueResolver(Configurations, int, long,
+   * Executor)
+   */
+  ConfigurationValueResolver(final Configurations configurations, final int maximumCacheSize) {
+    this(configurations, maximumCacheSize, 0L, null);
+  }
+
+  /**
+   * Creates a new {@link ConfigurationValueResolver} that waits no
+   * longer than the supplied deadline for a configuration value that
+   * is not cached to be resolved.
+   *
+   * <p>See the {@link #resolve(Key)} method for what happens when the
+   * deadline passes.</p>
+   *
+   * @param configurations the {@link Configurations} to which
+   * resolution will be delegated; must not be {@code null}
+   *
+   * @param maximumCacheSize the maximum number of resolved values to
+   * cache; must not be negative
+   *
+   * @param deadlineMillis the number of milliseconds to wait for a
+   * configuration value to be resolved, or {@code 0} to wait
+   * indefinitely; must not be negative
+   *
+   * @param executor the {@link Executor} on which configuration
+   * values will be resolved if {@code deadlineMillis} is not {@code
+   * 0}; may be {@code null} only if {@code deadlineMillis} is {@code
+   * 0}
+   *
+   * @exception NullPointerException if {@code configurations} is
+   * {@code null}, or if {@code executor} is {@code null} and {@code
+   * deadlineMillis} is not {@code 0}
+   *
+   * @exception IllegalArgumentException if {@code maximumCacheSize}
+   * or {@code deadlineMillis} is negative
+   */
+  ConfigurationValueResolver(final Configurations configurations,
+                             final int maximumCacheSize,
+                             final long deadlineMillis,
+                             final Executor executor) {
+    super();
+    this.configurations = Objects.requireNonNull(configurations);
+    if (deadlineMillis < 0L) {
+      throw new IllegalArgumentException("deadlineMillis < 0L: " + deadlineMillis);
+    }
+    this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+    this.executor = deadlineMillis == 0L ? null : Objects.requireNonNull(executor);
+    this.values = new BoundedCache<>(maximumCacheSize);
+    this.memoizing = maximumCacheSize > 0;
+    this.lastGoodValues =
+      new BoundedCache<>(deadlineMillis > 0L || isGuarded(configurations) ? MAXIMUM_LAST_GOOD_VALUES : 0);
+    this.absentNames = new BoundedCache<>(this.memoizing ? MAXIMUM_REMEMBERED_NAMES : 0);
+    this.winningNames = new BoundedCache<>(this.memoizing ? MAXIMUM_REMEMBERED_NAMES : 0);
+    this.defaultValues = new BoundedCache<>(MAXIMUM_DEFAULT_VALUES);
+    this.pendingResolutions = new ConcurrentHashMap<>();
+    this.generation = new AtomicLong();
+    this.logger = Logger.getLogger(this.getClass().getName());
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@link Configurations} to which this {@link
+   * ConfigurationValueResolver} delegates.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link Configurations} in use
+   */
+  final Configurations getConfigurations() {
+    return this.configurations;
+  }
+
+  /**
+   * Resolves the configuration value described by the supplied
+   * {@link ConfigurationsExtension.ConfigurationValueMetadata},
+   * converted to the supplied {@link Type}.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * <p>If caching is enabled, values of {@linkplain
+   * #isShareable(Object) immutable types} are cached and shared by
+   * all subsequent callers until the next {@linkplain #invalidate()
+   * invalidation}.  A {@code null} value is cached too, so that
+   * probing repeatedly for an optional configuration value that is
+   * missing costs a single cache lookup, and never the construction
+   * of an exception.</p>
+   *
+   * @param metadata the {@link
+   * ConfigurationsExtension.ConfigurationValueMetadata} describing
+   * the configuration value; must not be {@code null}
+   *
+   * @param type the {@link Type} to which the configuration value
+   * should be converted; must not be {@code null}
+   *
+   * @return the configuration value, or {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if the configuration value could not be converted
+   *
+   * @see Configurations#getValue(Map, Collection, Type, String)
+   *
+   * @see #resolve(Key)
+   */
+  final Object resolve(final ConfigurationsExtension.ConfigurationValueMetadata metadata, final Type type) {
+    return this.resolve(new Key(metadata, type));
+  }
+
+  /**
+   * Resolves the configuration value described by the supplied
+   * {@link Key}.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * <p>Callers that resolve the same configuration value repeatedly
+   * should hold on to a single {@link Key} and pass it here, since a
+   * cache hit for a {@link Key} that is identical to the one under
+   * which the value was cached requires no allocation at all.</p>
+   *
+   * <p>If caching is enabled, values of {@linkplain
+   * #isShareable(Object) immutable types} are cached and shared by
+   * all subsequent callers until the next {@linkplain #invalidate()
+   * invalidation}.  A {@code null} value is cached too, so that
+   * probing repeatedly for an optional configuration value that is
+   * missing costs a single cache lookup, and never the construction
+   * of an exception.</p>
+   *
+   * <p>If this {@link ConfigurationValueResolver} was {@linkplain
+   * #ConfigurationValueResolver(Configurations, int, long, Executor)
+   * created with a deadline}, a configuration value that is not
+   * cached is resolved on its {@link Executor}, and this method waits
+   * no longer than the deadline for it.  If the deadline passes, or a
+   * configuration source is otherwise {@linkplain
+   * ConfigurationUnavailableException unavailable}, the last known
+   * good value, if there is one, is returned instead, and is not
+   * cached; a resolution that is still in progress carries on in the
+   * background and caches its value when it finishes, so that later
+   * callers see the refreshed value.</p>
+   *
+   * @param key the {@link Key} describing the configuration value;
+   * must not be {@code null}
+   *
+   * @return the configuration value, or {@code null}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   *
+   * @exception ConfigurationUnavailableException if the configuration
+   * value could not be resolved in time, or a configuration source
+   * is unavailable, and there is no last known good value
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if the configuration value could not be converted
+   *
+   * @see #resolve(ConfigurationsExtension.ConfigurationValueMetadata,
+   * Type)
+   */
+  final Object resolve(final Key key) {
+    final String cn = this.getClass().getName();
+    final String mn = "resolve";
+    final Logger logger = this.logger;
+    if (logger.isLoggable(Level.FINER)) {
+      logger.entering(cn, mn, key);
+    }
+    Object returnValue = this.values.get(key);
+    if (returnValue == null) {
+      try {
+        returnValue = this.deadlineNanos == 0L ? this.resolveAndCache(key) : this.resolveWithinDeadline(key);
+      } catch (final ConfigurationUnavailableException unavailable) {
+        returnValue = this.lastGoodValues.get(key);
+        if (returnValue == null) {
+          throw unavailable;
+        }
+        if (logger.isLoggable(Level.FINE)) {
+          logger.logp(Level.FINE, cn, mn, "Using last known good value for {0}: {1}", new Object[] { key, unavailable.getMessage() });
+        }
+      }
+    }
+    if (returnValue == NULL) {
+      returnValue = null;
+    }
+    if (logger.isLoggable(Level.FINER)) {
+      logger.exiting(cn, mn, returnValue);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the configuration value with the supplied {@code name},
+   * converted to the supplied {@link Type}, without consulting or
+   * updating any of the state this {@link ConfigurationValueResolver}
+   * keeps for the configuration values of injection points.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * <p>This method is intended for names that have been discovered,
+   * for example by way of the {@linkplain #getNameTrie() name trie},
+   * rather than declared, and that would otherwise fill the caches
+   * with entries that no injection point will ever look up again.</p>
+   *
+   * @param coordinates the configuration coordinates in effect; may
+   * be {@code null}
+   *
+   * @param name the name of the configuration value; must not be
+   * {@code null}
+   *
+   * @param type the {@link Type} to which the configuration value
+   * should be converted; must not be {@code null}
+   *
+   * @return the configuration value, or {@code null}
+   *
+   * @exception NullPointerException if {@code name} or {@code type}
+   * is {@code null}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if the configuration value could not be converted
+   *
+   * @see Configurations#getValue(Map, String, Type, String)
+   */
+  final Object resolveName(final Map<String, String> coordinates, final String name, final Type type) {
+    return this.configurations.getValue(coordinates, Objects.requireNonNull(name), Objects.requireNonNull(type), null);
+  }
+
+  /**
+   * Resolves the configuration value described by the supplied
+   * {@link Key}, unless it is already cached, and caches it.
+   *
+   * <p>This method may return {@link #NULL} or {@code null}, both of
+   * which stand for a configuration value that was resolved to
+   * {@code null}.</p>
+   *
+   * @param key the {@link Key} describing the configuration value;
+   * must not be {@code null}
+   *
+   * @return the configuration value, {@link #NULL} or {@code null}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if the configuration value could not be converted
+   */
+  private final Object resolveAndCache(final Key key) {
+    Object returnValue = this.values.get(key);
+    if (returnValue == null) {
+      final long generation = this.generation.get();
+      returnValue = this.resolveUncached(key);
+      this.cache(key, returnValue == null ? NULL : returnValue, generation);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Resolves the configuration value described by the supplied
+   * {@link Key} on this {@link ConfigurationValueResolver}'s {@link
+   * Executor}, waiting no longer than its deadline for it.
+   *
+   * <p>This method may return {@link #NULL} or {@code null}, both of
+   * which stand for a configuration value that was resolved to
+   * {@code null}.</p>
+   *
+   * @param key the {@link Key} describing the configuration value;
+   * must not be {@code null}
+   *
+   * @return the configuration value, {@link #NULL} or {@code null}
+   *
+   * @exception ConfigurationUnavailableException if the deadline
+   * passed, or a configuration source is unavailable
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if the configuration value could not be converted
+   */
+  private final Object resolveWithinDeadline(final Key key) {
+    final CompletableFuture<Object> resolution = this.resolveAsync(key, this.executor);
+    try {
+      return resolution.get(this.deadlineNanos, TimeUnit.NANOSECONDS);
+    } catch (final TimeoutException timeoutException) {
+      throw new ConfigurationUnavailableException("The configuration value described by " + key +
+                                                  " was not resolved within " +
+                                                  TimeUnit.NANOSECONDS.toMillis(this.deadlineNanos) + " ms");
+    } catch (final InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+      throw new ConfigurationUnavailableException("Interrupted while resolving the configuration value described by " + key,
+                                                  interruptedException);
+    } catch (final ExecutionException executionException) {
+      final Throwable cause = executionException.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      } else if (cause instanceof Error) {
+        throw (Error)cause;
+      } else {
+        throw new ConfigurationException(cause);
+      }
+    }
+  }
+
+  /**
+   * Resolves the configuration value described by the supplied
+   * {@link Key} asynchronously, using the supplied {@link Executor},
+   * and returns a {@link CompletableFuture} that will be completed
+   * with it.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>If the configuration value has already been resolved and
+   * cached, the {@link CompletableFuture} returned is already
+   * complete, and the {@link Executor} is not used.  Otherwise, if
+   * an asynchronous resolution of the same configuration value is
+   * already in progress, the {@link CompletableFuture} returned
+   * completes when it does, so that a slow configuration source is
+   * consulted only once however many callers are waiting for it.
+   * Values resolved asynchronously are cached exactly as if they had
+   * been resolved by the {@link #resolve(Key)} method.</p>
+   *
+   * <p>The {@link CompletableFuture} returned is the caller's own;
+   * completing or cancelling it does not affect any other
+   * caller.</p>
+   *
+   * @param key the {@link Key} describing the configuration value;
+   * must not be {@code null}
+   *
+   * @param executor the {@link Executor} on which to resolve the
+   * configuration value if it is not already cached; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link CompletableFuture} that will be
+   * completed with the configuration value, or {@code null}, or
+   * completed exceptionally if the configuration value could not be
+   * converted or the {@link Executor} rejected the resolution
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @see #resolve(Key)
+   */
+  final CompletableFuture<Object> resolveAsync(final Key key, final Executor executor) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(executor);
+    final Object value = this.values.get(key);
+    if (value != null) {
+      return CompletableFuture.completedFuture(value == NULL ? null : value);
+    }
+    final ConcurrentMap<Key, CompletableFuture<Object>> pendingResolutions = this.pendingResolutions;
+    CompletableFuture<Object> resolution = pendingResolutions.get(key);
+    if (resolution == null) {
+      final CompletableFuture<Object> newResolution = new CompletableFuture<>();
+      resolution = pendingResolutions.putIfAbsent(key, newResolution);
+      if (resolution == null) {
+        resolution = newResolution;
+        try {
+          executor.execute(() -> {
+              try {
+                final Object resolvedValue = this.resolveAndCache(key);
+                newResolution.complete(resolvedValue == NULL ? null : resolvedValue);
+              } catch (final RuntimeException | Error throwable) {
+                newResolution.completeExceptionally(throwable);
+              } finally {
+                pendingResolutions.remove(key, newResolution);
+              }
+            });
+        } catch (final RuntimeException rejected) {
+          pendingResolutions.remove(key, newResolution);
+          newResolution.completeExceptionally(rejected);
+        }
+      }
+    }
+    // Hand out a dependent CompletableFuture, so that no caller can
+    // complete or cancel the one shared by all of them.
+    return resolution.thenApply(Function.identity());
+  }
+
+  /**
+   * Resolves the configuration values described by the supplied
+   * {@link Key}s in as few traversals of the underlying
+   * configuration sources as possible.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>Each configuration value is resolved following exactly the
+   * same rules, and cached in exactly the same way, as it would be by
+   * the {@link #resolve(Key)} method.  Rather than seeking each name
+   * of each {@link Key} separately, however, all of the names that
+   * must be sought at a given point are gathered together by
+   * configuration coordinates and {@link Type} and sought at once,
+   * so that, when the {@link Configurations} in use is a {@link
+   * CompositeConfigurations}, each of its delegates is consulted
+   * only once for all of them.  Further traversals are needed only
+   * for {@link Key}s whose first name is absent and that have other
+   * names to try.</p>
+   *
+   * <p>The {@linkplain #ConfigurationValueResolver(Configurations,
+   * int, long, Executor) deadline}, if any, does not apply, but a
+   * configuration value whose source is {@linkplain
+   * ConfigurationUnavailableException unavailable} is replaced by its
+   * last known good value, if there is one, exactly as it is by the
+   * {@link #resolve(Key)} method.</p>
+   *
+   * @param keys the {@link Key}s describing the configuration values
+   * to resolve; must not be {@code null}
+   *
+   * @param problems a mutable {@link Map} into which any {@link
+   * RuntimeException} thrown while resolving a configuration value
+   * will be put, indexed by the {@link Key} describing it; if {@code
+   * null}, the first such {@link RuntimeException} will be thrown
+   * instead
+   *
+   * @return a non-{@code null} {@link Map} of the configuration
+   * values that are not {@code null}, indexed by the {@link Key}s
+   * describing them
+   *
+   * @exception NullPointerException if {@code keys} is {@code null}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if {@code problems} is {@code null} and a configuration value
+   * could not be converted
+   *
+   * @see #resolve(Key)
+   */
+  final Map<Key, Object> resolveAll(final Collection<? extends Key> keys, final Map<Key, RuntimeException> problems) {
+    final String cn = this.getClass().getName();
+    final String mn = "resolveAll";
+    final Logger logger = this.logger;
+    if (logger.isLoggable(Level.FINER)) {
+      logger.entering(cn, mn, new Object[] { keys, problems });
+    }
+    final long generation = this.generation.get();
+    final BoundedCache<NameKey, Boolean> absentNames = this.absentNames;
+    final BoundedCache<Key, String> winningNames = this.winningNames;
+    final Map<Key, Object> returnValue = new HashMap<>();
+    List<PendingKey> pendingKeys = new ArrayList<>();
+    for (final Key key : keys) {
+      final Object value = this.values.get(key);
+      if (value == NULL) {
+        // The configuration value is already known to be null.
+      } else if (value != null) {
+        returnValue.put(key, value);
+      } else if (key.getMetadata().getNames().isEmpty()) {
+        // There is nothing to seek; only the default value applies.
+        this.resolve(key, returnValue, problems);
+      } else {
+        pendingKeys.add(new PendingKey(key, winningNames.get(key)));
+      }
+    }
+    while (!pendingKeys.isEmpty()) {
+
+      // Skip names that are known to be absent, and gather the next
+      // name to try for each Key by coordinates and type.
+      final Map<Map<String, String>, Map<Type, Set<String>>> requests = new HashMap<>();
+      final Iterator<PendingKey> iterator = pendingKeys.iterator();
+      while (iterator.hasNext()) {
+        final PendingKey pendingKey = iterator.next();
+        final Map<String, String> coordinates = pendingKey.key.getMetadata().getConfigurationCoordinates();
+        while (this.memoizing &&
+               pendingKey.name != null &&
+               !pendingKey.winning &&
+               absentNames.get(new NameKey(coordinates, pendingKey.name)) != null) {
+          pendingKey.next();
+        }
+        if (pendingKey.name == null) {
+          iterator.remove();
+          this.resolveDefaultValue(pendingKey.key, generation, returnValue, problems);
+        } else {
+          requests.computeIfAbsent(coordinates, c -> new HashMap<>())
+            .computeIfAbsent(pendingKey.key.getType(), t -> new LinkedHashSet<>())
+            .add(pendingKey.name);
+        }
+      }
+
+      // Seek each group of names at once.
+      final Map<Map<String, String>, Map<Type, Map<String, Object>>> results = new HashMap<>();
+      final Map<Map<String, String>, Map<Type, Map<String, RuntimeException>>> failures = new HashMap<>();
+      for (final Entry<Map<String, String>, Map<Type, Set<String>>> coordinatesEntry : requests.entrySet()) {
+        final Map<String, String> coordinates = coordinatesEntry.getKey();
+        for (final Entry<Type, Set<String>> typeEntry : coordinatesEntry.getValue().entrySet()) {
+          final Type type = typeEntry.getKey();
+          final Set<String> names = typeEntry.getValue();
+          final Map<String, RuntimeException> nameProblems = new HashMap<>();
+          final Map<String, Object> values = this.getValues(coordinates, names, type, nameProblems);
+          if (this.memoizing) {
+            // Only remember absence once it is confirmed
+            // independently of any conversion, as the
+            // getValue(BoundedCache, Map, String, Type) method does.
+            final Set<String> missingNames = new LinkedHashSet<>(names);
+            missingNames.removeAll(values.keySet());
+            missingNames.removeAll(nameProblems.keySet());
+            if (!missingNames.isEmpty()) {
+              final Map<String, RuntimeException> rawProblems = new HashMap<>();
+              final Map<String, Object> rawValues = this.getValues(coordinates, missingNames, String.class, rawProblems);
+              for (final String name : missingNames) {
+                if (rawValues.get(name) == null && !rawProblems.containsKey(name)) {
+                  absentNames.put(new NameKey(coordinates, name), Boolean.TRUE);
+                }
+              }
+            }
+          }
+          results.computeIfAbsent(coordinates, c -> new HashMap<>()).put(type, values);
+          failures.computeIfAbsent(coordinates, c -> new HashMap<>()).put(type, nameProblems);
+        }
+      }
+
+      // Settle each Key that was found or failed, and move every other
+      // Key on to its next name.
+      final List<PendingKey> remainingKeys = new ArrayList<>();
+      for (final PendingKey pendingKey : pendingKeys) {
+        final Key key = pendingKey.key;
+        final Map<String, String> coordinates = key.getMetadata().getConfigurationCoordinates();
+        final RuntimeException problem = failures.get(coordinates).get(key.getType()).get(pendingKey.name);
+        final Object value = results.get(coordinates).get(key.getType()).get(pendingKey.name);
+        final Object lastGoodValue = problem instanceof ConfigurationUnavailableException ? this.lastGoodValues.get(key) : null;
+        if (lastGoodValue != null) {
+          // As in resolve(Key), fall back to the last known good
+          // value without caching it.
+          if (lastGoodValue != NULL) {
+            returnValue.put(key, lastGoodValue);
+          }
+        } else if (problem != null) {
+          if (problems == null) {
+            throw problem;
+          }
+          problems.put(key, problem);
+        } else if (value != null) {
+          if (!pendingKey.winning) {
+            winningNames.put(key, pendingKey.name);
+          }
+          this.cache(key, value, generation);
+          returnValue.put(key, value);
+        } else {
+          if (pendingKey.winning) {
+            // The winning name has vanished without an invalidation;
+            // fall back to the full ordered search.
+            winningNames.remove(key, pendingKey.name);
+          }
+          pendingKey.next();
+          remainingKeys.add(pendingKey);
+        }
+      }
+      pendingKeys = remainingKeys;
+    }
+    if (logger.isLoggable(Level.FINER)) {
+      logger.exiting(cn, mn, returnValue);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Resolves the configuration value described by the supplied {@link
+   * Key}, on behalf of the {@link #resolveAll(Collection, Map)}
+   * method, recording the outcome in the supplied {@link Map}s.
+   *
+   * @param key the {@link Key}; must not be {@code null}
+   *
+   * @param values the {@link Map} of non-{@code null} values being
+   * built; must not be {@code null}
+   *
+   * @param problems the {@link Map} of problems being built; if
+   * {@code null}, any {@link RuntimeException} will be thrown
+   * instead
+   */
+  private final void resolve(final Key key, final Map<Key, Object> values, final Map<Key, RuntimeException> problems) {
+    try {
+      final Object value = this.resolve(key);
+      if (value != null) {
+        values.put(key, value);
+      }
+    } catch (final RuntimeException exception) {
+      if (problems == null) {
+        throw exception;
+      }
+      problems.put(key, exception);
+    }
+  }
+
+  /**
+   * Applies the {@linkplain #getDefaultValue(Key) default value}, if
+   * any, of the configuration value described by the supplied {@link
+   * Key}, every name of which has been found to be absent, on behalf
+   * of the {@link #resolveAll(Collection, Map)} method, recording the
+   * outcome in the supplied {@link Map}s and caching it.
+   *
+   * @param key the {@link Key}; must not be {@code null}
+   *
+   * @param generation the {@linkplain #getGeneration() generation}
+   * in effect when resolution began
+   *
+   * @param values the {@link Map} of non-{@code null} values being
+   * built; must not be {@code null}
+   *
+   * @param problems the {@link Map} of problems being built; if
+   * {@code null}, any {@link RuntimeException} will be thrown
+   * instead
+   */
+  private final void resolveDefaultValue(final Key key,
+                                         final long generation,
+                                         final Map<Key, Object> values,
+                                         final Map<Key, RuntimeException> problems) {
+    try {
+      final Object value = this.getDefaultValue(key);
+      if (value == null) {
+        this.cache(key, NULL, generation);
+      } else {
+        this.cache(key, value, generation);
+        values.put(key, value);
+      }
+    } catch (final RuntimeException exception) {
+      if (problems == null) {
+        throw exception;
+      }
+      problems.put(key, exception);
+    }
+  }
+
+  /**
+   * Returns the configuration values with the supplied {@code names},
+   * converted to the supplied {@link Type}, that are present, seeking
+   * them all at once if the {@link Configurations} in use is a {@link
+   * CompositeConfigurations}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param coordinates the configuration coordinates in effect; may
+   * be {@code null}
+   *
+   * @param names the names of the configuration values; must not be
+   * {@code null}
+   *
+   * @param type the {@link Type} to which the configuration values
+   * should be converted; must not be {@code null}
+   *
+   * @param problems a mutable {@link Map} into which any {@link
+   * RuntimeException} thrown while seeking or converting a
+   * configuration value will be put, indexed by name; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link Map} of converted values,
+   * indexed by name
+   *
+   * @see CompositeConfigurations#getValues(Map, Collection, Type, Map)
+   */
+  private final Map<String, Object> getValues(final Map<String, String> coordinates,
+                                              final Collection<String> names,
+                                              final Type type,
+                                              final Map<String, RuntimeException> problems) {
+    final Map<String, Object> values;
+    if (this.configurations instanceof CompositeConfigurations) {
+      Map<String, Object> compositeValues;
+      try {
+        compositeValues = ((CompositeConfigurations)this.configurations).getValues(coordinates, names, type, problems);
+      } catch (final RuntimeException noConverter) {
+        compositeValues = Collections.emptyMap();
+        for (final String name : names) {
+          problems.put(name, noConverter);
+        }
+      }
+      values = compositeValues;
+    } else {
+      values = new HashMap<>();
+      for (final String name : names) {
+        try {
+          final Object value = this.configurations.getValue(coordinates, name, type, null);
+          if (value != null) {
+            values.put(name, value);
+          }
+        } catch (final RuntimeException exception) {
+          problems.put(name, exception);
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Resolves the configuration value described by the supplied
+   * {@link Key} without consulting the cache of resolved values.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param key the {@link Key} describing the configuration value;
+   * must not be {@code null}
+   *
+   * @return the configuration value, or {@code null}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if the configuration value could not be converted
+   *
+   * @see #resolve(ConfigurationsExtension.ConfigurationValueMetadata,
+   * Type)
+   */
+  private final Object resolveUncached(final Key key) {
+    final ConfigurationsExtension.ConfigurationValueMetadata metadata = key.getMetadata();
+    final Type type = key.getType();
+    final Map<String, String> coordinates = metadata.getConfigurationCoordinates();
+    final Collection<String> names = metadata.getNames();
+    final String defaultValue = metadata.getDefaultValue();
+    Object returnValue = null;
+    if (names == null || names.isEmpty()) {
+      returnValue = this.configurations.getValue(coordinates, (String)null, type, defaultValue);
+    } else {
+      final BoundedCache<Key, String> winningNames = this.winningNames;
+      final String winningName = this.memoizing ? winningNames.get(key) : null;
+      if (winningName != null) {
+        returnValue = this.configurations.getValue(coordinates, winningName, type, null);
+        if (returnValue == null) {
+          // The winning name has vanished without an invalidation;
+          // fall back to the full ordered search below.
+          winningNames.remove(key, winningName);
+        }
+      }
+      if (returnValue == null) {
+        final BoundedCache<NameKey, Boolean> absentNames = this.absentNames;
+        for (final String name : names) {
+          returnValue = this.getValue(absentNames, coordinates, name, type);
+          if (returnValue != null) {
+            winningNames.put(key, name);
+            break;
+          }
+        }
+      }
+      if (returnValue == null && defaultValue != null) {
+        // Every name is absent (or converted to null, which
+        // Configurations treats the same way), so the default value
+        // applies.  Configurations would look each name up again
+        // and convert the default value every time; we already know
+        // the outcome, and need convert only once.
+        returnValue = this.getDefaultValue(key);
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the {@linkplain
+   * ConfigurationsExtension.ConfigurationValueMetadata#getDefaultValue()
+   * default value} of the configuration value described by the
+   * supplied {@link Key}, converted to the {@link Key}'s {@link
+   * Type}.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * <p>If the converted default value is of an {@linkplain
+   * #isShareable(Object) immutable type}, the conversion is performed
+   * at most once per {@link Key}, and the result is shared by all
+   * subsequent callers; otherwise each caller receives a new
+   * conversion of its own.</p>
+   *
+   * @param key the {@link Key} describing the configuration value;
+   * must not be {@code null}
+   *
+   * @return the converted default value, or {@code null} if there is
+   * no default value or it converts to {@code null}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if the default value could not be converted
+   */
+  final Object getDefaultValue(final Key key) {
+    Object returnValue = this.defaultValues.get(key);
+    if (returnValue == null) {
+      final ConfigurationsExtension.ConfigurationValueMetadata metadata = key.getMetadata();
+      final String defaultValue = metadata.getDefaultValue();
+      if (defaultValue == null) {
+        returnValue = NULL;
+      } else {
+        // Passing a null name causes Configurations to convert the
+        // default value without looking anything up, exactly as
+        // Configurations#getValue(Map, Collection, Type, String)
+        // does when it has no names.
+        returnValue = this.configurations.getValue(metadata.getConfigurationCoordinates(), (String)null, key.getType(), defaultValue);
+        if (returnValue == null) {
+          returnValue = NULL;
+        } else if (!isShareable(returnValue)) {
+          return returnValue;
+        }
+      }
+      this.defaultValues.put(key, returnValue);
+    }
+    return returnValue == NULL ? null : returnValue;
+  }
+
+  /**
+   * Returns the configuration value with the supplied {@code name},
+   * converted to the supplied {@link Type}, or {@code null} if there
+   * is no such value, recording the value's absence in the supplied
+   * {@link BoundedCache} of {@link NameKey}s if {@linkplain
+   * #memoizing caching is enabled}.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param absentNames the {@link BoundedCache} whose keys are the
+   * {@link NameKey}s that are known to be absent; must not be {@code
+   * null}
+   *
+   * @param coordinates the configuration coordinates in effect; may
+   * be {@code null}
+   *
+   * @param name the name of the configuration value; must not be
+   * {@code null}
+   *
+   * @param type the {@link Type} to which the configuration value
+   * should be converted; must not be {@code null}
+   *
+   * @return the configuration value, or {@code null}
+   */
+  private final Object getValue(final BoundedCache<NameKey, Boolean> absentNames,
+                                final Map<String, String> coordinates,
+                                final String name,
+                                final Type type) {
+    if (!this.memoizing) {
+      return this.configurations.getValue(coordinates, name, type, null);
+    }
+    final NameKey key = new NameKey(coordinates, name);
+    if (absentNames.get(key) != null) {
+      return null;
+    }
+    final Object returnValue = this.configurations.getValue(coordinates, name, type, null);
+    if (returnValue == null && this.configurations.getValue(coordinates, name) == null) {
+      // Only remember absence once it is confirmed independently of
+      // any conversion, since a present value may legitimately
+      // convert to null for one type but not for another.
+      absentNames.put(key, Boolean.TRUE);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Forgets everything this {@link ConfigurationValueResolver} has
+   * remembered about the presence or absence of configuration
+   * values, including which names supplied them and the cached
+   * values themselves.
+   *
+   * <p>This method is called when the underlying configuration
+   * sources are known to have changed.</p>
+   */
+  final void invalidate() {
+    this.generation.incrementAndGet();
+    this.nameTrie = null;
+    this.absentNames = new BoundedCache<>(this.absentNames.getMaximumSize());
+    this.winningNames = new BoundedCache<>(this.winningNames.getMaximumSize());
+    this.values.clear();
+    this.pendingResolutions.clear();
+  }
+
+  /**
+   * Caches the supplied value as the resolved configuration value
+   * described by the supplied {@link Key}, as though it had been
+   * returned by the {@link
+   * #resolve(ConfigurationsExtension.ConfigurationValueMetadata, Type)}
+   * method.
+   *
+   * <p>The value is subject to the same eviction and {@linkplain
+   * #invalidate() invalidation} as any other cached value, and is
+   * ignored if caching is disabled or it is not {@linkplain
+   * #isShareable(Object) immutable}.</p>
+   *
+   * @param key the {@link Key} describing the configuration value;
+   * must not be {@code null}
+   *
+   * @param value the configuration value; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @see ConfigurationValueSnapshot
+   */
+  final void preload(final Key key, final Object value) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(value);
+    this.cache(key, value, this.generation.get());
+  }
+
+  /**
+   * Caches the supplied value as the resolved configuration value
+   * described by the supplied {@link Key}, and remembers it as the
+   * last known good value, unless it is not {@linkplain
+   * #isShareable(Object) immutable}; it is not cached if this {@link
+   * ConfigurationValueResolver} has been {@linkplain #invalidate()
+   * invalidated} since the supplied {@code generation}.
+   *
+   * @param key the {@link Key} describing the configuration value;
+   * must not be {@code null}
+   *
+   * @param value the configuration value; must not be {@code null}
+   *
+   * @param generation the {@linkplain #getGeneration() generation}
+   * in effect when resolution of the value began
+   *
+   * @exception NullPointerException if either {@code key} or {@code
+   * value} is {@code null}
+   */
+  private final void cache(final Key key, final Object value, final long generation) {
+    if (!isShareable(value)) {
+      return;
+    }
+    this.lastGoodValues.put(key, value);
+    this.values.put(key, value);
+    if (generation != this.generation.get()) {
+      // An invalidation happened while we were resolving; the value
+      // may be stale, so make sure it does not survive.
+      this.values.remove(key, value);
+    }
+  }
+
+  /**
+   * Returns a {@link ConfigurationNameTrie} indexing the {@linkplain
+   * Configurations#getNames() names of the configuration values}
+   * available.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>If caching is enabled, the {@link ConfigurationNameTrie} is
+   * built on the first call since this {@link
+   * ConfigurationValueResolver} was created or last {@linkplain
+   * #invalidate() invalidated}, and shared until the next
+   * invalidation, like any other cached value.  Otherwise a new one
+   * is built on every call, so that names added to or removed from
+   * the configuration sources are seen at once, at the cost of
+   * enumerating every name each time.</p>
+   *
+   * @return a non-{@code null} {@link ConfigurationNameTrie}
+   */
+  final ConfigurationNameTrie getNameTrie() {
+    if (!this.memoizing) {
+      return new ConfigurationNameTrie(this.configurations.getNames());
+    }
+    ConfigurationNameTrie nameTrie = this.nameTrie;
+    if (nameTrie == null) {
+      final long generation = this.generation.get();
+      nameTrie = new ConfigurationNameTrie(this.configurations.getNames());
+      this.nameTrie = nameTrie;
+      if (generation != this.generation.get()) {
+        // An invalidation happened while we were building; the names
+        // may be stale, so make sure they do not survive.
+        this.nameTrie = null;
+      }
+    }
+    return nameTrie;
+  }
+
+  /**
+   * Returns the number of times this {@link
+   * ConfigurationValueResolver} has been {@linkplain #invalidate()
+   * invalidated}, so that callers holding on to values it resolved
+   * can tell when they should resolve them again.
+   *
+   * @return the current generation; never negative
+   */
+  final long getGeneration() {
+    return this.generation.get();
+  }
+
+  /**
+   * Returns the {@link BoundedCache} of resolved values, principally
+   * so that its statistics may be reported.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link BoundedCache} of resolved
+   * values
+   */
+  final BoundedCache<Key, Object> getValueCache() {
+    return this.values;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns {@code true} if the supplied {@link Configurations} is a
+   * {@link GuardedConfigurations}, or a {@link
+   * CompositeConfigurations} with one among its delegates, and so
+   * may throw a {@link ConfigurationUnavailableException}.
+   *
+   * @param configurations the {@link Configurations} to test; must
+   * not be {@code null}
+   *
+   * @return {@code true} if the supplied {@link Configurations} is
+   * guarded
+   *
+   * @exception NullPointerException if {@code configurations} is
+   * {@code null}
+   */
+  static final boolean isGuarded(final Configurations configurations) {
+    if (configurations instanceof GuardedConfigurations) {
+      return true;
+    } else if (configurations instanceof CompositeConfigurations) {
+      for (final Configurations delegate : ((CompositeConfigurations)configurations).getDelegates()) {
+        if (delegate instanceof GuardedConfigurations) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if the supplied resolved configuration value
+   * is known to be immutable, and so may be cached and shared by
+   * every caller.
+   *
+   * <p>{@link String}s, the primitive wrapper types, {@link
+   * BigInteger}, {@link BigDecimal}, {@link URI}, {@link UUID},
+   * {@link Locale}, {@link Pattern}, {@link Charset}, {@link ZoneId},
+   * the {@code java.time} value types, {@link Class}es and {@link
+   * Enum} constants are immutable; instances of their subclasses, if
+   * any, and of every other type, such as {@link java.util.List}s,
+   * arrays and {@link java.util.Date}s, are not assumed to be.</p>
+   *
+   * @param value the value to test; may be {@code null}
+   *
+   * @return {@code true} if the supplied value may be shared
+   */
+  static final boolean isShareable(final Object value) {
+    return value == null ||
+      value == NULL ||
+      immutableTypes.contains(value.getClass()) ||
+      value instanceof Enum ||
+      value instanceof Class ||
+      value instanceof ZoneId ||
+      value instanceof Charset;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An immutable pairing of a {@link
+   * ConfigurationsExtension.ConfigurationValueMetadata} with the
+   * {@link Type} to which the configuration value it describes is to
+   * be converted.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  static final class Key {
+
+
+    /*
+     * Instance fields.
+     */
+
+
+    /**
+     * The {@link ConfigurationsExtension.ConfigurationValueMetadata}.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final ConfigurationsExtension.ConfigurationValueMetadata metadata;
+
+    /**
+     * The {@link Type} to which the configuration value is to be
+     * converted.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Type type;
+
+    /**
+     * The precomputed hashcode of this {@link Key}.
+     */
+    private final int hashCode;
+
+
+    /*
+     * Constructors.
+     */
+
+
+    /**
+     * Creates a new {@link Key}.
+     *
+     * @param metadata the {@link
+     * ConfigurationsExtension.ConfigurationValueMetadata}; must not be
+     * {@code null}
+     *
+     * @param type the {@link Type} to which the configuration value
+     * is to be converted; must not be {@code null}
+     *
+     * @exception NullPointerException if either parameter is {@code
+     * null}
+     */
+    Key(final ConfigurationsExtension.ConfigurationValueMetadata metadata, final Type type) {
+      super();
+      this.metadata = Objects.requireNonNull(metadata);
+      this.type = Objects.requireNonNull(type);
+      this.hashCode = 31 * metadata.hashCode() + type.hashCode();
+    }
+
+
+    /*
+     * Instance methods.
+     */
+
+
+    /**
+     * Returns the {@link
+     * ConfigurationsExtension.ConfigurationValueMetadata} this {@link
+     * Key} pairs with a {@link Type}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return the non-{@code null} {@link
+     * ConfigurationsExtension.ConfigurationValueMetadata}
+     */
+    final ConfigurationsExtension.ConfigurationValueMetadata getMetadata() {
+      return this.metadata;
+    }
+
+    /**
+     * Returns the {@link Type} to which the configuration value is to
+     * be converted.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return the non-{@code null} {@link Type}
+     */
+    final Type getType() {
+      return this.type;
+    }
+
+    /**
+     * Returns a hashcode for this {@link Key}.
+     *
+     * @return a hashcode
+     */
+    @Override
+    public final int hashCode() {
+      return this.hashCode;
+    }
+
+    /**
+     * Returns {@code true} if the supplied {@link Object} is a {@link
+     * Key} with metadata and a {@link Type} equal to those of this
+     * {@link Key}.
+     *
+     * @param other the {@link Object} to test; may be {@code null}
+     *
+     * @return {@code true} if {@code other} is equal to this {@link
+     * Key}; {@code false} otherwise
+     */
+    @Override
+    public final boolean equals(final Object other) {
+      if (other == this) {
+        return true;
+      } else if (other instanceof Key) {
+        final Key her = (Key)other;
+        return this.hashCode == her.hashCode && this.type.equals(her.type) && this.metadata.equals(her.metadata);
+      } else {
+        return false;
+      }
+    }
+
+    /**
+     * Returns a {@link String} representation of this {@link Key}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null} {@link String}
+     */
+    @Override
+    public final String toString() {
+      return this.metadata + " as " + this.type.getTypeName();
+    }
+
+  }
+
+
+  /**
+   * The progress of the {@link #resolveAll(Collection, Map)} method
+   * through the names of a single {@link Key}.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class PendingKey {
+
+    /**
+     * The {@link Key} being resolved.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Key key;
+
+    /**
+     * An {@link Iterator} over the names of the {@link Key} that
+     * have not yet been tried.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Iterator<String> names;
+
+    /**
+     * The name to try next, or {@code null} if there are none left.
+     */
+    private String name;
+
+    /**
+     * Whether {@link #name} is the name that most recently supplied
+     * the configuration value, and so is being tried out of order.
+     */
+    private boolean winning;
+
+    private PendingKey(final Key key, final String winningName) {
+      super();
+      this.key = key;
+      this.names = key.getMetadata().getNames().iterator();
+      if (winningName == null) {
+        this.next();
+      } else {
+        this.name = winningName;
+        this.winning = true;
+      }
+    }
+
+    private final void next() {
+      this.winning = false;
+      this.name = this.names.hasNext() ? this.names.next() : null;
+    }
+
+  }
+
+
+  /**
+   * An immutable pairing of a configuration value name with the
+   * configuration coordinates under which it was sought.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class NameKey {
+
+
+    /*
+     * Instance fields.
+     */
+
+
+    /**
+     * The configuration coordinates.
+     *
+     * <p>This field may be {@code null}.</p>
+     */
+    private final Map<String, String> coordinates;
+
+    /**
+     * The configuration value name.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final String name;
+
+    /**
+     * The precomputed hashcode of this {@link NameKey}.
+     */
+    private final int hashCode;
+
+
+    /*
+     * Constructors.
+     */
+
+
+    /**
+     * Creates a new {@link NameKey}.
+     *
+     * @param coordinates the configuration coordinates; may be
+     * {@code null}
+     *
+     * @param name the configuration value name; must not be {@code
+     * null}
+     *
+     * @exception NullPointerException if {@code name} is {@code
+     * null}
+     */
+    private NameKey(final Map<String, String> coordinates, final String name) {
+      super();
+      this.coordinates = coordinates;
+      this.name = Objects.requireNonNull(name);
+      this.hashCode = 31 * (coordinates == null ? 0 : coordinates.hashCode()) + name.hashCode();
+    }
+
+
+    /*
+     * Instance methods.
+     */
+
+
+    /**
+     * Returns a hashcode for this {@link NameKey}.
+     *
+     * @return a hashcode
+     */
+    @Override
+    public final int hashCode() {
+      return this.hashCode;
+    }
+
+    /**
+     * Returns {@code true} if the supplied {@link Object} is a {@link
+     * NameKey} with the same name and configuration coordinates as
+     * this {@link NameKey}.
+     *
+     * @param other the {@link Object} to test; may be {@code null}
+     *
+     * @return {@code true} if {@code other} is equal to this {@link
+     * NameKey}; {@code false} otherwise
+     */
+    @Override
+    public final boolean equals(final Object other) {
+      if (other == this) {
+        return true;
+      } else if (other instanceof NameKey) {
+        final NameKey her = (NameKey)other;
+        return this.hashCode == her.hashCode && this.name.equals(her.name) && Objects.equals(this.coordinates, her.coordinates);
+      } else {
+        return false;
+      }
+    }
+
+  }
+
+}
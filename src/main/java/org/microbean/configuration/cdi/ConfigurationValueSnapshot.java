@@ -0,0 +1,579 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.lang.reflect.Type;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.microbean.configuration.api.ConfigurationException;
+import org.microbean.configuration.api.Configurations;
+
+/**
+ * Reads and writes compact binary snapshots of resolved configuration
+ * values, so that a subsequent run of an application can reuse them
+ * instead of resolving and converting them again.
+ *
+ * <p>A snapshot records, for each configuration value, the {@link
+ * ConfigurationValueResolver.Key} describing it and its value.  It
+ * also records a <em>fingerprint</em>: a digest of the raw,
+ * unconverted {@link String} value from which each configuration
+ * value in the snapshot was converted, and of the name that supplied
+ * it, as reported by the {@link Configurations} in use when the
+ * snapshot was written.  When a snapshot is {@linkplain #read(Path,
+ * Configurations, ClassLoader) read}, the fingerprint is recomputed
+ * from the {@link Configurations} in use and the snapshot is
+ * discarded if it does not match, so a snapshot is never used once
+ * any of the configuration values it depends on has changed.</p>
+ *
+ * <p>Computing the fingerprint costs no more lookups than resolving
+ * the configuration values would: the {@link Configurations} in use
+ * is asked for its {@linkplain Configurations#getNames() names} once,
+ * and then, for each configuration value, only the names it has, in
+ * order, are looked up, stopping at the first that has a value.  This
+ * relies on {@link Configurations#getNames()} reporting every name
+ * that has a value.</p>
+ *
+ * <p>Only values whose {@link ConfigurationValueResolver.Key#getType()
+ * type} is a {@link Class} are recorded.  {@link String}s and
+ * primitive wrappers are recorded as they are.  Other values are
+ * recorded as the raw {@link String} they were converted from, and
+ * are converted again by the {@link Configurations} in use when the
+ * snapshot is read; no Java serialization is involved, so a snapshot
+ * file cannot cause arbitrary classes to be instantiated.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ConfigurationsExtension
+ */
+final class ConfigurationValueSnapshot {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The first four bytes of every snapshot.
+   */
+  private static final int MAGIC = 0x4D424356; // "MBCV"
+
+  /**
+   * The version of the snapshot format.
+   */
+  private static final int VERSION = 2;
+
+  private static final byte NULL = 0;
+
+  private static final byte STRING = 1;
+
+  private static final byte INTEGER = 2;
+
+  private static final byte LONG = 3;
+
+  private static final byte BOOLEAN = 4;
+
+  private static final byte DOUBLE = 5;
+
+  private static final byte FLOAT = 6;
+
+  private static final byte SHORT = 7;
+
+  private static final byte BYTE = 8;
+
+  private static final byte CHARACTER = 9;
+
+  private static final byte RAW = 10;
+
+  /**
+   * An {@linkplain Collections#unmodifiableMap(Map) immutable} {@link
+   * Map} of primitive {@link Class}es indexed by their names.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final Map<String, Class<?>> primitiveClasses;
+
+  static {
+    final Map<String, Class<?>> map = new HashMap<>();
+    for (final Class<?> c : Arrays.asList(boolean.class, byte.class, char.class, double.class,
+                                          float.class, int.class, long.class, short.class)) {
+      map.put(c.getName(), c);
+    }
+    primitiveClasses = Collections.unmodifiableMap(map);
+  }
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private ConfigurationValueSnapshot() {
+    super();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Writes a snapshot of the supplied configuration values to the
+   * supplied {@link Path}, replacing any existing file atomically.
+   *
+   * <p>Entries that cannot be recorded, such as those whose values
+   * are of a type the supplied {@link Configurations} cannot convert
+   * to, are skipped.</p>
+   *
+   * @param path the {@link Path} to write to; must not be {@code
+   * null}
+   *
+   * @param configurations the {@link Configurations} from which the
+   * supplied values were resolved, used to compute the snapshot's
+   * fingerprint; must not be {@code null}
+   *
+   * @param values the configuration values to record, indexed by the
+   * {@link ConfigurationValueResolver.Key}s describing them; must not
+   * be {@code null}
+   *
+   * @return the number of entries written
+   *
+   * @exception IOException if the snapshot could not be written
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   */
+  static final int write(final Path path,
+                         final Configurations configurations,
+                         final Map<? extends ConfigurationValueResolver.Key, ?> values)
+    throws IOException {
+    final Set<Type> conversionTypes = configurations.getConversionTypes();
+    final Set<String> names = getNames(configurations);
+    final Map<ConfigurationValueResolver.Key, byte[]> encodedValues = new LinkedHashMap<>();
+    for (final Entry<? extends ConfigurationValueResolver.Key, ?> entry : values.entrySet()) {
+      final ConfigurationValueResolver.Key key = entry.getKey();
+      if (key.getType() instanceof Class && conversionTypes != null && conversionTypes.contains(key.getType())) {
+        final byte[] encodedValue = encode(entry.getValue(), getRawValue(configurations, names, key, null));
+        if (encodedValue != null) {
+          encodedValues.put(key, encodedValue);
+        }
+      }
+    }
+    final Path parent = path.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    final Path temporaryFile = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+    try {
+      try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        final byte[] fingerprint = fingerprint(configurations, names, encodedValues.keySet());
+        out.writeInt(fingerprint.length);
+        out.write(fingerprint);
+        out.writeInt(encodedValues.size());
+        for (final Entry<ConfigurationValueResolver.Key, byte[]> entry : encodedValues.entrySet()) {
+          final ConfigurationValueResolver.Key key = entry.getKey();
+          final ConfigurationsExtension.ConfigurationValueMetadata metadata = key.getMetadata();
+          final Map<String, String> coordinates = metadata.getConfigurationCoordinates();
+          out.writeInt(coordinates.size());
+          for (final Entry<String, String> coordinate : coordinates.entrySet()) {
+            writeString(out, coordinate.getKey());
+            writeString(out, coordinate.getValue());
+          }
+          final Collection<String> keyNames = metadata.getNames();
+          out.writeInt(keyNames.size());
+          for (final String name : keyNames) {
+            writeString(out, name);
+          }
+          writeString(out, metadata.getDefaultValue());
+          writeString(out, ((Class<?>)key.getType()).getName());
+          final byte[] encodedValue = entry.getValue();
+          out.writeInt(encodedValue.length);
+          out.write(encodedValue);
+        }
+      }
+      try {
+        Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (final IOException atomicMoveNotSupported) {
+        Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+    return encodedValues.size();
+  }
+
+  /**
+   * Reads the snapshot stored at the supplied {@link Path} by
+   * memory-mapping it, and returns the configuration values it
+   * contains, provided that its fingerprint matches one computed from
+   * the supplied {@link Configurations}.
+   *
+   * <p>If the snapshot does not exist, {@code null} is returned.  If
+   * it exists but is unusable, because its fingerprint does not match
+   * or because it is malformed, it is deleted and {@code null} is
+   * returned.  An entry recorded as a raw {@link String} that can no
+   * longer be converted is left out.</p>
+   *
+   * @param path the {@link Path} to read from; must not be {@code
+   * null}
+   *
+   * @param configurations the {@link Configurations} in use; must not
+   * be {@code null}
+   *
+   * @param classLoader the {@link ClassLoader} with which to load the
+   * {@linkplain ConfigurationValueResolver.Key#getType() types} of
+   * recorded values; may be {@code null}
+   *
+   * @return a {@link Map} of configuration values indexed by the
+   * {@link ConfigurationValueResolver.Key}s describing them, or
+   * {@code null}
+   *
+   * @exception IOException if the snapshot could not be read
+   *
+   * @exception NullPointerException if {@code path} or {@code
+   * configurations} is {@code null}
+   */
+  static final Map<ConfigurationValueResolver.Key, Object> read(final Path path,
+                                                                final Configurations configurations,
+                                                                final ClassLoader classLoader)
+    throws IOException {
+    final ByteBuffer buffer;
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+    } catch (final NoSuchFileException noSuchFileException) {
+      return null;
+    }
+    Map<ConfigurationValueResolver.Key, Object> returnValue = null;
+    try {
+      if (buffer.getInt() == MAGIC && buffer.getInt() == VERSION) {
+        final byte[] fingerprint = new byte[buffer.getInt()];
+        buffer.get(fingerprint);
+        final int size = buffer.getInt();
+        final Map<ConfigurationValueResolver.Key, byte[]> encodedValues = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+          final int coordinatesSize = buffer.getInt();
+          final Map<String, String> coordinates = new HashMap<>();
+          for (int j = 0; j < coordinatesSize; j++) {
+            coordinates.put(readString(buffer), readString(buffer));
+          }
+          final int namesSize = buffer.getInt();
+          final List<String> names = new ArrayList<>(namesSize);
+          for (int j = 0; j < namesSize; j++) {
+            names.add(readString(buffer));
+          }
+          final String defaultValue = readString(buffer);
+          final Type type = loadClass(readString(buffer), classLoader);
+          final byte[] encodedValue = new byte[buffer.getInt()];
+          buffer.get(encodedValue);
+          encodedValues.put(new ConfigurationValueResolver.Key(new ConfigurationsExtension.ConfigurationValueMetadata(coordinates,
+                                                                                                                     names,
+                                                                                                                     defaultValue),
+                                                               type),
+                            encodedValue);
+        }
+        if (MessageDigest.isEqual(fingerprint, fingerprint(configurations, getNames(configurations), encodedValues.keySet()))) {
+          returnValue = new LinkedHashMap<>();
+          for (final Entry<ConfigurationValueResolver.Key, byte[]> entry : encodedValues.entrySet()) {
+            final ConfigurationValueResolver.Key key = entry.getKey();
+            final Object value;
+            try {
+              value = decode(entry.getValue(), configurations, key);
+            } catch (final ConfigurationException | IllegalArgumentException conversionProblem) {
+              // Leave it to be resolved, and fail, as usual.
+              continue;
+            }
+            returnValue.put(key, value);
+          }
+        }
+      }
+    } catch (final BufferUnderflowException | ClassNotFoundException | IllegalArgumentException | IOException malformed) {
+      returnValue = null;
+    }
+    if (returnValue == null) {
+      Files.deleteIfExists(path);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Computes a fingerprint of the raw configuration values on which
+   * the configuration values described by the supplied {@link
+   * ConfigurationValueResolver.Key}s depend.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param configurations the {@link Configurations} to consult; must
+   * not be {@code null}
+   *
+   * @param names the {@linkplain Configurations#getNames() names}
+   * reported by the supplied {@link Configurations}; may be {@code
+   * null} if they are not known, in which case every name of every
+   * {@link ConfigurationValueResolver.Key} may be looked up
+   *
+   * @param keys the {@link ConfigurationValueResolver.Key}s; must not
+   * be {@code null}
+   *
+   * @return a non-{@code null} fingerprint
+   *
+   * @see #getRawValue(Configurations, Set,
+   * ConfigurationValueResolver.Key, MessageDigest)
+   */
+  static final byte[] fingerprint(final Configurations configurations,
+                                  final Set<String> names,
+                                  final Collection<? extends ConfigurationValueResolver.Key> keys) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException noSuchAlgorithmException) {
+      // Every Java platform implementation must support SHA-256.
+      throw new IllegalStateException(noSuchAlgorithmException.getMessage(), noSuchAlgorithmException);
+    }
+    for (final ConfigurationValueResolver.Key key : keys) {
+      final ConfigurationsExtension.ConfigurationValueMetadata metadata = key.getMetadata();
+      // Sort coordinates so that the fingerprint does not depend on
+      // map iteration order.
+      final Map<String, String> coordinates = new TreeMap<>(metadata.getConfigurationCoordinates());
+      update(digest, coordinates.toString());
+      update(digest, metadata.getDefaultValue());
+      update(digest, key.getType().getTypeName());
+      getRawValue(configurations, names, key, digest);
+    }
+    return digest.digest();
+  }
+
+  /**
+   * Returns the raw, unconverted value of the first of the supplied
+   * {@link ConfigurationValueResolver.Key}'s names that has one, or,
+   * if none does, its default value, optionally recording in the
+   * supplied {@link MessageDigest} which name supplied it.
+   *
+   * <p>Names are considered in order, exactly as they are when the
+   * configuration value is resolved.  A name that is not among the
+   * supplied {@code names} is taken to have no value and is not
+   * looked up.</p>
+   *
+   * @param configurations the {@link Configurations} to consult; must
+   * not be {@code null}
+   *
+   * @param names the {@linkplain Configurations#getNames() names}
+   * reported by the supplied {@link Configurations}; may be {@code
+   * null} if they are not known
+   *
+   * @param key the {@link ConfigurationValueResolver.Key}; must not
+   * be {@code null}
+   *
+   * @param digest the {@link MessageDigest} to update with each name
+   * considered and its raw value; may be {@code null}
+   *
+   * @return the raw value, or {@code null}
+   */
+  private static final String getRawValue(final Configurations configurations,
+                                          final Set<String> names,
+                                          final ConfigurationValueResolver.Key key,
+                                          final MessageDigest digest) {
+    final ConfigurationsExtension.ConfigurationValueMetadata metadata = key.getMetadata();
+    for (final String name : metadata.getNames()) {
+      final String value;
+      if (names == null || names.contains(name)) {
+        value = configurations.getValue(metadata.getConfigurationCoordinates(), name);
+      } else {
+        value = null;
+      }
+      if (digest != null) {
+        update(digest, name);
+        update(digest, value);
+      }
+      if (value != null) {
+        return value;
+      }
+    }
+    return metadata.getDefaultValue();
+  }
+
+  /**
+   * Returns the {@linkplain Configurations#getNames() names} reported
+   * by the supplied {@link Configurations}, or {@code null} if they
+   * could not be obtained.
+   *
+   * @param configurations the {@link Configurations}; must not be
+   * {@code null}
+   *
+   * @return the names, or {@code null}
+   */
+  private static final Set<String> getNames(final Configurations configurations) {
+    try {
+      return configurations.getNames();
+    } catch (final RuntimeException exception) {
+      return null;
+    }
+  }
+
+  private static final void update(final MessageDigest digest, final String s) {
+    if (s == null) {
+      digest.update((byte)0);
+    } else {
+      digest.update((byte)1);
+      final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      digest.update((byte)(bytes.length >>> 24));
+      digest.update((byte)(bytes.length >>> 16));
+      digest.update((byte)(bytes.length >>> 8));
+      digest.update((byte)bytes.length);
+      digest.update(bytes);
+    }
+  }
+
+  private static final byte[] encode(final Object value, final String rawValue) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (final DataOutputStream out = new DataOutputStream(bytes)) {
+      if (value == null) {
+        out.writeByte(NULL);
+      } else if (value instanceof String) {
+        out.writeByte(STRING);
+        writeString(out, (String)value);
+      } else if (value instanceof Integer) {
+        out.writeByte(INTEGER);
+        out.writeInt(((Integer)value).intValue());
+      } else if (value instanceof Long) {
+        out.writeByte(LONG);
+        out.writeLong(((Long)value).longValue());
+      } else if (value instanceof Boolean) {
+        out.writeByte(BOOLEAN);
+        out.writeBoolean(((Boolean)value).booleanValue());
+      } else if (value instanceof Double) {
+        out.writeByte(DOUBLE);
+        out.writeDouble(((Double)value).doubleValue());
+      } else if (value instanceof Float) {
+        out.writeByte(FLOAT);
+        out.writeFloat(((Float)value).floatValue());
+      } else if (value instanceof Short) {
+        out.writeByte(SHORT);
+        out.writeShort(((Short)value).shortValue());
+      } else if (value instanceof Byte) {
+        out.writeByte(BYTE);
+        out.writeByte(((Byte)value).byteValue());
+      } else if (value instanceof Character) {
+        out.writeByte(CHARACTER);
+        out.writeChar(((Character)value).charValue());
+      } else if (rawValue != null) {
+        out.writeByte(RAW);
+        writeString(out, rawValue);
+      } else {
+        return null;
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  private static final Object decode(final byte[] encodedValue,
+                                     final Configurations configurations,
+                                     final ConfigurationValueResolver.Key key)
+    throws IOException {
+    final ByteBuffer buffer = ByteBuffer.wrap(encodedValue);
+    final byte tag = buffer.get();
+    switch (tag) {
+    case NULL:
+      return null;
+    case STRING:
+      return readString(buffer);
+    case INTEGER:
+      return Integer.valueOf(buffer.getInt());
+    case LONG:
+      return Long.valueOf(buffer.getLong());
+    case BOOLEAN:
+      return Boolean.valueOf(buffer.get() != 0);
+    case DOUBLE:
+      return Double.valueOf(buffer.getDouble());
+    case FLOAT:
+      return Float.valueOf(buffer.getFloat());
+    case SHORT:
+      return Short.valueOf(buffer.getShort());
+    case BYTE:
+      return Byte.valueOf(buffer.get());
+    case CHARACTER:
+      return Character.valueOf(buffer.getChar());
+    case RAW:
+      // Only the default value is converted; nothing is looked up.
+      return configurations.getValue(key.getMetadata().getConfigurationCoordinates(), (String)null, key.getType(), readString(buffer));
+    default:
+      throw new IOException("Unknown tag: " + tag);
+    }
+  }
+
+  private static final Class<?> loadClass(final String name, final ClassLoader classLoader) throws ClassNotFoundException {
+    final Class<?> primitiveClass = primitiveClasses.get(name);
+    if (primitiveClass != null) {
+      return primitiveClass;
+    }
+    return Class.forName(name, false, classLoader);
+  }
+
+  private static final void writeString(final DataOutputStream out, final String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+    } else {
+      final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static final String readString(final ByteBuffer buffer) {
+    final int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+}
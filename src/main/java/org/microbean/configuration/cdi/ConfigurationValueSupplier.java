@@ -0,0 +1,168 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.reflect.Type;
+
+import java.util.Objects;
+
+import java.util.function.Supplier;
+
+/**
+ * A {@link Supplier} of a configuration value that resolves it, using
+ * a {@link ConfigurationValueResolver}, at most once, the first time
+ * its {@link #get()} method is called.
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @param <T> the type of the configuration value
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ConfigurationsExtension
+ */
+final class ConfigurationValueSupplier<T> implements Supplier<T> {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link ConfigurationValueResolver} to use.
+   *
+   * <p>This field is {@code null} once the configuration value has
+   * been resolved.</p>
+   */
+  private ConfigurationValueResolver resolver;
+
+  /**
+   * The {@link ConfigurationsExtension.ConfigurationValueMetadata}
+   * describing the configuration value.
+   *
+   * <p>This field is {@code null} once the configuration value has
+   * been resolved.</p>
+   */
+  private ConfigurationsExtension.ConfigurationValueMetadata metadata;
+
+  /**
+   * The {@link Type} of the configuration value.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Type type;
+
+  /**
+   * The resolved configuration value, which may be {@code null}.
+   *
+   * @see #resolved
+   */
+  private T value;
+
+  /**
+   * Whether the configuration value has been resolved.
+   *
+   * <p>Writes to this field publish the {@link #value} field.</p>
+   */
+  private volatile boolean resolved;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ConfigurationValueSupplier}.
+   *
+   * @param resolver the {@link ConfigurationValueResolver} to use;
+   * must not be {@code null}
+   *
+   * @param metadata the {@link
+   * ConfigurationsExtension.ConfigurationValueMetadata} describing
+   * the configuration value; must not be {@code null}
+   *
+   * @param type the {@link Type} of the configuration value; must not
+   * be {@code null}
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   */
+  ConfigurationValueSupplier(final ConfigurationValueResolver resolver,
+                             final ConfigurationsExtension.ConfigurationValueMetadata metadata,
+                             final Type type) {
+    super();
+    this.resolver = Objects.requireNonNull(resolver);
+    this.metadata = Objects.requireNonNull(metadata);
+    this.type = Objects.requireNonNull(type);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the configuration value, resolving it first if this is
+   * the first time this method has been called.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * <p>If resolution fails, the failure is propagated and resolution
+   * will be attempted again on the next call.</p>
+   *
+   * @return the configuration value, or {@code null}
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if the configuration value could not be resolved
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public final T get() {
+    if (!this.resolved) {
+      synchronized (this) {
+        if (!this.resolved) {
+          this.value = (T)this.resolver.resolve(this.metadata, this.type);
+          this.resolver = null;
+          this.metadata = null;
+          this.resolved = true;
+        }
+      }
+    }
+    return this.value;
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * ConfigurationValueSupplier}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    if (this.resolved) {
+      return "Supplier<" + this.type.getTypeName() + ">[" + this.value + "]";
+    }
+    return "Supplier<" + this.type.getTypeName() + ">[unresolved]";
+  }
+
+}
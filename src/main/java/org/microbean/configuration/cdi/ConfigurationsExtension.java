@@ -16,27 +16,57 @@
  */
 package org.microbean.configuration.cdi;
 
+import java.io.IOException;
+
+import java.nio.file.Path; // for javadoc only
+import java.nio.file.Paths;
+
 import java.lang.annotation.Annotation;
 
 import java.lang.reflect.Executable;
 import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.ServiceLoader;
 import java.util.Set;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -50,6 +80,7 @@ import javax.enterprise.inject.Produces; // for javadoc only
 import javax.enterprise.inject.literal.SingletonLiteral;
 
 import javax.enterprise.inject.spi.AfterBeanDiscovery;
+import javax.enterprise.inject.spi.AfterDeploymentValidation;
 import javax.enterprise.inject.spi.Annotated;
 import javax.enterprise.inject.spi.AnnotatedField;
 import javax.enterprise.inject.spi.AnnotatedMember;
@@ -60,20 +91,26 @@ import javax.enterprise.inject.spi.Bean;
 import javax.enterprise.inject.spi.BeanAttributes;
 import javax.enterprise.inject.spi.BeanManager;
 import javax.enterprise.inject.spi.BeforeBeanDiscovery;
+import javax.enterprise.inject.spi.BeforeShutdown;
 import javax.enterprise.inject.spi.Extension;
 import javax.enterprise.inject.spi.InjectionPoint;
+import javax.enterprise.inject.spi.ProcessAnnotatedType;
 import javax.enterprise.inject.spi.ProcessInjectionPoint;
+import javax.enterprise.inject.spi.WithAnnotations;
 import javax.enterprise.inject.spi.ProducerFactory; // for javadoc only
 
+import javax.inject.Provider; // for javadoc only
 import javax.inject.Singleton; // for javadoc only
 
 import org.microbean.configuration.api.ConfigurationException;
 import org.microbean.configuration.api.Configurations;
 
 import org.microbean.configuration.cdi.annotation.Configuration;
+import org.microbean.configuration.cdi.annotation.ConfigurationCondition;
 import org.microbean.configuration.cdi.annotation.ConfigurationCoordinate;
 import org.microbean.configuration.cdi.annotation.ConfigurationCoordinates;
 import org.microbean.configuration.cdi.annotation.ConfigurationValue;
+import org.microbean.configuration.cdi.annotation.Configured;
 
 /**
  * An {@link Extension} that adapts the configuration ecosystem
@@ -100,7 +137,8 @@ public class ConfigurationsExtension implements Extension {
    *
    * <p>This field is never {@code null}.</p>
    *
-   * @see #produceConfigurationValue(InjectionPoint, Configurations)
+   * @see #produceConfigurationValue(InjectionPoint,
+   * ConfigurationValueResolver)
    */
   private static final Map<Type, Object> uninitializedValues = Collections.unmodifiableMap(new HashMap<Type, Object>() {
       private static final long serialVersionUID = 1L;
@@ -117,6 +155,45 @@ public class ConfigurationsExtension implements Extension {
       }
     });
 
+  /**
+   * The primitive {@link Class} whose values are held by each of
+   * {@link OptionalInt}, {@link OptionalLong} and {@link
+   * OptionalDouble}, indexed by that {@link Class}.
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * @see #getOptionalValueType(Type)
+   */
+  private static final Map<Type, Class<?>> optionalPrimitiveTypes;
+
+
+  /**
+   * The prefix of the names of the {@linkplain System#getProperty(String)
+   * system properties} that tune the behavior of this class.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final String PROPERTY_PREFIX = "org.microbean.configuration.cdi.";
+
+  /**
+   * The maximum number of {@link ConfigurationValueMetadata} objects
+   * describing the properties of {@link Configured}-qualified
+   * injection points that each {@link ConfigurationsExtension}
+   * remembers.
+   *
+   * @see #produceConfiguredObject(InjectionPoint,
+   * ConfigurationValueResolver, BoundedCache)
+   */
+  static final int MAXIMUM_CONFIGURED_PROPERTIES = 4096;
+
+  static {
+    final Map<Type, Class<?>> optionals = new HashMap<>();
+    optionals.put(OptionalInt.class, int.class);
+    optionals.put(OptionalLong.class, long.class);
+    optionals.put(OptionalDouble.class, double.class);
+    optionalPrimitiveTypes = Collections.unmodifiableMap(optionals);
+  }
+
 
   /*
    * Instance fields.
@@ -127,8 +204,268 @@ public class ConfigurationsExtension implements Extension {
    * The {@link Configurations} to which most work is delegated.
    *
    * <p>This field may be {@code null}.</p>
+   *
+   * @see #getConfigurations()
+   */
+  private volatile Configurations configurations;
+
+  /**
+   * A {@link CompletableFuture} representing the initialization of
+   * the {@link Configurations} to which most work is delegated while
+   * that initialization is still in progress.
+   *
+   * <p>This field may be {@code null}, and is set to {@code null}
+   * once the {@link #configurations} field is set.</p>
+   *
+   * @see #addConfigurations(BeforeBeanDiscovery)
+   *
+   * @see #getConfigurations()
+   */
+  private volatile CompletableFuture<Configurations> pendingConfigurations;
+
+  /**
+   * The {@link ConfigurationValueResolver} that resolves
+   * configuration values on behalf of the producers installed by
+   * this {@link ConfigurationsExtension}.
+   *
+   * <p>This field may be {@code null}.  It is always set before
+   * the {@link #configurations} field is.</p>
+   *
+   * @see #produceConfigurationValue(InjectionPoint,
+   * ConfigurationValueResolver)
+   */
+  private volatile ConfigurationValueResolver resolver;
+
+  /**
+   * The {@link PollingScheduler} polling any {@link Pollable}s
+   * discovered at deployment time.
+   *
+   * <p>This field may be {@code null}.</p>
+   *
+   * @see #startPolling(AfterDeploymentValidation)
+   */
+  private volatile PollingScheduler pollingScheduler;
+
+  /**
+   * The {@link PollingScheduler} polling, on behalf of every
+   * container sharing it, the {@link Pollable}s making up a
+   * {@linkplain SharedConfigurations shared} {@link Configurations}.
+   *
+   * <p>This field may be {@code null}.  The {@link PollingScheduler}
+   * it refers to is owned by the {@link #configurationsLease} and
+   * must not be closed by this {@link ConfigurationsExtension}.</p>
+   *
+   * @see #startPolling(AfterDeploymentValidation)
+   */
+  private volatile PollingScheduler sharedPollingScheduler;
+
+  /**
+   * The {@link ExecutorService} on which configuration values are
+   * resolved asynchronously, because they are injected as {@link
+   * CompletionStage}s or because a resolution deadline is in effect.
+   *
+   * <p>This field may be {@code null}, and is set only if such an
+   * injection point was encountered during deployment or such a
+   * deadline is in effect.</p>
+   *
+   * @see #installConfigurationValueProducerMethods(AfterBeanDiscovery,
+   * BeanManager)
+   *
+   * @see #stopAsynchronousResolution()
+   */
+  private volatile ExecutorService asynchronousResolutionExecutor;
+
+  /**
+   * The {@link SharedConfigurations.Lease} on a {@link
+   * Configurations} shared with other containers.
+   *
+   * <p>This field may be {@code null}.</p>
+   *
+   * @see #addConfigurations(BeforeBeanDiscovery)
+   *
+   * @see #releaseConfigurations()
+   */
+  private volatile SharedConfigurations.Lease configurationsLease;
+
+  /**
+   * A {@link Map} of {@link InjectionPoint}s qualified with {@link
+   * ConfigurationValue} that were encountered during deployment,
+   * indexed by {@link ConfigurationValueResolver.Key}s describing the
+   * configuration values they require.
+   *
+   * <p>Only the first {@link InjectionPoint} encountered for a given
+   * {@link ConfigurationValueResolver.Key} is retained, unless it is
+   * of an {@linkplain #getOptionalValueType(Type) optional type} and a
+   * later one is not, in which case the later one replaces it, but
+   * keeps its place in encounter order.</p>
+   *
+   * <p>This field is never {@code null}, and is safe for concurrent
+   * use, since the container may deliver {@link
+   * ProcessInjectionPoint} events on several threads at once.  Since
+   * it is unordered, it should be iterated only by way of {@link
+   * #getConfigurationValueInjectionPoints()}.</p>
+   *
+   * @see #installConfigurationCoordinateQualifiers(ProcessInjectionPoint,
+   * BeanManager)
+   */
+  private final Map<ConfigurationValueResolver.Key, EncounteredInjectionPoint> configurationValueInjectionPoints;
+
+  /**
+   * The number of {@link ConfigurationValue}-qualified {@link
+   * InjectionPoint}s encountered so far, used to number them in
+   * encounter order.
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * @see #addConfigurationValueInjectionPoint(ConfigurationValueResolver.Key,
+   * InjectionPoint)
+   */
+  private final AtomicLong configurationValueInjectionPointCount;
+
+  /**
+   * A {@link Set} of the {@link Map Map&lt;String, T&gt;} {@link
+   * Type}s of the {@link ConfigurationValue}-qualified injection
+   * points that were encountered during deployment.
+   *
+   * <p>This field is never {@code null}, and is safe for concurrent
+   * use.</p>
+   *
+   * @see #installConfigurationCoordinateQualifiers(ProcessInjectionPoint,
+   * BeanManager)
+   *
+   * @see #installConfigurationValueProducerMethods(AfterBeanDiscovery,
+   * BeanManager)
+   */
+  private final Set<Type> configurationValueMapTypes;
+
+  /**
+   * A {@link Set} of the {@link Supplier} {@link Type}s of the {@link
+   * ConfigurationValue}-qualified injection points that were
+   * encountered during deployment.
+   *
+   * <p>This field is never {@code null}, and is safe for concurrent
+   * use.</p>
+   *
+   * @see #installConfigurationCoordinateQualifiers(ProcessInjectionPoint,
+   * BeanManager)
+   *
+   * @see #installConfigurationValueProducerMethods(AfterBeanDiscovery,
+   * BeanManager)
+   */
+  private final Set<Type> configurationValueSupplierTypes;
+
+  /**
+   * A {@link Set} of the {@link Optional}, {@link OptionalInt},
+   * {@link OptionalLong} and {@link OptionalDouble} {@link Type}s of
+   * the {@link ConfigurationValue}-qualified injection points that
+   * were encountered during deployment.
+   *
+   * <p>This field is never {@code null}, and is safe for concurrent
+   * use.</p>
+   *
+   * @see #installConfigurationCoordinateQualifiers(ProcessInjectionPoint,
+   * BeanManager)
+   *
+   * @see #installConfigurationValueProducerMethods(AfterBeanDiscovery,
+   * BeanManager)
+   */
+  private final Set<Type> configurationValueOptionalTypes;
+
+  /**
+   * A {@link Set} of the {@link CompletionStage} {@link Type}s of the
+   * {@link ConfigurationValue}-qualified injection points that were
+   * encountered during deployment.
+   *
+   * <p>This field is never {@code null}, and is safe for concurrent
+   * use.</p>
+   *
+   * @see #installConfigurationCoordinateQualifiers(ProcessInjectionPoint,
+   * BeanManager)
+   *
+   * @see #installConfigurationValueProducerMethods(AfterBeanDiscovery,
+   * BeanManager)
+   */
+  private final Set<Type> configurationValueCompletionStageTypes;
+
+  /**
+   * A {@link Set} of the {@code int[]}, {@code long[]}, {@code
+   * String[]}, {@link List List&lt;T&gt;} and {@link Set
+   * Set&lt;T&gt;} {@link Type}s of the {@link
+   * ConfigurationValue}-qualified injection points that were
+   * encountered during deployment and that will be parsed from
+   * comma-separated string values.
+   *
+   * <p>This field is never {@code null}, and is safe for concurrent
+   * use.</p>
+   *
+   * @see DelimitedConfigurationValues
+   *
+   * @see #installConfigurationValueProducerMethods(AfterBeanDiscovery,
+   * BeanManager)
+   */
+  private final Set<Type> configurationValueDelimitedTypes;
+
+  /**
+   * A {@link Set} of the {@link java.io.Reader}, {@link
+   * java.io.InputStream}, {@link java.nio.channels.ReadableByteChannel}
+   * and {@link java.nio.ByteBuffer} {@link Type}s of the {@link
+   * ConfigurationValue}-qualified injection points that were
+   * encountered during deployment.
+   *
+   * <p>This field is never {@code null}, and is safe for concurrent
+   * use.</p>
+   *
+   * @see StreamingConfigurationValues
+   *
+   * @see #installConfigurationValueProducerMethods(AfterBeanDiscovery,
+   * BeanManager)
+   */
+  private final Set<Type> configurationValueStreamingTypes;
+
+  /**
+   * A {@link Set} of the {@link Configuration}-annotated interfaces
+   * that were encountered during deployment.
+   *
+   * <p>This field is never {@code null}, and is safe for concurrent
+   * use.</p>
+   *
+   * @see #recordConfigurationInterfaces(ProcessAnnotatedType)
+   *
+   * @see #installConfigurationValueProducerMethods(AfterBeanDiscovery,
+   * BeanManager)
+   */
+  private final Set<AnnotatedType<?>> configurationInterfaces;
+
+  /**
+   * A {@link Set} of the {@link Type}s of the {@link
+   * Configured}-qualified injection points that were encountered
+   * during deployment.
+   *
+   * <p>This field is never {@code null}, and is safe for concurrent
+   * use.</p>
+   *
+   * @see #installConfigurationCoordinateQualifiers(ProcessInjectionPoint,
+   * BeanManager)
+   *
+   * @see #installConfigurationValueProducerMethods(AfterBeanDiscovery,
+   * BeanManager)
+   */
+  private final Set<Type> configuredTypes;
+
+  /**
+   * A {@link BoundedCache} of {@link ConfigurationValueMetadata}
+   * objects describing the properties bound at {@link
+   * Configured}-qualified injection points, indexed by {@link
+   * ConfiguredProperty} objects identifying them, so that each is
+   * computed once rather than once per injection.
+   *
+   * <p>This field is never {@code null}, and is safe for concurrent
+   * use.</p>
+   *
+   * @see #produceConfiguredObject(InjectionPoint,
+   * ConfigurationValueResolver, BoundedCache)
    */
-  private Configurations configurations;
+  private final BoundedCache<ConfiguredProperty, ConfigurationValueMetadata> configuredProperties;
 
   /**
    * A {@link Logger} for use by this {@link ConfigurationsExtension}.
@@ -159,6 +496,17 @@ public class ConfigurationsExtension implements Extension {
     if (this.logger == null) {
       throw new IllegalStateException("createLogger() == null");
     }
+    this.configurationValueInjectionPoints = new ConcurrentHashMap<>();
+    this.configurationValueInjectionPointCount = new AtomicLong();
+    this.configuredProperties = new BoundedCache<>(MAXIMUM_CONFIGURED_PROPERTIES);
+    this.configurationValueSupplierTypes = ConcurrentHashMap.newKeySet();
+    this.configurationValueOptionalTypes = ConcurrentHashMap.newKeySet();
+    this.configurationValueCompletionStageTypes = ConcurrentHashMap.newKeySet();
+    this.configurationValueDelimitedTypes = ConcurrentHashMap.newKeySet();
+    this.configurationValueStreamingTypes = ConcurrentHashMap.newKeySet();
+    this.configurationValueMapTypes = ConcurrentHashMap.newKeySet();
+    this.configurationInterfaces = ConcurrentHashMap.newKeySet();
+    this.configuredTypes = ConcurrentHashMap.newKeySet();
   }
 
 
@@ -183,14 +531,101 @@ public class ConfigurationsExtension implements Extension {
 
   /**
    * {@linkplain Observes Observes} the {@link BeforeBeanDiscovery}
-   * event and creates a {@link Configurations} instance that will
-   * eventually be added as a bean itself.
+   * event and begins creating a {@link Configurations} instance that
+   * will eventually be added as a bean itself.
+   *
+   * <p>The {@link Configurations} instance is {@linkplain
+   * Configurations#newInstance() created} on a background daemon
+   * thread, so that its configuration sources load while the
+   * container is busy discovering beans.  It is waited for only when
+   * it is first needed; see {@link #getConfigurations()}.  The time
+   * taken to create it, and the portion of that time that the
+   * container actually spent waiting, are logged at {@link
+   * Level#FINE}.</p>
+   *
+   * <p>By default the {@link Configurations} is created exactly as
+   * {@link Configurations#newInstance()} creates it: only the first
+   * {@link Configurations} implementation declared as a service
+   * provider is used.  If the {@code
+   * org.microbean.configuration.cdi.initialization.composite} system
+   * property is {@code true}, then instead every such implementation
+   * is created, in parallel, and they are consulted in the order in
+   * which they are declared.  This changes which configuration values
+   * can be found, since implementations other than the first are
+   * consulted too, so it must be asked for explicitly; see {@link
+   * CompositeConfigurations}.</p>
+   *
+   * <p>If the {@code org.microbean.configuration.cdi.sharing} system
+   * property is {@code true}, then the {@link Configurations} is
+   * shared with every other container in the same JVM that uses the
+   * same configuration sources, and is only created if no such
+   * container is running; see {@link SharedConfigurations}.  It is
+   * released by the {@link #releaseConfigurations()}
+   * method.</p>
+   *
+   * <p>The {@link ConfigurationValueResolver} that is created
+   * alongside it does not cache resolved configuration values, or
+   * remember which names are absent, so that every injection sees
+   * the configuration sources as they are at that moment.  If the
+   * {@code org.microbean.configuration.cdi.cache.maximumSize} system
+   * property is set to a positive number, up to that many resolved
+   * values of immutable types are cached, and names found to be
+   * absent are not sought again, until the configuration sources are
+   * next {@linkplain #startPolling(AfterDeploymentValidation) found
+   * to have changed}; since that can only be detected for
+   * {@link Pollable} sources, a change to any other source, such as
+   * a system property set after deployment, will not be seen until
+   * then.  See {@link ConfigurationValueResolver}.</p>
+   *
+   * <p>Slow or failing configuration sources may be guarded with
+   * deadlines and a circuit breaker, set with system properties:</p>
+   *
+   * <ul>
+   *
+   * <li>{@code org.microbean.configuration.cdi.resolution.deadline}:
+   * the number of milliseconds an injection will wait for a
+   * configuration value that is not cached, after which the last
+   * known good value is injected while the value is refreshed in the
+   * background; see {@link
+   * ConfigurationValueResolver#resolve(ConfigurationValueResolver.Key)}</li>
+   *
+   * <li>{@code org.microbean.configuration.cdi.source.deadline}: the
+   * number of milliseconds each lookup in each {@link
+   * Configurations} provider may take</li>
+   *
+   * <li>{@code org.microbean.configuration.cdi.source.maximumConcurrency}:
+   * the number of lookups in each {@link Configurations} provider
+   * that may be outstanding at once when a deadline is in effect,
+   * including those that missed it (defaulting to {@code 16});
+   * further lookups fail immediately</li>
+   *
+   * <li>{@code org.microbean.configuration.cdi.source.failureThreshold}:
+   * the number of consecutive timeouts or failures after which a
+   * {@link Configurations} provider is no longer consulted</li>
+   *
+   * <li>{@code org.microbean.configuration.cdi.source.retryInterval}:
+   * the number of milliseconds after which such a {@link
+   * Configurations} provider is tried again (defaulting to {@code
+   * 30000})</li>
+   *
+   * </ul>
+   *
+   * <p>No deadline or failure threshold is in effect unless its
+   * property is set to a positive number.  The {@code source.*}
+   * properties
+   * guard each {@link Configurations} provider as a whole: by
+   * default there is only one, created by {@link
+   * Configurations#newInstance()}, and whatever configuration sources
+   * it consults internally are guarded together, so one slow source
+   * delays, and can trip the circuit breaker for, all of them.  Only
+   * when {@linkplain CompositeConfigurations providers are combined}
+   * is each provider guarded separately.  See {@link
+   * GuardedConfigurations}.</p>
    *
    * @param event the {@link BeforeBeanDiscovery} event being
    * observed; if {@code null}, then no action will be taken
    *
-   * @exception ConfigurationException if no {@link Configurations}
-   * implementation is available
+   * @see #getConfigurations()
    */
   private final void addConfigurations(@Observes final BeforeBeanDiscovery event) {
     final String cn = this.getClass().getName();
@@ -198,9 +633,251 @@ public class ConfigurationsExtension implements Extension {
     if (this.logger.isLoggable(Level.FINER)) {
       this.logger.entering(cn, mn, event);
     }
+    if (event != null && this.configurations == null && this.pendingConfigurations == null) {
+      // Configurations.newInstance() uses the thread context
+      // classloader to find its implementation and its configuration
+      // sources, so make sure the background thread uses the same
+      // one the container is using.
+      final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+      final boolean composite = Boolean.getBoolean(PROPERTY_PREFIX + "initialization.composite");
+      if (Boolean.getBoolean(PROPERTY_PREFIX + "sharing")) {
+        final Set<String> providerClassNames;
+        try {
+          providerClassNames =
+            CompositeConfigurations.getProviderClassNames(contextClassLoader == null ? ClassLoader.getSystemClassLoader() : contextClassLoader);
+        } catch (final IOException ioException) {
+          throw new ConfigurationException(ioException);
+        }
+        final SharedConfigurations.Lease lease =
+          SharedConfigurations.acquire(new SharedConfigurations.Key(contextClassLoader, providerClassNames, composite),
+                                       () -> this.createConfigurations(contextClassLoader, composite));
+        this.configurationsLease = lease;
+        this.pendingConfigurations = lease.getConfigurations();
+        if (!lease.isCreator() && this.logger.isLoggable(Level.FINE)) {
+          this.logger.logp(Level.FINE, cn, mn, "Reusing shared configurations: {0}", lease);
+        }
+      } else {
+        this.pendingConfigurations = this.createConfigurations(contextClassLoader, composite);
+      }
+    }
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+  /**
+   * Begins creating a new {@link Configurations} on a background
+   * daemon thread and returns a {@link CompletableFuture} that will
+   * complete with it.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param contextClassLoader the {@link ClassLoader} to install as
+   * the background thread's {@linkplain
+   * Thread#getContextClassLoader() context classloader}; may be
+   * {@code null}
+   *
+   * @param composite whether to create a {@link
+   * CompositeConfigurations} from every {@link Configurations}
+   * implementation, in parallel, rather than using {@link
+   * Configurations#newInstance()}
+   *
+   * @return a non-{@code null} {@link CompletableFuture}
+   *
+   * @see #addConfigurations(BeforeBeanDiscovery)
+   */
+  private final CompletableFuture<Configurations> createConfigurations(final ClassLoader contextClassLoader, final boolean composite) {
+    final String cn = this.getClass().getName();
+    final String mn = "createConfigurations";
+    return CompletableFuture.supplyAsync(() -> {
+        final long start = System.nanoTime();
+        final Configurations configurations;
+        if (composite) {
+          configurations = guard(CompositeConfigurations.newInstance(contextClassLoader));
+        } else {
+          configurations = guard(Configurations.newInstance());
+        }
+        if (this.logger.isLoggable(Level.FINE)) {
+          this.logger.logp(Level.FINE, cn, mn,
+                           "Created {0} in {1} ms",
+                           new Object[] { configurations,
+                                          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) });
+        }
+        return configurations;
+      }, r -> {
+        final Thread thread = new Thread(r, "microBean Configurations initializer");
+        thread.setDaemon(true);
+        thread.setContextClassLoader(contextClassLoader);
+        thread.start();
+      });
+  }
+
+  /**
+   * Returns the {@link Configurations} to which most work is
+   * delegated, waiting for its background initialization, begun by
+   * the {@link #addConfigurations(BeforeBeanDiscovery)} method, to
+   * complete if necessary.
+   *
+   * <p>The first time this method returns a non-{@code null} {@link
+   * Configurations}, it also creates the {@link
+   * ConfigurationValueResolver} that will be used to resolve
+   * configuration values.</p>
+   *
+   * <p>This method may return {@code null} if the {@link
+   * #addConfigurations(BeforeBeanDiscovery)} method has not been
+   * called.</p>
+   *
+   * <p>If the {@code org.microbean.configuration.cdi.snapshot.file}
+   * system property is set, configuration values are preloaded from
+   * the snapshot it names, if it exists and is still valid and
+   * caching is enabled; see {@link #writeSnapshot()} and {@link
+   * #createResolver(Configurations)}.</p>
+   *
+   * <p>This method is safe to call from multiple threads
+   * concurrently; exactly one of them will wait for initialization
+   * and create the {@link ConfigurationValueResolver}, and the others
+   * will wait for it to do so.</p>
+   *
+   * @return the {@link Configurations} in use, or {@code null}
+   *
+   * @exception ConfigurationException if no {@link Configurations}
+   * implementation is available, or if it could not be created
+   */
+  private final Configurations getConfigurations() {
+    final String cn = this.getClass().getName();
+    final String mn = "getConfigurations";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn);
+    }
+    Configurations configurations = this.configurations;
+    if (configurations == null) {
+      synchronized (this) {
+        configurations = this.configurations;
+        final CompletableFuture<Configurations> pendingConfigurations = this.pendingConfigurations;
+        if (configurations == null && pendingConfigurations != null) {
+          final long start = System.nanoTime();
+          try {
+            configurations = pendingConfigurations.join();
+          } catch (final CompletionException completionException) {
+            final Throwable cause = completionException.getCause();
+            if (cause instanceof RuntimeException) {
+              throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+              throw (Error)cause;
+            } else {
+              throw new ConfigurationException(cause);
+            }
+          }
+          assert configurations != null;
+          if (this.logger.isLoggable(Level.FINE)) {
+            this.logger.logp(Level.FINE, cn, mn,
+                             "Waited {0} ms for {1} to be created",
+                             new Object[] { TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), configurations });
+          }
+          final ConfigurationValueResolver resolver = this.createResolver(configurations);
+          // Set this.resolver first; readers check this.configurations.
+          this.resolver = resolver;
+          this.configurations = configurations;
+          this.pendingConfigurations = null;
+        }
+      }
+    }
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn, configurations);
+    }
+    return configurations;
+  }
+
+  /**
+   * {@linkplain Observes Observes} the {@link ProcessAnnotatedType}
+   * event and {@linkplain ProcessAnnotatedType#veto() vetoes} any
+   * {@link ConfigurationCondition}-annotated type whose condition is
+   * not satisfied, so that the container does not go on to validate,
+   * proxy or otherwise process a bean that configuration has
+   * disabled.
+   *
+   * <p>A type can only be vetoed while its {@link
+   * ProcessAnnotatedType} event is being observed, and whether it
+   * should be depends on configuration, so the first {@link
+   * ConfigurationCondition}-annotated type discovered waits for the
+   * {@link Configurations} being {@linkplain
+   * #addConfigurations(BeforeBeanDiscovery) created in
+   * the background}.  That creation therefore overlaps type
+   * discovery only up to that point, rather than all of bean
+   * discovery.  Applications that do not use {@link
+   * ConfigurationCondition} are unaffected; in particular, {@link
+   * Configuration}-annotated interfaces bearing it are not checked
+   * until {@linkplain
+   * #installConfigurationValueProducerMethods(AfterBeanDiscovery,
+   * BeanManager) after bean discovery}.  The time spent waiting is
+   * logged at {@link Level#FINE}.</p>
+   *
+   * @param event the {@link ProcessAnnotatedType} event being
+   * observed; if {@code null}, no action will be taken
+   *
+   * @see ConfigurationCondition
+   *
+   * @see #isSatisfied(ConfigurationCondition, Annotated, Map,
+   * ConfigurationValueResolver)
+   */
+  private final void vetoUnsatisfiedTypes(@Observes @WithAnnotations(ConfigurationCondition.class) final ProcessAnnotatedType<?> event) {
+    final String cn = this.getClass().getName();
+    final String mn = "vetoUnsatisfiedTypes";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn, event);
+    }
+    if (event != null) {
+      final AnnotatedType<?> annotatedType = event.getAnnotatedType();
+      // @WithAnnotations also matches types whose members, not the
+      // types themselves, bear the annotation.
+      final ConfigurationCondition condition =
+        annotatedType == null ? null : annotatedType.getAnnotation(ConfigurationCondition.class);
+      if (condition != null) {
+        final Configurations configurations = this.getConfigurations();
+        assert configurations != null;
+        if (!isSatisfied(condition, annotatedType, configurations.getConfigurationCoordinates(), this.resolver)) {
+          if (this.logger.isLoggable(Level.FINE)) {
+            this.logger.logp(Level.FINE, cn, mn, "Vetoing {0} because {1} is not satisfied", new Object[] { annotatedType, condition });
+          }
+          event.veto();
+        }
+      }
+    }
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+  /**
+   * {@linkplain Observes Observes} the {@link ProcessAnnotatedType}
+   * event and records each {@link Configuration}-annotated interface
+   * so that a bean implementing it can be installed.
+   *
+   * <p>Any {@link ConfigurationCondition} on the interface is not
+   * checked here, so that this method need not wait for the {@link
+   * Configurations} being created in the background; an interface
+   * whose condition is not satisfied is skipped when beans are
+   * installed.</p>
+   *
+   * @param event the {@link ProcessAnnotatedType} event being
+   * observed; if {@code null}, no action will be taken
+   *
+   * @see #installConfigurationValueProducerMethods(AfterBeanDiscovery,
+   * BeanManager)
+   */
+  private final void recordConfigurationInterfaces(@Observes @WithAnnotations(Configuration.class) final ProcessAnnotatedType<?> event) {
+    final String cn = this.getClass().getName();
+    final String mn = "recordConfigurationInterfaces";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn, event);
+    }
     if (event != null) {
-      this.configurations = Configurations.newInstance();
-      assert this.configurations != null;
+      final AnnotatedType<?> annotatedType = event.getAnnotatedType();
+      if (annotatedType != null &&
+          annotatedType.getJavaClass().isInterface() &&
+          annotatedType.isAnnotationPresent(Configuration.class)) {
+        this.configurationInterfaces.add(annotatedType);
+      }
     }
     if (this.logger.isLoggable(Level.FINER)) {
       this.logger.exiting(cn, mn);
@@ -215,6 +892,12 @@ public class ConfigurationsExtension implements Extension {
    * ConfigurationCoordinates qualifier annotations} at each {@link
    * ConfigurationValue}-annotated injection point.
    *
+   * <p>Each such injection point is also recorded so that its
+   * requirements can be validated once deployment is complete.  If
+   * its type is {@link Supplier Supplier&lt;T&gt;}, that type is
+   * recorded as well so that a suitable producer can be
+   * installed.</p>
+   *
    * @param event the {@link ProcessInjectionPoint} event being
    * observed; if {@code null}, then no action will be taken
    *
@@ -240,115 +923,1965 @@ public class ConfigurationsExtension implements Extension {
         if (qualifiers != null && !qualifiers.isEmpty()) {
           ConfigurationValue configurationValue = null;
           ConfigurationCoordinates configurationCoordinates = null;
+          Configured configured = null;
           for (final Annotation qualifier : qualifiers) {
             assert qualifier != null;
             if (qualifier instanceof ConfigurationValue) {
               configurationValue = (ConfigurationValue)qualifier;
             } else if (qualifier instanceof ConfigurationCoordinates) {
               configurationCoordinates = (ConfigurationCoordinates)qualifier;
+            } else if (qualifier instanceof Configured) {
+              configured = (Configured)qualifier;
             }
           }
-          if (configurationValue != null) {
+          if (configurationValue == null && configured != null) {
+            final Set<Annotation> newQualifiers = new HashSet<>(qualifiers);
+            if (configurationCoordinates != null) {
+              newQualifiers.remove(configurationCoordinates);
+            }
+            newQualifiers.add(getConfigurationCoordinates(configurationCoordinates,
+                                                          this.getConfigurations().getConfigurationCoordinates()));
+            event.configureInjectionPoint().qualifiers(newQualifiers);
+            this.configuredTypes.add(injectionPoint.getType());
+          } else if (configurationValue != null) {
             final Set<Annotation> newQualifiers = new HashSet<>(qualifiers);
             if (configurationCoordinates != null) {
               newQualifiers.remove(configurationCoordinates);
             }
-            final ConfigurationCoordinates.Literal literal = new ConfigurationCoordinates.Literal(configurationCoordinates);
-            final Map<String, String> coordinatesMap = this.configurations.getConfigurationCoordinates();
-            if (coordinatesMap != null && !coordinatesMap.isEmpty()) {
-              final Set<Entry<String, String>> entries = coordinatesMap.entrySet();
-              assert entries != null;
-              assert !entries.isEmpty();
-              for (final Entry<String, String> entry : entries) {
-                assert entry != null;
-                final String name = entry.getKey();
-                assert name != null;
-                if (!literal.containsKey(name)) {
-                  final String value = entry.getValue();
-                  assert value != null;
-                  literal.add(new ConfigurationCoordinate.Literal(name, value));
+            newQualifiers.add(getConfigurationCoordinates(configurationCoordinates,
+                                                          this.getConfigurations().getConfigurationCoordinates()));
+            event.configureInjectionPoint().qualifiers(newQualifiers);
+            ConfigurationValueMetadata metadata = null;
+            try {
+              metadata = getMetadata(injectionPoint.getAnnotated(), newQualifiers);
+            } catch (final IllegalStateException noNameAvailable) {
+              // The injection point will fail in the same way, with
+              // the same explanation, when it is first produced.
+              if (this.logger.isLoggable(Level.FINE)) {
+                this.logger.logp(Level.FINE, cn, mn, noNameAvailable.getMessage(), noNameAvailable);
+              }
+            }
+            if (metadata != null) {
+              final Type injectionPointType = injectionPoint.getType();
+              final Type suppliedType = getSuppliedType(injectionPointType);
+              final Set<Type> conversionTypes = this.getConfigurations().getConversionTypes();
+              final Type handledType = PrimitiveConfigurationValue.getHandledType(injectionPointType, conversionTypes);
+              final Type optionalValueType = getOptionalConversionType(injectionPointType, conversionTypes);
+              final Type completedType = getCompletedType(injectionPointType);
+              if (handledType != null) {
+                this.addConfigurationValueInjectionPoint(new ConfigurationValueResolver.Key(metadata, handledType), injectionPoint);
+              } else if (optionalValueType != null && !conversionTypes.contains(injectionPointType)) {
+                this.configurationValueOptionalTypes.add(injectionPointType);
+                this.addConfigurationValueInjectionPoint(new ConfigurationValueResolver.Key(metadata, optionalValueType),
+                                                         injectionPoint);
+              } else if (completedType != null &&
+                         (conversionTypes == null || !conversionTypes.contains(injectionPointType))) {
+                this.configurationValueCompletionStageTypes.add(injectionPointType);
+                this.addConfigurationValueInjectionPoint(new ConfigurationValueResolver.Key(metadata, completedType),
+                                                         injectionPoint);
+              } else if (StreamingConfigurationValues.isSupported(injectionPointType) &&
+                         (conversionTypes == null || !conversionTypes.contains(injectionPointType))) {
+                // Only the string, which may be a file: URI, is
+                // resolved eagerly.
+                this.configurationValueStreamingTypes.add(injectionPointType);
+                this.addConfigurationValueInjectionPoint(new ConfigurationValueResolver.Key(metadata, String.class),
+                                                         injectionPoint);
+              } else if (DelimitedConfigurationValues.isSupported(injectionPointType, conversionTypes) &&
+                         (conversionTypes == null || !conversionTypes.contains(injectionPointType))) {
+                // The string is resolved eagerly; its elements are
+                // converted when it is first produced.
+                this.configurationValueDelimitedTypes.add(injectionPointType);
+                this.addConfigurationValueInjectionPoint(new ConfigurationValueResolver.Key(metadata, String.class),
+                                                         injectionPoint);
+              } else if (suppliedType == null &&
+                         getMapValueType(injectionPointType) != null &&
+                         (conversionTypes == null || !conversionTypes.contains(injectionPointType))) {
+                final Type mapValueType = getMapValueType(injectionPointType);
+                if (conversionTypes != null && conversionTypes.contains(mapValueType)) {
+                  // There is no single value to validate or resolve
+                  // eagerly.
+                  this.configurationValueMapTypes.add(injectionPointType);
+                } else {
+                  // Without this, the injection point would merely be
+                  // reported as unsatisfied.
+                  event.addDefinitionError(new ConfigurationException("The configuration values injected into " +
+                                                                      injectionPoint +
+                                                                      " cannot be converted to " +
+                                                                      mapValueType.getTypeName()));
                 }
+              } else if (suppliedType == null) {
+                this.addConfigurationValueInjectionPoint(new ConfigurationValueResolver.Key(metadata, injectionPointType),
+                                                         injectionPoint);
+              } else {
+                this.configurationValueSupplierTypes.add(injectionPointType);
+                this.addConfigurationValueInjectionPoint(new ConfigurationValueResolver.Key(metadata, suppliedType),
+                                                         injectionPoint);
               }
             }
-            newQualifiers.add(literal);
-            event.configureInjectionPoint().qualifiers(newQualifiers);
           }
         }
       }
     }
-    if (this.logger.isLoggable(Level.FINER)) {
-      this.logger.exiting(cn, mn);
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+  /**
+   * Records the supplied {@link InjectionPoint} as one requiring the
+   * configuration value described by the supplied {@link
+   * ConfigurationValueResolver.Key}, preferring an {@link
+   * InjectionPoint} that requires it to be present over one that
+   * accepts its absence, and numbering it in encounter order.
+   *
+   * @param key the {@link ConfigurationValueResolver.Key}; must not
+   * be {@code null}
+   *
+   * @param injectionPoint the {@link InjectionPoint}; must not be
+   * {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @see #resolveConfigurationValues(AfterDeploymentValidation)
+   */
+  private final void addConfigurationValueInjectionPoint(final ConfigurationValueResolver.Key key,
+                                                         final InjectionPoint injectionPoint) {
+    final EncounteredInjectionPoint encountered =
+      new EncounteredInjectionPoint(this.configurationValueInjectionPointCount.getAndIncrement(), injectionPoint);
+    this.configurationValueInjectionPoints.merge(key, encountered, (existing, candidate) ->
+                                                 getOptionalValueType(existing.injectionPoint.getType()) != null &&
+                                                 getOptionalValueType(candidate.injectionPoint.getType()) == null ?
+                                                 new EncounteredInjectionPoint(existing.index, candidate.injectionPoint) :
+                                                 existing);
+  }
+
+  /**
+   * Returns the {@link ConfigurationValue}-qualified {@link
+   * InjectionPoint}s encountered during deployment, each paired with
+   * the {@link ConfigurationValueResolver.Key} describing the
+   * configuration value it requires, in the order in which they were
+   * encountered.
+   *
+   * <p>When the container delivers {@link ProcessInjectionPoint}
+   * events on several threads at once, the order among those
+   * delivered concurrently is the order in which they were recorded.
+   * Either way, deployment problems are reported in a stable order
+   * that follows the order of the application's own injection
+   * points, rather than in hash order.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a new, non-{@code null} {@link List} of {@link Entry}
+   * instances
+   *
+   * @see #addConfigurationValueInjectionPoint(ConfigurationValueResolver.Key,
+   * InjectionPoint)
+   */
+  private final List<Entry<ConfigurationValueResolver.Key, InjectionPoint>> getConfigurationValueInjectionPoints() {
+    final List<Entry<ConfigurationValueResolver.Key, EncounteredInjectionPoint>> encountered =
+      new ArrayList<>(this.configurationValueInjectionPoints.entrySet());
+    encountered.sort((a, b) -> Long.compare(a.getValue().index, b.getValue().index));
+    final List<Entry<ConfigurationValueResolver.Key, InjectionPoint>> returnValue = new ArrayList<>(encountered.size());
+    for (final Entry<ConfigurationValueResolver.Key, EncounteredInjectionPoint> entry : encountered) {
+      returnValue.add(new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().injectionPoint));
+    }
+    return returnValue;
+  }
+
+  /**
+   * {@linkplain Observes Observes} the {@link AfterBeanDiscovery}
+   * event and installs a dynamic <a
+   * href="http://docs.jboss.org/cdi/spec/2.0.Beta1/cdi-spec.html#producer_method">producer
+   * method</a> for each {@link Type} found in the return value from
+   * the {@link Configurations#getConversionTypes()} method.
+   *
+   * <p>The net result is that all injection points that (a) are
+   * annotated with {@link ConfigurationValue} and (b) have a
+   * {@linkplain InjectionPoint#getType() type} that the configuration
+   * system can convert to will be handled properly.</p>
+   *
+   * <p>A producer is also installed for each {@link Supplier
+   * Supplier&lt;T&gt;} type encountered at a {@link
+   * ConfigurationValue}-qualified injection point where {@code T} is
+   * one of those {@link Type}s.  The {@link Supplier}s it produces
+   * resolve their configuration values only when, and at most once,
+   * their {@link Supplier#get()} methods are called, so beans that
+   * need a configuration value only rarely do not pay for resolving
+   * it when they are created.  (Injection points of type {@link
+   * Provider Provider&lt;T&gt;} are already handled by the
+   * container, which resolves the configuration value afresh each
+   * time {@link Provider#get()} is called.)</p>
+   *
+   * <p>A producer is likewise installed for each {@link Optional
+   * Optional&lt;T&gt;}, {@link OptionalInt}, {@link OptionalLong} or
+   * {@link OptionalDouble} type encountered at such an injection
+   * point where {@code T} (or the corresponding primitive type or its
+   * wrapper) is one of those {@link Type}s.  An absent configuration
+   * value with no default value is injected as an empty optional,
+   * rather than as {@code null} or a primitive's uninitialized value,
+   * and is not reported as a deployment problem by {@linkplain
+   * #resolveConfigurationValues(AfterDeploymentValidation) eager
+   * resolution}.  Absence is signaled internally without any
+   * exception being constructed, and is cached along with other
+   * values if caching is enabled, so probing for an optional
+   * configuration value is as cheap as reading a present one.</p>
+   *
+   * <p>A producer is also installed for each {@link CompletionStage
+   * CompletionStage&lt;T&gt;} type encountered at such an injection
+   * point where {@code T} is one of those {@link Type}s.  The
+   * configuration value is resolved on a dedicated pool of {@code
+   * org.microbean.configuration.cdi.resolution.async.threads} daemon
+   * threads (by default, one per available processor), so that
+   * creating a bean never waits for a slow configuration source; a
+   * configuration value that has already been resolved and cached
+   * yields a {@link CompletionStage} that is already complete.  See
+   * {@link ConfigurationValueResolver#resolveAsync(ConfigurationValueResolver.Key,
+   * java.util.concurrent.Executor)}.</p>
+   *
+   * <p>A producer is also installed for each {@code int[]}, {@code
+   * long[]}, {@code String[]}, {@link List List&lt;T&gt;} or {@link
+   * Set Set&lt;T&gt;} type, not itself one of those {@link Type}s,
+   * encountered at such an injection point where {@code T} is {@link
+   * String}, {@link Integer}, {@link Long} or one of those {@link
+   * Type}s.  The configuration value is resolved as a {@link String}
+   * and split on commas; each distinct string is parsed only once,
+   * and {@link List}s and {@link Set}s are shared, immutable
+   * instances.  See {@link DelimitedConfigurationValues}.</p>
+   *
+   * <p>A producer is also installed for each of the {@link
+   * java.io.Reader}, {@link java.io.InputStream}, {@link
+   * java.nio.channels.ReadableByteChannel} and {@link
+   * java.nio.ByteBuffer} types, not itself one of those {@link
+   * Type}s, encountered at such an injection point.  A configuration
+   * value that is a {@code file:} URI supplies the contents of that
+   * file; any other configuration value supplies itself, encoded as
+   * UTF-8.  Files of up to {@code
+   * org.microbean.configuration.cdi.streaming.maximumCopiedSize}
+   * bytes (one megabyte by default) are copied onto the heap; larger
+   * ones are copied to a private, temporary file that is
+   * memory-mapped.  Files are checked for changes at most once every
+   * {@code org.microbean.configuration.cdi.streaming.checkInterval}
+   * milliseconds (one second by default).  Objects that are {@link
+   * AutoCloseable} are closed when they are destroyed.  See {@link
+   * StreamingConfigurationValues}.</p>
+   *
+   * <p>Similarly, a producer is installed for each {@link Map
+   * Map&lt;String, T&gt;} type, not itself one of those {@link
+   * Type}s, encountered at a {@link ConfigurationValue}-qualified
+   * injection point where {@code T} is one of those {@link Type}s;
+   * see {@link #produceConfigurationValueMap(InjectionPoint, Type,
+   * ConfigurationValueResolver)}.  Such an injection point where
+   * {@code T} is not one of those {@link Type}s is reported as a
+   * definition error when it is processed.</p>
+   *
+   * <p>Finally, a {@link Singleton}-scoped bean is installed for each
+   * {@link Configuration}-annotated interface encountered.  Each of
+   * its methods returns the configuration value named by a {@link
+   * ConfigurationValue} annotation on the method or, failing that,
+   * by the method's name, subject to the usual prefix and
+   * configuration coordinate rules.  All of the interface's
+   * configuration values are resolved together when the bean is
+   * created; see {@link ConfigurationInterfaceHandler}.  An interface
+   * with a method that takes parameters, returns nothing or is not
+   * abstract is {@linkplain
+   * AfterBeanDiscovery#addDefinitionError(Throwable) reported as a
+   * definition error}.</p>
+   *
+   * @param event the {@link AfterBeanDiscovery} event being observed;
+   * if {@code null}, no action will be taken
+   *
+   * @param beanManager the {@link BeanManager} for the current CDI
+   * container; if {@code null}, no action will be taken
+   *
+   * @see BeanManager#createBean(BeanAttributes, Class, ProducerFactory)
+   *
+   * @see BeanManager#getProducerFactory(AnnotatedMethod, Bean)
+   *
+   * @see #produceConfigurationValue(InjectionPoint,
+   * ConfigurationValueResolver)
+   */
+  private final void installConfigurationValueProducerMethods(@Observes final AfterBeanDiscovery event, final BeanManager beanManager) {
+    final String cn = this.getClass().getName();
+    final String mn = "installConfigurationValueProducerMethods";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn, new Object[] { event, beanManager });
+    }
+    
+    if (event != null && beanManager != null) {
+
+      final Configurations configurations = this.getConfigurations();
+
+      // Add configurations as a Singleton-scoped bean.
+      event.addBean()
+        .addTransitiveTypeClosure(configurations.getClass())
+        .createWith(cc -> configurations)
+        .scope(Singleton.class);
+
+      // For each conversion type, add a producer that makes objects
+      // of that type.  Note that the qualifiers are nonbinding.
+      final Set<Type> types = configurations.getConversionTypes();
+      if (types != null && !types.isEmpty()) {
+        for (final Type type : types) {
+          assert type != null;
+          event.addBean()
+            .addTransitiveTypeClosure(type)
+            .addQualifiers(new ConfigurationCoordinates.Literal(),
+                           ConfigurationValue.Literal.of(""))
+            .scope(Dependent.class)
+            .produceWith(cdi ->
+                         produceConfigurationValue(cdi.select(InjectionPoint.class).get(),
+                                                   this.resolver));
+        }
+        for (final Type supplierType : this.configurationValueSupplierTypes) {
+          final Type suppliedType = getSuppliedType(supplierType);
+          assert suppliedType != null;
+          if (types.contains(suppliedType)) {
+            event.addBean()
+              .addType(supplierType)
+              .addQualifiers(new ConfigurationCoordinates.Literal(),
+                             ConfigurationValue.Literal.of(""))
+              .scope(Dependent.class)
+              .produceWith(cdi ->
+                           produceConfigurationValueSupplier(cdi.select(InjectionPoint.class).get(),
+                                                             suppliedType,
+                                                             this.resolver));
+          }
+        }
+        if (!this.configurationValueCompletionStageTypes.isEmpty()) {
+          ExecutorService executor = this.asynchronousResolutionExecutor;
+          if (executor == null) {
+            executor = createAsynchronousResolutionExecutor();
+            this.asynchronousResolutionExecutor = executor;
+          }
+          final ExecutorService stageExecutor = executor;
+          for (final Type stageType : this.configurationValueCompletionStageTypes) {
+            final Type completedType = getCompletedType(stageType);
+            assert completedType != null;
+            if (types.contains(completedType)) {
+              event.addBean()
+                .addType(stageType)
+                .addQualifiers(new ConfigurationCoordinates.Literal(),
+                               ConfigurationValue.Literal.of(""))
+                .scope(Dependent.class)
+                .produceWith(cdi ->
+                             produceConfigurationValueCompletionStage(cdi.select(InjectionPoint.class).get(),
+                                                                      completedType,
+                                                                      this.resolver,
+                                                                      stageExecutor));
+            }
+          }
+        }
+        if (!this.configurationValueDelimitedTypes.isEmpty() && types.contains(String.class)) {
+          final DelimitedConfigurationValues delimitedValues = new DelimitedConfigurationValues(this.resolver);
+          for (final Type delimitedType : this.configurationValueDelimitedTypes) {
+            if (DelimitedConfigurationValues.isSupported(delimitedType, types)) {
+              event.addBean()
+                .addType(delimitedType)
+                .addQualifiers(new ConfigurationCoordinates.Literal(),
+                               ConfigurationValue.Literal.of(""))
+                .scope(Dependent.class)
+                .produceWith(cdi ->
+                             produceDelimitedConfigurationValue(cdi.select(InjectionPoint.class).get(),
+                                                                delimitedType,
+                                                                delimitedValues));
+            }
+          }
+        }
+        if (!this.configurationValueStreamingTypes.isEmpty() && types.contains(String.class)) {
+          final StreamingConfigurationValues streamingValues =
+            new StreamingConfigurationValues(this.resolver,
+                                             Integer.getInteger(PROPERTY_PREFIX + "streaming.maximumCopiedSize",
+                                                                StreamingConfigurationValues.DEFAULT_MAXIMUM_COPIED_SIZE).intValue(),
+                                             Long.getLong(PROPERTY_PREFIX + "streaming.checkInterval",
+                                                          StreamingConfigurationValues.DEFAULT_CHECK_INTERVAL).longValue());
+          for (final Type streamingType : this.configurationValueStreamingTypes) {
+            event.addBean()
+              .addType(streamingType)
+              .addQualifiers(new ConfigurationCoordinates.Literal(),
+                             ConfigurationValue.Literal.of(""))
+              .scope(Dependent.class)
+              .produceWith(cdi ->
+                           produceStreamingConfigurationValue(cdi.select(InjectionPoint.class).get(),
+                                                              streamingType,
+                                                              streamingValues))
+              .disposeWith((value, cdi) -> this.close(value));
+          }
+        }
+        for (final Type optionalType : this.configurationValueOptionalTypes) {
+          final Type valueType = getOptionalConversionType(optionalType, types);
+          if (valueType != null) {
+            event.addBean()
+              .addType(optionalType)
+              .addQualifiers(new ConfigurationCoordinates.Literal(),
+                             ConfigurationValue.Literal.of(""))
+              .scope(Dependent.class)
+              .produceWith(cdi ->
+                           produceOptionalConfigurationValue(cdi.select(InjectionPoint.class).get(),
+                                                             optionalType,
+                                                             valueType,
+                                                             this.resolver));
+          }
+        }
+        for (final Class<?> handleType : PrimitiveConfigurationValue.getHandleTypes()) {
+          final Type handledType = PrimitiveConfigurationValue.getHandledType(handleType, types);
+          if (handledType != null) {
+            event.addBean()
+              .addType(handleType)
+              .addQualifiers(new ConfigurationCoordinates.Literal(),
+                             ConfigurationValue.Literal.of(""))
+              .scope(Dependent.class)
+              .produceWith(cdi ->
+                           producePrimitiveConfigurationValue(cdi.select(InjectionPoint.class).get(),
+                                                              handleType,
+                                                              handledType,
+                                                              this.resolver));
+          }
+        }
+        for (final Type mapType : this.configurationValueMapTypes) {
+          final Type valueType = getMapValueType(mapType);
+          assert valueType != null;
+          if (types.contains(valueType)) {
+            event.addBean()
+              .addType(mapType)
+              .addQualifiers(new ConfigurationCoordinates.Literal(),
+                             ConfigurationValue.Literal.of(""))
+              .scope(Dependent.class)
+              .produceWith(cdi ->
+                           produceConfigurationValueMap(cdi.select(InjectionPoint.class).get(),
+                                                        valueType,
+                                                        this.resolver));
+          }
+        }
+      }
+
+      // For each type of Configured-qualified injection point, add a
+      // producer that binds objects of that type.  Note that the
+      // qualifiers are nonbinding.
+      for (final Type configuredType : this.configuredTypes) {
+        if (!(configuredType instanceof Class)) {
+          event.addDefinitionError(new IllegalArgumentException(configuredType.getTypeName() +
+                                                                 " is not a class and cannot be bound"));
+          continue;
+        }
+        try {
+          ConfigurationBinder.of((Class<?>)configuredType);
+        } catch (final IllegalArgumentException exception) {
+          event.addDefinitionError(exception);
+          continue;
+        }
+        event.addBean()
+          .addType(configuredType)
+          .addQualifiers(new ConfigurationCoordinates.Literal(),
+                         Configured.Literal.INSTANCE)
+          .scope(Dependent.class)
+          .produceWith(cdi ->
+                       produceConfiguredObject(cdi.select(InjectionPoint.class).get(),
+                                               this.resolver,
+                                               this.configuredProperties));
+      }
+
+      // For each configuration interface whose condition, if any, is
+      // satisfied, add a bean that implements it.
+      for (final AnnotatedType<?> configurationInterface : this.configurationInterfaces) {
+        final ConfigurationCondition condition = configurationInterface.getAnnotation(ConfigurationCondition.class);
+        if (condition != null &&
+            !isSatisfied(condition, configurationInterface, configurations.getConfigurationCoordinates(), this.resolver)) {
+          if (this.logger.isLoggable(Level.FINE)) {
+            this.logger.logp(Level.FINE, cn, mn, "Skipping {0} because {1} is not satisfied",
+                             new Object[] { configurationInterface, condition });
+          }
+          continue;
+        }
+        final Map<Method, ConfigurationValueResolver.Key> keys;
+        try {
+          keys = getConfigurationInterfaceKeys(configurationInterface, configurations.getConfigurationCoordinates());
+        } catch (final IllegalArgumentException | IllegalStateException exception) {
+          event.addDefinitionError(exception);
+          continue;
+        }
+        final Class<?> javaClass = configurationInterface.getJavaClass();
+        event.addBean()
+          .types(javaClass, Object.class)
+          .scope(Singleton.class)
+          .createWith(cc -> ConfigurationInterfaceHandler.newInstance(javaClass, keys, this.resolver));
+      }
+
+      // Add a ConfigurationLookup as a Singleton-scoped bean, for
+      // programmatic lookup with precompiled ConfigurationKeys.
+      final ConfigurationLookup configurationLookup =
+        new ConfigurationLookup(this.resolver, configurations.getConfigurationCoordinates());
+      event.addBean()
+        .types(ConfigurationLookup.class, Object.class)
+        .scope(Singleton.class)
+        .createWith(cc -> configurationLookup);
+      
+    }
+
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+  /**
+   * {@linkplain Observes Observes} the {@link
+   * AfterDeploymentValidation} event and starts {@linkplain
+   * Pollable#poll() polling} every {@link Pollable} that can be
+   * found.
+   *
+   * <p>{@link Pollable}s are located using the {@link ServiceLoader}
+   * mechanism.  If the {@link Configurations} in use is itself a
+   * {@link Pollable}, or is a {@link CompositeConfigurations} any of
+   * whose delegates are {@link Pollable}s, they are polled as well.
+   * If there are no {@link Pollable}s, no polling thread is
+   * created.</p>
+   *
+   * <p>All {@link Pollable}s share a single daemon thread.  If the
+   * {@link Configurations} in use is {@linkplain SharedConfigurations
+   * shared} with other containers, the {@link Pollable}s it is made
+   * of are instead polled once on behalf of all of those containers,
+   * and each of them is told about every change.  The
+   * minimum and maximum intervals between polls of a given {@link
+   * Pollable}, in milliseconds, may be set with the {@code
+   * org.microbean.configuration.cdi.polling.minimumInterval} and
+   * {@code org.microbean.configuration.cdi.polling.maximumInterval}
+   * system properties (defaulting to {@code 1000} and {@code 60000}
+   * respectively).  The maximum fraction of the polling thread's
+   * time that may be spent polling may be set, in percent, with the
+   * {@code org.microbean.configuration.cdi.polling.dutyCycle} system
+   * property (defaulting to {@code 5}).</p>
+   *
+   * @param event the {@link AfterDeploymentValidation} event being
+   * observed; if {@code null}, then no action will be taken
+   *
+   * @see PollingScheduler
+   *
+   * @see #stopPolling()
+   */
+  private final void startPolling(@Observes final AfterDeploymentValidation event) {
+    final String cn = this.getClass().getName();
+    final String mn = "startPolling";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn, event);
+    }
+    if (event != null) {
+      final Collection<Pollable> configurationsPollables = new ArrayList<>();
+      final Configurations configurations = this.getConfigurations();
+      if (configurations instanceof Pollable) {
+        configurationsPollables.add((Pollable)configurations);
+      } else if (configurations instanceof CompositeConfigurations) {
+        for (Configurations delegate : ((CompositeConfigurations)configurations).getDelegates()) {
+          if (delegate instanceof GuardedConfigurations) {
+            delegate = ((GuardedConfigurations)delegate).getDelegate();
+          }
+          if (delegate instanceof Pollable) {
+            configurationsPollables.add((Pollable)delegate);
+          }
+        }
+      }
+      final Collection<Pollable> pollables = new ArrayList<>();
+      final SharedConfigurations.Lease lease = this.configurationsLease;
+      if (lease == null) {
+        pollables.addAll(configurationsPollables);
+      } else {
+        // Every container sharing the Configurations sees the same
+        // Pollables; poll them once and tell all of them.
+        this.sharedPollingScheduler = lease.startPolling(configurationsPollables, this::configurationsChanged, this::createPollingScheduler);
+      }
+      // Pollables found by the ServiceLoader are new instances
+      // belonging to this container alone.
+      for (final Pollable pollable : ServiceLoader.load(Pollable.class)) {
+        if (pollable != null) {
+          pollables.add(pollable);
+        }
+      }
+      if (!pollables.isEmpty()) {
+        final PollingScheduler pollingScheduler = this.createPollingScheduler(this::configurationsChanged);
+        for (final Pollable pollable : pollables) {
+          pollingScheduler.add(pollable);
+        }
+        this.pollingScheduler = pollingScheduler;
+      }
+    }
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+  /**
+   * Creates a new {@link PollingScheduler} configured from the {@code
+   * org.microbean.configuration.cdi.polling.*} system properties.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param changeListener the {@link Consumer} the new {@link
+   * PollingScheduler} will notify; must not be {@code null}
+   *
+   * @return a new, non-{@code null} {@link PollingScheduler}
+   *
+   * @see #startPolling(AfterDeploymentValidation)
+   */
+  private final PollingScheduler createPollingScheduler(final Consumer<? super Pollable> changeListener) {
+    return new PollingScheduler(this.logger,
+                                Long.getLong(PROPERTY_PREFIX + "polling.minimumInterval", 1000L).longValue(),
+                                Long.getLong(PROPERTY_PREFIX + "polling.maximumInterval", 60000L).longValue(),
+                                Integer.getInteger(PROPERTY_PREFIX + "polling.dutyCycle", 5).intValue() / 100D,
+                                changeListener);
+  }
+
+  /**
+   * {@linkplain Observes Observes} the {@link
+   * AfterDeploymentValidation} event and converts the {@linkplain
+   * ConfigurationValue#defaultValue() default value} of every {@link
+   * ConfigurationValue}-qualified injection point, {@linkplain
+   * AfterDeploymentValidation#addDeploymentProblem(Throwable)
+   * reporting a deployment problem} for each one that cannot be
+   * converted.
+   *
+   * <p>Converted default values are retained by the {@link
+   * ConfigurationValueResolver} in use, so they are not converted
+   * again when they are injected.</p>
+   *
+   * <p>If eager resolution is enabled, this method does nothing;
+   * default values are validated as part of the work done by the
+   * {@link #resolveConfigurationValues(AfterDeploymentValidation)}
+   * method instead.</p>
+   *
+   * @param event the {@link AfterDeploymentValidation} event being
+   * observed; if {@code null}, then no action will be taken
+   *
+   * @see ConfigurationValueResolver#getDefaultValue(ConfigurationValueResolver.Key)
+   *
+   * @see #resolveConfigurationValues(AfterDeploymentValidation)
+   */
+  private final void validateDefaultValues(@Observes final AfterDeploymentValidation event) {
+    final String cn = this.getClass().getName();
+    final String mn = "validateDefaultValues";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn, event);
+    }
+    if (event != null && !Boolean.getBoolean(PROPERTY_PREFIX + "resolution.eager") && this.getConfigurations() != null) {
+      assert this.resolver != null;
+      final Set<Type> conversionTypes = this.configurations.getConversionTypes();
+      if (conversionTypes != null && !conversionTypes.isEmpty()) {
+        for (final Entry<ConfigurationValueResolver.Key, InjectionPoint> entry : this.getConfigurationValueInjectionPoints()) {
+          final ConfigurationValueResolver.Key key = entry.getKey();
+          final String defaultValue = key.getMetadata().getDefaultValue();
+          if (defaultValue != null && conversionTypes.contains(key.getType())) {
+            try {
+              this.resolver.getDefaultValue(key);
+            } catch (final RuntimeException exception) {
+              event.addDeploymentProblem(new ConfigurationException("The default value (\"" + defaultValue +
+                                                                    "\") for the configuration value injected into " +
+                                                                    entry.getValue() +
+                                                                    " could not be converted to " +
+                                                                    key.getType().getTypeName(),
+                                                                    exception));
+            }
+          }
+        }
+      }
+    }
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+  /**
+   * {@linkplain Observes Observes} the {@link
+   * AfterDeploymentValidation} event and, if the {@code
+   * org.microbean.configuration.cdi.resolution.eager} system property
+   * is {@code true}, resolves the configuration value required by
+   * every {@link ConfigurationValue}-qualified injection point, in
+   * parallel.
+   *
+   * <p>The configuration values are divided into one partition per
+   * thread of a short-lived {@link ForkJoinPool}, and each partition
+   * is resolved as a {@linkplain
+   * ConfigurationValueResolver#resolveAll(Collection, Map) batch}, so
+   * that slow configuration sources are consulted concurrently and,
+   * when the {@link Configurations} in use is a {@link
+   * CompositeConfigurations}, each of its delegates is consulted as
+   * few times as possible.</p>
+   *
+   * <p>Every configuration value that cannot be converted, and every
+   * configuration value that is absent and has no {@linkplain
+   * ConfigurationValue#defaultValue() default value} and is not
+   * injected only as an {@linkplain #getOptionalValueType(Type)
+   * optional}, is {@linkplain
+   * AfterDeploymentValidation#addDeploymentProblem(Throwable) reported
+   * as a deployment problem}, so that all such problems are reported
+   * together rather than one at a time as the affected beans are
+   * created.</p>
+   *
+   * <p>Only if the {@code
+   * org.microbean.configuration.cdi.cache.maximumSize} system
+   * property is also set to a positive number are the configuration
+   * values that are resolved successfully cached, so that the first
+   * injection of each does not incur the cost of resolving it.
+   * Caching is not turned on implicitly, because it changes what
+   * injections see when the configuration sources change; without
+   * it, eager resolution only validates, every injection resolves
+   * its configuration value again, and a message saying so is logged
+   * at {@link Level#INFO}.</p>
+   *
+   * <p>The time taken is logged at {@link Level#FINE}.</p>
+   *
+   * @param event the {@link AfterDeploymentValidation} event being
+   * observed; if {@code null}, then no action will be taken
+   *
+   * @see ConfigurationValueResolver#resolveAll(Collection, Map)
+   */
+  private final void resolveConfigurationValues(@Observes final AfterDeploymentValidation event) {
+    final String cn = this.getClass().getName();
+    final String mn = "resolveConfigurationValues";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn, event);
+    }
+    if (event != null && Boolean.getBoolean(PROPERTY_PREFIX + "resolution.eager") && this.getConfigurations() != null) {
+      final ConfigurationValueResolver resolver = this.resolver;
+      assert resolver != null;
+      final Set<Type> conversionTypes = this.configurations.getConversionTypes();
+      if (conversionTypes != null && !conversionTypes.isEmpty() && !this.configurationValueInjectionPoints.isEmpty()) {
+        if (resolver.getValueCache().getMaximumSize() <= 0 && this.logger.isLoggable(Level.INFO)) {
+          this.logger.logp(Level.INFO, cn, mn,
+                           "Configuration values are not cached, so eager resolution only validates them; set the " +
+                           PROPERTY_PREFIX + "cache.maximumSize system property to a positive number to cache them as well");
+        }
+        final long start = System.nanoTime();
+        final List<Entry<ConfigurationValueResolver.Key, InjectionPoint>> entries = new ArrayList<>();
+        for (final Entry<ConfigurationValueResolver.Key, InjectionPoint> entry : this.getConfigurationValueInjectionPoints()) {
+          if (conversionTypes.contains(entry.getKey().getType())) {
+            entries.add(entry);
+          }
+        }
+        final List<ConfigurationValueResolver.Key> keys = new ArrayList<>(entries.size());
+        for (final Entry<ConfigurationValueResolver.Key, InjectionPoint> entry : entries) {
+          keys.add(entry.getKey());
+        }
+        final Map<ConfigurationValueResolver.Key, RuntimeException> problems = new ConcurrentHashMap<>();
+        final Map<ConfigurationValueResolver.Key, Object> values = new HashMap<>();
+        final ForkJoinPool pool = new ForkJoinPool();
+        try {
+          final int size = keys.size();
+          final int partitionSize = Math.max(1, (size + pool.getParallelism() - 1) / pool.getParallelism());
+          final List<ForkJoinTask<Map<ConfigurationValueResolver.Key, Object>>> tasks = new ArrayList<>();
+          for (int i = 0; i < size; i += partitionSize) {
+            final List<ConfigurationValueResolver.Key> partition = keys.subList(i, Math.min(size, i + partitionSize));
+            tasks.add(pool.submit(() -> resolver.resolveAll(partition, problems)));
+          }
+          for (final ForkJoinTask<Map<ConfigurationValueResolver.Key, Object>> task : tasks) {
+            values.putAll(task.join());
+          }
+        } finally {
+          pool.shutdown();
+        }
+        // Report problems on this thread.
+        for (final Entry<ConfigurationValueResolver.Key, InjectionPoint> entry : entries) {
+          final ConfigurationValueResolver.Key key = entry.getKey();
+          final Throwable problem = getResolutionProblem(key, entry.getValue(), values.get(key), problems.get(key));
+          if (problem != null) {
+            event.addDeploymentProblem(problem);
+          }
+        }
+        if (this.logger.isLoggable(Level.FINE)) {
+          this.logger.logp(Level.FINE, cn, mn,
+                           "Resolved {0} configuration values in {1} ms",
+                           new Object[] { entries.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) });
+        }
+      }
+    }
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+  /**
+   * {@linkplain Observes Observes} the {@link BeforeShutdown} event
+   * and releases everything this {@link ConfigurationsExtension}
+   * holds, in this order:
+   *
+   * <ol>
+   *
+   * <li>{@linkplain #stopPolling() polling is stopped}, so that it
+   * does not compete with writing the snapshot;</li>
+   *
+   * <li>a {@linkplain #writeSnapshot() snapshot is written}, if one
+   * was asked for, which may resolve configuration values
+   * asynchronously;</li>
+   *
+   * <li>{@linkplain #stopAsynchronousResolution() asynchronous
+   * resolution is stopped}; and</li>
+   *
+   * <li>the {@link Configurations} in use is {@linkplain
+   * #releaseConfigurations() released}, which may close the
+   * configuration sources the previous steps consult.</li>
+   *
+   * </ol>
+   *
+   * <p>These steps depend on each other, so they are performed by a
+   * single observer method rather than by several whose order would
+   * be unspecified.</p>
+   *
+   * @param event the {@link BeforeShutdown} event being observed; if
+   * {@code null}, then no action will be taken
+   */
+  private final void shutDown(@Observes final BeforeShutdown event) {
+    final String cn = this.getClass().getName();
+    final String mn = "shutDown";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn, event);
+    }
+    if (event != null) {
+      try {
+        this.stopPolling();
+        this.writeSnapshot();
+        this.stopAsynchronousResolution();
+      } finally {
+        this.releaseConfigurations();
+      }
+    }
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+  /**
+   * Shuts down the {@link ExecutorService}, if any, on which
+   * configuration values are resolved asynchronously.
+   *
+   * <p>Resolutions that are still in progress are allowed to
+   * finish.</p>
+   *
+   * @see #shutDown(BeforeShutdown)
+   *
+   * @see #installConfigurationValueProducerMethods(AfterBeanDiscovery,
+   * BeanManager)
+   */
+  private final void stopAsynchronousResolution() {
+    final String cn = this.getClass().getName();
+    final String mn = "stopAsynchronousResolution";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn);
+    }
+    final ExecutorService executor;
+    synchronized (this) {
+      executor = this.asynchronousResolutionExecutor;
+      this.asynchronousResolutionExecutor = null;
+    }
+    if (executor != null) {
+      executor.shutdown();
+    }
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+  /**
+   * Stops any polling started by the {@link
+   * #startPolling(AfterDeploymentValidation)} method, logging
+   * polling and caching statistics at {@link Level#FINE}.
+   *
+   * @see #startPolling(AfterDeploymentValidation)
+   *
+   * @see #shutDown(BeforeShutdown)
+   */
+  private final void stopPolling() {
+    final String cn = this.getClass().getName();
+    final String mn = "stopPolling";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn);
+    }
+    final PollingScheduler pollingScheduler;
+    synchronized (this) {
+      pollingScheduler = this.pollingScheduler;
+      this.pollingScheduler = null;
+    }
+    if (pollingScheduler != null) {
+      pollingScheduler.close();
+      if (this.logger.isLoggable(Level.FINE)) {
+        this.logger.logp(Level.FINE, cn, mn,
+                         "{0} polls ({1} changes) took {2} ms in total",
+                         new Object[] { pollingScheduler.getPollCount(),
+                                        pollingScheduler.getChangeCount(),
+                                        TimeUnit.NANOSECONDS.toMillis(pollingScheduler.getTotalPollNanos()) });
+      }
+    }
+    // The shared scheduler is stopped when the last lease on the
+    // shared Configurations is released; only report on it here.
+    final PollingScheduler sharedPollingScheduler = this.sharedPollingScheduler;
+    this.sharedPollingScheduler = null;
+    if (sharedPollingScheduler != null && this.logger.isLoggable(Level.FINE)) {
+      this.logger.logp(Level.FINE, cn, mn,
+                       "{0} shared polls ({1} changes) took {2} ms in total",
+                       new Object[] { sharedPollingScheduler.getPollCount(),
+                                      sharedPollingScheduler.getChangeCount(),
+                                      TimeUnit.NANOSECONDS.toMillis(sharedPollingScheduler.getTotalPollNanos()) });
+    }
+    final ConfigurationValueResolver resolver = this.resolver;
+    if (resolver != null && this.logger.isLoggable(Level.FINE)) {
+      this.logger.logp(Level.FINE, cn, mn, "Configuration value cache: {0}", resolver.getValueCache());
+    }
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+  /**
+   * Creates the {@link ConfigurationValueResolver} that will resolve
+   * configuration values using the supplied {@link Configurations},
+   * as tuned by the {@code
+   * org.microbean.configuration.cdi.cache.maximumSize} and {@code
+   * org.microbean.configuration.cdi.resolution.deadline} system
+   * properties, and {@linkplain
+   * #readSnapshot(ConfigurationValueResolver) preloads it} from the
+   * snapshot, if any.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param configurations the {@link Configurations} to use; must not
+   * be {@code null}
+   *
+   * @return a new, non-{@code null} {@link
+   * ConfigurationValueResolver}
+   *
+   * @exception NullPointerException if {@code configurations} is
+   * {@code null}
+   *
+   * @see #getConfigurations()
+   */
+  final ConfigurationValueResolver createResolver(final Configurations configurations) {
+    final long deadline = Long.getLong(PROPERTY_PREFIX + "resolution.deadline", 0L).longValue();
+    final ExecutorService executor;
+    if (deadline > 0L) {
+      executor = createAsynchronousResolutionExecutor();
+      this.asynchronousResolutionExecutor = executor;
+    } else {
+      executor = null;
+    }
+    final ConfigurationValueResolver resolver =
+      new ConfigurationValueResolver(configurations,
+                                     Integer.getInteger(PROPERTY_PREFIX + "cache.maximumSize",
+                                                        ConfigurationValueResolver.DEFAULT_MAXIMUM_CACHE_SIZE).intValue(),
+                                     Math.max(0L, deadline),
+                                     executor);
+    this.readSnapshot(resolver);
+    return resolver;
+  }
+
+  /**
+   * Preloads the supplied {@link ConfigurationValueResolver} with the
+   * configuration values recorded in the snapshot named by the {@code
+   * org.microbean.configuration.cdi.snapshot.file} system property,
+   * if that property is set and the snapshot exists and is still
+   * valid.
+   *
+   * <p>Preloaded values live in the {@link
+   * ConfigurationValueResolver}'s value cache, so if caching is not
+   * enabled the snapshot is ignored, without being read, and a
+   * warning is logged.</p>
+   *
+   * <p>Problems reading the snapshot are logged, not thrown; the
+   * configuration values will simply be resolved as usual.</p>
+   *
+   * @param resolver the {@link ConfigurationValueResolver} to
+   * preload; must not be {@code null}
+   *
+   * @see ConfigurationValueSnapshot#read(Path, Configurations,
+   * ClassLoader)
+   */
+  private final void readSnapshot(final ConfigurationValueResolver resolver) {
+    final String cn = this.getClass().getName();
+    final String mn = "readSnapshot";
+    final String snapshotFile = System.getProperty(PROPERTY_PREFIX + "snapshot.file");
+    if (snapshotFile != null && resolver.getValueCache().getMaximumSize() <= 0) {
+      if (this.logger.isLoggable(Level.WARNING)) {
+        this.logger.logp(Level.WARNING, cn, mn,
+                         "Ignoring snapshot {0} because configuration values are not cached; set the " +
+                         PROPERTY_PREFIX + "cache.maximumSize system property to a positive number to use it",
+                         snapshotFile);
+      }
+    } else if (snapshotFile != null) {
+      final long start = System.nanoTime();
+      Map<ConfigurationValueResolver.Key, Object> values = null;
+      try {
+        values = ConfigurationValueSnapshot.read(Paths.get(snapshotFile),
+                                                 resolver.getConfigurations(),
+                                                 Thread.currentThread().getContextClassLoader());
+      } catch (final IOException | RuntimeException exception) {
+        if (this.logger.isLoggable(Level.WARNING)) {
+          this.logger.logp(Level.WARNING, cn, mn, "Could not read snapshot " + snapshotFile, exception);
+        }
+      }
+      if (values != null) {
+        for (final Entry<ConfigurationValueResolver.Key, Object> entry : values.entrySet()) {
+          final Object value = entry.getValue();
+          if (value != null) {
+            resolver.preload(entry.getKey(), value);
+          }
+        }
+      }
+      if (this.logger.isLoggable(Level.FINE)) {
+        this.logger.logp(Level.FINE, cn, mn,
+                         values == null ? "No valid snapshot at {0} ({1} ms)" : "Preloaded {2} values from {0} in {1} ms",
+                         new Object[] { snapshotFile,
+                                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                                        values == null ? 0 : values.size() });
+      }
+    }
+  }
+
+  /**
+   * If the {@code org.microbean.configuration.cdi.snapshot.file}
+   * system property is set and caching is enabled, writes a snapshot
+   * of the configuration values required by every {@link
+   * ConfigurationValue}-qualified injection point to the file it
+   * names.
+   *
+   * <p>On the next boot, if none of the raw configuration values on
+   * which the snapshot depends has changed, the converted
+   * configuration values it contains are used to preload the value
+   * cache, so they need not be resolved and converted again.
+   * Otherwise the snapshot is discarded.  If caching is not enabled
+   * there is no value cache to preload, so no snapshot is written;
+   * see {@link #readSnapshot(ConfigurationValueResolver)}.</p>
+   *
+   * <p>Problems writing the snapshot are logged, not thrown.</p>
+   *
+   * @see ConfigurationValueSnapshot
+   *
+   * @see #shutDown(BeforeShutdown)
+   */
+  private final void writeSnapshot() {
+    final String cn = this.getClass().getName();
+    final String mn = "writeSnapshot";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn);
+    }
+    final String snapshotFile = System.getProperty(PROPERTY_PREFIX + "snapshot.file");
+    final ConfigurationValueResolver resolver = this.resolver;
+    if (snapshotFile != null && resolver != null && resolver.getValueCache().getMaximumSize() > 0) {
+      final Set<Type> conversionTypes = resolver.getConfigurations().getConversionTypes();
+      final Map<ConfigurationValueResolver.Key, Object> values = new LinkedHashMap<>();
+      for (final Entry<ConfigurationValueResolver.Key, InjectionPoint> entry : this.getConfigurationValueInjectionPoints()) {
+        final ConfigurationValueResolver.Key key = entry.getKey();
+        if (conversionTypes != null && conversionTypes.contains(key.getType())) {
+          try {
+            final Object value = resolver.resolve(key);
+            if (value != null) {
+              values.put(key, value);
+            }
+          } catch (final RuntimeException exception) {
+            // Leave it out; it will fail in the same way next time.
+            if (this.logger.isLoggable(Level.FINE)) {
+              this.logger.logp(Level.FINE, cn, mn, exception.getMessage(), exception);
+            }
+          }
+        }
+      }
+      try {
+        final int count = ConfigurationValueSnapshot.write(Paths.get(snapshotFile), resolver.getConfigurations(), values);
+        if (this.logger.isLoggable(Level.FINE)) {
+          this.logger.logp(Level.FINE, cn, mn, "Wrote {0} values to {1}", new Object[] { count, snapshotFile });
+        }
+      } catch (final IOException | RuntimeException exception) {
+        if (this.logger.isLoggable(Level.WARNING)) {
+          this.logger.logp(Level.WARNING, cn, mn, "Could not write snapshot " + snapshotFile, exception);
+        }
+      }
+    }
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+  /**
+   * Releases any {@link Configurations} shared with other
+   * containers.
+   *
+   * <p>If no other container is still using the {@link
+   * Configurations}, any {@link GuardedConfigurations} it contains is
+   * {@linkplain GuardedConfigurations#close() closed}, releasing the
+   * threads it uses to enforce deadlines.</p>
+   *
+   * @see SharedConfigurations
+   *
+   * @see #guard(Configurations)
+   *
+   * @see #shutDown(BeforeShutdown)
+   */
+  private final void releaseConfigurations() {
+    final String cn = this.getClass().getName();
+    final String mn = "releaseConfigurations";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn);
+    }
+    final SharedConfigurations.Lease lease;
+    synchronized (this) {
+      lease = this.configurationsLease;
+      this.configurationsLease = null;
+    }
+    if (lease == null || lease.release()) {
+      final Configurations configurations = this.configurations;
+      if (configurations instanceof CompositeConfigurations) {
+        for (final Configurations delegate : ((CompositeConfigurations)configurations).getDelegates()) {
+          if (delegate instanceof GuardedConfigurations) {
+            this.close(delegate);
+          }
+        }
+      }
+    }
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+  /**
+   * Called on the polling thread whenever a {@link Pollable} reports
+   * that it has changed, and discards everything that has been
+   * remembered about the presence or absence of configuration
+   * values.
+   *
+   * @param pollable the {@link Pollable} that changed; must not be
+   * {@code null}
+   *
+   * @see #startPolling(AfterDeploymentValidation)
+   */
+  private final void configurationsChanged(final Pollable pollable) {
+    final String cn = this.getClass().getName();
+    final String mn = "configurationsChanged";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn, pollable);
+    }
+    if (this.logger.isLoggable(Level.FINE)) {
+      this.logger.logp(Level.FINE, cn, mn, "{0} changed", pollable);
+    }
+    final ConfigurationValueResolver resolver = this.resolver;
+    if (resolver != null) {
+      resolver.invalidate();
+    }
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns a {@link ConfigurationCoordinates} qualifier containing
+   * every {@link ConfigurationCoordinate} in the supplied {@link
+   * ConfigurationCoordinates}, followed by one for each entry in the
+   * supplied {@link Map} of application-wide configuration
+   * coordinates whose name is not already present.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>This method depends only on its parameters, not on any
+   * container lifecycle event, so it can be used wherever qualifiers
+   * are computed.</p>
+   *
+   * @param configurationCoordinates the {@link
+   * ConfigurationCoordinates} present at an injection point; may be
+   * {@code null}
+   *
+   * @param coordinatesMap the application's {@linkplain
+   * Configurations#getConfigurationCoordinates() configuration
+   * coordinates}; may be {@code null}
+   *
+   * @return a non-{@code null} {@link ConfigurationCoordinates.Literal}
+   *
+   * @see #installConfigurationCoordinateQualifiers(ProcessInjectionPoint,
+   * BeanManager)
+   */
+  static final ConfigurationCoordinates.Literal getConfigurationCoordinates(final ConfigurationCoordinates configurationCoordinates,
+                                                                            final Map<String, String> coordinatesMap) {
+    final ConfigurationCoordinates.Literal literal = new ConfigurationCoordinates.Literal(configurationCoordinates);
+    if (coordinatesMap != null && !coordinatesMap.isEmpty()) {
+      final Set<Entry<String, String>> entries = coordinatesMap.entrySet();
+      assert entries != null;
+      assert !entries.isEmpty();
+      for (final Entry<String, String> entry : entries) {
+        assert entry != null;
+        final String name = entry.getKey();
+        assert name != null;
+        if (!literal.containsKey(name)) {
+          final String value = entry.getValue();
+          assert value != null;
+          literal.add(new ConfigurationCoordinate.Literal(name, value));
+        }
+      }
+    }
+    return literal;
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link
+   * ConfigurationCondition}, found on the supplied {@link Annotated},
+   * is satisfied.
+   *
+   * <p>The configuration value the {@link ConfigurationCondition}
+   * names is located exactly as it would be for a {@link
+   * ConfigurationValue}-qualified injection point on the supplied
+   * {@link Annotated}, and is compared, as a {@link String}, to its
+   * {@linkplain ConfigurationCondition#havingValue() required
+   * value}.</p>
+   *
+   * @param condition the {@link ConfigurationCondition} to evaluate;
+   * must not be {@code null}
+   *
+   * @param annotated the {@link Annotated} bearing the {@link
+   * ConfigurationCondition}; must not be {@code null}
+   *
+   * @param coordinatesMap the application's {@linkplain
+   * Configurations#getConfigurationCoordinates() configuration
+   * coordinates}; may be {@code null}
+   *
+   * @param resolver the {@link ConfigurationValueResolver} to use;
+   * must not be {@code null}
+   *
+   * @return {@code true} if the {@link ConfigurationCondition} is
+   * satisfied; {@code false} otherwise
+   *
+   * @exception NullPointerException if {@code condition}, {@code
+   * annotated} or {@code resolver} is {@code null}
+   *
+   * @see ConfigurationCondition
+   */
+  static final boolean isSatisfied(final ConfigurationCondition condition,
+                                   final Annotated annotated,
+                                   final Map<String, String> coordinatesMap,
+                                   final ConfigurationValueResolver resolver) {
+    Objects.requireNonNull(condition);
+    Objects.requireNonNull(annotated);
+    Objects.requireNonNull(resolver);
+    final ConfigurationCoordinates.Literal conditionCoordinates = new ConfigurationCoordinates.Literal();
+    for (final ConfigurationCoordinate coordinate : condition.coordinates()) {
+      conditionCoordinates.add(coordinate);
+    }
+    final Set<Annotation> qualifiers = new HashSet<>();
+    qualifiers.add(ConfigurationValue.Literal.of(condition.value()));
+    qualifiers.add(getConfigurationCoordinates(conditionCoordinates, coordinatesMap));
+    final ConfigurationValueMetadata metadata = getMetadata(annotated, qualifiers);
+    assert metadata != null;
+    final Object value = metadata.getNames().isEmpty() ? null : resolver.resolve(metadata, String.class);
+    final boolean returnValue;
+    if (value == null) {
+      returnValue = condition.matchIfMissing();
+    } else {
+      returnValue = condition.havingValue().equals(value);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link Map} of {@link ConfigurationValueResolver.Key}s
+   * describing the configuration value to be returned by each method
+   * of the supplied {@link Configuration}-annotated interface.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>Each method is treated as though it were a {@link
+   * ConfigurationValue}-qualified injection point whose names, if not
+   * given by a {@link ConfigurationValue} annotation on the method,
+   * default to the method's name, and whose {@linkplain
+   * ConfigurationCoordinate configuration coordinates} are those on
+   * the method, then those on the interface, then the supplied
+   * application-wide ones.</p>
+   *
+   * @param configurationInterface the {@link AnnotatedType}
+   * representing the interface; must not be {@code null}
+   *
+   * @param coordinatesMap the application's {@linkplain
+   * Configurations#getConfigurationCoordinates() configuration
+   * coordinates}; may be {@code null}
+   *
+   * @return a non-{@code null} {@link Map}
+   *
+   * @exception NullPointerException if {@code configurationInterface}
+   * is {@code null}
+   *
+   * @exception IllegalArgumentException if the interface has a method
+   * that takes parameters, returns nothing or is not abstract
+   *
+   * @see ConfigurationInterfaceHandler
+   */
+  static final Map<Method, ConfigurationValueResolver.Key> getConfigurationInterfaceKeys(final AnnotatedType<?> configurationInterface,
+                                                                                        final Map<String, String> coordinatesMap) {
+    final Map<Method, ConfigurationValueResolver.Key> returnValue = new LinkedHashMap<>();
+    for (final AnnotatedMethod<?> annotatedMethod : configurationInterface.getMethods()) {
+      final Method method = annotatedMethod.getJavaMember();
+      assert method != null;
+      if (method.getDeclaringClass().equals(Object.class) || Modifier.isStatic(method.getModifiers())) {
+        continue;
+      }
+      if (method.isDefault() || method.getParameterCount() > 0 || method.getReturnType().equals(void.class)) {
+        throw new IllegalArgumentException("Configuration interface method " + method +
+                                           " must be abstract, take no parameters and return a configuration value");
+      }
+      final ConfigurationValue configurationValue = annotatedMethod.getAnnotation(ConfigurationValue.class);
+      final ConfigurationValue.Literal configurationValueLiteral;
+      if (configurationValue == null) {
+        configurationValueLiteral = ConfigurationValue.Literal.of(method.getName());
+      } else if (configurationValue.value().length <= 0) {
+        configurationValueLiteral = ConfigurationValue.Literal.of(method.getName(), configurationValue.defaultValue());
+      } else {
+        configurationValueLiteral = ConfigurationValue.Literal.of(configurationValue.value(), configurationValue.defaultValue());
+      }
+      final ConfigurationCoordinates.Literal coordinates = new ConfigurationCoordinates.Literal();
+      for (final ConfigurationCoordinate coordinate : annotatedMethod.getAnnotations(ConfigurationCoordinate.class)) {
+        coordinates.add(coordinate);
+      }
+      for (final ConfigurationCoordinate coordinate : configurationInterface.getAnnotations(ConfigurationCoordinate.class)) {
+        if (!coordinates.containsKey(coordinate.name())) {
+          coordinates.add(coordinate);
+        }
+      }
+      final Set<Annotation> qualifiers = new HashSet<>();
+      qualifiers.add(configurationValueLiteral);
+      qualifiers.add(getConfigurationCoordinates(coordinates, coordinatesMap));
+      final ConfigurationValueMetadata metadata = getMetadata(annotatedMethod, qualifiers);
+      assert metadata != null;
+      returnValue.put(method, new ConfigurationValueResolver.Key(metadata, method.getGenericReturnType()));
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link Supplier} that will use the supplied {@link
+   * ConfigurationValueResolver} to resolve the configuration value
+   * required by the supplied {@link InjectionPoint}, whose type is
+   * {@link Supplier Supplier&lt;T&gt;}, the first time its {@link
+   * Supplier#get()} method is called.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param injectionPoint the {@link InjectionPoint}; must not be
+   * {@code null}
+   *
+   * @param suppliedType the {@link Type} represented by {@code T}
+   * above; must not be {@code null}
+   *
+   * @param resolver the {@link ConfigurationValueResolver} to use;
+   * must not be {@code null}
+   *
+   * @return a non-{@code null} {@link Supplier}
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   *
+   * @see ConfigurationValueSupplier
+   */
+  private static final Supplier<?> produceConfigurationValueSupplier(final InjectionPoint injectionPoint,
+                                                                     final Type suppliedType,
+                                                                     final ConfigurationValueResolver resolver) {
+    Objects.requireNonNull(injectionPoint);
+    final ConfigurationValueMetadata metadata = getMetadata(injectionPoint);
+    assert metadata != null : "metadata == null";
+    return new ConfigurationValueSupplier<>(resolver, metadata, suppliedType);
+  }
+
+  /**
+   * Returns the configuration value required by the supplied {@link
+   * InjectionPoint}, parsed from a comma-separated string into an
+   * object of the supplied {@link Type}.
+   *
+   * <p>This method may return {@code null} if the configuration value
+   * is absent and has no default value.</p>
+   *
+   * @param injectionPoint the {@link InjectionPoint} describing the
+   * site of injection; must not be {@code null}
+   *
+   * @param delimitedType the {@code int[]}, {@code long[]}, {@code
+   * String[]}, {@link List List&lt;T&gt;} or {@link Set
+   * Set&lt;T&gt;} {@link Type} to produce; must not be {@code null}
+   *
+   * @param delimitedValues the {@link DelimitedConfigurationValues}
+   * that will do the actual parsing; must not be {@code null}
+   *
+   * @return the parsed configuration value, or {@code null}
+   *
+   * @exception NullPointerException if {@code injectionPoint} or
+   * {@code delimitedValues} is {@code null}
+   *
+   * @exception ConfigurationException if the configuration value, or
+   * one of its elements, could not be converted
+   *
+   * @see DelimitedConfigurationValues#get(ConfigurationValueResolver.Key)
+   */
+  private static final Object produceDelimitedConfigurationValue(final InjectionPoint injectionPoint,
+                                                                 final Type delimitedType,
+                                                                 final DelimitedConfigurationValues delimitedValues) {
+    Objects.requireNonNull(injectionPoint);
+    final ConfigurationValueMetadata metadata = getMetadata(injectionPoint);
+    assert metadata != null : "metadata == null";
+    return delimitedValues.get(new ConfigurationValueResolver.Key(metadata, delimitedType));
+  }
+
+  /**
+   * Returns a new {@link java.io.Reader}, {@link java.io.InputStream},
+   * {@link java.nio.channels.ReadableByteChannel} or read-only {@link
+   * java.nio.ByteBuffer} over the content of the configuration value
+   * required by the supplied {@link InjectionPoint}.
+   *
+   * <p>This method may return {@code null} if the configuration value
+   * is absent and has no default value.</p>
+   *
+   * @param injectionPoint the {@link InjectionPoint} describing the
+   * site of injection; must not be {@code null}
+   *
+   * @param streamingType the {@link Type} to produce; must be
+   * {@linkplain StreamingConfigurationValues#isSupported(Type)
+   * supported}
+   *
+   * @param streamingValues the {@link StreamingConfigurationValues}
+   * that will supply the content; must not be {@code null}
+   *
+   * @return a new object over the configuration value's content, or
+   * {@code null}
+   *
+   * @exception NullPointerException if {@code injectionPoint} or
+   * {@code streamingValues} is {@code null}
+   *
+   * @exception ConfigurationException if the content could not be
+   * read
+   *
+   * @see StreamingConfigurationValues#get(ConfigurationValueResolver.Key)
+   */
+  private static final Object produceStreamingConfigurationValue(final InjectionPoint injectionPoint,
+                                                                 final Type streamingType,
+                                                                 final StreamingConfigurationValues streamingValues) {
+    Objects.requireNonNull(injectionPoint);
+    final ConfigurationValueMetadata metadata = getMetadata(injectionPoint);
+    assert metadata != null : "metadata == null";
+    return streamingValues.get(new ConfigurationValueResolver.Key(metadata, streamingType));
+  }
+
+  /**
+   * Closes the supplied object, such as one produced by the {@link
+   * #produceStreamingConfigurationValue(InjectionPoint, Type,
+   * StreamingConfigurationValues)} method, if it is {@link
+   * AutoCloseable}, logging rather than throwing any exception that
+   * results.
+   *
+   * @param value the object to close; may be {@code null} in which
+   * case no action will be taken
+   */
+  private final void close(final Object value) {
+    final String cn = this.getClass().getName();
+    final String mn = "close";
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.entering(cn, mn, value);
+    }
+    if (value instanceof AutoCloseable) {
+      try {
+        ((AutoCloseable)value).close();
+      } catch (final Exception exception) {
+        if (this.logger.isLoggable(Level.WARNING)) {
+          this.logger.logp(Level.WARNING, cn, mn, "Could not close " + value, exception);
+        }
+      }
+    }
+    if (this.logger.isLoggable(Level.FINER)) {
+      this.logger.exiting(cn, mn);
+    }
+  }
+
+  /**
+   * Returns a {@link CompletionStage} that will be completed with the
+   * configuration value required by the supplied {@link
+   * InjectionPoint}, converted to the supplied {@link Type}, once it
+   * has been resolved on the supplied {@link ExecutorService}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>An absent configuration value with no default value completes
+   * the {@link CompletionStage} with {@code null}; one that cannot be
+   * converted completes it exceptionally with a {@link
+   * ConfigurationException}.</p>
+   *
+   * @param injectionPoint the {@link InjectionPoint} describing the
+   * site of injection; must not be {@code null}
+   *
+   * @param completedType the {@link Type} to which the configuration
+   * value should be converted; must not be {@code null}
+   *
+   * @param resolver the {@link ConfigurationValueResolver} that will
+   * do the actual value retrieval; must not be {@code null}
+   *
+   * @param executor the {@link ExecutorService} on which to resolve
+   * the configuration value; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link CompletionStage}
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   *
+   * @see ConfigurationValueResolver#resolveAsync(ConfigurationValueResolver.Key,
+   * java.util.concurrent.Executor)
+   */
+  private static final CompletionStage<?> produceConfigurationValueCompletionStage(final InjectionPoint injectionPoint,
+                                                                                   final Type completedType,
+                                                                                   final ConfigurationValueResolver resolver,
+                                                                                   final ExecutorService executor) {
+    Objects.requireNonNull(injectionPoint);
+    final ConfigurationValueMetadata metadata = getMetadata(injectionPoint);
+    assert metadata != null : "metadata == null";
+    return resolver.resolveAsync(new ConfigurationValueResolver.Key(metadata, completedType), executor);
+  }
+
+  /**
+   * Returns an optional of the supplied {@link Type} holding the
+   * configuration value required by the supplied {@link
+   * InjectionPoint}, converted to the supplied {@link Type}, or an
+   * empty optional if it is absent and has no default value.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>Unlike the {@link #produceConfigurationValue(InjectionPoint,
+   * ConfigurationValueResolver)} method, this method does not
+   * substitute a primitive type's uninitialized value for an absent
+   * configuration value.</p>
+   *
+   * @param injectionPoint the {@link InjectionPoint} describing the
+   * site of injection; must not be {@code null}
+   *
+   * @param optionalType the {@linkplain #getOptionalValueType(Type)
+   * optional type} to produce; must not be {@code null}
+   *
+   * @param valueType the {@link Type} to which the configuration
+   * value should be converted, as returned by the {@link
+   * #getOptionalConversionType(Type, Set)} method; must not be {@code
+   * null}
+   *
+   * @param resolver the {@link ConfigurationValueResolver} that will
+   * do the actual value retrieval; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link Optional}, {@link OptionalInt},
+   * {@link OptionalLong} or {@link OptionalDouble}
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   *
+   * @exception ConfigurationException if the configuration value
+   * could not be converted
+   */
+  private static final Object produceOptionalConfigurationValue(final InjectionPoint injectionPoint,
+                                                                final Type optionalType,
+                                                                final Type valueType,
+                                                                final ConfigurationValueResolver resolver) {
+    Objects.requireNonNull(injectionPoint);
+    Objects.requireNonNull(optionalType);
+    final ConfigurationValueMetadata metadata = getMetadata(injectionPoint);
+    assert metadata != null : "metadata == null";
+    return toOptional(optionalType, resolver.resolve(new ConfigurationValueResolver.Key(metadata, valueType)));
+  }
+
+  /**
+   * Returns an optional of the supplied {@link Type} holding the
+   * supplied value, or an empty one if the supplied value is {@code
+   * null}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param optionalType the {@linkplain #getOptionalValueType(Type)
+   * optional type} to return; must not be {@code null}
+   *
+   * @param value the value to hold; must be a {@link Number} if
+   * {@code optionalType} is {@link OptionalInt}, {@link OptionalLong}
+   * or {@link OptionalDouble}; may be {@code null}
+   *
+   * @return a non-{@code null} {@link Optional}, {@link OptionalInt},
+   * {@link OptionalLong} or {@link OptionalDouble}
+   */
+  static final Object toOptional(final Type optionalType, final Object value) {
+    if (OptionalInt.class.equals(optionalType)) {
+      return value == null ? OptionalInt.empty() : OptionalInt.of(((Number)value).intValue());
+    } else if (OptionalLong.class.equals(optionalType)) {
+      return value == null ? OptionalLong.empty() : OptionalLong.of(((Number)value).longValue());
+    } else if (OptionalDouble.class.equals(optionalType)) {
+      return value == null ? OptionalDouble.empty() : OptionalDouble.of(((Number)value).doubleValue());
+    } else {
+      return Optional.ofNullable(value);
+    }
+  }
+
+  /**
+   * Returns a new {@link PrimitiveConfigurationValue} of the supplied
+   * {@link Class}, such as {@link IntConfigurationValue}, that holds
+   * the configuration value required by the supplied {@link
+   * InjectionPoint}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>The configuration value is not resolved until it is first
+   * read.</p>
+   *
+   * @param injectionPoint the {@link InjectionPoint}; must not be
+   * {@code null}
+   *
+   * @param handleType the {@link Class} of the handle to create;
+   * must be one of the {@linkplain
+   * PrimitiveConfigurationValue#getHandleTypes() handle types}
+   *
+   * @param handledType the {@link Type} to which the configuration
+   * value should be converted; must not be {@code null}
+   *
+   * @param resolver the {@link ConfigurationValueResolver} to use;
+   * must not be {@code null}
+   *
+   * @return a new, non-{@code null} {@link
+   * PrimitiveConfigurationValue}
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   *
+   * @see PrimitiveConfigurationValue#getHandledType(Type, Set)
+   */
+  private static final PrimitiveConfigurationValue producePrimitiveConfigurationValue(final InjectionPoint injectionPoint,
+                                                                                      final Class<?> handleType,
+                                                                                      final Type handledType,
+                                                                                      final ConfigurationValueResolver resolver) {
+    Objects.requireNonNull(injectionPoint);
+    final ConfigurationValueMetadata metadata = getMetadata(injectionPoint);
+    assert metadata != null : "metadata == null";
+    return PrimitiveConfigurationValue.newInstance(handleType,
+                                                   resolver,
+                                                   new ConfigurationValueResolver.Key(metadata, handledType));
+  }
+
+  /**
+   * Returns an immutable {@link Map} of all the configuration values
+   * whose names begin with the name of the configuration value
+   * required by the supplied {@link InjectionPoint}, followed by a
+   * {@code .}, indexed by the remainder of their names.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>For example, if the injection point's name, after any {@link
+   * Configuration} prefix has been applied, is {@code plugins}, and
+   * configuration values named {@code plugins.a} and {@code
+   * plugins.b.c} exist, the returned {@link Map} will have the keys
+   * {@code a} and {@code b.c}.  If the injection point has several
+   * names, the first one beneath which there are any configuration
+   * values is used.  Any {@linkplain
+   * ConfigurationValue#defaultValue() default value} is ignored.</p>
+   *
+   * <p>The names are found using the {@link ConfigurationNameTrie}
+   * provided by the supplied {@link ConfigurationValueResolver}.  If
+   * caching is enabled, it is shared until the configuration sources
+   * are next found to have changed, so the cost of this method
+   * depends on the number of names returned, not on the number of
+   * names available; otherwise it is rebuilt from every name
+   * available each time, so that the {@link Map} reflects the
+   * configuration sources as they are at that moment.  Since the names
+   * are already known to exist, and are not those of any injection
+   * point, each is {@linkplain
+   * ConfigurationValueResolver#resolveName(Map, String, Type) looked
+   * up directly}, and nothing is cached for it.</p>
+   *
+   * @param injectionPoint the {@link InjectionPoint}, whose type is
+   * {@link Map Map&lt;String, T&gt;}; must not be {@code null}
+   *
+   * @param valueType the {@link Type} represented by {@code T} above;
+   * must not be {@code null}
+   *
+   * @param resolver the {@link ConfigurationValueResolver} to use;
+   * must not be {@code null}
+   *
+   * @return a non-{@code null}, immutable {@link Map}
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   *
+   * @see ConfigurationValueResolver#getNameTrie()
+   */
+  private static final Map<String, ?> produceConfigurationValueMap(final InjectionPoint injectionPoint,
+                                                                   final Type valueType,
+                                                                   final ConfigurationValueResolver resolver) {
+    final String cn = ConfigurationsExtension.class.getName();
+    final Logger logger = Logger.getLogger(cn);
+    assert logger != null;
+    final String mn = "produceConfigurationValueMap";
+    if (logger.isLoggable(Level.FINER)) {
+      logger.entering(cn, mn, new Object[] { injectionPoint, valueType, resolver });
+    }
+    Objects.requireNonNull(injectionPoint);
+    Objects.requireNonNull(valueType);
+    final ConfigurationValueMetadata metadata = getMetadata(injectionPoint);
+    assert metadata != null : "metadata == null";
+    final ConfigurationNameTrie nameTrie = resolver.getNameTrie();
+    final Map<String, String> coordinates = metadata.getConfigurationCoordinates();
+    final Map<String, Object> map = new LinkedHashMap<>();
+    for (final String root : metadata.getNames()) {
+      final List<String> names = nameTrie.getNamesBeneath(root);
+      if (!names.isEmpty()) {
+        final int prefixLength = root.length() + 1;
+        for (final String name : names) {
+          final Object value = resolver.resolveName(coordinates, name, valueType);
+          if (value != null) {
+            map.put(name.substring(prefixLength), value);
+          }
+        }
+        break;
+      }
+    }
+    final Map<String, ?> returnValue = Collections.unmodifiableMap(map);
+    if (logger.isLoggable(Level.FINER)) {
+      logger.exiting(cn, mn, returnValue);
+    }
+    return returnValue;
+  }
+
+  /**
+   * If the supplied {@link Type} represents {@link Map
+   * Map&lt;String, T&gt;}, returns the {@link Type} represented by
+   * {@code T}; otherwise returns {@code null}.
+   *
+   * @param type the {@link Type} to inspect; may be {@code null}
+   *
+   * @return the {@link Type} of the {@link Map}'s values, or {@code
+   * null}
+   */
+  static final Type getMapValueType(final Type type) {
+    if (type instanceof ParameterizedType) {
+      final ParameterizedType parameterizedType = (ParameterizedType)type;
+      if (Map.class.equals(parameterizedType.getRawType())) {
+        final Type[] typeArguments = parameterizedType.getActualTypeArguments();
+        if (typeArguments != null &&
+            typeArguments.length == 2 &&
+            String.class.equals(typeArguments[0]) &&
+            !(typeArguments[1] instanceof WildcardType)) {
+          return typeArguments[1];
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * If the supplied {@link Type} represents {@link Optional
+   * Optional&lt;T&gt;}, returns the {@link Type} represented by {@code
+   * T}; if it is {@link OptionalInt}, {@link OptionalLong} or {@link
+   * OptionalDouble}, returns the primitive {@link Class} whose values
+   * it holds; otherwise returns {@code null}.
+   *
+   * @param type the {@link Type} to inspect; may be {@code null}
+   *
+   * @return the {@link Type} of the optional value, or {@code null}
+   */
+  static final Type getOptionalValueType(final Type type) {
+    if (type instanceof ParameterizedType) {
+      final ParameterizedType parameterizedType = (ParameterizedType)type;
+      if (Optional.class.equals(parameterizedType.getRawType())) {
+        final Type[] typeArguments = parameterizedType.getActualTypeArguments();
+        if (typeArguments != null && typeArguments.length == 1 && !(typeArguments[0] instanceof WildcardType)) {
+          return typeArguments[0];
+        }
+      }
+      return null;
+    }
+    return type == null ? null : optionalPrimitiveTypes.get(type);
+  }
+
+  /**
+   * Returns the {@link Type} to which the configuration value held by
+   * an optional of the supplied {@link Type} should be converted, or
+   * {@code null} if the supplied {@link Type} is not an {@linkplain
+   * #getOptionalValueType(Type) optional type} or no suitable {@link
+   * Type} is among the supplied conversion types.
+   *
+   * <p>For {@link OptionalInt}, {@link OptionalLong} and {@link
+   * OptionalDouble}, the primitive type is preferred over its wrapper,
+   * exactly as it is for {@linkplain PrimitiveConfigurationValue
+   * primitive configuration value handles}.</p>
+   *
+   * @param type the {@link Type} to inspect; may be {@code null}
+   *
+   * @param conversionTypes the {@linkplain
+   * Configurations#getConversionTypes() conversion types} available;
+   * may be {@code null}
+   *
+   * @return the {@link Type} to convert to, or {@code null}
+   *
+   * @see PrimitiveConfigurationValue#getConversionType(Class, Set)
+   */
+  static final Type getOptionalConversionType(final Type type, final Set<? extends Type> conversionTypes) {
+    final Type valueType = getOptionalValueType(type);
+    if (valueType == null || conversionTypes == null) {
+      return null;
+    } else if (valueType instanceof Class && ((Class<?>)valueType).isPrimitive()) {
+      return PrimitiveConfigurationValue.getConversionType((Class<?>)valueType, conversionTypes);
+    } else {
+      return conversionTypes.contains(valueType) ? valueType : null;
+    }
+  }
+
+  /**
+   * Returns a {@link Configurations} that guards each configuration
+   * source of the supplied {@link Configurations} with a {@link
+   * GuardedConfigurations}, if the {@code
+   * org.microbean.configuration.cdi.source.deadline} or {@code
+   * org.microbean.configuration.cdi.source.failureThreshold} system
+   * property is positive, or else returns the supplied {@link
+   * Configurations} itself.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>The configuration sources guarded are the delegates of the
+   * supplied {@link Configurations} if it is a {@link
+   * CompositeConfigurations}, and otherwise the supplied {@link
+   * Configurations} as a whole, since the sources it consults
+   * internally are not visible.</p>
+   *
+   * <p>If guarding is in effect, the {@link Configurations} returned
+   * is a {@link CompositeConfigurations}, even if the supplied one is
+   * not, so that each configuration source, and the {@link Pollable}
+   * it may be, remains reachable through {@link
+   * CompositeConfigurations#getDelegates()}.</p>
+   *
+   * @param configurations the {@link Configurations} to guard; must
+   * not be {@code null}
+   *
+   * @return a non-{@code null} {@link Configurations}
+   *
+   * @exception NullPointerException if {@code configurations} is
+   * {@code null}
+   *
+   * @see #addConfigurations(BeforeBeanDiscovery)
+   */
+  private static final Configurations guard(final Configurations configurations) {
+    Objects.requireNonNull(configurations);
+    final long deadline = Math.max(0L, Long.getLong(PROPERTY_PREFIX + "source.deadline", 0L).longValue());
+    final int failureThreshold = Math.max(0, Integer.getInteger(PROPERTY_PREFIX + "source.failureThreshold", 0).intValue());
+    if (deadline == 0L && failureThreshold == 0) {
+      return configurations;
+    }
+    final long retryInterval = Math.max(0L, Long.getLong(PROPERTY_PREFIX + "source.retryInterval", 30000L).longValue());
+    final int maximumConcurrency =
+      Math.max(1, Integer.getInteger(PROPERTY_PREFIX + "source.maximumConcurrency",
+                                     GuardedConfigurations.DEFAULT_MAXIMUM_CONCURRENCY).intValue());
+    final List<Configurations> delegates;
+    if (configurations instanceof CompositeConfigurations) {
+      delegates = ((CompositeConfigurations)configurations).getDelegates();
+    } else {
+      delegates = Collections.singletonList(configurations);
+    }
+    final List<Configurations> guardedDelegates = new ArrayList<>(delegates.size());
+    for (final Configurations delegate : delegates) {
+      guardedDelegates.add(new GuardedConfigurations(delegate, deadline, failureThreshold, retryInterval, maximumConcurrency));
     }
+    return new CompositeConfigurations(guardedDelegates);
   }
 
   /**
-   * {@linkplain Observes Observes} the {@link AfterBeanDiscovery}
-   * event and installs a dynamic <a
-   * href="http://docs.jboss.org/cdi/spec/2.0.Beta1/cdi-spec.html#producer_method">producer
-   * method</a> for each {@link Type} found in the return value from
-   * the {@link Configurations#getConversionTypes()} method.
-   *
-   * <p>The net result is that all injection points that (a) are
-   * annotated with {@link ConfigurationValue} and (b) have a
-   * {@linkplain InjectionPoint#getType() type} that the configuration
-   * system can convert to will be handled properly.</p>
+   * If the supplied {@link Type} represents {@link CompletionStage
+   * CompletionStage&lt;T&gt;}, returns the {@link Type} represented
+   * by {@code T}; otherwise returns {@code null}.
    *
-   * @param event the {@link AfterBeanDiscovery} event being observed;
-   * if {@code null}, no action will be taken
+   * @param type the {@link Type} to inspect; may be {@code null}
    *
-   * @param beanManager the {@link BeanManager} for the current CDI
-   * container; if {@code null}, no action will be taken
+   * @return the {@link Type} with which the {@link CompletionStage}
+   * completes, or {@code null}
+   */
+  static final Type getCompletedType(final Type type) {
+    if (type instanceof ParameterizedType) {
+      final ParameterizedType parameterizedType = (ParameterizedType)type;
+      if (CompletionStage.class.equals(parameterizedType.getRawType())) {
+        final Type[] typeArguments = parameterizedType.getActualTypeArguments();
+        if (typeArguments != null && typeArguments.length == 1 && !(typeArguments[0] instanceof WildcardType)) {
+          return typeArguments[0];
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Creates and returns a new {@link ExecutorService} on which
+   * configuration values will be resolved asynchronously.
    *
-   * @see BeanManager#createBean(BeanAttributes, Class, ProducerFactory)
+   * <p>This method never returns {@code null}.</p>
    *
-   * @see BeanManager#getProducerFactory(AnnotatedMethod, Bean)
+   * <p>The {@link ExecutorService} has a fixed number of daemon
+   * threads, given by the {@code
+   * org.microbean.configuration.cdi.resolution.async.threads} system
+   * property and defaulting to the number of {@linkplain
+   * Runtime#availableProcessors() available processors}.</p>
    *
-   * @see #produceConfigurationValue(InjectionPoint, Configurations)
+   * @return a new, non-{@code null} {@link ExecutorService}
    */
-  private final void installConfigurationValueProducerMethods(@Observes final AfterBeanDiscovery event, final BeanManager beanManager) {
-    final String cn = this.getClass().getName();
-    final String mn = "installConfigurationValueProducerMethods";
-    if (this.logger.isLoggable(Level.FINER)) {
-      this.logger.entering(cn, mn, new Object[] { event, beanManager });
-    }
-    
-    if (event != null && beanManager != null) {
-
-      // Add this.configurations as a Singleton-scoped bean.
-      event.addBean()
-        .addTransitiveTypeClosure(this.configurations.getClass())
-        .createWith(cc -> this.configurations)
-        .scope(Singleton.class);
+  private static final ExecutorService createAsynchronousResolutionExecutor() {
+    final int threads = Math.max(1, Integer.getInteger(PROPERTY_PREFIX + "resolution.async.threads",
+                                                       Runtime.getRuntime().availableProcessors()).intValue());
+    return Executors.newFixedThreadPool(threads, r -> {
+        final Thread thread = new Thread(r, "microBean Configuration resolver");
+        thread.setDaemon(true);
+        return thread;
+      });
+  }
 
-      // For each conversion type, add a producer that makes objects
-      // of that type.  Note that the qualifiers are nonbinding.
-      final Set<Type> types = this.configurations.getConversionTypes();
-      if (types != null && !types.isEmpty()) {
-        for (final Type type : types) {
-          assert type != null;
-          event.addBean()
-            .addTransitiveTypeClosure(type)
-            .addQualifiers(new ConfigurationCoordinates.Literal(),
-                           ConfigurationValue.Literal.of(""))
-            .scope(Dependent.class)
-            .produceWith(cdi ->
-                         produceConfigurationValue(cdi.select(InjectionPoint.class).get(),
-                                                   cdi.select(Configurations.class).get()));
+  /**
+   * If the supplied {@link Type} represents {@link Supplier
+   * Supplier&lt;T&gt;}, returns the {@link Type} represented by {@code
+   * T}; otherwise returns {@code null}.
+   *
+   * @param type the {@link Type} to inspect; may be {@code null}
+   *
+   * @return the {@link Type} supplied, or {@code null}
+   */
+  static final Type getSuppliedType(final Type type) {
+    if (type instanceof ParameterizedType) {
+      final ParameterizedType parameterizedType = (ParameterizedType)type;
+      if (Supplier.class.equals(parameterizedType.getRawType())) {
+        final Type[] typeArguments = parameterizedType.getActualTypeArguments();
+        if (typeArguments != null && typeArguments.length == 1 && !(typeArguments[0] instanceof WildcardType)) {
+          return typeArguments[0];
         }
       }
-      
-    }
-
-    if (this.logger.isLoggable(Level.FINER)) {
-      this.logger.exiting(cn, mn);
     }
+    return null;
   }
 
-
-  /*
-   * Static methods.
+  /**
+   * Returns a {@link Throwable} describing why the configuration
+   * value described by the supplied {@link
+   * ConfigurationValueResolver.Key} could not be resolved, given the
+   * outcome of resolving it, or {@code null} if it was resolved
+   * successfully.
+   *
+   * @param key the {@link ConfigurationValueResolver.Key} describing
+   * the configuration value; must not be {@code null}
+   *
+   * @param injectionPoint the {@link InjectionPoint} into which the
+   * configuration value will be injected, used in any problem
+   * description; must not be {@code null}
+   *
+   * @param value the resolved configuration value; may be {@code
+   * null}
+   *
+   * @param exception the {@link RuntimeException} thrown while
+   * resolving the configuration value; may be {@code null}
+   *
+   * @return a {@link Throwable} describing the problem, or {@code
+   * null}
+   *
+   * @see #resolveConfigurationValues(AfterDeploymentValidation)
    */
-
+  private static final Throwable getResolutionProblem(final ConfigurationValueResolver.Key key,
+                                                      final InjectionPoint injectionPoint,
+                                                      final Object value,
+                                                      final RuntimeException exception) {
+    final ConfigurationValueMetadata metadata = key.getMetadata();
+    if (exception != null) {
+      return new ConfigurationException("The configuration value named " + metadata.getNames() +
+                                        " could not be converted to " + key.getType().getTypeName() +
+                                        " for injection into " + injectionPoint,
+                                        exception);
+    } else if (value == null && metadata.getDefaultValue() == null && getOptionalValueType(injectionPoint.getType()) == null) {
+      return new ConfigurationException("No configuration value named " + metadata.getNames() +
+                                        " is available for injection into " + injectionPoint);
+    }
+    return null;
+  }
 
   /**
    * A template of sorts for {@link ProducerFactory} implementations
@@ -362,16 +2895,17 @@ public class ConfigurationsExtension implements Extension {
    * method will therefore first {@linkplain
    * #getMetadata(InjectionPoint) determine the configuration
    * coordinates at the site of injection} as well as the name of the
-   * configuration value that should be injected.  {@link
-   * Configurations#getValue(Map, String, Type)} is then used to
-   * retrieve the value which is returned as an {@link Object} by this
-   * method, but which will be returned as an object of the proper
-   * type by the "real" producer method.</p>
+   * configuration value that should be injected.  The supplied
+   * {@link ConfigurationValueResolver} is then used to retrieve the
+   * value, following the rules of {@link Configurations#getValue(Map,
+   * Collection, Type, String)}, which is returned as an {@link
+   * Object} by this method, but which will be returned as an object
+   * of the proper type by the "real" producer method.</p>
    *
    * @param injectionPoint the {@link InjectionPoint} describing the
    * site of injection; must not be {@code null}
    *
-   * @param configurations the {@link Configurations} object that will
+   * @param resolver the {@link ConfigurationValueResolver} that will
    * do the actual value retrieval; must not be {@code null}
    *
    * @return the configuration value, converted appropriately
@@ -383,35 +2917,155 @@ public class ConfigurationsExtension implements Extension {
    * #installConfigurationValueProducerMethods(AfterBeanDiscovery,
    * BeanManager)
    *
-   * @see Configurations#getValue(Map, String, Type)
+   * @see Configurations#getValue(Map, Collection, Type, String)
    */
-  private static final Object produceConfigurationValue(final InjectionPoint injectionPoint, final Configurations configurations) {
+  private static final Object produceConfigurationValue(final InjectionPoint injectionPoint, final ConfigurationValueResolver resolver) {
     final String cn = ConfigurationsExtension.class.getName();
     final Logger logger = Logger.getLogger(cn);
     assert logger != null;
     final String mn = "produceConfigurationValue";
     if (logger.isLoggable(Level.FINER)) {
-      logger.entering(cn, mn, new Object[] { injectionPoint, configurations });
+      logger.entering(cn, mn, new Object[] { injectionPoint, resolver });
     }
     Objects.requireNonNull(injectionPoint);
-    Objects.requireNonNull(configurations);
+    Objects.requireNonNull(resolver);
     final ConfigurationValueMetadata metadata = getMetadata(injectionPoint);
     assert metadata != null : "metadata == null";
-    final Map<String, String> coordinates = metadata.getConfigurationCoordinates();
-    final Collection<String> names = metadata.getNames();
-    assert names != null;
-    final String defaultValue = metadata.getDefaultValue();
-    final Type injectionPointType = injectionPoint.getType();
-    Object returnValue = configurations.getValue(coordinates, names, injectionPointType, defaultValue);
-    if (returnValue == null && defaultValue == null && injectionPointType instanceof Class && ((Class<?>)injectionPointType).isPrimitive()) {
-      returnValue = uninitializedValues.get(injectionPointType);
+    final Object returnValue = getConfigurationValue(resolver, metadata, injectionPoint.getType());
+    if (logger.isLoggable(Level.FINER)) {
+      logger.exiting(cn, mn, returnValue);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Produces an object suitable for the supplied {@link
+   * Configured}-qualified {@link InjectionPoint} by {@linkplain
+   * ConfigurationBinder#bind(String, ConfigurationBinder.Source)
+   * binding} it from the configuration values beneath the prefix in
+   * effect at the injection point.
+   *
+   * <p>The name of each property is resolved exactly as it would be
+   * if it were the {@linkplain ConfigurationValue#value() name} of a
+   * {@link ConfigurationValue} annotation at the injection point, so
+   * the injection point's {@link Configuration} prefix and {@link
+   * ConfigurationCoordinates} are respected.  The {@link
+   * ConfigurationValueMetadata} so computed for each property is
+   * remembered in the supplied {@link BoundedCache}, so later
+   * injections at the same injection point need not compute it
+   * again.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param injectionPoint the {@link InjectionPoint} describing the
+   * site of injection; must not be {@code null}
+   *
+   * @param resolver the {@link ConfigurationValueResolver} that will
+   * do the actual value retrieval; must not be {@code null}
+   *
+   * @param properties a {@link BoundedCache} of the {@link
+   * ConfigurationValueMetadata} describing properties already bound;
+   * must not be {@code null}
+   *
+   * @return the bound object; never {@code null}
+   *
+   * @exception NullPointerException if any parameter value is {@code
+   * null}
+   *
+   * @see ConfigurationBinder
+   *
+   * @see Configured
+   */
+  private static final Object produceConfiguredObject(final InjectionPoint injectionPoint,
+                                                      final ConfigurationValueResolver resolver,
+                                                      final BoundedCache<ConfiguredProperty, ConfigurationValueMetadata> properties) {
+    final String cn = ConfigurationsExtension.class.getName();
+    final Logger logger = Logger.getLogger(cn);
+    assert logger != null;
+    final String mn = "produceConfiguredObject";
+    if (logger.isLoggable(Level.FINER)) {
+      logger.entering(cn, mn, new Object[] { injectionPoint, resolver, properties });
     }
+    Objects.requireNonNull(injectionPoint);
+    Objects.requireNonNull(resolver);
+    Objects.requireNonNull(properties);
+    final Object returnValue =
+      ConfigurationBinder.of((Class<?>)injectionPoint.getType()).bind("", new InjectionPointSource(injectionPoint,
+                                                                                                 resolver,
+                                                                                                 properties));
     if (logger.isLoggable(Level.FINER)) {
       logger.exiting(cn, mn, returnValue);
     }
     return returnValue;
   }
 
+  /**
+   * Uses the supplied {@link ConfigurationValueResolver} to resolve
+   * the configuration value described by the supplied {@link
+   * ConfigurationValueMetadata}, converted to the supplied {@link
+   * Type}, substituting the uninitialized value of a primitive {@link
+   * Type} (e.g. {@code 0} for {@code int.class}) for an absent
+   * configuration value with no default value.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param resolver the {@link ConfigurationValueResolver} to use;
+   * must not be {@code null}
+   *
+   * @param metadata the {@link ConfigurationValueMetadata} describing
+   * the configuration value; must not be {@code null}
+   *
+   * @param type the {@link Type} to which the configuration value
+   * should be converted; must not be {@code null}
+   *
+   * @return the configuration value, or {@code null}
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   *
+   * @see #getConfigurationValue(ConfigurationValueResolver,
+   * ConfigurationValueResolver.Key)
+   */
+  static final Object getConfigurationValue(final ConfigurationValueResolver resolver,
+                                            final ConfigurationValueMetadata metadata,
+                                            final Type type) {
+    return getConfigurationValue(resolver, new ConfigurationValueResolver.Key(metadata, type));
+  }
+
+  /**
+   * Uses the supplied {@link ConfigurationValueResolver} to resolve
+   * the configuration value described by the supplied {@link
+   * ConfigurationValueResolver.Key}, substituting the uninitialized
+   * value of a primitive {@link Type} (e.g. {@code 0} for {@code
+   * int.class}) for an absent configuration value with no default
+   * value.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param resolver the {@link ConfigurationValueResolver} to use;
+   * must not be {@code null}
+   *
+   * @param key the {@link ConfigurationValueResolver.Key} describing
+   * the configuration value; must not be {@code null}
+   *
+   * @return the configuration value, or {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @see ConfigurationValueResolver#resolve(ConfigurationValueResolver.Key)
+   */
+  static final Object getConfigurationValue(final ConfigurationValueResolver resolver,
+                                            final ConfigurationValueResolver.Key key) {
+    Object returnValue = resolver.resolve(key);
+    if (returnValue == null) {
+      final Type type = key.getType();
+      if (key.getMetadata().getDefaultValue() == null && type instanceof Class && ((Class<?>)type).isPrimitive()) {
+        returnValue = uninitializedValues.get(type);
+      }
+    }
+    return returnValue;
+  }
+
 
   /*
    * Static methods.
@@ -427,18 +3081,52 @@ public class ConfigurationsExtension implements Extension {
    * be {@code null} in which case {@code null} will be returned
    *
    * @return a {@link ConfigurationValueMetadata} object, or {@code null}
+   *
+   * @see #getMetadata(Annotated, Set)
    */
   private static final ConfigurationValueMetadata getMetadata(final InjectionPoint injectionPoint) {
+    final ConfigurationValueMetadata returnValue;
+    if (injectionPoint == null) {
+      returnValue = null;
+    } else {
+      returnValue = getMetadata(injectionPoint.getAnnotated(), injectionPoint.getQualifiers());
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link ConfigurationValueMetadata} object representing
+   * all the configuration-value-related metadata available on the
+   * supplied {@link Annotated} when it is qualified with the supplied
+   * qualifiers.
+   *
+   * <p>This method is useful when an injection point's qualifiers
+   * are in the process of being {@linkplain
+   * ProcessInjectionPoint#configureInjectionPoint() configured} and
+   * so cannot be read from the injection point itself.</p>
+   *
+   * @param injectionPointAnnotated the {@link Annotated} representing
+   * the site of injection; may be {@code null} in which case {@code
+   * null} will be returned
+   *
+   * @param qualifiers the qualifiers in effect at the site of
+   * injection; may be {@code null} in which case {@code null} will be
+   * returned
+   *
+   * @return a {@link ConfigurationValueMetadata} object, or {@code null}
+   *
+   * @see #getMetadata(InjectionPoint)
+   */
+  private static final ConfigurationValueMetadata getMetadata(final Annotated injectionPointAnnotated, final Set<Annotation> qualifiers) {
     final String cn = ConfigurationsExtension.class.getName();
     final Logger logger = Logger.getLogger(cn);
     assert logger != null;
     final String mn = "getMetadata";
     if (logger.isLoggable(Level.FINER)) {
-      logger.entering(cn, mn, injectionPoint);
+      logger.entering(cn, mn, new Object[] { injectionPointAnnotated, qualifiers });
     }
     ConfigurationValueMetadata returnValue = null;
-    if (injectionPoint != null) {
-      final Set<Annotation> qualifiers = injectionPoint.getQualifiers();
+    if (injectionPointAnnotated != null) {
       if (qualifiers != null && !qualifiers.isEmpty()) {
         Map<String, String> configurationCoordinates = null;
         List<String> names = null;
@@ -454,8 +3142,7 @@ public class ConfigurationsExtension implements Extension {
                 defaultValue = configurationValue.defaultValue().trim();
                 assert defaultValue != null;
               }
-              Annotated annotated = injectionPoint.getAnnotated();
-              assert annotated != null;
+              Annotated annotated = injectionPointAnnotated;
               names = new ArrayList<>();
               names.addAll(Arrays.asList(configurationValue.value()));
               String prefix = null;
@@ -582,7 +3269,7 @@ public class ConfigurationsExtension implements Extension {
    *
    * @see ConfigurationValue
    */
-  private static final class ConfigurationValueMetadata {
+  static final class ConfigurationValueMetadata {
 
 
     /*
@@ -617,6 +3304,14 @@ public class ConfigurationsExtension implements Extension {
      */
     private final String defaultValue;
 
+    /**
+     * The precomputed hashcode of this {@link
+     * ConfigurationValueMetadata}.
+     *
+     * @see #hashCode()
+     */
+    private final int hashCode;
+
 
     /*
      * Constructors.
@@ -644,9 +3339,9 @@ public class ConfigurationsExtension implements Extension {
      *
      * @exception NullPointerException if {@code names} is {@code null}
      */
-    private ConfigurationValueMetadata(final Map<String, String> configurationCoordinates,
-                                       final Collection<String> names,
-                                       final String defaultValue) {
+    ConfigurationValueMetadata(final Map<String, String> configurationCoordinates,
+                               final Collection<String> names,
+                               final String defaultValue) {
       super();
       Objects.requireNonNull(names);
       if (configurationCoordinates == null || configurationCoordinates.isEmpty()) {
@@ -657,13 +3352,14 @@ public class ConfigurationsExtension implements Extension {
       if (names.isEmpty()) {
         this.names = Collections.emptySet();
       } else {
-        this.names = Collections.unmodifiableCollection(new ArrayList<>(names));
+        this.names = Collections.unmodifiableList(new ArrayList<>(names));
       }
       if (defaultValue == null || defaultValue.equals(ConfigurationValue.NULL)) {
         this.defaultValue = null;
       } else {
         this.defaultValue = defaultValue;
       }
+      this.hashCode = this.computeHashCode();
     }
 
     /**
@@ -715,6 +3411,18 @@ public class ConfigurationsExtension implements Extension {
      */
     @Override
     public final int hashCode() {
+      return this.hashCode;
+    }
+
+    /**
+     * Computes a hashcode for this {@link ConfigurationValueMetadata}
+     * from its immutable state.
+     *
+     * @return a hashcode
+     *
+     * @see #hashCode()
+     */
+    private final int computeHashCode() {
       int hashCode = 17;
 
       final Object configurationCoordinates = this.getConfigurationCoordinates();
@@ -965,4 +3673,206 @@ public class ConfigurationsExtension implements Extension {
 
   }
 
+
+  /**
+   * A {@link ConfigurationValue}-qualified {@link InjectionPoint},
+   * together with its position in encounter order.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   *
+   * @see #getConfigurationValueInjectionPoints()
+   */
+  private static final class EncounteredInjectionPoint {
+
+    /**
+     * The position of the {@link #injectionPoint} in encounter
+     * order.
+     */
+    private final long index;
+
+    /**
+     * The {@link InjectionPoint}.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final InjectionPoint injectionPoint;
+
+    /**
+     * Creates a new {@link EncounteredInjectionPoint}.
+     *
+     * @param index the position of the supplied {@link
+     * InjectionPoint} in encounter order
+     *
+     * @param injectionPoint the {@link InjectionPoint}; must not be
+     * {@code null}
+     *
+     * @exception NullPointerException if {@code injectionPoint} is
+     * {@code null}
+     */
+    private EncounteredInjectionPoint(final long index, final InjectionPoint injectionPoint) {
+      super();
+      this.index = index;
+      this.injectionPoint = Objects.requireNonNull(injectionPoint);
+    }
+
+  }
+
+  /**
+   * A {@link ConfigurationBinder.Source} that resolves names as
+   * though they were the {@linkplain ConfigurationValue#value()
+   * names} of a {@link ConfigurationValue} annotation at a particular
+   * {@link InjectionPoint}.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   *
+   * @see #produceConfiguredObject(InjectionPoint,
+   * ConfigurationValueResolver, BoundedCache)
+   */
+  private static final class InjectionPointSource implements ConfigurationBinder.Source {
+
+    private final Annotated annotated;
+
+    private final ConfigurationCoordinates configurationCoordinates;
+
+    private final ConfigurationValueResolver resolver;
+
+    private final Set<Type> conversionTypes;
+
+    private final BoundedCache<ConfiguredProperty, ConfigurationValueMetadata> properties;
+
+    private ConfigurationNameTrie nameTrie;
+
+    private InjectionPointSource(final InjectionPoint injectionPoint,
+                                 final ConfigurationValueResolver resolver,
+                                 final BoundedCache<ConfiguredProperty, ConfigurationValueMetadata> properties) {
+      super();
+      this.annotated = injectionPoint.getAnnotated();
+      ConfigurationCoordinates configurationCoordinates = null;
+      for (final Annotation qualifier : injectionPoint.getQualifiers()) {
+        if (qualifier instanceof ConfigurationCoordinates) {
+          configurationCoordinates = (ConfigurationCoordinates)qualifier;
+          break;
+        }
+      }
+      this.configurationCoordinates = configurationCoordinates;
+      this.resolver = resolver;
+      final Set<Type> conversionTypes = resolver.getConfigurations().getConversionTypes();
+      this.conversionTypes = conversionTypes == null ? Collections.emptySet() : conversionTypes;
+      this.properties = properties;
+    }
+
+    @Override
+    public final Object getValue(final String name, final Type type) {
+      return this.resolver.resolve(this.getMetadata(name), type);
+    }
+
+    @Override
+    public final Object[] getValues(final String[] names, final Type[] types) {
+      final ConfigurationValueResolver.Key[] keys = new ConfigurationValueResolver.Key[names.length];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = new ConfigurationValueResolver.Key(this.getMetadata(names[i]), types[i]);
+      }
+      final Map<ConfigurationValueResolver.Key, Object> values = this.resolver.resolveAll(Arrays.asList(keys), null);
+      final Object[] returnValue = new Object[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+        returnValue[i] = values.get(keys[i]);
+      }
+      return returnValue;
+    }
+
+    @Override
+    public final boolean isConvertible(final Type type) {
+      return this.conversionTypes.contains(type);
+    }
+
+    @Override
+    public final boolean hasValuesBeneath(final String name) {
+      ConfigurationNameTrie nameTrie = this.nameTrie;
+      if (nameTrie == null) {
+        // Without caching the resolver builds a new trie every time;
+        // one is plenty for a single binding.
+        nameTrie = this.resolver.getNameTrie();
+        this.nameTrie = nameTrie;
+      }
+      for (final String absoluteName : this.getMetadata(name).getNames()) {
+        if (nameTrie.hasNamesBeneath(absoluteName)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private final ConfigurationValueMetadata getMetadata(final String name) {
+      final ConfiguredProperty property = new ConfiguredProperty(this.annotated, this.configurationCoordinates, name);
+      ConfigurationValueMetadata returnValue = this.properties.get(property);
+      if (returnValue == null) {
+        final Set<Annotation> qualifiers = new HashSet<>();
+        qualifiers.add(ConfigurationValue.Literal.of(name));
+        if (this.configurationCoordinates != null) {
+          qualifiers.add(this.configurationCoordinates);
+        }
+        returnValue = ConfigurationsExtension.getMetadata(this.annotated, qualifiers);
+        this.properties.put(property, returnValue);
+      }
+      return returnValue;
+    }
+
+  }
+
+  /**
+   * Identifies a property bound at a {@link Configured}-qualified
+   * injection point: the {@link Annotated} representing the site of
+   * injection, the {@link ConfigurationCoordinates} in effect there,
+   * and the property's name relative to it.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   *
+   * @see InjectionPointSource
+   */
+  private static final class ConfiguredProperty {
+
+    private final Annotated annotated;
+
+    private final ConfigurationCoordinates configurationCoordinates;
+
+    private final String name;
+
+    private final int hashCode;
+
+    private ConfiguredProperty(final Annotated annotated,
+                               final ConfigurationCoordinates configurationCoordinates,
+                               final String name) {
+      super();
+      this.annotated = Objects.requireNonNull(annotated);
+      this.configurationCoordinates = configurationCoordinates;
+      this.name = Objects.requireNonNull(name);
+      this.hashCode = Objects.hash(annotated, configurationCoordinates, name);
+    }
+
+    @Override
+    public final int hashCode() {
+      return this.hashCode;
+    }
+
+    @Override
+    public final boolean equals(final Object other) {
+      if (other == this) {
+        return true;
+      } else if (other instanceof ConfiguredProperty) {
+        final ConfiguredProperty her = (ConfiguredProperty)other;
+        return
+          this.hashCode == her.hashCode &&
+          this.name.equals(her.name) &&
+          this.annotated.equals(her.annotated) &&
+          Objects.equals(this.configurationCoordinates, her.configurationCoordinates);
+      } else {
+        return false;
+      }
+    }
+
+  }
+
 }
@@ -0,0 +1,610 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.microbean.configuration.api.ConfigurationException;
+
+/**
+ * Resolves configuration values that are comma-separated lists as
+ * {@code int[]}, {@code long[]}, {@code String[]}, {@link List
+ * List&lt;T&gt;} or {@link Set Set&lt;T&gt;} objects, parsing each
+ * distinct string value only once.
+ *
+ * <p>Elements are separated by commas and stripped of surrounding
+ * whitespace; empty elements are ignored, so an empty string yields
+ * an empty array or collection.  A comma that is part of a {@link
+ * String} element may be escaped with a backslash, as may a
+ * backslash.  No regular expressions are involved: each value is
+ * parsed in a single pass, and the elements of {@code int[]} and
+ * {@code long[]} values are parsed straight into primitive storage
+ * without any intermediate {@link String}s or boxing.</p>
+ *
+ * <p>Parsed values are retained, together with the string from which
+ * they were parsed, and reused for as long as the {@link
+ * ConfigurationValueResolver} in use keeps resolving that same
+ * string.  {@link List}s and {@link Set}s are immutable and shared
+ * by every caller; arrays, which cannot be made immutable, are
+ * copied for each caller, which costs a single allocation rather
+ * than a parse.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #get(ConfigurationValueResolver.Key)
+ */
+final class DelimitedConfigurationValues {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The element {@link Class} of each supported array {@link Class},
+   * indexed by that array {@link Class}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final Map<Type, Class<?>> arrayElementTypes;
+
+  static {
+    final Map<Type, Class<?>> elementTypes = new HashMap<>();
+    elementTypes.put(int[].class, int.class);
+    elementTypes.put(long[].class, long.class);
+    elementTypes.put(String[].class, String.class);
+    arrayElementTypes = Collections.unmodifiableMap(elementTypes);
+  }
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link ConfigurationValueResolver} that resolves the string
+   * values to be parsed.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConfigurationValueResolver resolver;
+
+  /**
+   * A {@link ConcurrentMap} of {@link Parsed} values, indexed by the
+   * {@link ConfigurationValueResolver.Key}s describing them.
+   *
+   * <p>This field is never {@code null}.  It holds at most one entry
+   * per distinct injection point.</p>
+   */
+  private final ConcurrentMap<ConfigurationValueResolver.Key, Parsed> parsedValues;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link DelimitedConfigurationValues}.
+   *
+   * @param resolver the {@link ConfigurationValueResolver} that will
+   * resolve the string values to be parsed; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code resolver} is {@code
+   * null}
+   */
+  DelimitedConfigurationValues(final ConfigurationValueResolver resolver) {
+    super();
+    this.resolver = Objects.requireNonNull(resolver);
+    this.parsedValues = new ConcurrentHashMap<>();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the configuration value described by the supplied {@link
+   * ConfigurationValueResolver.Key}, whose {@linkplain
+   * ConfigurationValueResolver.Key#getType() type} must be {@linkplain
+   * #isSupported(Type, Set) supported}, or {@code null} if it is
+   * absent and has no default value.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * <p>{@link List}s and {@link Set}s returned by this method are
+   * immutable and may be shared with other callers; arrays are the
+   * caller's own.</p>
+   *
+   * @param key the {@link ConfigurationValueResolver.Key}; must not
+   * be {@code null}
+   *
+   * @return the configuration value, or {@code null}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   *
+   * @exception IllegalArgumentException if the {@link
+   * ConfigurationValueResolver.Key}'s type is not supported
+   *
+   * @exception ConfigurationException if the configuration value, or
+   * one of its elements, could not be converted
+   */
+  final Object get(final ConfigurationValueResolver.Key key) {
+    Parsed parsed = this.parsedValues.get(key);
+    final ConfigurationValueResolver.Key stringKey =
+      parsed == null ? new ConfigurationValueResolver.Key(key.getMetadata(), String.class) : parsed.stringKey;
+    final String string = (String)this.resolver.resolve(stringKey);
+    if (string == null) {
+      return null;
+    }
+    if (parsed == null || (parsed.string != string && !parsed.string.equals(string))) {
+      parsed = new Parsed(stringKey, string, this.parse(string, key));
+      this.parsedValues.put(key, parsed);
+    }
+    final Object value = parsed.value;
+    if (value instanceof int[]) {
+      return ((int[])value).clone();
+    } else if (value instanceof long[]) {
+      return ((long[])value).clone();
+    } else if (value instanceof String[]) {
+      return ((String[])value).clone();
+    } else {
+      return value;
+    }
+  }
+
+  /**
+   * Parses the supplied string into an object of the {@linkplain
+   * ConfigurationValueResolver.Key#getType() type} described by the
+   * supplied {@link ConfigurationValueResolver.Key}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param string the string to parse; must not be {@code null}
+   *
+   * @param key the {@link ConfigurationValueResolver.Key}; must not
+   * be {@code null}
+   *
+   * @return the parsed object; never {@code null}
+   *
+   * @exception IllegalArgumentException if the {@link
+   * ConfigurationValueResolver.Key}'s type is not supported
+   *
+   * @exception ConfigurationException if the string, or one of its
+   * elements, could not be converted
+   */
+  private final Object parse(final String string, final ConfigurationValueResolver.Key key) {
+    final Type type = key.getType();
+    if (int[].class.equals(type)) {
+      return parseInts(string);
+    } else if (long[].class.equals(type)) {
+      return parseLongs(string);
+    } else if (String[].class.equals(type)) {
+      final List<String> elements = split(string);
+      return elements.toArray(new String[elements.size()]);
+    }
+    final Type elementType = getElementType(type);
+    if (elementType == null) {
+      throw new IllegalArgumentException("type: " + type);
+    }
+    final Map<String, String> coordinates = key.getMetadata().getConfigurationCoordinates();
+    final List<String> elements = split(string);
+    final List<Object> values = new ArrayList<>(elements.size());
+    for (final String element : elements) {
+      values.add(this.convert(coordinates, element, elementType));
+    }
+    if (((ParameterizedType)type).getRawType().equals(Set.class)) {
+      return Collections.unmodifiableSet(new LinkedHashSet<>(values));
+    } else {
+      return Collections.unmodifiableList(values);
+    }
+  }
+
+  /**
+   * Converts the supplied element to the supplied {@link Type}.
+   *
+   * <p>{@link String}, {@link Integer} and {@link Long} elements are
+   * converted directly; any other {@link Type} is converted by the
+   * {@link org.microbean.configuration.api.Configurations} in use,
+   * exactly as a default value would be.</p>
+   *
+   * @param coordinates the configuration coordinates in effect; may
+   * be {@code null}
+   *
+   * @param element the element; must not be {@code null}
+   *
+   * @param elementType the {@link Type} to convert to; must not be
+   * {@code null}
+   *
+   * @return the converted element
+   *
+   * @exception ConfigurationException if the element could not be
+   * converted
+   */
+  private final Object convert(final Map<String, String> coordinates, final String element, final Type elementType) {
+    if (String.class.equals(elementType)) {
+      return element;
+    } else if (Integer.class.equals(elementType)) {
+      return Integer.valueOf((int)parseLong(element, 0, element.length(), Integer.MIN_VALUE, Integer.MAX_VALUE));
+    } else if (Long.class.equals(elementType)) {
+      return Long.valueOf(parseLong(element, 0, element.length(), Long.MIN_VALUE, Long.MAX_VALUE));
+    } else {
+      return this.resolver.getConfigurations().getValue(coordinates, (String)null, elementType, element);
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the element {@link Type} of the supplied {@link Type} if
+   * it is {@code int[]}, {@code long[]}, {@code String[]}, {@link
+   * List List&lt;T&gt;} or {@link Set Set&lt;T&gt;}, or {@code null}
+   * otherwise.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param type the {@link Type} to inspect; may be {@code null}
+   *
+   * @return the element {@link Type}, or {@code null}
+   */
+  static final Type getElementType(final Type type) {
+    if (type instanceof ParameterizedType) {
+      final ParameterizedType parameterizedType = (ParameterizedType)type;
+      final Type rawType = parameterizedType.getRawType();
+      if (List.class.equals(rawType) || Set.class.equals(rawType)) {
+        final Type[] typeArguments = parameterizedType.getActualTypeArguments();
+        if (typeArguments != null && typeArguments.length == 1 && !(typeArguments[0] instanceof WildcardType)) {
+          return typeArguments[0];
+        }
+      }
+      return null;
+    }
+    return type == null ? null : arrayElementTypes.get(type);
+  }
+
+  /**
+   * Returns {@code true} if configuration values of the supplied
+   * {@link Type} can be produced by a {@link
+   * DelimitedConfigurationValues} using the supplied conversion
+   * types.
+   *
+   * <p>{@code int[]}, {@code long[]}, {@code String[]}, {@link List
+   * List&lt;String&gt;}, {@link Set Set&lt;String&gt;}, {@link List
+   * List&lt;Integer&gt;}, {@link Set Set&lt;Integer&gt;}, {@link List
+   * List&lt;Long&gt;} and {@link Set Set&lt;Long&gt;} are always
+   * supported; {@link List List&lt;T&gt;} and {@link Set
+   * Set&lt;T&gt;} are supported for any other {@code T} that is
+   * among the conversion types.</p>
+   *
+   * @param type the {@link Type} to inspect; may be {@code null}
+   *
+   * @param conversionTypes the {@linkplain
+   * org.microbean.configuration.api.Configurations#getConversionTypes()
+   * conversion types} available; may be {@code null}
+   *
+   * @return {@code true} if the supplied {@link Type} is supported
+   */
+  static final boolean isSupported(final Type type, final Set<? extends Type> conversionTypes) {
+    final Type elementType = getElementType(type);
+    return elementType != null &&
+      (type instanceof Class ||
+       String.class.equals(elementType) ||
+       Integer.class.equals(elementType) ||
+       Long.class.equals(elementType) ||
+       (conversionTypes != null && conversionTypes.contains(elementType)));
+  }
+
+  /**
+   * Parses the supplied comma-separated string into an {@code int[]}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param string the string to parse; must not be {@code null}
+   *
+   * @return a new {@code int[]}; never {@code null}
+   *
+   * @exception NullPointerException if {@code string} is {@code null}
+   *
+   * @exception ConfigurationException if an element is not an {@code
+   * int}
+   */
+  static final int[] parseInts(final String string) {
+    final int length = string.length();
+    int[] values = new int[Math.min(16, length / 2 + 1)];
+    int size = 0;
+    int start = 0;
+    while (start <= length) {
+      int end = string.indexOf(',', start);
+      if (end < 0) {
+        end = length;
+      }
+      int first = start;
+      int last = end;
+      while (first < last && Character.isWhitespace(string.charAt(first))) {
+        first++;
+      }
+      while (last > first && Character.isWhitespace(string.charAt(last - 1))) {
+        last--;
+      }
+      if (first < last) {
+        if (size == values.length) {
+          values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = (int)parseLong(string, first, last, Integer.MIN_VALUE, Integer.MAX_VALUE);
+      }
+      start = end + 1;
+    }
+    return size == values.length ? values : Arrays.copyOf(values, size);
+  }
+
+  /**
+   * Parses the supplied comma-separated string into a {@code
+   * long[]}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param string the string to parse; must not be {@code null}
+   *
+   * @return a new {@code long[]}; never {@code null}
+   *
+   * @exception NullPointerException if {@code string} is {@code null}
+   *
+   * @exception ConfigurationException if an element is not a {@code
+   * long}
+   */
+  static final long[] parseLongs(final String string) {
+    final int length = string.length();
+    long[] values = new long[Math.min(16, length / 2 + 1)];
+    int size = 0;
+    int start = 0;
+    while (start <= length) {
+      int end = string.indexOf(',', start);
+      if (end < 0) {
+        end = length;
+      }
+      int first = start;
+      int last = end;
+      while (first < last && Character.isWhitespace(string.charAt(first))) {
+        first++;
+      }
+      while (last > first && Character.isWhitespace(string.charAt(last - 1))) {
+        last--;
+      }
+      if (first < last) {
+        if (size == values.length) {
+          values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = parseLong(string, first, last, Long.MIN_VALUE, Long.MAX_VALUE);
+      }
+      start = end + 1;
+    }
+    return size == values.length ? values : Arrays.copyOf(values, size);
+  }
+
+  /**
+   * Parses the decimal integer occupying the supplied range of the
+   * supplied {@link CharSequence}, which must lie between the
+   * supplied bounds, without creating any intermediate objects.
+   *
+   * @param chars the {@link CharSequence}; must not be {@code null}
+   *
+   * @param start the index of the first character of the integer
+   *
+   * @param end the index after the last character of the integer;
+   * must be greater than {@code start}
+   *
+   * @param min the smallest permissible value; must not be positive
+   *
+   * @param max the largest permissible value; must not be negative
+   *
+   * @return the parsed integer
+   *
+   * @exception ConfigurationException if the range does not contain a
+   * decimal integer between {@code min} and {@code max}
+   */
+  static final long parseLong(final CharSequence chars, final int start, final int end, final long min, final long max) {
+    int i = start;
+    boolean negative = false;
+    if (i < end) {
+      final char sign = chars.charAt(i);
+      if (sign == '-') {
+        negative = true;
+        i++;
+      } else if (sign == '+') {
+        i++;
+      }
+    }
+    if (i >= end) {
+      throw new ConfigurationException("Not an integer: \"" + chars.subSequence(start, end) + "\"");
+    }
+    // Accumulate negatively, as Long.parseLong() does, so that the
+    // most negative value can be represented.
+    final long limit = negative ? min : -max;
+    final long multiplicationLimit = limit / 10L;
+    long result = 0L;
+    for (; i < end; i++) {
+      final int digit = chars.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        throw new ConfigurationException("Not an integer: \"" + chars.subSequence(start, end) + "\"");
+      }
+      if (result < multiplicationLimit) {
+        throw new ConfigurationException("Out of range: \"" + chars.subSequence(start, end) + "\"");
+      }
+      result *= 10L;
+      if (result < limit + digit) {
+        throw new ConfigurationException("Out of range: \"" + chars.subSequence(start, end) + "\"");
+      }
+      result -= digit;
+    }
+    return negative ? result : -result;
+  }
+
+  /**
+   * Splits the supplied comma-separated string into its non-empty
+   * elements, stripped of surrounding whitespace, honoring
+   * backslash-escaped commas and backslashes.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param string the string to split; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link List} of elements
+   *
+   * @exception NullPointerException if {@code string} is {@code null}
+   */
+  static final List<String> split(final String string) {
+    final int length = string.length();
+    final List<String> elements = new ArrayList<>();
+    StringBuilder unescaped = null;
+    int start = 0;
+    boolean escaped = false;
+    for (int i = 0; i <= length; i++) {
+      final char c = i < length ? string.charAt(i) : ',';
+      if (c == '\\' && i + 1 < length) {
+        // Only copy characters when an escape makes it necessary.
+        if (unescaped == null) {
+          unescaped = new StringBuilder(length);
+        }
+        unescaped.append(string, start, i).append(string.charAt(++i));
+        escaped = true;
+        start = i + 1;
+      } else if (c == ',') {
+        final String element;
+        if (escaped) {
+          unescaped.append(string, start, i);
+          element = unescaped.toString().trim();
+          unescaped.setLength(0);
+          escaped = false;
+        } else {
+          element = substringTrimmed(string, start, i);
+        }
+        if (!element.isEmpty()) {
+          elements.add(element);
+        }
+        start = i + 1;
+      }
+    }
+    return elements;
+  }
+
+  /**
+   * Returns the portion of the supplied string between the supplied
+   * indices, stripped of surrounding whitespace.
+   *
+   * @param string the string; must not be {@code null}
+   *
+   * @param start the index of the first character
+   *
+   * @param end the index after the last character
+   *
+   * @return the stripped portion; never {@code null}
+   */
+  private static final String substringTrimmed(final String string, final int start, final int end) {
+    int first = start;
+    int last = end;
+    while (first < last && Character.isWhitespace(string.charAt(first))) {
+      first++;
+    }
+    while (last > first && Character.isWhitespace(string.charAt(last - 1))) {
+      last--;
+    }
+    return string.substring(first, last);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A parsed configuration value, together with the string from which
+   * it was parsed.
+   */
+  private static final class Parsed {
+
+    /**
+     * The {@link ConfigurationValueResolver.Key} describing the string
+     * from which {@link #value} was parsed.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final ConfigurationValueResolver.Key stringKey;
+
+    /**
+     * The string from which {@link #value} was parsed.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final String string;
+
+    /**
+     * The parsed value.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Object value;
+
+    /**
+     * Creates a new {@link Parsed}.
+     *
+     * @param stringKey the {@link ConfigurationValueResolver.Key}
+     * describing the string from which {@code value} was parsed;
+     * must not be {@code null}
+     *
+     * @param string the string from which {@code value} was parsed;
+     * must not be {@code null}
+     *
+     * @param value the parsed value; must not be {@code null}
+     */
+    private Parsed(final ConfigurationValueResolver.Key stringKey, final String string, final Object value) {
+      super();
+      this.stringKey = stringKey;
+      this.string = string;
+      this.value = value;
+    }
+
+  }
+
+}
@@ -0,0 +1,555 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.reflect.Type;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java.util.logging.Level;
+
+import org.microbean.configuration.api.ConfigurationException;
+import org.microbean.configuration.api.Configurations;
+
+/**
+ * A {@link Configurations} implementation that guards a single,
+ * possibly slow or failing, {@link Configurations} with a deadline
+ * and a circuit breaker.
+ *
+ * <p>The guarded {@link Configurations} is treated as a unit: if it
+ * is itself made of several configuration sources, a single slow or
+ * failing one affects, and trips the circuit breaker for, all of
+ * them.</p>
+ *
+ * <p>If a deadline is in effect, each {@linkplain #getValue(Map,
+ * String, Type, String) lookup} and each {@linkplain #getNames()
+ * enumeration of names} is performed on a separate daemon thread, and
+ * a {@link ConfigurationUnavailableException} is thrown if it does
+ * not finish in time.  A call that misses its deadline keeps its
+ * thread until the guarded {@link Configurations} gives up, so the
+ * number of such threads is {@linkplain
+ * #GuardedConfigurations(Configurations, long, int, long, int)
+ * bounded}; once that many calls are outstanding, further calls fail
+ * immediately with a {@link ConfigurationUnavailableException}
+ * rather than creating more threads.  The threads are released by
+ * the {@link #close()} method.</p>
+ *
+ * <p>If a failure threshold is in effect, then once that many
+ * consecutive lookups have timed out or failed, the circuit breaker
+ * opens: further lookups fail immediately with a {@link
+ * ConfigurationUnavailableException}, without consulting the
+ * configuration source at all, until the retry interval has passed.
+ * A single lookup is then allowed through; if it succeeds, the
+ * circuit breaker closes again, and if it fails, the circuit breaker
+ * stays open for another retry interval.</p>
+ *
+ * <p>A {@link ConfigurationException} or {@link
+ * IllegalArgumentException} thrown by the configuration source is
+ * taken to mean that it supplied a value that could not be
+ * converted, not that it is failing, and is rethrown as is.  Any
+ * other {@link RuntimeException} counts as a failure and is rethrown
+ * as the {@linkplain Throwable#getCause() cause} of a {@link
+ * ConfigurationUnavailableException}.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ConfigurationUnavailableException
+ *
+ * @see ConfigurationValueResolver
+ */
+final class GuardedConfigurations extends Configurations implements AutoCloseable {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The default maximum number of calls to the {@linkplain #delegate
+   * delegate} that may be outstanding at once when there is a
+   * deadline.
+   *
+   * @see #GuardedConfigurations(Configurations, long, int, long, int)
+   */
+  static final int DEFAULT_MAXIMUM_CONCURRENCY = 16;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link Configurations} being guarded.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Configurations delegate;
+
+  /**
+   * The number of nanoseconds each call to the {@linkplain #delegate
+   * delegate} may take, or {@code 0} if there is no deadline.
+   */
+  private final long deadlineNanos;
+
+  /**
+   * The number of consecutive failures that opens the circuit
+   * breaker, or {@code 0} if there is no circuit breaker.
+   */
+  private final int failureThreshold;
+
+  /**
+   * The number of nanoseconds the circuit breaker stays open before a
+   * single call is allowed through.
+   */
+  private final long retryIntervalNanos;
+
+  /**
+   * The {@link ExecutorService} on which calls to the {@linkplain
+   * #delegate delegate} are made if there is a deadline.
+   *
+   * <p>This field is {@code null} if and only if {@link
+   * #deadlineNanos} is {@code 0}.</p>
+   *
+   * @see #close()
+   */
+  private final ExecutorService executor;
+
+  /**
+   * The number of consecutive calls to the {@linkplain #delegate
+   * delegate} that have timed out or failed.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final AtomicInteger consecutiveFailures;
+
+  /**
+   * Whether the circuit breaker is open.
+   */
+  private volatile boolean open;
+
+  /**
+   * The {@linkplain System#nanoTime() time} after which a single call
+   * will be allowed through an open circuit breaker.
+   */
+  private volatile long retryTime;
+
+  /**
+   * Whether a single call is currently being allowed through an open
+   * circuit breaker.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final AtomicBoolean trialInProgress;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link GuardedConfigurations} that allows up to
+   * {@link #DEFAULT_MAXIMUM_CONCURRENCY} calls to the supplied {@link
+   * Configurations} to be outstanding at once.
+   *
+   * @param delegate the {@link Configurations} to guard; must not be
+   * {@code null}
+   *
+   * @param deadlineMillis the number of milliseconds each call to
+   * the delegate may take, or {@code 0} if there is no deadline; must
+   * not be negative
+   *
+   * @param failureThreshold the number of consecutive failures that
+   * opens the circuit breaker, or {@code 0} if there is no circuit
+   * breaker; must not be negative
+   *
+   * @param retryIntervalMillis the number of milliseconds the circuit
+   * breaker stays open before a single call is allowed through; must
+   * not be negative
+   *
+   * @exception NullPointerException if {@code delegate} is {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if any other parameter is
+   * negative
+   *
+   * @see #GuardedConfigurations(Configurations, long, int, long, int)
+   */
+  GuardedConfigurations(final Configurations delegate,
+                        final long deadlineMillis,
+                        final int failureThreshold,
+                        final long retryIntervalMillis) {
+    this(delegate, deadlineMillis, failureThreshold, retryIntervalMillis, DEFAULT_MAXIMUM_CONCURRENCY);
+  }
+
+  /**
+   * Creates a new {@link GuardedConfigurations}.
+   *
+   * @param delegate the {@link Configurations} to guard; must not be
+   * {@code null}
+   *
+   * @param deadlineMillis the number of milliseconds each call to
+   * the delegate may take, or {@code 0} if there is no deadline; must
+   * not be negative
+   *
+   * @param failureThreshold the number of consecutive failures that
+   * opens the circuit breaker, or {@code 0} if there is no circuit
+   * breaker; must not be negative
+   *
+   * @param retryIntervalMillis the number of milliseconds the circuit
+   * breaker stays open before a single call is allowed through; must
+   * not be negative
+   *
+   * @param maximumConcurrency the maximum number of calls to the
+   * delegate that may be outstanding at once, including those that
+   * have missed their deadline but not yet finished; ignored if there
+   * is no deadline; must be greater than {@code 0}
+   *
+   * @exception NullPointerException if {@code delegate} is {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if any other parameter is
+   * negative, or if {@code maximumConcurrency} is not greater than
+   * {@code 0}
+   */
+  GuardedConfigurations(final Configurations delegate,
+                        final long deadlineMillis,
+                        final int failureThreshold,
+                        final long retryIntervalMillis,
+                        final int maximumConcurrency) {
+    super();
+    this.delegate = Objects.requireNonNull(delegate);
+    if (deadlineMillis < 0L) {
+      throw new IllegalArgumentException("deadlineMillis < 0L: " + deadlineMillis);
+    }
+    if (failureThreshold < 0) {
+      throw new IllegalArgumentException("failureThreshold < 0: " + failureThreshold);
+    }
+    if (retryIntervalMillis < 0L) {
+      throw new IllegalArgumentException("retryIntervalMillis < 0L: " + retryIntervalMillis);
+    }
+    if (maximumConcurrency <= 0) {
+      throw new IllegalArgumentException("maximumConcurrency <= 0: " + maximumConcurrency);
+    }
+    this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+    this.failureThreshold = failureThreshold;
+    this.retryIntervalNanos = TimeUnit.MILLISECONDS.toNanos(retryIntervalMillis);
+    if (deadlineMillis == 0L) {
+      this.executor = null;
+    } else {
+      // A call that misses its deadline keeps its thread until the
+      // delegate gives up, so threads are created as needed, but
+      // only up to a limit: a delegate that hangs must not cost a
+      // thread per lookup forever.  Beyond the limit, submission is
+      // rejected and the call fails fast.
+      this.executor = new ThreadPoolExecutor(0, maximumConcurrency,
+                                             60L, TimeUnit.SECONDS,
+                                             new SynchronousQueue<>(),
+                                             r -> {
+                                               final Thread thread = new Thread(r, "microBean Configuration source guard");
+                                               thread.setDaemon(true);
+                                               return thread;
+                                             });
+    }
+    this.consecutiveFailures = new AtomicInteger();
+    this.trialInProgress = new AtomicBoolean();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@link Configurations} being guarded.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link Configurations} being
+   * guarded
+   */
+  final Configurations getDelegate() {
+    return this.delegate;
+  }
+
+  /**
+   * Returns {@code true} if the circuit breaker is open.
+   *
+   * @return {@code true} if the circuit breaker is open
+   */
+  final boolean isOpen() {
+    return this.open;
+  }
+
+  /**
+   * Returns the {@linkplain Configurations#getConversionTypes()
+   * conversion types} of the {@linkplain #getDelegate() delegate},
+   * without any deadline.
+   *
+   * @return the delegate's conversion types
+   */
+  @Override
+  public final Set<Type> getConversionTypes() {
+    return this.delegate.getConversionTypes();
+  }
+
+  /**
+   * Returns the {@linkplain
+   * Configurations#getConfigurationCoordinates() configuration
+   * coordinates} of the {@linkplain #getDelegate() delegate}, without
+   * any deadline.
+   *
+   * @return the delegate's configuration coordinates
+   */
+  @Override
+  public final Map<String, String> getConfigurationCoordinates() {
+    return this.delegate.getConfigurationCoordinates();
+  }
+
+  /**
+   * Returns the {@linkplain Configurations#getNames() names} of the
+   * configuration values supplied by the {@linkplain #getDelegate()
+   * delegate}, subject to the deadline and circuit breaker.
+   *
+   * @return the delegate's names
+   *
+   * @exception ConfigurationUnavailableException if the delegate did
+   * not supply them in time, failed, or is not being consulted
+   * because the circuit breaker is open
+   */
+  @Override
+  public final Set<String> getNames() {
+    return this.call(this.delegate::getNames);
+  }
+
+  /**
+   * Returns the configuration value supplied by the {@linkplain
+   * #getDelegate() delegate}, subject to the deadline and circuit
+   * breaker.
+   *
+   * @param <T> the type of the configuration value
+   *
+   * @param coordinates the configuration coordinates in effect; may
+   * be {@code null}
+   *
+   * @param name the name of the configuration value; may be {@code
+   * null}
+   *
+   * @param type the {@link Type} to which the configuration value
+   * should be converted; must not be {@code null}
+   *
+   * @param defaultValue the default value; may be {@code null}
+   *
+   * @return the configuration value, or {@code null}
+   *
+   * @exception ConfigurationUnavailableException if the delegate did
+   * not supply the value in time, failed, or is not being consulted
+   * because the circuit breaker is open
+   *
+   * @exception ConfigurationException if the value could not be
+   * converted
+   */
+  @Override
+  public final <T> T getValue(final Map<String, String> coordinates, final String name, final Type type, final String defaultValue) {
+    if (name == null) {
+      // Only the default value is converted; the configuration
+      // source is not consulted.
+      return this.delegate.getValue(coordinates, (String)null, type, defaultValue);
+    }
+    return this.call(() -> this.delegate.<T>getValue(coordinates, name, type, defaultValue));
+  }
+
+  /**
+   * Calls the supplied {@link Callable}, which calls the {@linkplain
+   * #getDelegate() delegate}, subject to the deadline and circuit
+   * breaker.
+   *
+   * @param <T> the type of the result
+   *
+   * @param callable the {@link Callable}; must not be {@code null}
+   *
+   * @return the result of the {@link Callable}
+   *
+   * @exception ConfigurationUnavailableException if the {@link
+   * Callable} did not finish in time or failed, or was not called
+   * because the circuit breaker is open
+   */
+  private final <T> T call(final Callable<T> callable) {
+    boolean trial = false;
+    if (this.open) {
+      if (System.nanoTime() - this.retryTime < 0L || !this.trialInProgress.compareAndSet(false, true)) {
+        throw new ConfigurationUnavailableException(this.delegate + " is unavailable");
+      }
+      trial = true;
+    }
+    try {
+      final T returnValue;
+      try {
+        returnValue = this.callWithinDeadline(callable);
+      } catch (final ConfigurationUnavailableException failure) {
+        this.recordFailure(trial);
+        throw failure;
+      }
+      this.consecutiveFailures.set(0);
+      if (this.open) {
+        this.open = false;
+        if (this.logger.isLoggable(Level.INFO)) {
+          this.logger.logp(Level.INFO, this.getClass().getName(), "call", "{0} is available again", this.delegate);
+        }
+      }
+      return returnValue;
+    } finally {
+      if (trial) {
+        this.trialInProgress.set(false);
+      }
+    }
+  }
+
+  /**
+   * Calls the supplied {@link Callable}, waiting no longer than the
+   * deadline, if there is one, for it to finish.
+   *
+   * @param <T> the type of the result
+   *
+   * @param callable the {@link Callable}; must not be {@code null}
+   *
+   * @return the result of the {@link Callable}
+   *
+   * @exception ConfigurationUnavailableException if the {@link
+   * Callable} did not finish in time or failed
+   *
+   * @exception ConfigurationException if the {@link Callable} threw
+   * a {@link ConfigurationException}
+   *
+   * @exception IllegalArgumentException if the {@link Callable}
+   * threw an {@link IllegalArgumentException}
+   */
+  private final <T> T callWithinDeadline(final Callable<T> callable) {
+    Throwable failure;
+    if (this.executor == null) {
+      try {
+        return callable.call();
+      } catch (final Exception exception) {
+        failure = exception;
+      }
+    } else {
+      final Future<T> future;
+      try {
+        future = this.executor.submit(callable);
+      } catch (final RejectedExecutionException rejectedExecutionException) {
+        throw new ConfigurationUnavailableException(this.delegate + " could not be consulted; too many calls to it are outstanding, or it has been closed",
+                                                    rejectedExecutionException);
+      }
+      try {
+        return future.get(this.deadlineNanos, TimeUnit.NANOSECONDS);
+      } catch (final TimeoutException timeoutException) {
+        future.cancel(true);
+        throw new ConfigurationUnavailableException(this.delegate + " did not respond within " +
+                                                    TimeUnit.NANOSECONDS.toMillis(this.deadlineNanos) + " ms");
+      } catch (final InterruptedException interruptedException) {
+        future.cancel(true);
+        Thread.currentThread().interrupt();
+        throw new ConfigurationUnavailableException(this.delegate + " could not be consulted", interruptedException);
+      } catch (final ExecutionException executionException) {
+        failure = executionException.getCause();
+      }
+    }
+    if (failure instanceof ConfigurationUnavailableException) {
+      throw (ConfigurationUnavailableException)failure;
+    } else if (failure instanceof ConfigurationException || failure instanceof IllegalArgumentException) {
+      throw (RuntimeException)failure;
+    } else if (failure instanceof Error) {
+      throw (Error)failure;
+    } else {
+      throw new ConfigurationUnavailableException(this.delegate + " failed", failure);
+    }
+  }
+
+  /**
+   * Records a failure of a call to the {@linkplain #getDelegate()
+   * delegate}, opening the circuit breaker if appropriate.
+   *
+   * @param trial whether the failed call was the single call allowed
+   * through an open circuit breaker
+   */
+  private final void recordFailure(final boolean trial) {
+    final int failures = this.consecutiveFailures.incrementAndGet();
+    if (this.failureThreshold > 0 && (trial || failures >= this.failureThreshold)) {
+      this.retryTime = System.nanoTime() + this.retryIntervalNanos;
+      if (!this.open) {
+        this.open = true;
+        if (this.logger.isLoggable(Level.WARNING)) {
+          this.logger.logp(Level.WARNING, this.getClass().getName(), "recordFailure",
+                           "{0} failed {1} times in a row; not consulting it again for {2} ms",
+                           new Object[] { this.delegate, failures, TimeUnit.NANOSECONDS.toMillis(this.retryIntervalNanos) });
+        }
+      }
+    }
+  }
+
+  /**
+   * Releases the threads, if any, on which calls to the {@linkplain
+   * #getDelegate() delegate} are made, {@linkplain
+   * Thread#interrupt() interrupting} any that are still outstanding.
+   *
+   * <p>Once this method has been called, calls subject to a deadline
+   * fail with a {@link ConfigurationUnavailableException}.  Calling
+   * it more than once has no further effect.</p>
+   */
+  @Override
+  public final void close() {
+    if (this.executor != null) {
+      this.executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * GuardedConfigurations}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    return this.getClass().getSimpleName() + "[" + this.delegate + (this.open ? ", open" : "") + "]";
+  }
+
+}
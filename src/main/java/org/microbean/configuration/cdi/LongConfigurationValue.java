@@ -0,0 +1,126 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.util.function.LongSupplier;
+
+import org.microbean.configuration.cdi.annotation.ConfigurationValue; // for javadoc only
+
+/**
+ * A handle to a configuration value of type {@code long} that holds
+ * it unboxed and resolves it again only when the underlying
+ * configuration sources have changed.
+ *
+ * <p>A {@link LongConfigurationValue} may be injected into any
+ * {@link ConfigurationValue}-qualified injection point, in place of a
+ * {@code long} or {@link Long}, wherever the value is read often
+ * enough that boxing, or a lookup per read, would matter:</p>
+ *
+ * <blockquote><pre>&#64;Inject
+ * &#64;ConfigurationValue("timeout.millis")
+ * private LongConfigurationValue timeoutMillis;</pre></blockquote>
+ *
+ * <p>Calling the {@link #getAsLong()} method of an up-to-date {@link
+ * LongConfigurationValue} neither allocates nor unboxes.  If the configuration value is
+ * absent and has no {@linkplain ConfigurationValue#defaultValue()
+ * default value}, {@code 0L} is returned, just as it would be
+ * injected into a {@code long} injection point.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ConfigurationsExtension
+ */
+public final class LongConfigurationValue extends PrimitiveConfigurationValue implements LongSupplier {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The most recently resolved configuration value.
+   */
+  private volatile long value;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link LongConfigurationValue}.
+   *
+   * @param resolver the {@link ConfigurationValueResolver} that
+   * supplies the configuration value; must not be {@code null}
+   *
+   * @param key the {@link ConfigurationValueResolver.Key} describing
+   * the configuration value; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  LongConfigurationValue(final ConfigurationValueResolver resolver, final ConfigurationValueResolver.Key key) {
+    super(resolver, key);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the configuration value, resolving it again first if the
+   * underlying configuration sources have changed since it was last
+   * resolved.
+   *
+   * @return the configuration value
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if the configuration value could not be converted
+   */
+  @Override
+  public final long getAsLong() {
+    this.refresh();
+    return this.value;
+  }
+
+  @Override
+  final void set(final Object value) {
+    this.value = value == null ? 0L : ((Number)value).longValue();
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * LongConfigurationValue}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    return this.toString(String.valueOf(this.value));
+  }
+
+}
@@ -0,0 +1,66 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.util.ServiceLoader; // for javadoc only
+
+import org.microbean.configuration.api.Configurations; // for javadoc only
+
+/**
+ * A source of configuration information that cannot notify anyone
+ * when it changes and must therefore be periodically asked whether
+ * it has.
+ *
+ * <p>{@link Pollable} instances are discovered by the {@link
+ * ConfigurationsExtension} using the {@link ServiceLoader}
+ * mechanism.  Additionally, if the {@link Configurations} instance
+ * in use by a {@link ConfigurationsExtension} is itself a {@link
+ * Pollable}, it will be polled as well.</p>
+ *
+ * <p>Implementations of this interface must be safe for use by
+ * multiple threads, although a {@link ConfigurationsExtension} will
+ * never invoke the {@link #poll()} method of a given {@link
+ * Pollable} concurrently.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ConfigurationsExtension
+ */
+@FunctionalInterface
+public interface Pollable {
+
+  /**
+   * Checks the underlying source of configuration information and
+   * returns {@code true} if it has changed since the last time this
+   * method was invoked.
+   *
+   * <p>Implementations of this method should be as inexpensive as
+   * possible, since the time taken by each invocation is used to
+   * determine how often it will be invoked.</p>
+   *
+   * @return {@code true} if the underlying source of configuration
+   * information has changed since the last invocation of this
+   * method; {@code false} otherwise
+   *
+   * @exception Exception if an error occurs; the next invocation of
+   * this method will be delayed as if {@code false} had been
+   * returned
+   */
+  public boolean poll() throws Exception;
+
+}
@@ -0,0 +1,503 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.util.Collection;
+import java.util.Objects;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import java.util.function.Consumer;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A scheduler that periodically {@linkplain Pollable#poll() polls}
+ * a number of {@link Pollable}s on a single shared thread, backing
+ * off when a {@link Pollable} has not changed and speeding up again
+ * after it has.
+ *
+ * <p>The interval between two polls of a given {@link Pollable}
+ * starts at a {@linkplain #PollingScheduler(Logger, long, long,
+ * double, Consumer) minimum interval}, doubles every time a poll
+ * reports no change, up to a maximum interval, and drops back to the
+ * minimum interval as soon as a poll reports a change.  The interval
+ * is further stretched, if necessary, so that the time spent polling
+ * all {@link Pollable}s never exceeds a fixed fraction (the
+ * <em>duty cycle</em>) of the scheduler thread's time.</p>
+ *
+ * <p>The cost of every poll is reported to the {@link Logger}
+ * supplied at construction time at {@link Level#FINE} and is
+ * accumulated in {@linkplain #getTotalPollNanos() statistics}.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Pollable
+ *
+ * @see ConfigurationsExtension
+ */
+final class PollingScheduler implements AutoCloseable {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link Logger} to which poll costs and errors are reported.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Logger logger;
+
+  /**
+   * The minimum interval, in nanoseconds, between two polls of the
+   * same {@link Pollable}.
+   */
+  private final long minimumIntervalNanos;
+
+  /**
+   * The maximum interval, in nanoseconds, between two polls of the
+   * same {@link Pollable}, unless the {@linkplain #dutyCycle duty
+   * cycle} requires a longer one.
+   */
+  private final long maximumIntervalNanos;
+
+  /**
+   * The maximum fraction of the scheduler thread's time that may be
+   * spent polling; always greater than {@code 0} and less than or
+   * equal to {@code 1}.
+   */
+  private final double dutyCycle;
+
+  /**
+   * A {@link Consumer} notified with a {@link Pollable} whenever
+   * that {@link Pollable} reports a change.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Consumer<? super Pollable> changeListener;
+
+  /**
+   * The {@link PolledSource}s being polled.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Collection<PolledSource> sources;
+
+  /**
+   * The single-threaded {@link ScheduledThreadPoolExecutor} on which
+   * all polling happens.
+   *
+   * <p>This field is never {@code null}.  Polls that are still
+   * waiting to run when it is shut down are discarded.</p>
+   */
+  private final ScheduledThreadPoolExecutor executor;
+
+  /**
+   * The number of polls performed so far.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final LongAdder pollCount;
+
+  /**
+   * The number of polls performed so far that reported a change.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final LongAdder changeCount;
+
+  /**
+   * The total number of nanoseconds spent polling so far.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final LongAdder totalPollNanos;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link PollingScheduler}.
+   *
+   * @param logger the {@link Logger} to which poll costs and errors
+   * will be reported; must not be {@code null}
+   *
+   * @param minimumIntervalMillis the minimum interval, in
+   * milliseconds, between two polls of the same {@link Pollable};
+   * must be greater than {@code 0}
+   *
+   * @param maximumIntervalMillis the maximum interval, in
+   * milliseconds, between two polls of the same {@link Pollable};
+   * must be greater than or equal to {@code minimumIntervalMillis}
+   *
+   * @param dutyCycle the maximum fraction of the scheduler thread's
+   * time that may be spent polling; must be greater than {@code 0}
+   * and less than or equal to {@code 1}
+   *
+   * @param changeListener a {@link Consumer} that will be notified,
+   * on the scheduler thread, with any {@link Pollable} that reports a
+   * change; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code logger} or {@code
+   * changeListener} is {@code null}
+   *
+   * @exception IllegalArgumentException if any of the other
+   * parameters is out of range
+   */
+  PollingScheduler(final Logger logger,
+                   final long minimumIntervalMillis,
+                   final long maximumIntervalMillis,
+                   final double dutyCycle,
+                   final Consumer<? super Pollable> changeListener) {
+    super();
+    this.logger = Objects.requireNonNull(logger);
+    this.changeListener = Objects.requireNonNull(changeListener);
+    if (minimumIntervalMillis <= 0L) {
+      throw new IllegalArgumentException("minimumIntervalMillis <= 0: " + minimumIntervalMillis);
+    }
+    if (maximumIntervalMillis < minimumIntervalMillis) {
+      throw new IllegalArgumentException("maximumIntervalMillis < minimumIntervalMillis: " + maximumIntervalMillis);
+    }
+    if (!(dutyCycle > 0D && dutyCycle <= 1D)) {
+      throw new IllegalArgumentException("dutyCycle: " + dutyCycle);
+    }
+    this.minimumIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minimumIntervalMillis);
+    this.maximumIntervalNanos = TimeUnit.MILLISECONDS.toNanos(maximumIntervalMillis);
+    this.dutyCycle = dutyCycle;
+    this.sources = new CopyOnWriteArrayList<>();
+    this.pollCount = new LongAdder();
+    this.changeCount = new LongAdder();
+    this.totalPollNanos = new LongAdder();
+    this.executor = new ScheduledThreadPoolExecutor(1, r -> {
+        final Thread thread = new Thread(r, "microBean Configuration poller");
+        thread.setDaemon(true);
+        return thread;
+      });
+    this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Schedules the supplied {@link Pollable} for periodic polling
+   * and returns a {@link PolledSource} representing its polling
+   * state.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param pollable the {@link Pollable} to poll; must not be {@code
+   * null}
+   *
+   * @return a non-{@code null} {@link PolledSource}
+   *
+   * @exception NullPointerException if {@code pollable} is {@code
+   * null}
+   *
+   * @exception java.util.concurrent.RejectedExecutionException if
+   * this {@link PollingScheduler} has been {@linkplain #close()
+   * closed}
+   */
+  final PolledSource add(final Pollable pollable) {
+    final PolledSource source = new PolledSource(Objects.requireNonNull(pollable), this.minimumIntervalNanos);
+    this.sources.add(source);
+    this.executor.schedule(() -> this.poll(source), source.getIntervalNanos(), TimeUnit.NANOSECONDS);
+    return source;
+  }
+
+  /**
+   * Polls the supplied {@link PolledSource}, records the cost of
+   * doing so, notifies the change listener if necessary and
+   * schedules the next poll.
+   *
+   * @param source the {@link PolledSource} to poll; must not be
+   * {@code null}
+   */
+  private final void poll(final PolledSource source) {
+    final String cn = this.getClass().getName();
+    final String mn = "poll";
+    final Pollable pollable = source.pollable;
+    boolean changed = false;
+    final long start = System.nanoTime();
+    try {
+      changed = pollable.poll();
+    } catch (final Exception exception) {
+      if (this.logger.isLoggable(Level.WARNING)) {
+        this.logger.logp(Level.WARNING, cn, mn, "Polling " + pollable + " failed", exception);
+      }
+    }
+    final long cost = System.nanoTime() - start;
+    this.pollCount.increment();
+    this.totalPollNanos.add(cost);
+    final long nextInterval = this.computeNextInterval(changed, source.getIntervalNanos(), cost, this.sources.size());
+    source.update(changed, cost, nextInterval);
+    if (this.logger.isLoggable(Level.FINE)) {
+      this.logger.logp(Level.FINE, cn, mn,
+                       "Polled {0} in {1} ns; changed: {2}; next poll in {3} ms",
+                       new Object[] { pollable, cost, changed, TimeUnit.NANOSECONDS.toMillis(nextInterval) });
+    }
+    if (changed) {
+      this.changeCount.increment();
+      try {
+        this.changeListener.accept(pollable);
+      } catch (final RuntimeException exception) {
+        if (this.logger.isLoggable(Level.WARNING)) {
+          this.logger.logp(Level.WARNING, cn, mn, "Change listener failed for " + pollable, exception);
+        }
+      }
+    }
+    try {
+      this.executor.schedule(() -> this.poll(source), nextInterval, TimeUnit.NANOSECONDS);
+    } catch (final RejectedExecutionException closed) {
+      // close() was called while this poll was in progress.
+      if (this.logger.isLoggable(Level.FINE)) {
+        this.logger.logp(Level.FINE, cn, mn, "Not polling {0} again; closed", pollable);
+      }
+    }
+  }
+
+  /**
+   * Computes the number of nanoseconds to wait before polling a
+   * {@link Pollable} again.
+   *
+   * <p>If the last poll reported a change, the result is the
+   * minimum interval; otherwise it is double the current interval,
+   * capped at the maximum interval.  In either case the result is
+   * then raised, if necessary, so that polling {@code sourceCount}
+   * sources each costing {@code costNanos} stays within the duty
+   * cycle.</p>
+   *
+   * @param changed whether the last poll reported a change
+   *
+   * @param currentIntervalNanos the interval, in nanoseconds, that
+   * preceded the last poll
+   *
+   * @param costNanos the number of nanoseconds the last poll took
+   *
+   * @param sourceCount the number of sources sharing the scheduler
+   * thread; values less than {@code 1} are treated as {@code 1}
+   *
+   * @return the number of nanoseconds to wait before the next poll;
+   * always greater than {@code 0}
+   */
+  final long computeNextInterval(final boolean changed,
+                                 final long currentIntervalNanos,
+                                 final long costNanos,
+                                 final int sourceCount) {
+    long interval;
+    if (changed) {
+      interval = this.minimumIntervalNanos;
+    } else if (currentIntervalNanos >= this.maximumIntervalNanos / 2L) {
+      interval = this.maximumIntervalNanos;
+    } else {
+      interval = Math.max(this.minimumIntervalNanos, currentIntervalNanos * 2L);
+    }
+    final double budgetInterval = Math.max(0L, costNanos) * (double)Math.max(1, sourceCount) / this.dutyCycle;
+    if (budgetInterval > interval) {
+      interval = budgetInterval >= Long.MAX_VALUE ? Long.MAX_VALUE : (long)Math.ceil(budgetInterval);
+    }
+    return interval;
+  }
+
+  /**
+   * Returns the number of polls performed so far.
+   *
+   * @return the number of polls performed so far
+   */
+  final long getPollCount() {
+    return this.pollCount.sum();
+  }
+
+  /**
+   * Returns the number of polls performed so far that reported a
+   * change.
+   *
+   * @return the number of polls that reported a change
+   */
+  final long getChangeCount() {
+    return this.changeCount.sum();
+  }
+
+  /**
+   * Returns the total number of nanoseconds spent polling so far.
+   *
+   * @return the total number of nanoseconds spent polling
+   */
+  final long getTotalPollNanos() {
+    return this.totalPollNanos.sum();
+  }
+
+  /**
+   * Stops all polling irrevocably.
+   *
+   * <p>Any poll that is in progress is allowed to complete, but is
+   * not followed by another.  Polls that have been scheduled but have
+   * not yet started never run.</p>
+   */
+  @Override
+  public final void close() {
+    this.executor.shutdown();
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * The polling state of a single {@link Pollable}.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  static final class PolledSource {
+
+
+    /*
+     * Instance fields.
+     */
+
+
+    /**
+     * The {@link Pollable} being polled.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Pollable pollable;
+
+    /**
+     * The current interval, in nanoseconds, between two polls.
+     */
+    private volatile long intervalNanos;
+
+    /**
+     * The number of nanoseconds the last poll took.
+     */
+    private volatile long lastCostNanos;
+
+    /**
+     * Whether the last poll reported a change.
+     */
+    private volatile boolean lastChanged;
+
+
+    /*
+     * Constructors.
+     */
+
+
+    /**
+     * Creates a new {@link PolledSource}.
+     *
+     * @param pollable the {@link Pollable} to poll; must not be
+     * {@code null}
+     *
+     * @param intervalNanos the initial interval, in nanoseconds
+     */
+    private PolledSource(final Pollable pollable, final long intervalNanos) {
+      super();
+      this.pollable = pollable;
+      this.intervalNanos = intervalNanos;
+    }
+
+
+    /*
+     * Instance methods.
+     */
+
+
+    /**
+     * Records the outcome of a poll.
+     *
+     * @param changed whether the poll reported a change
+     *
+     * @param costNanos the number of nanoseconds the poll took
+     *
+     * @param nextIntervalNanos the interval, in nanoseconds, until
+     * the next poll
+     */
+    private final void update(final boolean changed, final long costNanos, final long nextIntervalNanos) {
+      this.lastChanged = changed;
+      this.lastCostNanos = costNanos;
+      this.intervalNanos = nextIntervalNanos;
+    }
+
+    /**
+     * Returns the current interval, in nanoseconds, between two
+     * polls of the {@link Pollable} this {@link PolledSource}
+     * represents.
+     *
+     * @return the current polling interval in nanoseconds
+     */
+    final long getIntervalNanos() {
+      return this.intervalNanos;
+    }
+
+    /**
+     * Returns the number of nanoseconds the last poll took.
+     *
+     * @return the cost of the last poll in nanoseconds
+     */
+    final long getLastCostNanos() {
+      return this.lastCostNanos;
+    }
+
+    /**
+     * Returns whether the last poll reported a change.
+     *
+     * @return {@code true} if the last poll reported a change
+     */
+    final boolean getLastChanged() {
+      return this.lastChanged;
+    }
+
+    /**
+     * Returns a {@link String} representation of this {@link
+     * PolledSource}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null} {@link String}
+     */
+    @Override
+    public final String toString() {
+      return this.pollable.toString();
+    }
+
+  }
+
+}
@@ -0,0 +1,327 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.reflect.Type;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The common superclass of handles to configuration values of
+ * primitive types, such as {@link IntConfigurationValue}, that hold
+ * the converted value unboxed and resolve it again, in place, only
+ * when the {@link ConfigurationValueResolver} that supplies it has
+ * been {@linkplain ConfigurationValueResolver#invalidate()
+ * invalidated}.
+ *
+ * <p>Reading the value of an up-to-date handle therefore costs two
+ * volatile reads and a comparison: nothing is allocated, looked up
+ * or unboxed.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ConfigurationValueResolver#getGeneration()
+ */
+abstract class PrimitiveConfigurationValue {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The primitive {@link Class} handled by each subclass, indexed by
+   * that subclass.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final Map<Class<?>, Class<?>> primitiveTypes;
+
+  /**
+   * The wrapper {@link Class} of each primitive {@link Class} in the
+   * {@link #primitiveTypes} {@link Map}, indexed by that primitive
+   * {@link Class}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final Map<Class<?>, Class<?>> wrapperTypes;
+
+  static {
+    final Map<Class<?>, Class<?>> primitives = new HashMap<>();
+    primitives.put(IntConfigurationValue.class, int.class);
+    primitives.put(LongConfigurationValue.class, long.class);
+    primitives.put(DoubleConfigurationValue.class, double.class);
+    primitives.put(BooleanConfigurationValue.class, boolean.class);
+    primitiveTypes = Collections.unmodifiableMap(primitives);
+    final Map<Class<?>, Class<?>> wrappers = new HashMap<>();
+    wrappers.put(int.class, Integer.class);
+    wrappers.put(long.class, Long.class);
+    wrappers.put(double.class, Double.class);
+    wrappers.put(boolean.class, Boolean.class);
+    wrapperTypes = Collections.unmodifiableMap(wrappers);
+  }
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link ConfigurationValueResolver} that supplies the
+   * configuration value.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConfigurationValueResolver resolver;
+
+  /**
+   * The {@link ConfigurationValueResolver.Key} describing the
+   * configuration value.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConfigurationValueResolver.Key key;
+
+  /**
+   * The {@linkplain ConfigurationValueResolver#getGeneration()
+   * generation} of the {@link ConfigurationValueResolver} at which the
+   * value held by this {@link PrimitiveConfigurationValue} was
+   * resolved, or {@code -1} if it has never been resolved.
+   *
+   * <p>Writes to this field publish the value held by the
+   * subclass.</p>
+   */
+  private volatile long generation;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link PrimitiveConfigurationValue}.
+   *
+   * @param resolver the {@link ConfigurationValueResolver} that
+   * supplies the configuration value; must not be {@code null}
+   *
+   * @param key the {@link ConfigurationValueResolver.Key} describing
+   * the configuration value; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  PrimitiveConfigurationValue(final ConfigurationValueResolver resolver, final ConfigurationValueResolver.Key key) {
+    super();
+    this.resolver = Objects.requireNonNull(resolver);
+    this.key = Objects.requireNonNull(key);
+    this.generation = -1L;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Resolves the configuration value again, and {@linkplain
+   * #set(Object) stores it}, if the {@link
+   * ConfigurationValueResolver} has been {@linkplain
+   * ConfigurationValueResolver#invalidate() invalidated} since it was
+   * last resolved.
+   *
+   * <p>Subclasses must call this method before reading the value they
+   * hold.</p>
+   *
+   * @exception org.microbean.configuration.api.ConfigurationException
+   * if the configuration value could not be converted; resolution
+   * will be attempted again the next time this method is called
+   */
+  final void refresh() {
+    if (this.generation != this.resolver.getGeneration()) {
+      synchronized (this) {
+        final long generation = this.resolver.getGeneration();
+        if (this.generation != generation) {
+          this.set(ConfigurationsExtension.getConfigurationValue(this.resolver, this.key));
+          // An invalidation during resolution leaves the generation
+          // behind, so the next call will resolve the value again.
+          this.generation = generation;
+        }
+      }
+    }
+  }
+
+  /**
+   * Stores the supplied resolved configuration value, unboxed.
+   *
+   * <p>This method is called only by the {@link #refresh()} method,
+   * while holding this {@link PrimitiveConfigurationValue}'s
+   * monitor.</p>
+   *
+   * @param value the resolved configuration value, boxed; {@code null}
+   * if it was absent and had no default value
+   */
+  abstract void set(final Object value);
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * PrimitiveConfigurationValue}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param value a {@link String} representation of the value held
+   * by the subclass; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  final String toString(final String value) {
+    return this.getClass().getSimpleName() + "[" + this.key.getMetadata().getNames() + "=" + value + "]";
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the {@link Type} to which the configuration value held by
+   * a {@link PrimitiveConfigurationValue} of the supplied {@link
+   * Class} should be converted, or {@code null} if the supplied
+   * {@link Class} is not such a subclass or neither its primitive
+   * type nor the corresponding wrapper type is among the supplied
+   * conversion types.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * <p>The primitive type is preferred, so that the resolved value is
+   * shared with {@link
+   * org.microbean.configuration.cdi.annotation.ConfigurationValue}-qualified
+   * injection points of that primitive type.</p>
+   *
+   * @param handleType the {@link Type} of a handle, such as {@link
+   * IntConfigurationValue}; may be {@code null}
+   *
+   * @param conversionTypes the {@linkplain
+   * org.microbean.configuration.api.Configurations#getConversionTypes()
+   * conversion types} available; may be {@code null}
+   *
+   * @return the {@link Type} to convert to, or {@code null}
+   */
+  static final Type getHandledType(final Type handleType, final Set<? extends Type> conversionTypes) {
+    return getConversionType(primitiveTypes.get(handleType), conversionTypes);
+  }
+
+  /**
+   * Returns the supplied primitive {@link Class} if it is among the
+   * supplied conversion types, or else its wrapper {@link Class} if
+   * that is, or else {@code null}.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param primitiveType a primitive {@link Class} handled by one of
+   * the {@linkplain #getHandleTypes() handle types}, such as {@code
+   * int.class}; may be {@code null}
+   *
+   * @param conversionTypes the {@linkplain
+   * org.microbean.configuration.api.Configurations#getConversionTypes()
+   * conversion types} available; may be {@code null}
+   *
+   * @return the {@link Type} to convert to, or {@code null}
+   *
+   * @see #getHandledType(Type, Set)
+   */
+  static final Type getConversionType(final Class<?> primitiveType, final Set<? extends Type> conversionTypes) {
+    Type returnValue = null;
+    if (primitiveType != null && conversionTypes != null) {
+      if (conversionTypes.contains(primitiveType)) {
+        returnValue = primitiveType;
+      } else {
+        final Class<?> wrapperType = wrapperTypes.get(primitiveType);
+        if (wrapperType != null && conversionTypes.contains(wrapperType)) {
+          returnValue = wrapperType;
+        }
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link Set} of the {@link Class}es of all {@link
+   * PrimitiveConfigurationValue} subclasses.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, immutable {@link Set}
+   */
+  static final Set<Class<?>> getHandleTypes() {
+    return primitiveTypes.keySet();
+  }
+
+  /**
+   * Returns a new {@link PrimitiveConfigurationValue} of the supplied
+   * {@link Class}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param handleType the {@link Class} of the handle, such as {@link
+   * IntConfigurationValue}; must be one of the {@linkplain
+   * #getHandleTypes() handle types}
+   *
+   * @param resolver the {@link ConfigurationValueResolver} that will
+   * supply the configuration value; must not be {@code null}
+   *
+   * @param key the {@link ConfigurationValueResolver.Key} describing
+   * the configuration value; must not be {@code null}
+   *
+   * @return a new, non-{@code null} {@link
+   * PrimitiveConfigurationValue}
+   *
+   * @exception NullPointerException if {@code resolver} or {@code
+   * key} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code handleType} is not
+   * one of the {@linkplain #getHandleTypes() handle types}
+   */
+  static final PrimitiveConfigurationValue newInstance(final Class<?> handleType,
+                                                       final ConfigurationValueResolver resolver,
+                                                       final ConfigurationValueResolver.Key key) {
+    if (IntConfigurationValue.class.equals(handleType)) {
+      return new IntConfigurationValue(resolver, key);
+    } else if (LongConfigurationValue.class.equals(handleType)) {
+      return new LongConfigurationValue(resolver, key);
+    } else if (DoubleConfigurationValue.class.equals(handleType)) {
+      return new DoubleConfigurationValue(resolver, key);
+    } else if (BooleanConfigurationValue.class.equals(handleType)) {
+      return new BooleanConfigurationValue(resolver, key);
+    } else {
+      throw new IllegalArgumentException("handleType: " + handleType);
+    }
+  }
+
+}
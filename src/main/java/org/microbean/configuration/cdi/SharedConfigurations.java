@@ -0,0 +1,613 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.microbean.configuration.api.Configurations;
+
+/**
+ * A JVM-wide, reference-counted registry of {@link Configurations}
+ * instances that allows several CDI containers using the same
+ * configuration sources to share one {@link Configurations} rather
+ * than each creating, and holding, its own.
+ *
+ * <p>A {@link Configurations} is {@linkplain #acquire(Key, Supplier)
+ * acquired} by {@link Key}, which identifies the configuration
+ * sources it is made from.  The first acquisition for a given {@link
+ * Key} creates it; subsequent acquisitions reuse it.  Each
+ * acquisition returns a {@link Lease} that must be {@linkplain
+ * Lease#close() closed} when the {@link Configurations} is no longer
+ * needed.  When the last {@link Lease} for a {@link Key} is closed,
+ * the {@link Configurations} is forgotten, and the next acquisition
+ * for that {@link Key} creates a new one.</p>
+ *
+ * <p>The {@link Pollable}s making up a shared {@link Configurations}
+ * are {@linkplain Lease#startPolling(Collection, Consumer, Function)
+ * polled} once per shared {@link Configurations}, not once per
+ * {@link Lease}, and every change is reported to every {@link
+ * Lease} holder.</p>
+ *
+ * <p>The registry refers to {@link ClassLoader}s and to the shared
+ * {@link Configurations} weakly, so a container that is discarded
+ * without closing its {@link Lease} does not keep its {@link
+ * ClassLoader} reachable through this class.</p>
+ *
+ * <p>This class is safe for concurrent use by multiple threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ConfigurationsExtension
+ */
+final class SharedConfigurations {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The registry itself.
+   *
+   * <p>Values are only weakly reachable from this field; each {@link
+   * Entry} is kept reachable by its open {@link Lease}s.</p>
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * <p>All access to this field must be synchronized on it.</p>
+   */
+  private static final Map<Key, EntryReference> registry = new HashMap<>();
+
+  /**
+   * The {@link ReferenceQueue} on which cleared {@link
+   * EntryReference}s and {@link Key} {@link ClassLoader} references
+   * are enqueued.
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * <p>It is only polled while {@link #registry} is locked.</p>
+   */
+  private static final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private SharedConfigurations() {
+    super();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Acquires the shared {@link Configurations} identified by the
+   * supplied {@link Key}, using the supplied {@link Supplier} to
+   * begin creating it if no {@link Lease} for that {@link Key} is
+   * currently open.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>If a previous attempt to create the {@link Configurations}
+   * identified by the supplied {@link Key} failed, another attempt
+   * is made.</p>
+   *
+   * <p>The supplied {@link Supplier} is invoked while a JVM-wide lock
+   * is held, so it should only begin creating the {@link
+   * Configurations} (on another thread, for example), not wait for
+   * it to be created.</p>
+   *
+   * @param key the {@link Key} identifying the {@link
+   * Configurations}; must not be {@code null}
+   *
+   * @param creator a {@link Supplier} of a {@link CompletableFuture}
+   * that will complete with a new {@link Configurations}; must not be
+   * {@code null} and must not return {@code null}
+   *
+   * @return a new, non-{@code null} {@link Lease}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  static final Lease acquire(final Key key, final Supplier<? extends CompletableFuture<Configurations>> creator) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(creator);
+    final Entry entry;
+    final boolean created;
+    synchronized (registry) {
+      expungeStaleEntries();
+      Entry existingEntry = get(key);
+      // Don't hand out a failure forever; try again instead.
+      if (existingEntry == null || existingEntry.configurations.isCompletedExceptionally()) {
+        existingEntry = new Entry(Objects.requireNonNull(creator.get()));
+        registry.put(key, new EntryReference(key, existingEntry));
+        created = true;
+      } else {
+        created = false;
+      }
+      existingEntry.references++;
+      entry = existingEntry;
+    }
+    return new Lease(key, entry, created);
+  }
+
+  /**
+   * Returns the number of open {@link Lease}s for the supplied {@link
+   * Key}.
+   *
+   * @param key the {@link Key} in question; may be {@code null} in
+   * which case {@code 0} will be returned
+   *
+   * @return the number of open {@link Lease}s; never negative
+   */
+  static final int getReferenceCount(final Key key) {
+    synchronized (registry) {
+      expungeStaleEntries();
+      final Entry entry = get(key);
+      return entry == null ? 0 : entry.references;
+    }
+  }
+
+  /**
+   * Returns the {@link Entry} registered under the supplied {@link
+   * Key}, or {@code null} if there is none.
+   *
+   * <p>This method must be called while {@link #registry} is
+   * locked.</p>
+   *
+   * @param key the {@link Key} in question; may be {@code null}
+   *
+   * @return the {@link Entry} registered under {@code key}, or {@code
+   * null}
+   */
+  private static final Entry get(final Key key) {
+    assert Thread.holdsLock(registry);
+    final EntryReference reference = registry.get(key);
+    return reference == null ? null : reference.get();
+  }
+
+  /**
+   * Removes from the registry every mapping whose {@link Entry} has
+   * been garbage collected or whose {@link Key}'s {@link
+   * ClassLoader} has been garbage collected.
+   *
+   * <p>This method must be called while {@link #registry} is
+   * locked.</p>
+   */
+  private static final void expungeStaleEntries() {
+    assert Thread.holdsLock(registry);
+    Reference<?> reference;
+    while ((reference = queue.poll()) != null) {
+      final Key key;
+      if (reference instanceof EntryReference) {
+        key = ((EntryReference)reference).key;
+      } else {
+        key = ((ClassLoaderReference)reference).key;
+      }
+      final EntryReference current = registry.get(key);
+      if (current != null && (current == reference || current.key.isStale())) {
+        registry.remove(key);
+      }
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An identifier for a set of configuration sources.
+   *
+   * <p>Two {@link Key}s are equal if they refer to the same {@link
+   * ClassLoader}, the same names of {@link Configurations}
+   * implementations in the same order, and the same manner of
+   * combining them.  A {@link Key} refers to its {@link ClassLoader}
+   * weakly; once that {@link ClassLoader} has been garbage
+   * collected, the {@link Key} is equal only to itself.</p>
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  static final class Key {
+
+    private final ClassLoaderReference classLoader;
+
+    private final int classLoaderHashCode;
+
+    private final List<String> providerClassNames;
+
+    private final boolean composite;
+
+    /**
+     * Creates a new {@link Key}.
+     *
+     * @param classLoader the {@link ClassLoader} from which the
+     * configuration sources are loaded; may be {@code null}
+     *
+     * @param providerClassNames the names of the {@link
+     * Configurations} implementations visible to that {@link
+     * ClassLoader}, in order; must not be {@code null}
+     *
+     * @param composite whether all of those implementations are
+     * combined, as by {@link CompositeConfigurations}, or only the
+     * first is used
+     *
+     * @exception NullPointerException if {@code providerClassNames}
+     * is {@code null}
+     */
+    Key(final ClassLoader classLoader, final Set<String> providerClassNames, final boolean composite) {
+      super();
+      this.classLoader = classLoader == null ? null : new ClassLoaderReference(this, classLoader);
+      this.classLoaderHashCode = System.identityHashCode(classLoader);
+      this.providerClassNames = Collections.unmodifiableList(new ArrayList<>(providerClassNames));
+      this.composite = composite;
+    }
+
+    /**
+     * Returns the {@link ClassLoader} this {@link Key} refers to,
+     * which may be {@code null} either because this {@link Key}
+     * refers to the bootstrap {@link ClassLoader} or because its
+     * {@link ClassLoader} has been garbage collected.
+     *
+     * @return the {@link ClassLoader}, or {@code null}
+     *
+     * @see #isStale()
+     */
+    private final ClassLoader getClassLoader() {
+      return this.classLoader == null ? null : this.classLoader.get();
+    }
+
+    /**
+     * Returns {@code true} if the {@link ClassLoader} this {@link
+     * Key} refers to has been garbage collected.
+     *
+     * @return whether this {@link Key} can no longer be equal to any
+     * other {@link Key}
+     */
+    private final boolean isStale() {
+      return this.classLoader != null && this.classLoader.get() == null;
+    }
+
+    @Override
+    public final int hashCode() {
+      int hashCode = 17;
+      hashCode = 37 * hashCode + this.classLoaderHashCode;
+      hashCode = 37 * hashCode + this.providerClassNames.hashCode();
+      hashCode = 37 * hashCode + (this.composite ? 1 : 0);
+      return hashCode;
+    }
+
+    @Override
+    public final boolean equals(final Object other) {
+      if (other == this) {
+        return true;
+      } else if (other instanceof Key) {
+        final Key her = (Key)other;
+        if (this.isStale() || her.isStale()) {
+          return false;
+        }
+        // Order matters: it determines which implementation wins.
+        return
+          this.getClassLoader() == her.getClassLoader() &&
+          this.composite == her.composite &&
+          this.providerClassNames.equals(her.providerClassNames);
+      } else {
+        return false;
+      }
+    }
+
+    @Override
+    public final String toString() {
+      return this.providerClassNames + (this.composite ? " (composite)" : "") + " from " + this.getClassLoader();
+    }
+
+  }
+
+  /**
+   * A reference to a shared {@link Configurations} that must be
+   * {@linkplain #close() closed} when it is no longer needed.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  static final class Lease implements AutoCloseable {
+
+    private final Key key;
+
+    private final Entry entry;
+
+    private final boolean created;
+
+    private Consumer<? super Pollable> changeListener;
+
+    private boolean closed;
+
+    private Lease(final Key key, final Entry entry, final boolean created) {
+      super();
+      this.key = key;
+      this.entry = entry;
+      this.created = created;
+    }
+
+    /**
+     * Returns a {@link CompletableFuture} that completes with the
+     * shared {@link Configurations}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null} {@link CompletableFuture}
+     */
+    final CompletableFuture<Configurations> getConfigurations() {
+      return this.entry.configurations;
+    }
+
+    /**
+     * Returns {@code true} if acquiring this {@link Lease} caused the
+     * shared {@link Configurations} to be created, or {@code false}
+     * if an existing one is being reused.
+     *
+     * @return whether this {@link Lease} created the shared {@link
+     * Configurations}
+     */
+    final boolean isCreator() {
+      return this.created;
+    }
+
+    /**
+     * Arranges for the supplied {@link Consumer} to be notified
+     * whenever one of the {@link Pollable}s making up the shared
+     * {@link Configurations} reports a change, and returns the {@link
+     * PollingScheduler} that polls them.
+     *
+     * <p>The first {@link Lease} to call this method with a non-empty
+     * {@link Collection} of {@link Pollable}s causes a {@link
+     * PollingScheduler} to be created, using the supplied {@link
+     * Function}, and those {@link Pollable}s to be added to it.
+     * Every other call only registers its {@link Consumer}; it is
+     * assumed to supply the same {@link Pollable}s, since they come
+     * from the same shared {@link Configurations}.  Each {@link
+     * Pollable} is therefore polled by one thread, and every change
+     * it reports reaches every {@link Lease} holder.</p>
+     *
+     * <p>The {@link PollingScheduler} is {@linkplain
+     * PollingScheduler#close() closed} when the last {@link Lease} on
+     * the shared {@link Configurations} is {@linkplain #close()
+     * closed}; callers must not close it themselves.</p>
+     *
+     * <p>Calling this method more than once on the same {@link
+     * Lease} replaces the {@link Consumer} registered earlier.</p>
+     *
+     * @param pollables the {@link Pollable}s making up the shared
+     * {@link Configurations}; must not be {@code null}
+     *
+     * @param changeListener a {@link Consumer} to be notified, on the
+     * polling thread, with any {@link Pollable} that reports a
+     * change; must not be {@code null}
+     *
+     * @param schedulerFactory a {@link Function} that, given the
+     * {@link Consumer} the {@link PollingScheduler} must notify,
+     * creates a new {@link PollingScheduler}; must not be {@code null}
+     * and must not return {@code null}
+     *
+     * @return the {@link PollingScheduler} polling the shared {@link
+     * Configurations}, or {@code null} if there is none
+     *
+     * @exception NullPointerException if any parameter is {@code null}
+     *
+     * @exception IllegalStateException if this {@link Lease} has been
+     * {@linkplain #close() closed}
+     */
+    final PollingScheduler startPolling(final Collection<? extends Pollable> pollables,
+                                        final Consumer<? super Pollable> changeListener,
+                                        final Function<Consumer<? super Pollable>, ? extends PollingScheduler> schedulerFactory) {
+      Objects.requireNonNull(pollables);
+      Objects.requireNonNull(changeListener);
+      Objects.requireNonNull(schedulerFactory);
+      synchronized (registry) {
+        if (this.closed) {
+          throw new IllegalStateException("closed");
+        }
+        if (this.changeListener != null) {
+          this.entry.changeListeners.remove(this.changeListener);
+        }
+        this.changeListener = changeListener;
+        this.entry.changeListeners.add(changeListener);
+        if (this.entry.pollingScheduler == null && !pollables.isEmpty()) {
+          final PollingScheduler pollingScheduler = Objects.requireNonNull(schedulerFactory.apply(this.entry::changed));
+          for (final Pollable pollable : pollables) {
+            pollingScheduler.add(pollable);
+          }
+          this.entry.pollingScheduler = pollingScheduler;
+        }
+        return this.entry.pollingScheduler;
+      }
+    }
+
+    /**
+     * Releases this {@link Lease}.
+     *
+     * <p>Any {@link Consumer} registered by the {@link
+     * #startPolling(Collection, Consumer, Function)} method is no
+     * longer notified.  If this is the last open {@link Lease} on the
+     * shared {@link Configurations}, its polling, if any, is
+     * stopped.</p>
+     *
+     * <p>Closing a {@link Lease} that is already closed has no
+     * effect.</p>
+     */
+    @Override
+    public final void close() {
+      this.release();
+    }
+
+    /**
+     * Releases this {@link Lease}, exactly as the {@link #close()}
+     * method does, and returns {@code true} if it was the last open
+     * {@link Lease} on the shared {@link Configurations}, so that the
+     * caller may dispose of any resources the shared {@link
+     * Configurations} holds.
+     *
+     * <p>Releasing a {@link Lease} that is already closed has no
+     * effect and returns {@code false}.</p>
+     *
+     * @return {@code true} if no open {@link Lease}s on the shared
+     * {@link Configurations} remain as a result of this call
+     */
+    final boolean release() {
+      boolean last = false;
+      PollingScheduler pollingScheduler = null;
+      synchronized (registry) {
+        if (!this.closed) {
+          this.closed = true;
+          if (this.changeListener != null) {
+            this.entry.changeListeners.remove(this.changeListener);
+            this.changeListener = null;
+          }
+          if (--this.entry.references <= 0) {
+            last = true;
+            pollingScheduler = this.entry.pollingScheduler;
+            this.entry.pollingScheduler = null;
+            if (get(this.key) == this.entry) {
+              registry.remove(this.key);
+            }
+          }
+        }
+      }
+      if (pollingScheduler != null) {
+        pollingScheduler.close();
+      }
+      return last;
+    }
+
+    @Override
+    public final String toString() {
+      return "Lease on " + this.key;
+    }
+
+  }
+
+  /**
+   * A registry entry: a shared {@link Configurations}, the number of
+   * open {@link Lease}s on it, and the polling state shared by those
+   * {@link Lease}s.
+   */
+  private static final class Entry {
+
+    private final CompletableFuture<Configurations> configurations;
+
+    private final Collection<Consumer<? super Pollable>> changeListeners;
+
+    private int references;
+
+    private PollingScheduler pollingScheduler;
+
+    private Entry(final CompletableFuture<Configurations> configurations) {
+      super();
+      this.configurations = configurations;
+      this.changeListeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Notifies every registered change listener that the supplied
+     * {@link Pollable} has changed.
+     *
+     * <p>A listener that throws does not prevent the others from
+     * being notified; the first {@link RuntimeException} thrown is
+     * rethrown afterwards, with any others {@linkplain
+     * Throwable#addSuppressed(Throwable) suppressed}.</p>
+     *
+     * @param pollable the {@link Pollable} that changed; must not be
+     * {@code null}
+     */
+    private final void changed(final Pollable pollable) {
+      RuntimeException failure = null;
+      for (final Consumer<? super Pollable> changeListener : this.changeListeners) {
+        try {
+          changeListener.accept(pollable);
+        } catch (final RuntimeException exception) {
+          if (failure == null) {
+            failure = exception;
+          } else {
+            failure.addSuppressed(exception);
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+
+  }
+
+  /**
+   * A {@link WeakReference} to an {@link Entry} that remembers the
+   * {@link Key} under which it is registered.
+   */
+  private static final class EntryReference extends WeakReference<Entry> {
+
+    private final Key key;
+
+    private EntryReference(final Key key, final Entry entry) {
+      super(entry, queue);
+      this.key = key;
+    }
+
+  }
+
+  /**
+   * A {@link WeakReference} to a {@link Key}'s {@link ClassLoader}
+   * that remembers that {@link Key}.
+   */
+  private static final class ClassLoaderReference extends WeakReference<ClassLoader> {
+
+    private final Key key;
+
+    private ClassLoaderReference(final Key key, final ClassLoader classLoader) {
+      super(classLoader, queue);
+      this.key = key;
+    }
+
+  }
+
+}
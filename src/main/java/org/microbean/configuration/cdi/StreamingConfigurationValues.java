@@ -0,0 +1,709 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+
+import java.lang.reflect.Type;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.microbean.configuration.api.ConfigurationException;
+
+/**
+ * Supplies configuration values as {@link Reader}s, {@link
+ * InputStream}s, {@link ReadableByteChannel}s and read-only {@link
+ * ByteBuffer}s, so that large values such as certificates, schemas
+ * and rule tables need not be materialized as {@link String}s and
+ * then copied again.
+ *
+ * <p>A configuration value that is a {@code file:} URI denotes the
+ * contents of that file.  The file is read the first time it is
+ * needed, and what was read is shared by every {@link ByteBuffer},
+ * {@link InputStream}, {@link ReadableByteChannel} and {@link
+ * Reader} subsequently supplied for it.  A file no larger than the
+ * {@linkplain #StreamingConfigurationValues(ConfigurationValueResolver,
+ * int, long) maximum copied size} is copied onto the heap.  A larger
+ * one is first copied to a private, temporary file, which is then
+ * memory-mapped, read-only, so that its contents are paged in by the
+ * operating system on demand.  The file itself is never mapped: a
+ * mapped file that is truncated or rewritten in place by another
+ * process would make reads of the mapping fail with an {@link
+ * InternalError} or crash the virtual machine outright.  What was
+ * read is replaced when the configuration value changes, or when
+ * the file's size or modification time does; the file's attributes
+ * are checked at most once per {@linkplain
+ * #StreamingConfigurationValues(ConfigurationValueResolver, int,
+ * long) check interval}.  A file too large to be mapped is instead
+ * streamed directly from disk, and cannot be supplied as a {@link
+ * ByteBuffer}.</p>
+ *
+ * <p>Any other configuration value is its own content.  It is
+ * supplied to {@link Reader}s without being copied, and is encoded
+ * as UTF-8 only once for all the other types.</p>
+ *
+ * <p>{@link Reader}s decode their content as UTF-8.  Every object
+ * supplied is new and positioned at the start of the content;
+ * closing it releases no shared resources, but is good
+ * practice.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #get(ConfigurationValueResolver.Key)
+ */
+final class StreamingConfigurationValues {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The {@link Type}s that a {@link StreamingConfigurationValues} can
+   * supply.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final Set<Type> streamingTypes =
+    Collections.unmodifiableSet(new HashSet<>(Arrays.asList(Reader.class,
+                                                            InputStream.class,
+                                                            ReadableByteChannel.class,
+                                                            ByteBuffer.class)));
+
+  /**
+   * The prefix that identifies a configuration value as a {@code
+   * file:} URI.
+   */
+  private static final String FILE_PREFIX = "file:";
+
+  /**
+   * The default size, in bytes, of the largest file that will be
+   * copied onto the heap rather than memory-mapped.
+   */
+  static final int DEFAULT_MAXIMUM_COPIED_SIZE = 1024 * 1024;
+
+  /**
+   * The default minimum number of milliseconds that will elapse
+   * between checks of a file's size and modification time.
+   */
+  static final long DEFAULT_CHECK_INTERVAL = 1000L;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link ConfigurationValueResolver} that resolves the
+   * underlying string values.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConfigurationValueResolver resolver;
+
+  /**
+   * A {@link ConcurrentMap} of {@link Blob}s, indexed by the {@link
+   * String}-typed {@link ConfigurationValueResolver.Key}s describing
+   * the string values they were created from.
+   *
+   * <p>This field is never {@code null}.  It holds at most one entry
+   * per distinct configuration value.</p>
+   */
+  private final ConcurrentMap<ConfigurationValueResolver.Key, Blob> blobs;
+
+  /**
+   * The size, in bytes, of the largest file that will be copied onto
+   * the heap rather than memory-mapped.
+   */
+  private final int maximumCopiedSize;
+
+  /**
+   * The minimum number of nanoseconds that will elapse between checks
+   * of a file's size and modification time.
+   */
+  private final long checkIntervalNanos;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link StreamingConfigurationValues} that copies
+   * files of up to {@linkplain #DEFAULT_MAXIMUM_COPIED_SIZE one
+   * megabyte} onto the heap and checks files for changes at most
+   * {@linkplain #DEFAULT_CHECK_INTERVAL once a second}.
+   *
+   * @param resolver the {@link ConfigurationValueResolver} that will
+   * resolve the underlying string values; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code resolver} is {@code
+   * null}
+   *
+   * @see #StreamingConfigurationValues(ConfigurationValueResolver,
+   * int, long)
+   */
+  StreamingConfigurationValues(final ConfigurationValueResolver resolver) {
+    this(resolver, DEFAULT_MAXIMUM_COPIED_SIZE, DEFAULT_CHECK_INTERVAL);
+  }
+
+  /**
+   * Creates a new {@link StreamingConfigurationValues}.
+   *
+   * @param resolver the {@link ConfigurationValueResolver} that will
+   * resolve the underlying string values; must not be {@code null}
+   *
+   * @param maximumCopiedSize the size, in bytes, of the largest file
+   * that will be copied onto the heap; larger files are copied to a
+   * private, temporary file and memory-mapped; negative values are
+   * treated as {@code 0}
+   *
+   * @param checkInterval the minimum number of milliseconds that will
+   * elapse between checks of a file's size and modification time;
+   * {@code 0} causes every call to {@link
+   * #get(ConfigurationValueResolver.Key)} to check; negative values
+   * are treated as {@code 0}
+   *
+   * @exception NullPointerException if {@code resolver} is {@code
+   * null}
+   */
+  StreamingConfigurationValues(final ConfigurationValueResolver resolver,
+                               final int maximumCopiedSize,
+                               final long checkInterval) {
+    super();
+    this.resolver = Objects.requireNonNull(resolver);
+    this.blobs = new ConcurrentHashMap<>();
+    this.maximumCopiedSize = Math.max(0, maximumCopiedSize);
+    this.checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, checkInterval));
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns a new {@link Reader}, {@link InputStream}, {@link
+   * ReadableByteChannel} or read-only {@link ByteBuffer}, as
+   * indicated by the {@linkplain
+   * ConfigurationValueResolver.Key#getType() type} of the supplied
+   * {@link ConfigurationValueResolver.Key}, over the content of the
+   * configuration value it describes, or {@code null} if that
+   * configuration value is absent and has no default value.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param key the {@link ConfigurationValueResolver.Key}; must not
+   * be {@code null}
+   *
+   * @return a new object over the configuration value's content, or
+   * {@code null}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   *
+   * @exception IllegalArgumentException if the {@link
+   * ConfigurationValueResolver.Key}'s type is not {@linkplain
+   * #isSupported(Type) supported}
+   *
+   * @exception ConfigurationException if the configuration value is
+   * a {@code file:} URI that does not denote a readable file, or if
+   * a {@link ByteBuffer} is required and the file is too large to be
+   * mapped
+   */
+  final Object get(final ConfigurationValueResolver.Key key) {
+    final Type type = key.getType();
+    if (!isSupported(type)) {
+      throw new IllegalArgumentException("key: " + key);
+    }
+    final ConfigurationValueResolver.Key stringKey = new ConfigurationValueResolver.Key(key.getMetadata(), String.class);
+    final String string = (String)this.resolver.resolve(stringKey);
+    if (string == null) {
+      return null;
+    }
+    final boolean file = isFile(string);
+    if (!file && Reader.class.equals(type)) {
+      return new StringReader(string);
+    }
+    try {
+      Blob blob = this.blobs.get(stringKey);
+      if (blob == null || !blob.isCurrent(string, this.checkIntervalNanos)) {
+        blob = file ? Blob.read(string, toPath(string), this.maximumCopiedSize, this.checkIntervalNanos) : Blob.encode(string);
+        this.blobs.put(stringKey, blob);
+      }
+      return blob.open(type);
+    } catch (final IOException ioException) {
+      throw new ConfigurationException("Could not read " + string, ioException);
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns {@code true} if the supplied {@link Type} is {@link
+   * Reader}, {@link InputStream}, {@link ReadableByteChannel} or
+   * {@link ByteBuffer}.
+   *
+   * @param type the {@link Type} to inspect; may be {@code null}
+   *
+   * @return {@code true} if the supplied {@link Type} can be supplied
+   * by a {@link StreamingConfigurationValues}
+   */
+  static final boolean isSupported(final Type type) {
+    return type != null && streamingTypes.contains(type);
+  }
+
+  /**
+   * Returns {@code true} if the supplied configuration value is a
+   * {@code file:} URI.
+   *
+   * @param string the configuration value; must not be {@code null}
+   *
+   * @return {@code true} if the supplied configuration value denotes
+   * the contents of a file
+   */
+  static final boolean isFile(final String string) {
+    return string.regionMatches(true, 0, FILE_PREFIX, 0, FILE_PREFIX.length());
+  }
+
+  /**
+   * Returns the {@link Path} denoted by the supplied {@code file:}
+   * URI.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param string a {@code file:} URI; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link Path}
+   *
+   * @exception ConfigurationException if the supplied {@link String}
+   * is not an absolute, hierarchical {@code file:} URI
+   */
+  private static final Path toPath(final String string) {
+    try {
+      return Paths.get(new URI(string));
+    } catch (final URISyntaxException | IllegalArgumentException | FileSystemNotFoundException badUri) {
+      throw new ConfigurationException("Not a file URI: " + string, badUri);
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * The content of a configuration value, together with what is needed
+   * to tell whether it is still current.
+   */
+  private static final class Blob {
+
+    /**
+     * The configuration value from which this {@link Blob} was
+     * created.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final String string;
+
+    /**
+     * The file whose content this {@link Blob} represents, or {@code
+     * null} if the content is the configuration value itself.
+     */
+    private final Path path;
+
+    /**
+     * The size of the file at {@link #path} when this {@link Blob}
+     * was created, or {@code -1} if there is no such file.
+     */
+    private final long size;
+
+    /**
+     * The modification time of the file at {@link #path} when this
+     * {@link Blob} was created, or {@code null} if there is no such
+     * file.
+     */
+    private final FileTime lastModifiedTime;
+
+    /**
+     * The value of {@link System#nanoTime()} after which the file at
+     * {@link #path} will next be checked for changes.
+     */
+    private volatile long nextCheckNanos;
+
+    /**
+     * A read-only {@link ByteBuffer} over the content, positioned at
+     * its start, or {@code null} if the file at {@link #path} is too
+     * large to be mapped.
+     *
+     * <p>This {@link ByteBuffer} is never handed out; only {@linkplain
+     * ByteBuffer#duplicate() duplicates} of it are.</p>
+     */
+    private final ByteBuffer content;
+
+    /**
+     * Creates a new {@link Blob}.
+     *
+     * @param string the configuration value; must not be {@code null}
+     *
+     * @param path the file; may be {@code null}
+     *
+     * @param size the file's size, or {@code -1}
+     *
+     * @param lastModifiedTime the file's modification time; may be
+     * {@code null}
+     *
+     * @param content a read-only {@link ByteBuffer} over the content;
+     * may be {@code null} only if {@code path} is not
+     *
+     * @param checkIntervalNanos the minimum number of nanoseconds
+     * before the file is first checked for changes
+     */
+    private Blob(final String string,
+                 final Path path,
+                 final long size,
+                 final FileTime lastModifiedTime,
+                 final ByteBuffer content,
+                 final long checkIntervalNanos) {
+      super();
+      this.string = string;
+      this.path = path;
+      this.size = size;
+      this.lastModifiedTime = lastModifiedTime;
+      this.content = content;
+      this.nextCheckNanos = System.nanoTime() + checkIntervalNanos;
+    }
+
+    /**
+     * Returns {@code true} if this {@link Blob} was created from the
+     * supplied configuration value and, if it represents a file, that
+     * file's size and modification time have not changed since they
+     * were last checked.
+     *
+     * <p>A file is checked only if at least {@code
+     * checkIntervalNanos} nanoseconds have elapsed since it was last
+     * found to be unchanged.</p>
+     *
+     * @param string the current configuration value; must not be
+     * {@code null}
+     *
+     * @param checkIntervalNanos the minimum number of nanoseconds
+     * between checks of the file; must not be negative
+     *
+     * @return {@code true} if this {@link Blob} may still be used
+     *
+     * @exception IOException if the file's attributes could not be
+     * read
+     */
+    private final boolean isCurrent(final String string, final long checkIntervalNanos) throws IOException {
+      if (this.string != string && !this.string.equals(string)) {
+        return false;
+      } else if (this.path == null) {
+        return true;
+      }
+      final long now = System.nanoTime();
+      if (now - this.nextCheckNanos < 0L) {
+        return true;
+      }
+      final BasicFileAttributes attributes = Files.readAttributes(this.path, BasicFileAttributes.class);
+      final boolean returnValue =
+        attributes.size() == this.size && attributes.lastModifiedTime().equals(this.lastModifiedTime);
+      if (returnValue) {
+        this.nextCheckNanos = now + checkIntervalNanos;
+      }
+      return returnValue;
+    }
+
+    /**
+     * Returns a new object of the supplied {@link Type} over this
+     * {@link Blob}'s content.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @param type a {@linkplain #isSupported(Type) supported} {@link
+     * Type}; must not be {@code null}
+     *
+     * @return a new, non-{@code null} object of the supplied {@link
+     * Type}
+     *
+     * @exception IOException if the file could not be opened
+     *
+     * @exception ConfigurationException if {@code type} is {@link
+     * ByteBuffer} and the file is too large to be mapped
+     */
+    private final Object open(final Type type) throws IOException {
+      if (this.content != null) {
+        final ByteBuffer content = this.content.duplicate();
+        if (ByteBuffer.class.equals(type)) {
+          return content;
+        } else if (Reader.class.equals(type)) {
+          return new InputStreamReader(new ByteBufferInput(content), StandardCharsets.UTF_8);
+        } else {
+          return new ByteBufferInput(content);
+        }
+      } else if (ByteBuffer.class.equals(type)) {
+        throw new ConfigurationException(this.path + " is too large to be mapped");
+      } else if (ReadableByteChannel.class.equals(type)) {
+        return FileChannel.open(this.path, StandardOpenOption.READ);
+      } else if (Reader.class.equals(type)) {
+        return Files.newBufferedReader(this.path, StandardCharsets.UTF_8);
+      } else {
+        return Files.newInputStream(this.path);
+      }
+    }
+
+    /**
+     * Returns a new {@link Blob} whose content is the supplied
+     * configuration value, encoded as UTF-8.
+     *
+     * @param string the configuration value; must not be {@code null}
+     *
+     * @return a new, non-{@code null} {@link Blob}
+     */
+    private static final Blob encode(final String string) {
+      return new Blob(string, null, -1L, null, ByteBuffer.wrap(string.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer(), 0L);
+    }
+
+    /**
+     * Returns a new {@link Blob} whose content is that of the supplied
+     * file, copied onto the heap if it is small enough, or else
+     * copied to a private, temporary file and memory-mapped if
+     * possible.
+     *
+     * @param string the configuration value; must not be {@code null}
+     *
+     * @param path the file; must not be {@code null}
+     *
+     * @param maximumCopiedSize the size, in bytes, of the largest file
+     * that will be copied onto the heap
+     *
+     * @param checkIntervalNanos the minimum number of nanoseconds
+     * before the file is first checked for changes
+     *
+     * @return a new, non-{@code null} {@link Blob}
+     *
+     * @exception IOException if the file could not be read
+     */
+    private static final Blob read(final String string,
+                                   final Path path,
+                                   final int maximumCopiedSize,
+                                   final long checkIntervalNanos)
+      throws IOException {
+      // Read the attributes first, so that a change made while the
+      // file is being read is noticed the next time.
+      final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      if (!attributes.isRegularFile()) {
+        throw new ConfigurationException(path + " is not a regular file");
+      }
+      final long size = attributes.size();
+      final ByteBuffer content;
+      if (size <= maximumCopiedSize) {
+        content = ByteBuffer.wrap(Files.readAllBytes(path)).asReadOnlyBuffer();
+      } else if (size <= Integer.MAX_VALUE) {
+        content = mapCopy(path);
+      } else {
+        content = null;
+      }
+      return new Blob(string, path, size, attributes.lastModifiedTime(), content, checkIntervalNanos);
+    }
+
+    /**
+     * Copies the supplied file to a private, temporary file, and
+     * returns a read-only {@link ByteBuffer} that memory-maps the
+     * copy.
+     *
+     * <p>Because nothing else knows of the copy, it cannot be
+     * truncated or rewritten while it is mapped.  The copy is deleted
+     * once it has been mapped, or, where the platform does not permit
+     * that, once it is no longer mapped.</p>
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @param path the file to copy; must not be {@code null}
+     *
+     * @return a non-{@code null}, read-only {@link ByteBuffer}
+     *
+     * @exception IOException if the file could not be copied or
+     * mapped
+     */
+    private static final ByteBuffer mapCopy(final Path path) throws IOException {
+      final Path copy = Files.createTempFile("microbean-configuration-", ".tmp");
+      try {
+        Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING);
+      } catch (final IOException | RuntimeException copyFailed) {
+        Files.deleteIfExists(copy);
+        throw copyFailed;
+      }
+      try (final FileChannel channel = FileChannel.open(copy, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE)) {
+        // The mapping outlives the channel.
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+      }
+    }
+
+  }
+
+  /**
+   * An {@link InputStream} and {@link ReadableByteChannel} over a
+   * {@link ByteBuffer}, which it consumes.
+   */
+  private static final class ByteBufferInput extends InputStream implements ReadableByteChannel {
+
+    /**
+     * The {@link ByteBuffer} being read.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Whether this {@link ByteBufferInput} has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Creates a new {@link ByteBufferInput}.
+     *
+     * @param buffer the {@link ByteBuffer} to read, from its position
+     * to its limit; must not be {@code null}
+     */
+    private ByteBufferInput(final ByteBuffer buffer) {
+      super();
+      this.buffer = buffer;
+    }
+
+    @Override
+    public final synchronized int read() throws IOException {
+      this.ensureOpen();
+      return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public final synchronized int read(final byte[] bytes, final int offset, final int length) throws IOException {
+      this.ensureOpen();
+      if (offset < 0 || length < 0 || length > bytes.length - offset) {
+        throw new IndexOutOfBoundsException();
+      } else if (length == 0) {
+        return 0;
+      } else if (!this.buffer.hasRemaining()) {
+        return -1;
+      }
+      final int count = Math.min(length, this.buffer.remaining());
+      this.buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public final synchronized int read(final ByteBuffer target) throws IOException {
+      this.ensureOpen();
+      if (!this.buffer.hasRemaining()) {
+        return -1;
+      }
+      final int count = Math.min(target.remaining(), this.buffer.remaining());
+      if (count > 0) {
+        final ByteBuffer source = this.buffer.duplicate();
+        source.limit(source.position() + count);
+        target.put(source);
+        this.buffer.position(this.buffer.position() + count);
+      }
+      return count;
+    }
+
+    @Override
+    public final synchronized long skip(final long count) throws IOException {
+      this.ensureOpen();
+      final int skipped = (int)Math.max(0L, Math.min(count, (long)this.buffer.remaining()));
+      this.buffer.position(this.buffer.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public final synchronized int available() throws IOException {
+      this.ensureOpen();
+      return this.buffer.remaining();
+    }
+
+    @Override
+    public final boolean isOpen() {
+      return !this.closed;
+    }
+
+    @Override
+    public final void close() {
+      this.closed = true;
+    }
+
+    /**
+     * Throws a {@link ClosedChannelException} if this {@link
+     * ByteBufferInput} has been {@linkplain #close() closed}.
+     *
+     * @exception ClosedChannelException if this {@link
+     * ByteBufferInput} has been closed
+     */
+    private final void ensureOpen() throws ClosedChannelException {
+      if (this.closed) {
+        throw new ClosedChannelException();
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,122 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import javax.enterprise.inject.spi.ProcessAnnotatedType; // for javadoc only
+
+import javax.inject.Qualifier; // for javadoc only
+
+/**
+ * An annotation&mdash;not a {@link Qualifier}&mdash;indicating that
+ * the annotated type is to be discovered by the CDI container only if
+ * a particular configuration value has a particular value.
+ *
+ * <p>The configuration value is located in the same way as one
+ * sought by a {@link ConfigurationValue}-qualified injection point:
+ * each of its {@linkplain #value() names} is tried in order, a
+ * {@link Configuration} annotation on the annotated type supplies a
+ * prefix for them, and the {@linkplain #coordinates() configuration
+ * coordinates} are combined with the application's own.</p>
+ *
+ * <p>As an example, a class annotated with:</p>
+ *
+ * <blockquote><pre>@Configuration("reports")
+ *&#64;ConfigurationCondition("enabled")</pre></blockquote>
+ *
+ * <p>...will be {@linkplain ProcessAnnotatedType#veto() vetoed}, and
+ * so will not be validated, proxied or otherwise made into a bean,
+ * unless the configuration value named {@code reports.enabled} is
+ * {@code true}.</p>
+ *
+ * <p>Because a type can only be vetoed while it is being discovered,
+ * the first type bearing this annotation makes the container wait
+ * for the application's configuration sources to load, rather than
+ * letting them load while the rest of the application's types are
+ * discovered.  A {@link Configuration}-annotated interface bearing
+ * it is simply not implemented, and does not wait.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ConfigurationValue
+ *
+ * @see Configuration
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ConfigurationCondition {
+
+
+  /*
+   * Elements.
+   */
+
+
+  /**
+   * The names of the configuration value in question, to be sought
+   * in order.
+   *
+   * @return the names of the configuration value in question; never
+   * {@code null}
+   *
+   * @see ConfigurationValue#value()
+   */
+  String[] value();
+
+  /**
+   * The {@link String} representation of the value the configuration
+   * value in question must have, exactly, for the annotated type to
+   * be discovered.
+   *
+   * @return the value the configuration value in question must have;
+   * never {@code null}
+   */
+  String havingValue() default "true";
+
+  /**
+   * Whether the annotated type is to be discovered if the
+   * configuration value in question cannot be found at all.
+   *
+   * @return {@code true} if the annotated type is to be discovered
+   * when the configuration value in question is absent; {@code false}
+   * otherwise
+   */
+  boolean matchIfMissing() default false;
+
+  /**
+   * Configuration coordinates to be used, in addition to the
+   * application's own, when seeking the configuration value in
+   * question.
+   *
+   * <p>They are specified here rather than with a {@link
+   * ConfigurationCoordinate} annotation on the annotated type because
+   * the latter would qualify the bean.</p>
+   *
+   * @return configuration coordinates; never {@code null}
+   *
+   * @see ConfigurationCoordinates
+   */
+  ConfigurationCoordinate[] coordinates() default {};
+
+}
@@ -16,18 +16,37 @@
  */
 package org.microbean.configuration.cdi.annotation;
 
+import java.io.Serializable; // for javadoc only
+
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import javax.enterprise.util.AnnotationLiteral;
+
 import javax.inject.Qualifier;
 
 /**
  * A {@link Qualifier} designating something that has been configured.
  *
- * <p>This annotation is reserved for future use.</p>
+ * <p>An injection point qualified with this annotation receives an
+ * object whose properties have all been set from the configuration
+ * values found beneath the prefix supplied by the nearest enclosing
+ * {@link Configuration} annotation, as in:</p>
+ *
+ * <blockquote><pre>&#64;Inject
+ *&#64;Configured
+ *&#64;Configuration("db")
+ *private DatabaseSettings settings;</pre></blockquote>
+ *
+ * <p>The type of such an injection point must be a concrete class
+ * with either a zero-argument constructor and setter methods, or a
+ * constructor whose parameter names are available via reflection.
+ * A property whose type is not one to which configuration values
+ * can be converted is itself bound, in the same way, from the
+ * configuration values beneath the property's own name.</p>
  *
  * @author <a href="https://about.me/lairdnelson"
  * target="_parent">Laird Nelson</a>
@@ -39,5 +58,43 @@ import javax.inject.Qualifier;
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER, ElementType.TYPE })
 public @interface Configured {
-  
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An {@link AnnotationLiteral} representing a runtime instance of
+   * the {@link Configured} annotation.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   *
+   * @see Configured
+   */
+  public static final class Literal extends AnnotationLiteral<Configured> implements Configured {
+
+    /**
+     * The sole instance of this class.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    public static final Configured INSTANCE = new Literal();
+
+    /**
+     * The version of this class for {@linkplain Serializable
+     * serialization purposes}.
+     *
+     * @see Serializable
+     */
+    private static final long serialVersionUID = 1L;
+
+    private Literal() {
+      super();
+    }
+
+  }
+
 }
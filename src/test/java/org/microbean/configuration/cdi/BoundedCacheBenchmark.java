@@ -0,0 +1,187 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A <a href="https://openjdk.java.net/projects/code-tools/jmh/">JMH</a>
+ * benchmark comparing a {@link BoundedCache} with an unbounded
+ * {@link ConcurrentHashMap} when keys are drawn from a
+ * Zipf-distributed key space, as configuration value lookups across
+ * many sets of configuration coordinates tend to be.
+ *
+ * <p>Each operation looks a key up and, on a miss, stores it, just
+ * as {@link ConfigurationValueResolver#resolve(ConfigurationsExtension.ConfigurationValueMetadata,
+ * java.lang.reflect.Type)} does.</p>
+ *
+ * <p>Run it with, for example:</p>
+ *
+ * <blockquote><pre>java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main BoundedCacheBenchmark</pre></blockquote>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class BoundedCacheBenchmark {
+
+  private static final int KEY_SPACE = 1 << 20;
+
+  private static final int SAMPLES = 1 << 16;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public BoundedCacheBenchmark() {
+    super();
+  }
+
+
+  /*
+   * Benchmarks.
+   */
+
+
+  @Benchmark
+  public Integer boundedCache(final Caches caches, final Cursor cursor) {
+    final Integer key = caches.keys[cursor.next()];
+    Integer value = caches.boundedCache.get(key);
+    if (value == null) {
+      value = key;
+      caches.boundedCache.put(key, value);
+    }
+    return value;
+  }
+
+  @Benchmark
+  public Integer concurrentHashMap(final Caches caches, final Cursor cursor) {
+    final Integer key = caches.keys[cursor.next()];
+    Integer value = caches.concurrentHashMap.get(key);
+    if (value == null) {
+      value = key;
+      caches.concurrentHashMap.put(key, value);
+    }
+    return value;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  @State(Scope.Benchmark)
+  public static class Caches {
+
+    /**
+     * The Zipf exponent; higher values skew lookups more heavily
+     * towards a few popular keys.
+     */
+    @Param({ "0.8", "1.2" })
+    public double skew;
+
+    @Param({ "1000", "10000" })
+    public int maximumSize;
+
+    Integer[] keys;
+
+    BoundedCache<Integer, Integer> boundedCache;
+
+    ConcurrentMap<Integer, Integer> concurrentHashMap;
+
+    public Caches() {
+      super();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      this.keys = zipf(new Random(8675309L), this.skew, KEY_SPACE, SAMPLES);
+      this.boundedCache = new BoundedCache<>(this.maximumSize);
+      this.concurrentHashMap = new ConcurrentHashMap<>();
+    }
+
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    private int index;
+
+    public Cursor() {
+      super();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      this.index = new Random().nextInt(SAMPLES);
+    }
+
+    final int next() {
+      return this.index = (this.index + 1) & (SAMPLES - 1);
+    }
+
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final Integer[] zipf(final Random random, final double skew, final int keySpace, final int samples) {
+    final double[] cumulative = new double[keySpace];
+    double sum = 0.0;
+    for (int rank = 0; rank < keySpace; rank++) {
+      sum += 1.0 / Math.pow(rank + 1, skew);
+      cumulative[rank] = sum;
+    }
+    final Integer[] keys = new Integer[samples];
+    for (int i = 0; i < samples; i++) {
+      int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      if (rank < 0) {
+        rank = -rank - 1;
+      }
+      keys[i] = Integer.valueOf(Math.min(rank, keySpace - 1));
+    }
+    return keys;
+  }
+
+}
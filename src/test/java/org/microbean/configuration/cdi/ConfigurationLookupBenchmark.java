@@ -0,0 +1,149 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
+
+import javax.inject.Inject;
+
+import org.jboss.weld.environment.se.Weld;
+import org.jboss.weld.environment.se.WeldContainer;
+
+import org.microbean.configuration.cdi.annotation.ConfigurationValue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A <a href="https://openjdk.java.net/projects/code-tools/jmh/">JMH</a>
+ * benchmark comparing programmatic lookup of a configuration value
+ * through a {@link ConfigurationLookup} and a precompiled {@link
+ * ConfigurationKey} with programmatic lookup through {@link
+ * Instance#select(java.lang.annotation.Annotation...)} and a {@link
+ * ConfigurationValue.Literal}.
+ *
+ * <p>Run it with, for example:</p>
+ *
+ * <blockquote><pre>java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main ConfigurationLookupBenchmark -prof gc</pre></blockquote>
+ *
+ * <p>The {@code gc} profiler reports the allocation rate of each
+ * benchmark, which should be zero for {@link
+ * #configurationLookup(Container)}.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ConfigurationLookupBenchmark {
+
+  private static final ConfigurationKey<Integer> PORT = new ConfigurationKey<>(Integer.class, "benchmark.port");
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public ConfigurationLookupBenchmark() {
+    super();
+  }
+
+
+  /*
+   * Benchmarks.
+   */
+
+
+  @Benchmark
+  public Integer configurationLookup(final Container container) {
+    return container.lookup.get(PORT);
+  }
+
+  @Benchmark
+  public Integer instanceSelect(final Container container) {
+    return container.client.instance.select(ConfigurationValue.Literal.of("benchmark.port")).get();
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  @State(Scope.Benchmark)
+  public static class Container {
+
+    private WeldContainer container;
+
+    ConfigurationLookup lookup;
+
+    Client client;
+
+    public Container() {
+      super();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      System.setProperty("benchmark.port", "8080");
+      this.container = new Weld("configurationLookupBenchmark")
+        .disableDiscovery()
+        .addExtension(new ConfigurationsExtension())
+        .addBeanClasses(Client.class)
+        .initialize();
+      this.lookup = this.container.select(ConfigurationLookup.class).get();
+      this.client = this.container.select(Client.class).get();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      if (this.container != null) {
+        this.container.close();
+      }
+      System.clearProperty("benchmark.port");
+    }
+
+  }
+
+  // This class deliberately has no bean-defining annotation, so that
+  // it is only a bean in the synthetic bean archive created by
+  // Container#setUp().
+  public static class Client {
+
+    @Inject
+    @Any
+    Instance<Integer> instance;
+
+  }
+
+}
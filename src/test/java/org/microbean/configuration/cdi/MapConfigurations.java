@@ -0,0 +1,152 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.reflect.Type;
+
+import java.net.URI;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.microbean.configuration.api.ConfigurationException;
+import org.microbean.configuration.api.Configurations;
+
+/**
+ * A simple, mutable, in-memory {@link Configurations} implementation
+ * that counts the lookups it performs.
+ *
+ * <p>Configuration coordinates are ignored.</p>
+ */
+final class MapConfigurations extends Configurations {
+
+  private static final Set<Type> conversionTypes =
+    Collections.unmodifiableSet(new HashSet<>(Arrays.asList(String.class,
+                                                            Integer.class, int.class,
+                                                            Long.class, long.class,
+                                                            Double.class, double.class,
+                                                            Boolean.class, boolean.class,
+                                                            URI.class)));
+
+  private final Map<String, String> values;
+
+  private final Map<String, AtomicInteger> lookups;
+
+  private final LongAdder conversions;
+
+  MapConfigurations() {
+    super();
+    this.values = new ConcurrentHashMap<>();
+    this.lookups = new ConcurrentHashMap<>();
+    this.conversions = new LongAdder();
+  }
+
+  final MapConfigurations put(final String name, final String value) {
+    this.values.put(name, value);
+    return this;
+  }
+
+  final MapConfigurations remove(final String name) {
+    this.values.remove(name);
+    return this;
+  }
+
+  final int getLookupCount(final String name) {
+    final AtomicInteger count = this.lookups.get(name);
+    return count == null ? 0 : count.get();
+  }
+
+  final int getTotalLookupCount() {
+    int sum = 0;
+    for (final AtomicInteger count : this.lookups.values()) {
+      sum += count.get();
+    }
+    return sum;
+  }
+
+  final long getConversionCount() {
+    return this.conversions.sum();
+  }
+
+  final void resetCounts() {
+    this.lookups.clear();
+    this.conversions.reset();
+  }
+
+  @Override
+  public final Set<Type> getConversionTypes() {
+    return conversionTypes;
+  }
+
+  @Override
+  public final Map<String, String> getConfigurationCoordinates() {
+    return Collections.emptyMap();
+  }
+
+  @Override
+  public final Set<String> getNames() {
+    return Collections.unmodifiableSet(new HashSet<>(this.values.keySet()));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public final <T> T getValue(final Map<String, String> coordinates, final String name, final Type type, final String defaultValue) {
+    String value = null;
+    if (name != null) {
+      this.lookups.computeIfAbsent(name, n -> new AtomicInteger()).incrementAndGet();
+      value = this.values.get(name);
+    }
+    if (value == null) {
+      value = defaultValue;
+    }
+    if (value == null) {
+      return null;
+    }
+    return (T)this.convert(value, type);
+  }
+
+  private final Object convert(final String value, final Type type) {
+    this.conversions.increment();
+    try {
+      if (String.class.equals(type)) {
+        return value;
+      } else if (Integer.class.equals(type) || int.class.equals(type)) {
+        return Integer.valueOf(value.trim());
+      } else if (Long.class.equals(type) || long.class.equals(type)) {
+        return Long.valueOf(value.trim());
+      } else if (Double.class.equals(type) || double.class.equals(type)) {
+        return Double.valueOf(value.trim());
+      } else if (Boolean.class.equals(type) || boolean.class.equals(type)) {
+        return Boolean.valueOf(value.trim());
+      } else if (URI.class.equals(type)) {
+        return URI.create(value.trim());
+      }
+    } catch (final IllegalArgumentException illegalArgumentException) {
+      throw new ConfigurationException(illegalArgumentException);
+    }
+    throw new ConfigurationException("No converter for " + type);
+  }
+
+}
@@ -0,0 +1,155 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestBoundedCache {
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestBoundedCache() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Test
+  public void testStatistics() {
+    final BoundedCache<String, String> cache = new BoundedCache<>(2);
+    assertNull(cache.get("a"));
+    cache.put("a", "A");
+    assertEquals("A", cache.get("a"));
+    assertEquals(1L, cache.getHitCount());
+    assertEquals(1L, cache.getMissCount());
+    cache.put("b", "B");
+    cache.put("c", "C");
+    assertEquals(2, cache.size());
+    assertEquals(1L, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testFrequentKeysSurviveAScan() {
+    final BoundedCache<Integer, Integer> cache = new BoundedCache<>(10);
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, i);
+      for (int j = 0; j < 5; j++) {
+        assertNotNull(cache.get(i));
+      }
+    }
+    // A long scan of keys seen only once must not flush the hot
+    // keys, provided they stay hot.
+    for (int i = 1000; i < 2000; i++) {
+      if (cache.get(i) == null) {
+        cache.put(i, i);
+      }
+      assertNotNull(cache.get(i % 10));
+    }
+    for (int i = 0; i < 10; i++) {
+      assertNotNull(cache.get(i));
+    }
+    assertTrue(cache.size() <= 10);
+  }
+
+  @Test
+  public void testRemovedKeysDoNotLingerInLine() {
+    final BoundedCache<String, String> cache = new BoundedCache<>(2);
+    cache.put("a", "A");
+    cache.put("b", "B");
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(cache.remove("a", "A"));
+      cache.put("a", "A");
+    }
+    assertTrue(cache.getQueueSize() <= 2 + 16 + 1);
+    assertFalse(cache.remove("a", "Z"));
+    // The re-inserted key is the newest entry, so the older one is
+    // nominated for eviction first.
+    for (int i = 0; i < 5; i++) {
+      cache.get("c");
+    }
+    cache.put("c", "C");
+    assertEquals("A", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testZeroSizeCachesNothing() {
+    final BoundedCache<String, String> cache = new BoundedCache<>(0);
+    cache.put("a", "A");
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.size());
+    // A disabled cache does not even count requests.
+    assertEquals(0L, cache.getMissCount());
+  }
+
+  @Test
+  public void testConcurrentUseStaysBounded() throws InterruptedException {
+    final BoundedCache<Integer, Integer> cache = new BoundedCache<>(100);
+    final CountDownLatch start = new CountDownLatch(1);
+    final Collection<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      final Thread thread = new Thread(() -> {
+          try {
+            start.await();
+          } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+          final ThreadLocalRandom random = ThreadLocalRandom.current();
+          for (int i = 0; i < 20000; i++) {
+            // Skewed: small keys are far more popular than large ones.
+            final int key = (int)Math.floor(Math.pow(random.nextDouble(), 4) * 10000);
+            if (cache.get(key) == null) {
+              cache.put(key, key);
+            }
+          }
+        });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(cache.size() <= 100 + threads.size());
+    assertEquals(8L * 20000L, cache.getHitCount() + cache.getMissCount());
+    assertTrue(cache.getHitCount() > 0L);
+    assertTrue(cache.getEvictionCount() > 0L);
+  }
+
+}
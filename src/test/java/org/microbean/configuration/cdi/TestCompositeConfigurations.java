@@ -0,0 +1,194 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.io.IOException;
+
+import java.lang.reflect.Type;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import java.util.concurrent.TimeUnit;
+
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import org.microbean.configuration.api.ConfigurationException;
+import org.microbean.configuration.api.Configurations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestCompositeConfigurations {
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestCompositeConfigurations() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Test
+  public void testSlowSourcesLoadInParallel() {
+    final long delayMillis = 250L;
+    final List<MapConfigurations> sources = new ArrayList<>();
+    final List<Supplier<Configurations>> suppliers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      final MapConfigurations source = new MapConfigurations().put("source", Integer.toString(i));
+      sources.add(source);
+      suppliers.add(() -> {
+          try {
+            Thread.sleep(delayMillis);
+          } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+          }
+          return source;
+        });
+    }
+    final long start = System.nanoTime();
+    final CompositeConfigurations configurations = CompositeConfigurations.newInstance(suppliers);
+    final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    // Loaded one after another, the sources would take at least
+    // 4 * delayMillis.
+    assertTrue(Long.toString(elapsedMillis), elapsedMillis < 3L * delayMillis);
+    assertEquals(sources.size(), configurations.getDelegates().size());
+    for (int i = 0; i < sources.size(); i++) {
+      assertSame(sources.get(i), configurations.getDelegates().get(i));
+    }
+    assertEquals("0", configurations.getValue("source"));
+  }
+
+  @Test
+  public void testPriorityOrder() {
+    final MapConfigurations high = new MapConfigurations().put("a", "1");
+    final MapConfigurations low = new MapConfigurations().put("a", "2").put("b", "3");
+    final CompositeConfigurations configurations = new CompositeConfigurations(Arrays.asList(high, low));
+    assertEquals(Integer.valueOf(1), configurations.getValue("a", Integer.class));
+    assertEquals(Integer.valueOf(3), configurations.getValue("b", Integer.class));
+    assertEquals(Integer.valueOf(9), configurations.getValue("c", Integer.class, "9"));
+    assertNull(configurations.getValue("c", Integer.class));
+    assertEquals("3", configurations.getValue(Arrays.asList("c", "b", "a"), String.class, null));
+    assertEquals(2, configurations.getNames().size());
+  }
+
+  @Test
+  public void testGetValuesConsultsEachDelegateOnce() {
+    final MapConfigurations high = new MapConfigurations().put("a", "1").put("bad", "x");
+    final MapConfigurations low = new MapConfigurations().put("a", "2").put("b", "3");
+    final CompositeConfigurations configurations = new CompositeConfigurations(Arrays.asList(high, low));
+    final Map<String, RuntimeException> problems = new HashMap<>();
+    final Map<String, Object> values = configurations.getValues(null, Arrays.asList("a", "b", "c", "bad"), Integer.class, problems);
+    assertEquals(2, values.size());
+    assertEquals(Integer.valueOf(1), values.get("a"));
+    assertEquals(Integer.valueOf(3), values.get("b"));
+    assertEquals(Collections.singleton("bad"), problems.keySet());
+    for (final String name : Arrays.asList("a", "b", "c", "bad")) {
+      assertEquals(1, high.getLookupCount(name));
+    }
+    // Names already settled by a higher-priority delegate are not
+    // sought again.
+    assertEquals(0, low.getLookupCount("a"));
+    assertEquals(0, low.getLookupCount("bad"));
+    assertEquals(1, low.getLookupCount("c"));
+  }
+
+  @Test
+  public void testDelegatesThatCannotConvertAreSkipped() {
+    final MapConfigurations high = new MapConfigurations().put("a", "1");
+    final MapConfigurations low = new MapConfigurations().put("a", "2");
+    final Configurations stringsOnly = new Configurations() {
+        @Override
+        public final Set<Type> getConversionTypes() {
+          return Collections.singleton(String.class);
+        }
+        @Override
+        public final Map<String, String> getConfigurationCoordinates() {
+          return Collections.emptyMap();
+        }
+        @Override
+        public final Set<String> getNames() {
+          return Collections.singleton("a");
+        }
+        @Override
+        @SuppressWarnings("unchecked")
+        public final <T> T getValue(final Map<String, String> coordinates, final String name, final Type type, final String defaultValue) {
+          return (T)("a".equals(name) ? "0" : defaultValue);
+        }
+      };
+    final CompositeConfigurations configurations = new CompositeConfigurations(Arrays.asList(stringsOnly, high, low));
+    assertEquals("0", configurations.getValue("a"));
+    assertEquals(Integer.valueOf(1), configurations.getValue("a", Integer.class));
+    assertEquals(Integer.valueOf(7), configurations.getValue("z", Integer.class, "7"));
+    try {
+      new CompositeConfigurations(Arrays.asList(stringsOnly)).getValue("a", Integer.class);
+      fail();
+    } catch (final ConfigurationException expected) {
+    }
+  }
+
+  @Test(expected = ConfigurationException.class)
+  public void testGetValuesWithoutConverter() {
+    final CompositeConfigurations configurations = new CompositeConfigurations(Arrays.asList(new MapConfigurations()));
+    configurations.getValues(null, Arrays.asList("a"), Object.class, new HashMap<>());
+  }
+
+  @Test
+  public void testProviderClassNames() throws IOException {
+    final Path directory = Files.createTempDirectory("services");
+    final Path services = directory.resolve("META-INF/services/" + Configurations.class.getName());
+    Files.createDirectories(services.getParent());
+    Files.write(services,
+                Arrays.asList("# Comment",
+                              "com.example.First # trailing comment",
+                              "",
+                              "  com.example.Second  ",
+                              "com.example.First"),
+                StandardCharsets.UTF_8);
+    try (final URLClassLoader classLoader = new URLClassLoader(new URL[] { directory.toUri().toURL() }, null)) {
+      assertEquals(Arrays.asList("com.example.First", "com.example.Second"),
+                   new ArrayList<>(CompositeConfigurations.getProviderClassNames(classLoader)));
+    }
+  }
+
+}
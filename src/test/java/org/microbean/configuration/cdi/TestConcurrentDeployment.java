@@ -0,0 +1,327 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+
+import org.jboss.weld.environment.se.Weld;
+import org.jboss.weld.environment.se.WeldContainer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.microbean.configuration.cdi.annotation.ConfigurationValue;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Repeatedly boots Weld SE containers with concurrent deployment
+ * enabled, several at a time, each containing many beans with many
+ * {@link ConfigurationValue}-qualified injection points, so that
+ * {@link ConfigurationsExtension}'s observers are notified on several
+ * threads at once, and several {@link ConfigurationsExtension}s are
+ * deployed at once.
+ */
+public class TestConcurrentDeployment {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final int BOOTS = 64;
+
+  private static final int CONCURRENT_BOOTS = 4;
+
+  private static final int SHARED_VALUES = 16;
+
+  private static final Class<?>[] beanClasses = {
+    Bean0.class, Bean1.class, Bean2.class, Bean3.class,
+    Bean4.class, Bean5.class, Bean6.class, Bean7.class,
+    Bean8.class, Bean9.class, Bean10.class, Bean11.class,
+    Bean12.class, Bean13.class, Bean14.class, Bean15.class,
+    Bean16.class, Bean17.class, Bean18.class, Bean19.class,
+    Bean20.class, Bean21.class, Bean22.class, Bean23.class,
+    Bean24.class, Bean25.class, Bean26.class, Bean27.class,
+    Bean28.class, Bean29.class, Bean30.class, Bean31.class
+  };
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestConcurrentDeployment() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Before
+  public void setUp() {
+    for (int i = 0; i < SHARED_VALUES; i++) {
+      System.setProperty("stress." + i, Integer.toString(i));
+    }
+    for (int i = 0; i < beanClasses.length; i++) {
+      System.setProperty("stress.bean." + i, Integer.toString(i));
+    }
+  }
+
+  @After
+  public void tearDown() {
+    for (int i = 0; i < SHARED_VALUES; i++) {
+      System.clearProperty("stress." + i);
+    }
+    for (int i = 0; i < beanClasses.length; i++) {
+      System.clearProperty("stress.bean." + i);
+    }
+  }
+
+  @Test
+  public void testConcurrentDeployment() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_BOOTS);
+    try {
+      final List<Future<?>> futures = new ArrayList<>(BOOTS);
+      for (int boot = 0; boot < BOOTS; boot++) {
+        final int b = boot;
+        futures.add(executor.submit(() -> boot(b)));
+      }
+      for (final Future<?> future : futures) {
+        // Rethrows any assertion failure, wrapped.
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static final void boot(final int boot) {
+    final Weld weld = new Weld("concurrent-" + boot)
+      .disableDiscovery()
+      .addExtension(new ConfigurationsExtension())
+      .addBeanClasses(beanClasses)
+      .property("org.jboss.weld.bootstrap.concurrentDeployment", Boolean.TRUE)
+      .property("org.jboss.weld.bootstrap.preloaderThreadPoolSize", Integer.valueOf(4));
+    try (final WeldContainer container = weld.initialize()) {
+      for (int i = 0; i < beanClasses.length; i++) {
+        final Values values = container.select(beanClasses[i].asSubclass(Values.class)).get();
+        // 0 + 1 + ... + 15, plus the bean's own value.
+        assertEquals(120 + i, values.sum());
+      }
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  interface Values {
+
+    int sum();
+
+  }
+
+  abstract static class AbstractValues implements Values {
+
+    @Inject @ConfigurationValue("stress.0") int i0;
+    @Inject @ConfigurationValue("stress.1") Integer i1;
+    @Inject @ConfigurationValue("stress.2") int i2;
+    @Inject @ConfigurationValue("stress.3") String s3;
+    @Inject @ConfigurationValue("stress.4") Supplier<Integer> s4;
+    @Inject @ConfigurationValue({ "stress.absent", "stress.5" }) int i5;
+    @Inject @ConfigurationValue(value = "stress.absent", defaultValue = "6") int i6;
+    @Inject @ConfigurationValue("stress.7") Supplier<String> s7;
+    @Inject @ConfigurationValue("stress.8") long l8;
+    @Inject @ConfigurationValue("stress.9") Long l9;
+    @Inject @ConfigurationValue("stress.10") int i10;
+    @Inject @ConfigurationValue("stress.11") String s11;
+    @Inject @ConfigurationValue({ "stress.absent", "stress.12" }) Integer i12;
+    @Inject @ConfigurationValue(value = "stress.absent.13", defaultValue = "13") int i13;
+    @Inject @ConfigurationValue("stress.14") Supplier<Long> s14;
+    @Inject @ConfigurationValue("stress.15") int i15;
+
+    AbstractValues() {
+      super();
+    }
+
+    abstract int own();
+
+    @Override
+    public final int sum() {
+      return this.i0 + this.i1.intValue() + this.i2 + Integer.parseInt(this.s3) +
+        this.s4.get().intValue() + this.i5 + this.i6 + Integer.parseInt(this.s7.get()) +
+        (int)this.l8 + this.l9.intValue() + this.i10 + Integer.parseInt(this.s11) +
+        this.i12.intValue() + this.i13 + this.s14.get().intValue() + this.i15 +
+        this.own();
+    }
+
+  }
+
+  // These classes deliberately have no bean-defining annotations, so
+  // that they are only beans in the synthetic bean archives created
+  // by testConcurrentDeployment(), not in the one created by
+  // TestConfigurationsExtension.  Each has one configuration value
+  // of its own, as well as those it shares with the others.
+
+  public static class Bean0 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.0") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean1 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.1") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean2 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.2") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean3 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.3") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean4 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.4") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean5 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.5") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean6 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.6") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean7 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.7") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean8 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.8") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean9 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.9") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean10 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.10") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean11 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.11") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean12 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.12") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean13 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.13") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean14 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.14") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean15 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.15") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean16 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.16") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean17 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.17") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean18 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.18") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean19 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.19") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean20 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.20") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean21 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.21") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean22 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.22") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean23 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.23") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean24 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.24") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean25 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.25") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean26 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.26") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean27 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.27") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean28 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.28") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean29 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.29") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean30 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.30") int own;
+    @Override int own() { return this.own; }
+  }
+  public static class Bean31 extends AbstractValues {
+    @Inject @ConfigurationValue("stress.bean.31") int own;
+    @Override int own() { return this.own; }
+  }
+
+}
@@ -0,0 +1,293 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.reflect.Type;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class TestConfigurationBinder {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private MapConfigurations configurations;
+
+  private ConfigurationValueResolver resolver;
+
+  private ConfigurationBinder.Source source;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestConfigurationBinder() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Before
+  public void setUp() {
+    this.configurations = new MapConfigurations();
+    this.resolver = new ConfigurationValueResolver(this.configurations);
+    this.source = new ConfigurationBinder.Source() {
+        @Override
+        public final Object getValue(final String name, final Type type) {
+          return resolver.resolve(TestConfigurationValueResolver.metadata(null, "db." + name), type);
+        }
+
+        @Override
+        public final boolean isConvertible(final Type type) {
+          return configurations.getConversionTypes().contains(type);
+        }
+
+        @Override
+        public final boolean hasValuesBeneath(final String name) {
+          final String prefix = "db." + name + '.';
+          return configurations.getNames().stream().anyMatch(n -> n.startsWith(prefix));
+        }
+      };
+  }
+
+  @Test
+  public void testSetterBinding() {
+    this.configurations.put("db.url", "jdbc:x").put("db.poolSize", "10").put("db.pool.maximum", "20");
+    final Settings settings = (Settings)ConfigurationBinder.of(Settings.class).bind("", this.source);
+    assertEquals("jdbc:x", settings.getUrl());
+    assertEquals(10, settings.getPoolSize());
+    // Absent values leave the class's own defaults alone.
+    assertEquals(30L, settings.getTimeout());
+    assertEquals(20, settings.getPool().getMaximum());
+    assertEquals(1, settings.getPool().getMinimum());
+  }
+
+  @Test
+  public void testNestedObjectIsOnlyBoundWhenItHasValues() {
+    this.configurations.put("db.url", "jdbc:x");
+    final Settings settings = (Settings)ConfigurationBinder.of(Settings.class).bind("", this.source);
+    assertNull(settings.getPool());
+  }
+
+  @Test
+  public void testConstructorBinding() throws NoSuchMethodException {
+    assumeTrue(Endpoint.class.getDeclaredConstructor(String.class, int.class).getParameters()[0].isNamePresent());
+    this.configurations.put("db.host", "example.com");
+    final Endpoint endpoint = (Endpoint)ConfigurationBinder.of(Endpoint.class).bind("", this.source);
+    assertEquals("example.com", endpoint.host);
+    assertEquals(0, endpoint.port);
+  }
+
+  @Test
+  public void testBinderIsComputedOncePerClass() {
+    assertSame(ConfigurationBinder.of(Settings.class), ConfigurationBinder.of(Settings.class));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnbindableClass() {
+    ConfigurationBinder.of(Unbindable.class);
+  }
+
+  @Test
+  public void testOverloadedSettersAreRejected() {
+    try {
+      ConfigurationBinder.of(Overloaded.class);
+      fail();
+    } catch (final IllegalArgumentException expected) {
+      assertTrue(expected.getMessage().contains("timeout"));
+    }
+  }
+
+  @Test
+  public void testBridgeMethodsAreIgnored() {
+    this.configurations.put("db.value", "v");
+    final Bridged bridged = (Bridged)ConfigurationBinder.of(Bridged.class).bind("", this.source);
+    assertEquals("v", bridged.value);
+  }
+
+  @Test
+  public void testIsBindable() {
+    assertTrue(ConfigurationBinder.isBindable(Settings.class));
+    assertFalse(ConfigurationBinder.isBindable(String.class));
+    assertFalse(ConfigurationBinder.isBindable(int.class));
+    assertFalse(ConfigurationBinder.isBindable(Runnable.class));
+    assertFalse(ConfigurationBinder.isBindable(Collections.emptyList().getClass().getGenericSuperclass()));
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  public static class Settings {
+
+    private String url;
+
+    private int poolSize;
+
+    private long timeout = 30L;
+
+    private Pool pool;
+
+    public Settings() {
+      super();
+    }
+
+    public String getUrl() {
+      return this.url;
+    }
+
+    public void setUrl(final String url) {
+      this.url = url;
+    }
+
+    public int getPoolSize() {
+      return this.poolSize;
+    }
+
+    public void setPoolSize(final int poolSize) {
+      this.poolSize = poolSize;
+    }
+
+    public long getTimeout() {
+      return this.timeout;
+    }
+
+    public void setTimeout(final long timeout) {
+      this.timeout = timeout;
+    }
+
+    public Pool getPool() {
+      return this.pool;
+    }
+
+    public void setPool(final Pool pool) {
+      this.pool = pool;
+    }
+
+  }
+
+  public static class Pool {
+
+    private int minimum = 1;
+
+    private int maximum;
+
+    public int getMinimum() {
+      return this.minimum;
+    }
+
+    public void setMinimum(final int minimum) {
+      this.minimum = minimum;
+    }
+
+    public int getMaximum() {
+      return this.maximum;
+    }
+
+    public void setMaximum(final int maximum) {
+      this.maximum = maximum;
+    }
+
+  }
+
+  public static final class Endpoint {
+
+    private final String host;
+
+    private final int port;
+
+    public Endpoint(final String host, final int port) {
+      super();
+      this.host = host;
+      this.port = port;
+    }
+
+  }
+
+  public static class Overloaded {
+
+    public Overloaded() {
+      super();
+    }
+
+    public void setTimeout(final long timeout) {
+
+    }
+
+    public void setTimeout(final String timeout) {
+
+    }
+
+  }
+
+  public abstract static class Holder<T> {
+
+    public abstract void setValue(T value);
+
+  }
+
+  public static class Bridged extends Holder<String> {
+
+    private String value;
+
+    public Bridged() {
+      super();
+    }
+
+    // The compiler also generates a bridge setValue(Object).
+    @Override
+    public void setValue(final String value) {
+      this.value = value;
+    }
+
+  }
+
+  public static final class Unbindable {
+
+    public Unbindable(final Object ignored, final Object alsoIgnored) {
+      super();
+    }
+
+    public Unbindable(final String ignored, final String alsoIgnored) {
+      super();
+    }
+
+  }
+
+}
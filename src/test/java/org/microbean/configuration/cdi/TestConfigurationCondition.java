@@ -0,0 +1,140 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import javax.inject.Inject;
+
+import org.jboss.weld.environment.se.Weld;
+import org.jboss.weld.environment.se.WeldContainer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.microbean.configuration.cdi.annotation.Configuration;
+import org.microbean.configuration.cdi.annotation.ConfigurationCondition;
+import org.microbean.configuration.cdi.annotation.ConfigurationValue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Boots a Weld SE container containing {@link
+ * ConfigurationCondition}-annotated bean classes and checks that
+ * exactly those whose conditions are not satisfied were vetoed.
+ */
+public class TestConfigurationCondition {
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestConfigurationCondition() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Before
+  public void setUp() {
+    System.setProperty("condition.enabled", "true");
+    System.setProperty("condition.disabled", "false");
+    System.setProperty("condition.mode", "fast");
+    System.setProperty("condition.value", "42");
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty("condition.enabled");
+    System.clearProperty("condition.disabled");
+    System.clearProperty("condition.mode");
+    System.clearProperty("condition.value");
+  }
+
+  @Test
+  public void testConditionalVetoing() {
+    final Weld weld = new Weld("condition")
+      .disableDiscovery()
+      .addExtension(new ConfigurationsExtension())
+      .addBeanClasses(Enabled.class, Disabled.class, Missing.class, MissingButMatched.class,
+                      Fallback.class, Mode.class, WrongMode.class);
+    try (final WeldContainer container = weld.initialize()) {
+      assertEquals(42, container.select(Enabled.class).get().value);
+      assertTrue(container.select(Disabled.class).isUnsatisfied());
+      assertTrue(container.select(Missing.class).isUnsatisfied());
+      assertFalse(container.select(MissingButMatched.class).isUnsatisfied());
+      assertFalse(container.select(Fallback.class).isUnsatisfied());
+      assertFalse(container.select(Mode.class).isUnsatisfied());
+      assertTrue(container.select(WrongMode.class).isUnsatisfied());
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  // These classes deliberately have no bean-defining annotations, so
+  // that they are only beans in the synthetic bean archive created by
+  // testConditionalVetoing(), not in the one created by
+  // TestConfigurationsExtension.
+
+  @Configuration("condition")
+  @ConfigurationCondition("enabled")
+  public static class Enabled {
+
+    @Inject
+    @ConfigurationValue("value")
+    int value;
+
+  }
+
+  @Configuration("condition")
+  @ConfigurationCondition("disabled")
+  public static class Disabled {
+
+    // Would fail validation if this class were not vetoed.
+    @Inject
+    @ConfigurationValue("absent")
+    int value;
+
+  }
+
+  @ConfigurationCondition("condition.absent")
+  public static class Missing {}
+
+  @ConfigurationCondition(value = "condition.absent", matchIfMissing = true)
+  public static class MissingButMatched {}
+
+  @ConfigurationCondition({ "condition.absent", "condition.enabled" })
+  public static class Fallback {}
+
+  @ConfigurationCondition(value = "condition.mode", havingValue = "fast")
+  public static class Mode {}
+
+  @ConfigurationCondition(value = "condition.mode", havingValue = "slow")
+  public static class WrongMode {}
+
+}
@@ -0,0 +1,138 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import java.lang.reflect.Method;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestConfigurationInterfaceHandler {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private MapConfigurations configurations;
+
+  private ConfigurationValueResolver resolver;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestConfigurationInterfaceHandler() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Before
+  public void setUp() {
+    this.configurations = new MapConfigurations().put("db.poolSize", "10").put("db.url", "jdbc:x");
+    this.resolver = new ConfigurationValueResolver(this.configurations);
+  }
+
+  @Test
+  public void testValuesAreResolvedOnceAtCreation() throws NoSuchMethodException {
+    final DbConfig config = ConfigurationInterfaceHandler.newInstance(DbConfig.class, keys(), this.resolver);
+    final int lookups = this.configurations.getTotalLookupCount();
+    assertTrue(lookups > 0);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(10, config.poolSize());
+      assertEquals("jdbc:x", config.url());
+      assertEquals(0L, config.timeout());
+      assertNull(config.user());
+    }
+    assertEquals(lookups, this.configurations.getTotalLookupCount());
+  }
+
+  @Test
+  public void testValuesAreResolvedAgainAfterInvalidation() throws NoSuchMethodException {
+    final DbConfig config = ConfigurationInterfaceHandler.newInstance(DbConfig.class, keys(), this.resolver);
+    assertEquals(10, config.poolSize());
+    this.configurations.put("db.poolSize", "20").put("db.user", "sa");
+    assertEquals(10, config.poolSize());
+    this.resolver.invalidate();
+    assertEquals(20, config.poolSize());
+    assertEquals("sa", config.user());
+  }
+
+  @Test
+  public void testObjectMethods() throws NoSuchMethodException {
+    final DbConfig config = ConfigurationInterfaceHandler.newInstance(DbConfig.class, keys(), this.resolver);
+    final DbConfig other = ConfigurationInterfaceHandler.newInstance(DbConfig.class, keys(), this.resolver);
+    assertTrue(config.equals(config));
+    assertFalse(config.equals(other));
+    assertEquals(System.identityHashCode(config), config.hashCode());
+    assertTrue(config.toString().contains("poolSize=10"));
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final Map<Method, ConfigurationValueResolver.Key> keys() throws NoSuchMethodException {
+    final Map<Method, ConfigurationValueResolver.Key> keys = new LinkedHashMap<>();
+    keys.put(DbConfig.class.getMethod("poolSize"),
+             new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "db.poolSize"), int.class));
+    keys.put(DbConfig.class.getMethod("url"),
+             new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "db.url"), String.class));
+    keys.put(DbConfig.class.getMethod("timeout"),
+             new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "db.timeout"), long.class));
+    keys.put(DbConfig.class.getMethod("user"),
+             new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "db.user"), String.class));
+    return keys;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  public interface DbConfig {
+
+    int poolSize();
+
+    String url();
+
+    long timeout();
+
+    String user();
+
+  }
+
+}
@@ -0,0 +1,114 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import javax.inject.Inject;
+
+import org.jboss.weld.environment.se.Weld;
+import org.jboss.weld.environment.se.WeldContainer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.microbean.configuration.cdi.annotation.Configuration;
+import org.microbean.configuration.cdi.annotation.ConfigurationValue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Boots a Weld SE container containing a {@link
+ * Configuration}-annotated interface and a bean into which an
+ * implementation of it is injected.
+ */
+public class TestConfigurationInterfaces {
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestConfigurationInterfaces() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Before
+  public void setUp() {
+    System.setProperty("db.poolSize", "10");
+    System.setProperty("db.jdbcUrl", "jdbc:x");
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty("db.poolSize");
+    System.clearProperty("db.jdbcUrl");
+  }
+
+  @Test
+  public void testConfigurationInterface() {
+    final Weld weld = new Weld("configurationInterface")
+      .disableDiscovery()
+      .addExtension(new ConfigurationsExtension())
+      .addBeanClasses(DbConfig.class, Client.class);
+    try (final WeldContainer container = weld.initialize()) {
+      final Client client = container.select(Client.class).get();
+      assertEquals(10, client.config.poolSize());
+      assertEquals("jdbc:x", client.config.url());
+      assertEquals(30, client.config.timeout());
+      assertSame(client.config, container.select(DbConfig.class).get());
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  @Configuration("db")
+  public interface DbConfig {
+
+    int poolSize();
+
+    @ConfigurationValue({ "url", "jdbcUrl" })
+    String url();
+
+    @ConfigurationValue(defaultValue = "30")
+    int timeout();
+
+  }
+
+  // This class deliberately has no bean-defining annotation, so that
+  // it is only a bean in the synthetic bean archive created by
+  // testConfigurationInterface(), not in the one created by
+  // TestConfigurationsExtension.
+  public static class Client {
+
+    @Inject
+    DbConfig config;
+
+  }
+
+}
@@ -0,0 +1,177 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class TestConfigurationLookup {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private MapConfigurations configurations;
+
+  private ConfigurationValueResolver resolver;
+
+  private ConfigurationLookup lookup;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestConfigurationLookup() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Before
+  public void setUp() {
+    this.configurations = new MapConfigurations();
+    this.resolver = new ConfigurationValueResolver(this.configurations, 100);
+    this.lookup = new ConfigurationLookup(this.resolver, null);
+  }
+
+  @Test
+  public void testKeyIsPrefixed() {
+    final ConfigurationKey<Integer> key = new ConfigurationKey<>(Integer.class, "db", null, null, "size", "", "poolSize");
+    assertEquals(Arrays.asList("db.size", "db.poolSize"), key.getNames());
+    this.configurations.put("db.poolSize", "10");
+    assertEquals(Integer.valueOf(10), this.lookup.get(key));
+  }
+
+  @Test
+  public void testDefaultValueAndPrimitives() {
+    assertEquals(Integer.valueOf(30), this.lookup.get(new ConfigurationKey<>(Integer.class, null, null, " 30 ", "timeout")));
+    assertNull(this.lookup.get(new ConfigurationKey<>(Integer.class, "timeout")));
+    assertEquals(Integer.valueOf(0), this.lookup.get(new ConfigurationKey<>(int.class, "timeout")));
+  }
+
+  @Test
+  public void testValueIsResolvedOnceAndRefreshedOnInvalidation() {
+    final ConfigurationKey<String> key = new ConfigurationKey<>(String.class, "url");
+    this.configurations.put("url", "jdbc:x");
+    assertEquals("jdbc:x", this.lookup.get(key));
+    assertEquals("jdbc:x", this.lookup.get(key));
+    assertEquals(1, this.configurations.getLookupCount("url"));
+    this.configurations.put("url", "jdbc:y");
+    this.resolver.invalidate();
+    assertEquals("jdbc:y", this.lookup.get(key));
+  }
+
+  @Test
+  public void testEqualKeysShareCachedValues() {
+    this.configurations.put("url", "jdbc:x");
+    assertEquals(new ConfigurationKey<>(String.class, "url"), new ConfigurationKey<>(String.class, "url"));
+    assertEquals("jdbc:x", this.lookup.get(new ConfigurationKey<>(String.class, "url")));
+    assertEquals("jdbc:x", this.lookup.get(new ConfigurationKey<>(String.class, "url")));
+    assertEquals(1, this.configurations.getLookupCount("url"));
+  }
+
+  @Test
+  public void testKeySharedBetweenLookups() {
+    final MapConfigurations otherConfigurations = new MapConfigurations().put("url", "jdbc:y");
+    final ConfigurationLookup other = new ConfigurationLookup(new ConfigurationValueResolver(otherConfigurations, 100), null);
+    final ConfigurationKey<String> key = new ConfigurationKey<>(String.class, "url");
+    this.configurations.put("url", "jdbc:x");
+    for (int i = 0; i < 3; i++) {
+      assertEquals("jdbc:x", this.lookup.get(key));
+      assertEquals("jdbc:y", other.get(key));
+    }
+    assertEquals(1, this.configurations.getLookupCount("url"));
+    assertEquals(1, otherConfigurations.getLookupCount("url"));
+  }
+
+  @Test
+  public void testKeyCoordinatesTakePrecedence() {
+    final ConfigurationLookup lookup = new ConfigurationLookup(this.resolver, Collections.singletonMap("environment", "test"));
+    final ConfigurationKey<String> key =
+      new ConfigurationKey<>(String.class, null, Collections.singletonMap("environment", "production"), null, "url");
+    assertEquals(Collections.singletonMap("environment", "production"),
+                 lookup.compile(key).getMetadata().getConfigurationCoordinates());
+    assertEquals(Collections.singletonMap("environment", "test"),
+                 lookup.compile(new ConfigurationKey<>(String.class, "url")).getMetadata().getConfigurationCoordinates());
+  }
+
+  @Test
+  public void testGetAll() {
+    this.configurations.put("a", "1").put("c", "3");
+    final Map<String, Integer> values = this.lookup.getAll(null, Arrays.asList("c", "b", "a"), Integer.class);
+    assertEquals(Arrays.asList("c", "a"), new ArrayList<>(values.keySet()));
+    assertEquals(Integer.valueOf(3), values.get("c"));
+    assertEquals(Integer.valueOf(1), values.get("a"));
+    // The batch populates the same cache that get() uses.
+    this.configurations.resetCounts();
+    assertEquals(Integer.valueOf(1), this.lookup.get(new ConfigurationKey<>(Integer.class, "a")));
+    assertEquals(0, this.configurations.getTotalLookupCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoNames() {
+    new ConfigurationKey<>(String.class, "");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoConversion() {
+    this.lookup.get(new ConfigurationKey<>(Object.class, "url"));
+  }
+
+  @Test
+  public void testCacheHitsDoNotAllocate() {
+    final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+    final com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean)threadMXBean;
+    assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported() && allocationMXBean.isThreadAllocatedMemoryEnabled());
+    final long threadId = Thread.currentThread().getId();
+    final ConfigurationKey<String> key = new ConfigurationKey<>(String.class, "url");
+    this.configurations.put("url", "jdbc:x");
+    for (int i = 0; i < 1000; i++) {
+      this.lookup.get(key);
+    }
+    final long before = allocationMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < 100000; i++) {
+      this.lookup.get(key);
+    }
+    final long allocated = allocationMXBean.getThreadAllocatedBytes(threadId) - before;
+    // Allow for a little noise from the measurement itself, but far
+    // less than one byte per lookup.
+    assertTrue("Allocated " + allocated + " bytes", allocated < 10000L);
+  }
+
+}
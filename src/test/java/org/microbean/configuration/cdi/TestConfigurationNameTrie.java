@@ -0,0 +1,130 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestConfigurationNameTrie {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  // Inspected by testGetMapValueType().
+  @SuppressWarnings("unused")
+  private Map<String, Integer> integerMap;
+
+  // Inspected by testGetMapValueType().
+  @SuppressWarnings("unused")
+  private Map<Integer, String> integerKeyedMap;
+
+  // Inspected by testGetMapValueType().
+  @SuppressWarnings("unused")
+  private Map<String, ?> wildcardMap;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestConfigurationNameTrie() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Test
+  public void testGetNamesBeneath() {
+    final ConfigurationNameTrie trie =
+      new ConfigurationNameTrie(Arrays.asList("plugins", "plugins.b.c", "plugins.a", "pluginsX.a", "other.a", null));
+    assertEquals(Arrays.asList("plugins.a", "plugins.b.c"), trie.getNamesBeneath("plugins"));
+    assertEquals(Collections.singletonList("plugins.b.c"), trie.getNamesBeneath("plugins.b"));
+    assertEquals(Collections.emptyList(), trie.getNamesBeneath("plugins.a"));
+    assertEquals(Collections.emptyList(), trie.getNamesBeneath("plugins.absent"));
+    assertEquals(Collections.emptyList(), trie.getNamesBeneath("plug"));
+    assertEquals(5, trie.getNamesBeneath("").size());
+  }
+
+  @Test
+  public void testHasNamesBeneath() {
+    final ConfigurationNameTrie trie = new ConfigurationNameTrie(Arrays.asList("a.b.c", "d"));
+    assertTrue(trie.hasNamesBeneath("a"));
+    assertTrue(trie.hasNamesBeneath("a.b"));
+    assertFalse(trie.hasNamesBeneath("a.b.c"));
+    assertFalse(trie.hasNamesBeneath("d"));
+    assertFalse(trie.hasNamesBeneath("e"));
+  }
+
+  @Test
+  public void testEmptyTrie() {
+    final ConfigurationNameTrie trie = new ConfigurationNameTrie(null);
+    assertEquals(Collections.emptyList(), trie.getNamesBeneath(""));
+    assertFalse(trie.hasNamesBeneath("a"));
+  }
+
+  @Test
+  public void testResolverRebuildsTrieAfterInvalidation() {
+    final MapConfigurations configurations = new MapConfigurations().put("a.b", "1");
+    final ConfigurationValueResolver resolver = new ConfigurationValueResolver(configurations, 100);
+    final ConfigurationNameTrie trie = resolver.getNameTrie();
+    assertSame(trie, resolver.getNameTrie());
+    configurations.put("a.c", "2");
+    assertEquals(Arrays.asList("a.b"), resolver.getNameTrie().getNamesBeneath("a"));
+    resolver.invalidate();
+    assertNotSame(trie, resolver.getNameTrie());
+    assertEquals(Arrays.asList("a.b", "a.c"), resolver.getNameTrie().getNamesBeneath("a"));
+  }
+
+  @Test
+  public void testResolverSeesNewNamesWithoutCaching() {
+    final MapConfigurations configurations = new MapConfigurations().put("a.b", "1");
+    final ConfigurationValueResolver resolver = new ConfigurationValueResolver(configurations);
+    assertEquals(Arrays.asList("a.b"), resolver.getNameTrie().getNamesBeneath("a"));
+    configurations.put("a.c", "2");
+    assertEquals(Arrays.asList("a.b", "a.c"), resolver.getNameTrie().getNamesBeneath("a"));
+    configurations.remove("a.b");
+    assertEquals(Arrays.asList("a.c"), resolver.getNameTrie().getNamesBeneath("a"));
+  }
+
+  @Test
+  public void testGetMapValueType() throws NoSuchFieldException {
+    assertEquals(Integer.class,
+                 ConfigurationsExtension.getMapValueType(this.getClass().getDeclaredField("integerMap").getGenericType()));
+    assertNull(ConfigurationsExtension.getMapValueType(this.getClass().getDeclaredField("integerKeyedMap").getGenericType()));
+    assertNull(ConfigurationsExtension.getMapValueType(this.getClass().getDeclaredField("wildcardMap").getGenericType()));
+    assertNull(ConfigurationsExtension.getMapValueType(Map.class));
+  }
+
+}
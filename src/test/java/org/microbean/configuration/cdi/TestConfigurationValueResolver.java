@@ -0,0 +1,461 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.reflect.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.Set;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.enterprise.util.TypeLiteral;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.microbean.configuration.api.ConfigurationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestConfigurationValueResolver {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private MapConfigurations configurations;
+
+  private ConfigurationValueResolver resolver;
+
+  private ConfigurationValueResolver cachedResolver;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestConfigurationValueResolver() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Before
+  public void setUp() {
+    this.configurations = new MapConfigurations();
+    this.resolver = new ConfigurationValueResolver(this.configurations);
+    this.cachedResolver = new ConfigurationValueResolver(this.configurations, 100);
+  }
+
+  @Test
+  public void testAbsentNamesAreNotSoughtAgain() {
+    this.configurations.put("java.bozo", "b");
+    final ConfigurationsExtension.ConfigurationValueMetadata metadata = metadata(null, "java.home", "java.bozo");
+    assertEquals("b", this.cachedResolver.resolve(metadata, String.class));
+    final int lookups = this.configurations.getLookupCount("java.home");
+    for (int i = 0; i < 10; i++) {
+      // Simulate eviction, so that only absent names are remembered.
+      this.cachedResolver.getValueCache().clear();
+      assertEquals("b", this.cachedResolver.resolve(metadata, String.class));
+    }
+    assertEquals(lookups, this.configurations.getLookupCount("java.home"));
+  }
+
+  @Test
+  public void testExhaustedFallbackChainFallsThroughToDefault() {
+    final ConfigurationsExtension.ConfigurationValueMetadata metadata = metadata("42", "a", "b", "c");
+    assertEquals(Integer.valueOf(42), this.cachedResolver.resolve(metadata, Integer.class));
+    this.configurations.resetCounts();
+    for (int i = 0; i < 10; i++) {
+      this.cachedResolver.getValueCache().clear();
+      assertEquals(Integer.valueOf(42), this.cachedResolver.resolve(metadata, Integer.class));
+    }
+    assertEquals(0, this.configurations.getTotalLookupCount());
+  }
+
+  @Test
+  public void testExhaustedFallbackChainWithoutDefault() {
+    final ConfigurationsExtension.ConfigurationValueMetadata metadata = metadata(null, "a", "b");
+    assertNull(this.cachedResolver.resolve(metadata, int.class));
+    this.configurations.resetCounts();
+    this.cachedResolver.getValueCache().clear();
+    assertNull(this.cachedResolver.resolve(metadata, int.class));
+    assertEquals(0, this.configurations.getTotalLookupCount());
+  }
+
+  @Test
+  public void testDefaultValueIsConvertedOnce() {
+    final ConfigurationsExtension.ConfigurationValueMetadata metadata = metadata(" 42 ", "a");
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Integer.valueOf(42), this.resolver.resolve(metadata, Integer.class));
+    }
+    assertEquals(1L, this.configurations.getConversionCount());
+    assertSame(this.resolver.resolve(metadata, Integer.class),
+               this.resolver.getDefaultValue(new ConfigurationValueResolver.Key(metadata, Integer.class)));
+  }
+
+  @Test(expected = ConfigurationException.class)
+  public void testUnconvertibleDefaultValue() {
+    this.resolver.getDefaultValue(new ConfigurationValueResolver.Key(metadata("forty-two", "a"), Integer.class));
+  }
+
+  @Test
+  public void testInvalidation() {
+    final ConfigurationsExtension.ConfigurationValueMetadata metadata = metadata("d", "a", "b");
+    assertEquals("d", this.cachedResolver.resolve(metadata, String.class));
+    assertEquals("d", this.resolver.resolve(metadata, String.class));
+    this.configurations.put("b", "bee");
+    assertEquals("d", this.cachedResolver.resolve(metadata, String.class));
+    // Without caching nothing is remembered, so there is nothing to
+    // invalidate.
+    assertEquals("bee", this.resolver.resolve(metadata, String.class));
+    this.cachedResolver.invalidate();
+    assertEquals("bee", this.cachedResolver.resolve(metadata, String.class));
+    this.configurations.put("a", "ay");
+    assertEquals("ay", this.resolver.resolve(metadata, String.class));
+    this.cachedResolver.invalidate();
+    assertEquals("ay", this.cachedResolver.resolve(metadata, String.class));
+  }
+
+  @Test
+  public void testWinningAliasIsTriedFirst() {
+    this.configurations.put("c", "see");
+    final ConfigurationsExtension.ConfigurationValueMetadata metadata = metadata(null, "a", "b", "c");
+    assertEquals("see", this.cachedResolver.resolve(metadata, String.class));
+    this.configurations.resetCounts();
+    for (int i = 0; i < 10; i++) {
+      this.cachedResolver.getValueCache().clear();
+      assertEquals("see", this.cachedResolver.resolve(metadata, String.class));
+    }
+    assertEquals(10, this.configurations.getTotalLookupCount());
+    assertEquals(10, this.configurations.getLookupCount("c"));
+  }
+
+  @Test
+  public void testEarlierAliasWinsAfterReload() {
+    this.configurations.put("c", "see");
+    final ConfigurationsExtension.ConfigurationValueMetadata metadata = metadata(null, "a", "b", "c");
+    assertEquals("see", this.cachedResolver.resolve(metadata, String.class));
+    this.configurations.put("b", "bee");
+    this.cachedResolver.invalidate();
+    assertEquals("bee", this.cachedResolver.resolve(metadata, String.class));
+    assertEquals("bee", this.cachedResolver.resolve(metadata, String.class));
+  }
+
+  @Test
+  public void testEarlierAliasWinsWithoutInvalidation() {
+    this.configurations.put("c", "see");
+    final ConfigurationsExtension.ConfigurationValueMetadata metadata = metadata(null, "a", "b", "c");
+    final ConfigurationValueResolver.Key key = new ConfigurationValueResolver.Key(metadata, String.class);
+    assertEquals("see", this.resolver.resolve(metadata, String.class));
+    assertEquals("see", this.resolver.resolveAll(Collections.singleton(key), null).get(key));
+    // No invalidation follows, as none would without a Pollable
+    // source.
+    this.configurations.put("b", "bee");
+    assertEquals("bee", this.resolver.resolve(metadata, String.class));
+    assertEquals("bee", this.resolver.resolveAll(Collections.singleton(key), null).get(key));
+    this.configurations.put("a", "ay");
+    assertEquals("ay", this.resolver.resolveAll(Collections.singleton(key), null).get(key));
+    assertEquals("ay", this.resolver.resolve(metadata, String.class));
+  }
+
+  @Test
+  public void testVanishedAliasFallsBackToOrderedSearch() {
+    this.configurations.put("b", "bee").put("c", "see");
+    final ConfigurationsExtension.ConfigurationValueMetadata metadata = metadata("dee", "a", "b", "c");
+    assertEquals("bee", this.resolver.resolve(metadata, String.class));
+    this.configurations.remove("b");
+    this.resolver.invalidate();
+    assertEquals("see", this.resolver.resolve(metadata, String.class));
+    this.configurations.remove("c");
+    this.resolver.invalidate();
+    assertEquals("dee", this.resolver.resolve(metadata, String.class));
+    // Even without an invalidation, a vanished winner is never
+    // returned.
+    this.configurations.put("c", "see");
+    this.resolver.invalidate();
+    assertEquals("see", this.resolver.resolve(metadata, String.class));
+    this.configurations.remove("c");
+    assertEquals("dee", this.resolver.resolve(metadata, String.class));
+  }
+
+  @Test
+  public void testResolvedValuesAreCached() {
+    this.configurations.put("b", "bee");
+    final ConfigurationsExtension.ConfigurationValueMetadata metadata = metadata(null, "a", "b");
+    assertEquals("bee", this.cachedResolver.resolve(metadata, String.class));
+    this.configurations.resetCounts();
+    for (int i = 0; i < 10; i++) {
+      assertEquals("bee", this.cachedResolver.resolve(metadata, String.class));
+    }
+    assertEquals(0, this.configurations.getTotalLookupCount());
+    assertEquals(10L, this.cachedResolver.getValueCache().getHitCount());
+    this.configurations.put("b", "buzz");
+    this.cachedResolver.invalidate();
+    assertEquals("buzz", this.cachedResolver.resolve(metadata, String.class));
+  }
+
+  @Test
+  public void testResolveNameCachesNothing() {
+    this.configurations.put("plugins.a", "ay");
+    assertEquals("ay", this.cachedResolver.resolveName(null, "plugins.a", String.class));
+    assertNull(this.cachedResolver.resolveName(null, "plugins.b", String.class));
+    assertEquals(0, this.cachedResolver.getValueCache().size());
+    // Absence was not remembered either.
+    this.configurations.put("plugins.b", "bee");
+    assertEquals("bee", this.cachedResolver.resolveName(null, "plugins.b", String.class));
+  }
+
+  @Test
+  public void testCachedValueIsServedUntilInvalidation() {
+    this.configurations.put("b", "bee");
+    final ConfigurationsExtension.ConfigurationValueMetadata metadata = metadata("dee", "a", "b");
+    assertEquals("bee", this.cachedResolver.resolve(metadata, String.class));
+    // This is the staleness that enabling the cache opts into.
+    this.configurations.remove("b");
+    assertEquals("bee", this.cachedResolver.resolve(metadata, String.class));
+    this.cachedResolver.invalidate();
+    assertEquals("dee", this.cachedResolver.resolve(metadata, String.class));
+  }
+
+  @Test
+  public void testOnlyImmutableValuesAreShared() {
+    assertTrue(ConfigurationValueResolver.isShareable("a"));
+    assertTrue(ConfigurationValueResolver.isShareable(Integer.valueOf(1)));
+    assertTrue(ConfigurationValueResolver.isShareable(java.time.Duration.ZERO));
+    assertTrue(ConfigurationValueResolver.isShareable(java.util.concurrent.TimeUnit.SECONDS));
+    assertFalse(ConfigurationValueResolver.isShareable(new ArrayList<>()));
+    assertFalse(ConfigurationValueResolver.isShareable(new int[0]));
+    assertFalse(ConfigurationValueResolver.isShareable(new java.util.Date()));
+  }
+
+  @Test
+  public void testAbsentValuesAreCached() {
+    final ConfigurationValueResolver.Key key = new ConfigurationValueResolver.Key(metadata(null, "a", "b"), String.class);
+    assertNull(this.cachedResolver.resolve(key));
+    this.configurations.resetCounts();
+    for (int i = 0; i < 10; i++) {
+      assertNull(this.cachedResolver.resolve(key));
+    }
+    assertEquals(0, this.configurations.getTotalLookupCount());
+    assertEquals(10L, this.cachedResolver.getValueCache().getHitCount());
+    assertTrue(this.cachedResolver.resolveAll(Collections.singleton(key), null).isEmpty());
+    assertEquals(11L, this.cachedResolver.getValueCache().getHitCount());
+    this.configurations.put("b", "bee");
+    this.cachedResolver.invalidate();
+    assertEquals("bee", this.cachedResolver.resolve(key));
+  }
+
+  @Test
+  public void testResolveAsync() throws Exception {
+    final List<Runnable> tasks = new ArrayList<>();
+    this.configurations.put("a", "1");
+    final ConfigurationValueResolver.Key key = new ConfigurationValueResolver.Key(metadata(null, "a"), Integer.class);
+    final CompletableFuture<Object> first = this.cachedResolver.resolveAsync(key, tasks::add);
+    final CompletableFuture<Object> second = this.cachedResolver.resolveAsync(key, tasks::add);
+    assertEquals(1, tasks.size());
+    assertFalse(first.isDone());
+    // Cancelling one caller's future leaves the others alone.
+    first.cancel(false);
+    tasks.get(0).run();
+    assertEquals(Integer.valueOf(1), second.get());
+    assertEquals(1, this.configurations.getLookupCount("a"));
+    // Once cached, the value completes immediately.
+    final CompletableFuture<Object> third = this.cachedResolver.resolveAsync(key, tasks::add);
+    assertTrue(third.isDone());
+    assertEquals(Integer.valueOf(1), third.get());
+    assertEquals(1, tasks.size());
+  }
+
+  @Test
+  public void testResolveAsyncFailure() {
+    this.configurations.put("a", "x");
+    final CompletableFuture<Object> future =
+      this.resolver.resolveAsync(new ConfigurationValueResolver.Key(metadata(null, "a"), Integer.class), Runnable::run);
+    assertTrue(future.isCompletedExceptionally());
+    final CompletableFuture<Object> rejected =
+      this.resolver.resolveAsync(new ConfigurationValueResolver.Key(metadata(null, "b"), Integer.class), r -> {
+          throw new RejectedExecutionException();
+        });
+    assertTrue(rejected.isCompletedExceptionally());
+  }
+
+  @Test
+  public void testOptionalTypes() {
+    final Set<Type> conversionTypes = new HashSet<>(Arrays.asList(String.class, Integer.class, long.class));
+    final Type optionalStringType = new TypeLiteral<Optional<String>>() {}.getType();
+    assertEquals(String.class, ConfigurationsExtension.getOptionalConversionType(optionalStringType, conversionTypes));
+    assertEquals(Integer.class, ConfigurationsExtension.getOptionalConversionType(OptionalInt.class, conversionTypes));
+    assertEquals(long.class, ConfigurationsExtension.getOptionalConversionType(OptionalLong.class, conversionTypes));
+    assertNull(ConfigurationsExtension.getOptionalConversionType(OptionalDouble.class, conversionTypes));
+    assertNull(ConfigurationsExtension.getOptionalConversionType(new TypeLiteral<Optional<?>>() {}.getType(), conversionTypes));
+    assertNull(ConfigurationsExtension.getOptionalConversionType(String.class, conversionTypes));
+    assertEquals(OptionalInt.of(3), ConfigurationsExtension.toOptional(OptionalInt.class, 3));
+    assertEquals(OptionalInt.empty(), ConfigurationsExtension.toOptional(OptionalInt.class, null));
+    assertEquals(OptionalDouble.of(0.5D), ConfigurationsExtension.toOptional(OptionalDouble.class, 0.5D));
+    assertEquals(Optional.empty(), ConfigurationsExtension.toOptional(optionalStringType, null));
+    assertEquals(Optional.of("a"), ConfigurationsExtension.toOptional(optionalStringType, "a"));
+  }
+
+  @Test
+  public void testDeclaredOrderSemanticsArePreserved() {
+    final String[] names = { "a", "b", "c", "d" };
+    final ConfigurationsExtension.ConfigurationValueMetadata withDefault = metadata("0", names);
+    final ConfigurationsExtension.ConfigurationValueMetadata withoutDefault = metadata(null, names);
+    final Random random = new Random(8675309L);
+    for (int reload = 0; reload < 500; reload++) {
+      for (final String name : names) {
+        if (random.nextBoolean()) {
+          this.configurations.put(name, Integer.toString(random.nextInt(100) + 1));
+        } else {
+          this.configurations.remove(name);
+        }
+      }
+      this.cachedResolver.invalidate();
+      for (final ConfigurationValueResolver resolver : Arrays.asList(this.resolver, this.cachedResolver)) {
+        for (int production = 0; production < 3; production++) {
+          assertEquals(this.configurations.getValue(null, Arrays.asList(names), Integer.class, "0"),
+                       resolver.resolve(withDefault, Integer.class));
+          assertEquals(this.configurations.getValue(null, Arrays.asList(names), Integer.class, null),
+                       resolver.resolve(withoutDefault, Integer.class));
+          assertEquals(this.configurations.getValue(null, Arrays.asList(names), String.class, null),
+                       resolver.resolve(withoutDefault, String.class));
+        }
+      }
+    }
+  }
+
+
+  @Test
+  public void testResolveAllMatchesResolve() {
+    final String[] names = { "a", "b", "c", "d" };
+    final List<ConfigurationValueResolver.Key> keys = new ArrayList<>();
+    for (int i = 0; i < names.length; i++) {
+      final String[] aliases = Arrays.copyOfRange(names, i, names.length);
+      keys.add(new ConfigurationValueResolver.Key(metadata(null, aliases), Integer.class));
+      keys.add(new ConfigurationValueResolver.Key(metadata("0", aliases), Integer.class));
+      keys.add(new ConfigurationValueResolver.Key(metadata(null, aliases), String.class));
+    }
+    final Random random = new Random(8675309L);
+    for (int reload = 0; reload < 200; reload++) {
+      for (final String name : names) {
+        if (random.nextBoolean()) {
+          this.configurations.put(name, Integer.toString(random.nextInt(100) + 1));
+        } else {
+          this.configurations.remove(name);
+        }
+      }
+      for (final ConfigurationValueResolver resolver : Arrays.asList(this.resolver, this.cachedResolver)) {
+        resolver.invalidate();
+        resolver.invalidate();
+        // Resolve some values individually first, so that the batch
+        // sees a mixture of cached values, remembered winning names
+        // and remembered absences.
+        for (final ConfigurationValueResolver.Key key : keys) {
+          if (random.nextInt(4) == 0) {
+            resolver.resolve(key);
+          }
+        }
+        if (random.nextBoolean()) {
+          // Simulate eviction, leaving only the remembered names.
+          resolver.getValueCache().clear();
+        }
+        final Map<ConfigurationValueResolver.Key, Object> values = resolver.resolveAll(keys, null);
+        for (final ConfigurationValueResolver.Key key : keys) {
+          assertEquals(key.toString(), resolver.resolve(key), values.get(key));
+          assertEquals(key.toString(), values.get(key), resolver.resolve(key));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testResolveAllSeeksEachNameOnce() {
+    this.configurations.put("a", "1").put("b", "2");
+    final List<ConfigurationValueResolver.Key> keys =
+      Arrays.asList(new ConfigurationValueResolver.Key(metadata(null, "x", "a"), Integer.class),
+                    new ConfigurationValueResolver.Key(metadata(null, "x", "b"), Integer.class),
+                    new ConfigurationValueResolver.Key(metadata(null, "a"), Integer.class));
+    Map<ConfigurationValueResolver.Key, Object> values = this.cachedResolver.resolveAll(keys, null);
+    assertEquals(Integer.valueOf(1), values.get(keys.get(0)));
+    assertEquals(Integer.valueOf(2), values.get(keys.get(1)));
+    assertEquals(Integer.valueOf(1), values.get(keys.get(2)));
+    // "x" is sought once as an Integer and once, to confirm its
+    // absence, as a String; "a" is sought once per round in which it
+    // is needed.
+    assertEquals(2, this.configurations.getLookupCount("x"));
+    assertEquals(2, this.configurations.getLookupCount("a"));
+    assertEquals(1, this.configurations.getLookupCount("b"));
+    // Without caching, absence is not remembered, so it need not be
+    // confirmed.
+    this.configurations.resetCounts();
+    values = this.resolver.resolveAll(keys, null);
+    assertEquals(Integer.valueOf(1), values.get(keys.get(0)));
+    assertEquals(Integer.valueOf(2), values.get(keys.get(1)));
+    assertEquals(Integer.valueOf(1), values.get(keys.get(2)));
+    assertEquals(1, this.configurations.getLookupCount("x"));
+    assertEquals(2, this.configurations.getLookupCount("a"));
+    assertEquals(1, this.configurations.getLookupCount("b"));
+  }
+
+  @Test
+  public void testResolveAllReportsProblemsPerKey() {
+    this.configurations.put("a", "1").put("bad", "x");
+    final ConfigurationValueResolver.Key good = new ConfigurationValueResolver.Key(metadata(null, "a"), Integer.class);
+    final ConfigurationValueResolver.Key bad = new ConfigurationValueResolver.Key(metadata(null, "bad"), Integer.class);
+    final ConfigurationValueResolver.Key badDefault = new ConfigurationValueResolver.Key(metadata("y", "absent"), Integer.class);
+    final Map<ConfigurationValueResolver.Key, RuntimeException> problems = new HashMap<>();
+    final Map<ConfigurationValueResolver.Key, Object> values = this.resolver.resolveAll(Arrays.asList(good, bad, badDefault), problems);
+    assertEquals(Collections.singletonMap(good, Integer.valueOf(1)), values);
+    assertEquals(new HashSet<>(Arrays.asList(bad, badDefault)), problems.keySet());
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  static final ConfigurationsExtension.ConfigurationValueMetadata metadata(final String defaultValue, final String... names) {
+    return new ConfigurationsExtension.ConfigurationValueMetadata(null, Arrays.asList(names), defaultValue);
+  }
+
+}
@@ -0,0 +1,214 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.io.IOException;
+
+import java.net.URI;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestConfigurationValueSnapshot {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private MapConfigurations configurations;
+
+  private Path directory;
+
+  private Path snapshot;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestConfigurationValueSnapshot() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Before
+  public void setUp() throws IOException {
+    this.configurations = new MapConfigurations().put("a", "42").put("b", "bee").put("u", "http://example.com/");
+    this.directory = Files.createTempDirectory("snapshot");
+    this.snapshot = this.directory.resolve("values.snapshot");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.snapshot);
+    Files.deleteIfExists(this.directory);
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    final Map<ConfigurationValueResolver.Key, Object> values = this.values();
+    assertEquals(values.size(), ConfigurationValueSnapshot.write(this.snapshot, this.configurations, values));
+    assertEquals(values, ConfigurationValueSnapshot.read(this.snapshot, this.configurations, null));
+  }
+
+  @Test
+  public void testChangedSourceInvalidatesSnapshot() throws IOException {
+    ConfigurationValueSnapshot.write(this.snapshot, this.configurations, this.values());
+    this.configurations.put("b", "buzz");
+    assertNull(ConfigurationValueSnapshot.read(this.snapshot, this.configurations, null));
+    assertFalse(Files.exists(this.snapshot));
+  }
+
+  @Test
+  public void testUnrelatedChangeDoesNotInvalidateSnapshot() throws IOException {
+    ConfigurationValueSnapshot.write(this.snapshot, this.configurations, this.values());
+    this.configurations.put("unrelated", "value");
+    assertEquals(this.values(), ConfigurationValueSnapshot.read(this.snapshot, this.configurations, null));
+  }
+
+  @Test
+  public void testNewlyPresentAliasInvalidatesSnapshot() throws IOException {
+    ConfigurationValueSnapshot.write(this.snapshot, this.configurations, this.values());
+    this.configurations.put("x", "7");
+    assertNull(ConfigurationValueSnapshot.read(this.snapshot, this.configurations, null));
+  }
+
+  @Test
+  public void testReadingLooksUpNoMoreThanResolving() throws IOException {
+    ConfigurationValueSnapshot.write(this.snapshot, this.configurations, this.values());
+    this.configurations.resetCounts();
+    assertEquals(this.values(), ConfigurationValueSnapshot.read(this.snapshot, this.configurations, null));
+    // "x" is not a known name, so it is not looked up; each other
+    // name is looked up once per key that uses it.
+    assertEquals(0, this.configurations.getLookupCount("x"));
+    assertEquals(2, this.configurations.getLookupCount("a"));
+    assertEquals(1, this.configurations.getLookupCount("b"));
+    assertEquals(1, this.configurations.getLookupCount("u"));
+  }
+
+  @Test
+  public void testOtherValuesAreConvertedAgainFromStrings() throws IOException {
+    final ConfigurationValueResolver.Key key =
+      new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "u"), URI.class);
+    ConfigurationValueSnapshot.write(this.snapshot, this.configurations, Collections.singletonMap(key, URI.create("http://example.com/")));
+    assertTrue(new String(Files.readAllBytes(this.snapshot), StandardCharsets.UTF_8).contains("http://example.com/"));
+    this.configurations.resetCounts();
+    assertEquals(Collections.singletonMap(key, URI.create("http://example.com/")),
+                 ConfigurationValueSnapshot.read(this.snapshot, this.configurations, null));
+    // Once for the fingerprint's raw String, once for the URI.
+    assertEquals(2L, this.configurations.getConversionCount());
+    assertEquals(1, this.configurations.getLookupCount("u"));
+  }
+
+  @Test
+  public void testMalformedSnapshotIsDiscarded() throws IOException {
+    Files.write(this.snapshot, new byte[] { 1, 2, 3 });
+    assertNull(ConfigurationValueSnapshot.read(this.snapshot, this.configurations, null));
+    assertFalse(Files.exists(this.snapshot));
+  }
+
+  @Test
+  public void testMissingSnapshot() throws IOException {
+    assertNull(ConfigurationValueSnapshot.read(this.snapshot, this.configurations, null));
+  }
+
+  @Test
+  public void testUnrecordableValuesAreSkipped() throws IOException {
+    final Map<ConfigurationValueResolver.Key, Object> values = new LinkedHashMap<>();
+    values.put(new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "b"), Object.class), new Object());
+    values.put(new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "a"), int.class), Integer.valueOf(42));
+    assertEquals(1, ConfigurationValueSnapshot.write(this.snapshot, this.configurations, values));
+    final Map<ConfigurationValueResolver.Key, Object> readValues = ConfigurationValueSnapshot.read(this.snapshot, this.configurations, null);
+    assertEquals(Collections.singletonMap(new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "a"), int.class),
+                                          Integer.valueOf(42)),
+                 readValues);
+  }
+
+  @Test
+  public void testPreloadedValuesAreServedFromCache() throws IOException {
+    ConfigurationValueSnapshot.write(this.snapshot, this.configurations, this.values());
+    final ConfigurationValueResolver resolver = new ConfigurationValueResolver(this.configurations, 100);
+    final Map<ConfigurationValueResolver.Key, Object> values = ConfigurationValueSnapshot.read(this.snapshot, this.configurations, null);
+    for (final Map.Entry<ConfigurationValueResolver.Key, Object> entry : values.entrySet()) {
+      resolver.preload(entry.getKey(), entry.getValue());
+    }
+    this.configurations.resetCounts();
+    assertEquals(Integer.valueOf(42), resolver.resolve(TestConfigurationValueResolver.metadata(null, "x", "a"), Integer.class));
+    assertEquals(0, this.configurations.getTotalLookupCount());
+    assertEquals(0L, this.configurations.getConversionCount());
+    assertTrue(resolver.getValueCache().getHitCount() > 0L);
+  }
+
+  @Test
+  public void testSnapshotIsIgnoredWithoutCaching() throws IOException {
+    ConfigurationValueSnapshot.write(this.snapshot, this.configurations, this.values());
+    System.setProperty("org.microbean.configuration.cdi.snapshot.file", this.snapshot.toString());
+    try {
+      this.configurations.resetCounts();
+      ConfigurationValueResolver resolver = new ConfigurationsExtension().createResolver(this.configurations);
+      // By default nothing is cached, so the snapshot is not even
+      // read.
+      assertEquals(0, resolver.getValueCache().size());
+      assertEquals(0, this.configurations.getTotalLookupCount());
+      assertEquals(0L, this.configurations.getConversionCount());
+      assertTrue(Files.exists(this.snapshot));
+      System.setProperty("org.microbean.configuration.cdi.cache.maximumSize", "100");
+      resolver = new ConfigurationsExtension().createResolver(this.configurations);
+      assertEquals(this.values().size(), resolver.getValueCache().size());
+    } finally {
+      System.clearProperty("org.microbean.configuration.cdi.cache.maximumSize");
+      System.clearProperty("org.microbean.configuration.cdi.snapshot.file");
+    }
+  }
+
+  private final Map<ConfigurationValueResolver.Key, Object> values() {
+    final Map<ConfigurationValueResolver.Key, Object> values = new LinkedHashMap<>();
+    values.put(new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "x", "a"), Integer.class),
+               Integer.valueOf(42));
+    values.put(new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata("dee", "b"), String.class),
+               "bee");
+    values.put(new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "u"), URI.class),
+               URI.create("http://example.com/"));
+    values.put(new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "a"), long.class),
+               Long.valueOf(42L));
+    return values;
+  }
+
+}
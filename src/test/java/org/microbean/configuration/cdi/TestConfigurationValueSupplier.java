@@ -0,0 +1,139 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.reflect.Type;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import java.util.concurrent.CountDownLatch;
+
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestConfigurationValueSupplier {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private MapConfigurations configurations;
+
+  private ConfigurationValueResolver resolver;
+
+  // Inspected by testGetSuppliedType().
+  @SuppressWarnings("unused")
+  private Supplier<Integer> integerSupplier;
+
+  // Inspected by testGetSuppliedType().
+  @SuppressWarnings("unused")
+  private Supplier<?> wildcardSupplier;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestConfigurationValueSupplier() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Before
+  public void setUp() {
+    this.configurations = new MapConfigurations();
+    this.resolver = new ConfigurationValueResolver(this.configurations, 0);
+  }
+
+  @Test
+  public void testNothingIsResolvedUntilGet() {
+    this.configurations.put("a", "42");
+    final Supplier<Integer> supplier =
+      new ConfigurationValueSupplier<>(this.resolver, TestConfigurationValueResolver.metadata(null, "a"), Integer.class);
+    assertEquals(0, this.configurations.getTotalLookupCount());
+    assertEquals(Integer.valueOf(42), supplier.get());
+    assertEquals(1, this.configurations.getTotalLookupCount());
+  }
+
+  @Test
+  public void testValueIsResolvedOnce() throws InterruptedException {
+    this.configurations.put("a", "42");
+    final Supplier<Integer> supplier =
+      new ConfigurationValueSupplier<>(this.resolver, TestConfigurationValueResolver.metadata(null, "a"), Integer.class);
+    final CountDownLatch start = new CountDownLatch(1);
+    final Collection<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      final Thread thread = new Thread(() -> {
+          try {
+            start.await();
+          } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+          for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(42), supplier.get());
+          }
+        });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(1, this.configurations.getLookupCount("a"));
+    // Later changes are not seen.
+    this.configurations.put("a", "43");
+    this.resolver.invalidate();
+    assertEquals(Integer.valueOf(42), supplier.get());
+  }
+
+  @Test
+  public void testAbsentValueIsResolvedOnce() {
+    final Supplier<String> supplier =
+      new ConfigurationValueSupplier<>(this.resolver, TestConfigurationValueResolver.metadata(null, "a"), String.class);
+    assertNull(supplier.get());
+    this.configurations.resetCounts();
+    assertNull(supplier.get());
+    assertEquals(0, this.configurations.getTotalLookupCount());
+  }
+
+  @Test
+  public void testGetSuppliedType() throws NoSuchFieldException {
+    final Type supplierType = TestConfigurationValueSupplier.class.getDeclaredField("integerSupplier").getGenericType();
+    assertSame(Integer.class, ConfigurationsExtension.getSuppliedType(supplierType));
+    final Type wildcardType = TestConfigurationValueSupplier.class.getDeclaredField("wildcardSupplier").getGenericType();
+    assertNull(ConfigurationsExtension.getSuppliedType(wildcardType));
+    assertNull(ConfigurationsExtension.getSuppliedType(Integer.class));
+  }
+
+}
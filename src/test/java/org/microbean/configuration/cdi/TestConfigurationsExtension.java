@@ -18,6 +18,18 @@ package org.microbean.configuration.cdi;
 
 import java.net.URL;
 
+import java.nio.ByteBuffer;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.Initialized;
 
@@ -31,7 +43,9 @@ import org.microbean.configuration.cdi.annotation.ConfigurationValue;
 
 import org.microbean.main.Main;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
 @ApplicationScoped
@@ -81,6 +95,49 @@ public class TestConfigurationsExtension {
     // conversion type
     assertNotNull(javaVendorUrl);
   }
+
+  private final void onStartup(@Observes @Initialized(ApplicationScoped.class) final Object event,
+                               @ConfigurationValue("home")
+                               final Optional<String> javaHome,
+                               @ConfigurationValue("no.such.port")
+                               final OptionalInt port) {
+    // Proves that optionals are produced, and that an absent value
+    // is injected as an empty one
+    assertEquals(Optional.of(System.getProperty("java.home")), javaHome);
+    assertFalse(port.isPresent());
+  }
+
+  private final void onStartup(@Observes @Initialized(ApplicationScoped.class) final Object event,
+                               @ConfigurationValue("home")
+                               final CompletionStage<String> javaHome)
+    throws ExecutionException, InterruptedException {
+    // Proves that completion stages are produced and completed
+    assertEquals(System.getProperty("java.home"), javaHome.toCompletableFuture().get());
+  }
+
+  private final void onStartup(@Observes @Initialized(ApplicationScoped.class) final Object event,
+                               @ConfigurationValue(value = "no.such.list", defaultValue = "a, b,c")
+                               final List<String> list,
+                               @ConfigurationValue(value = "no.such.ports", defaultValue = "80,443")
+                               final int[] ports) {
+    // Proves that delimited values are parsed into lists and arrays
+    assertEquals(Arrays.asList("a", "b", "c"), list);
+    assertArrayEquals(new int[] { 80, 443 }, ports);
+  }
+
+  private final void onStartup(@Observes @Initialized(ApplicationScoped.class) final Object event,
+                               @ConfigurationValue(value = "no.such.blob", defaultValue = "blob")
+                               final ByteBuffer blob) {
+    // Proves that streaming types are produced
+    assertEquals(ByteBuffer.wrap("blob".getBytes(StandardCharsets.UTF_8)), blob);
+  }
+
+  private final void onStartup(@Observes @Initialized(ApplicationScoped.class) final Object event,
+                               final ConfigurationLookup lookup) {
+    // Proves that the ConfigurationLookup bean was installed
+    assertEquals(System.getProperty("java.home"),
+                 lookup.get(new ConfigurationKey<>(String.class, "java", null, null, "home")));
+  }
   
   @Test
   public void testContainerStartup() {
@@ -0,0 +1,252 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.management.ManagementFactory;
+
+import java.lang.reflect.Type;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.enterprise.util.TypeLiteral;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.microbean.configuration.api.ConfigurationException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class TestDelimitedConfigurationValues {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final Type LIST_OF_STRING = new TypeLiteral<List<String>>() {}.getType();
+
+  private static final Type LIST_OF_INTEGER = new TypeLiteral<List<Integer>>() {}.getType();
+
+  private static final Type SET_OF_LONG = new TypeLiteral<Set<Long>>() {}.getType();
+
+  private static final Type LIST_OF_DOUBLE = new TypeLiteral<List<Double>>() {}.getType();
+
+  private static final Type LIST_OF_WILDCARD = new TypeLiteral<List<?>>() {}.getType();
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private MapConfigurations configurations;
+
+  private ConfigurationValueResolver resolver;
+
+  private DelimitedConfigurationValues values;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestDelimitedConfigurationValues() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Before
+  public void setUp() {
+    this.configurations = new MapConfigurations();
+    this.resolver = new ConfigurationValueResolver(this.configurations, 100);
+    this.values = new DelimitedConfigurationValues(this.resolver);
+  }
+
+  @Test
+  public void testParseInts() {
+    assertArrayEquals(new int[] { 1, -2, 3 }, DelimitedConfigurationValues.parseInts(" 1, -2 ,,+3, "));
+    assertArrayEquals(new int[0], DelimitedConfigurationValues.parseInts(""));
+    assertArrayEquals(new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE },
+                      DelimitedConfigurationValues.parseInts(Integer.MIN_VALUE + "," + Integer.MAX_VALUE));
+    final StringBuilder many = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      many.append(i).append(',');
+    }
+    final int[] ints = DelimitedConfigurationValues.parseInts(many.toString());
+    assertEquals(100, ints.length);
+    assertEquals(99, ints[99]);
+    for (final String bad : new String[] { "2147483648", "-2147483649", "1x", "-", "1 2" }) {
+      try {
+        DelimitedConfigurationValues.parseInts(bad);
+        fail(bad);
+      } catch (final ConfigurationException expected) {
+
+      }
+    }
+  }
+
+  @Test
+  public void testParseLongs() {
+    assertArrayEquals(new long[] { Long.MIN_VALUE, 0L, Long.MAX_VALUE },
+                      DelimitedConfigurationValues.parseLongs(Long.MIN_VALUE + ", 0 ," + Long.MAX_VALUE));
+    try {
+      DelimitedConfigurationValues.parseLongs("9223372036854775808");
+      fail();
+    } catch (final ConfigurationException expected) {
+
+    }
+  }
+
+  @Test
+  public void testSplit() {
+    assertEquals(Arrays.asList("a", "b c", "d"), DelimitedConfigurationValues.split(" a ,b c,, d,"));
+    assertEquals(Arrays.asList("a,b", "c\\d"), DelimitedConfigurationValues.split("a\\,b, c\\\\d"));
+    assertEquals(Collections.emptyList(), DelimitedConfigurationValues.split(" , "));
+  }
+
+  @Test
+  public void testIsSupported() {
+    final Set<Type> conversionTypes = this.configurations.getConversionTypes();
+    assertTrue(DelimitedConfigurationValues.isSupported(int[].class, null));
+    assertTrue(DelimitedConfigurationValues.isSupported(String[].class, conversionTypes));
+    assertTrue(DelimitedConfigurationValues.isSupported(LIST_OF_STRING, null));
+    assertTrue(DelimitedConfigurationValues.isSupported(LIST_OF_DOUBLE, conversionTypes));
+    assertFalse(DelimitedConfigurationValues.isSupported(LIST_OF_DOUBLE, Collections.<Type>singleton(String.class)));
+    assertFalse(DelimitedConfigurationValues.isSupported(LIST_OF_WILDCARD, conversionTypes));
+    assertFalse(DelimitedConfigurationValues.isSupported(double[].class, conversionTypes));
+    assertFalse(DelimitedConfigurationValues.isSupported(String.class, conversionTypes));
+  }
+
+  @Test
+  public void testListIsSharedAndParsedOnce() {
+    this.configurations.put("hosts", "a, b");
+    final ConfigurationValueResolver.Key key = key(LIST_OF_STRING, null, "hosts");
+    final Object hosts = this.values.get(key);
+    assertEquals(Arrays.asList("a", "b"), hosts);
+    this.configurations.resetCounts();
+    assertSame(hosts, this.values.get(key));
+    assertSame(hosts, this.values.get(key(LIST_OF_STRING, null, "hosts")));
+    assertEquals(0, this.configurations.getTotalLookupCount());
+    try {
+      @SuppressWarnings("unchecked")
+      final List<String> list = (List<String>)hosts;
+      list.add("c");
+      fail();
+    } catch (final UnsupportedOperationException expected) {
+
+    }
+  }
+
+  @Test
+  public void testArraysAreCopied() {
+    this.configurations.put("ports", "80, 443");
+    final ConfigurationValueResolver.Key key = key(int[].class, null, "ports");
+    final int[] first = (int[])this.values.get(key);
+    final int[] second = (int[])this.values.get(key);
+    assertArrayEquals(new int[] { 80, 443 }, first);
+    assertNotSame(first, second);
+    first[0] = 8080;
+    assertArrayEquals(new int[] { 80, 443 }, (int[])this.values.get(key));
+  }
+
+  @Test
+  public void testChangedValueIsParsedAgainAfterInvalidation() {
+    this.configurations.put("ids", "1,2");
+    final ConfigurationValueResolver.Key key = key(long[].class, null, "ids");
+    assertArrayEquals(new long[] { 1L, 2L }, (long[])this.values.get(key));
+    this.configurations.put("ids", "3");
+    assertArrayEquals(new long[] { 1L, 2L }, (long[])this.values.get(key));
+    this.resolver.invalidate();
+    assertArrayEquals(new long[] { 3L }, (long[])this.values.get(key));
+  }
+
+  @Test
+  public void testElementConversion() {
+    this.configurations.put("sizes", "1, 2, 1").put("ids", "5,5,6").put("rates", "0.5, 1.5").put("letters", "x,y");
+    assertEquals(Arrays.asList(1, 2, 1), this.values.get(key(LIST_OF_INTEGER, null, "sizes")));
+    assertEquals(Arrays.asList(5L, 6L), Arrays.asList(((Set<?>)this.values.get(key(SET_OF_LONG, null, "ids"))).toArray()));
+    assertEquals(Arrays.asList(0.5D, 1.5D), this.values.get(key(LIST_OF_DOUBLE, null, "rates")));
+    assertArrayEquals(new String[] { "x", "y" }, (String[])this.values.get(key(String[].class, null, "letters")));
+    this.configurations.put("sizes", "1,x");
+    this.resolver.invalidate();
+    try {
+      this.values.get(key(LIST_OF_INTEGER, null, "sizes"));
+      fail();
+    } catch (final ConfigurationException expected) {
+
+    }
+  }
+
+  @Test
+  public void testAbsentAndDefaultValues() {
+    assertNull(this.values.get(key(int[].class, null, "absent")));
+    assertArrayEquals(new int[0], (int[])this.values.get(key(int[].class, "", "absent")));
+    assertEquals(Arrays.asList("x", "y"), this.values.get(key(LIST_OF_STRING, "x,y", "absent")));
+  }
+
+  @Test
+  public void testCacheHitsDoNotAllocate() {
+    final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+    final com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean)threadMXBean;
+    assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported() && allocationMXBean.isThreadAllocatedMemoryEnabled());
+    final long threadId = Thread.currentThread().getId();
+    this.configurations.put("hosts", "a,b,c");
+    final ConfigurationValueResolver.Key key = key(LIST_OF_STRING, null, "hosts");
+    for (int i = 0; i < 1000; i++) {
+      this.values.get(key);
+    }
+    final long before = allocationMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < 100000; i++) {
+      this.values.get(key);
+    }
+    final long allocated = allocationMXBean.getThreadAllocatedBytes(threadId) - before;
+    // Allow for a little noise from the measurement itself, but far
+    // less than one byte per read.
+    assertTrue("Allocated " + allocated + " bytes", allocated < 10000L);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final ConfigurationValueResolver.Key key(final Type type, final String defaultValue, final String name) {
+    return new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(defaultValue, name), type);
+  }
+
+}
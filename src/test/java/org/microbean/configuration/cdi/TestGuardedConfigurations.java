@@ -0,0 +1,330 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.reflect.Type;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.microbean.configuration.api.ConfigurationException;
+import org.microbean.configuration.api.Configurations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestGuardedConfigurations {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private MapConfigurations configurations;
+
+  private SlowConfigurations source;
+
+  private ExecutorService executor;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestGuardedConfigurations() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Before
+  public void setUp() {
+    this.configurations = new MapConfigurations();
+    this.source = new SlowConfigurations(this.configurations);
+    this.executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    this.source.gate.countDown();
+    this.executor.shutdownNow();
+  }
+
+  @Test
+  public void testDeadline() {
+    this.configurations.put("a", "1");
+    try (final GuardedConfigurations guarded = new GuardedConfigurations(this.source, 50L, 0, 0L)) {
+      assertEquals(Integer.valueOf(1), guarded.getValue("a", Integer.class));
+      this.source.gate = new CountDownLatch(1);
+      try {
+        guarded.getValue("a", Integer.class);
+        fail();
+      } catch (final ConfigurationUnavailableException expected) {
+
+      }
+      // The call gave up while the source was still stuck.
+      assertEquals(1L, this.source.gate.getCount());
+      assertEquals(2, this.source.calls.get());
+    }
+  }
+
+  @Test
+  public void testOutstandingCallsAreBounded() {
+    this.configurations.put("a", "1");
+    this.source.gate = new CountDownLatch(1);
+    try (final GuardedConfigurations guarded = new GuardedConfigurations(this.source, 20L, 0, 0L, 2)) {
+      for (int i = 0; i < 2; i++) {
+        try {
+          guarded.getValue("a", Integer.class);
+          fail();
+        } catch (final ConfigurationUnavailableException expected) {
+          assertFalse(expected.getCause() instanceof RejectedExecutionException);
+        }
+      }
+      // Both threads are stuck in the source; no third is created.
+      for (int i = 0; i < 10; i++) {
+        try {
+          guarded.getValue("a", Integer.class);
+          fail();
+        } catch (final ConfigurationUnavailableException expected) {
+          assertTrue(expected.getCause() instanceof RejectedExecutionException);
+        }
+      }
+      assertEquals(2, this.source.calls.get());
+    }
+  }
+
+  @Test
+  public void testClose() {
+    this.configurations.put("a", "1");
+    final GuardedConfigurations guarded = new GuardedConfigurations(this.source, 1000L, 0, 0L);
+    assertEquals(Integer.valueOf(1), guarded.getValue("a", Integer.class));
+    guarded.close();
+    guarded.close();
+    try {
+      guarded.getValue("a", Integer.class);
+      fail();
+    } catch (final ConfigurationUnavailableException expected) {
+      assertTrue(expected.getCause() instanceof RejectedExecutionException);
+    }
+    assertEquals(1, this.source.calls.get());
+  }
+
+  @Test
+  public void testConversionProblemsAreNotFailures() {
+    this.configurations.put("a", "x");
+    final GuardedConfigurations guarded = new GuardedConfigurations(this.source, 0L, 1, 60000L);
+    try {
+      guarded.getValue("a", Integer.class);
+      fail();
+    } catch (final ConfigurationUnavailableException unexpected) {
+      fail();
+    } catch (final ConfigurationException expected) {
+
+    }
+    assertFalse(guarded.isOpen());
+  }
+
+  @Test
+  public void testCircuitBreaker() throws InterruptedException {
+    this.configurations.put("a", "1");
+    // The retry interval is long enough that a slow machine cannot
+    // let it lapse before the circuit breaker is seen to be open.
+    final GuardedConfigurations guarded = new GuardedConfigurations(this.source, 0L, 2, 1000L);
+    this.source.failure = new IllegalStateException("down");
+    for (int i = 0; i < 2; i++) {
+      try {
+        guarded.getValue("a", Integer.class);
+        fail();
+      } catch (final ConfigurationUnavailableException expected) {
+        assertTrue(expected.getCause() instanceof IllegalStateException);
+      }
+    }
+    assertTrue(guarded.isOpen());
+    assertEquals(2, this.source.calls.get());
+    // While the circuit breaker is open, the source is left alone.
+    try {
+      guarded.getValue("a", Integer.class);
+      fail();
+    } catch (final ConfigurationUnavailableException expected) {
+
+    }
+    assertEquals(2, this.source.calls.get());
+    this.source.failure = null;
+    Thread.sleep(1100L);
+    assertEquals(Integer.valueOf(1), guarded.getValue("a", Integer.class));
+    assertFalse(guarded.isOpen());
+    assertEquals(3, this.source.calls.get());
+  }
+
+  @Test
+  public void testLastKnownGoodValueIsReturnedAfterDeadline() throws InterruptedException {
+    this.configurations.put("a", "1");
+    final ConfigurationValueResolver resolver =
+      new ConfigurationValueResolver(this.source, ConfigurationValueResolver.DEFAULT_MAXIMUM_CACHE_SIZE, 50L, this.executor);
+    final ConfigurationValueResolver.Key key =
+      new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "a"), Integer.class);
+    assertEquals(Integer.valueOf(1), resolver.resolve(key));
+    this.configurations.put("a", "2");
+    final CountDownLatch gate = new CountDownLatch(1);
+    this.source.gate = gate;
+    resolver.invalidate();
+    assertEquals(Integer.valueOf(1), resolver.resolve(key));
+    // The last known good value was returned while the source was
+    // still stuck.
+    assertEquals(1L, gate.getCount());
+    gate.countDown();
+    // The value is refreshed in the background.
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+    Object value = null;
+    while (!Integer.valueOf(2).equals(value) && System.nanoTime() < deadline) {
+      Thread.sleep(50L);
+      value = resolver.resolve(key);
+    }
+    assertEquals(Integer.valueOf(2), value);
+  }
+
+  @Test(expected = ConfigurationUnavailableException.class)
+  public void testDeadlineWithoutLastKnownGoodValue() {
+    this.configurations.put("a", "1");
+    this.source.gate = new CountDownLatch(1);
+    new ConfigurationValueResolver(this.source, ConfigurationValueResolver.DEFAULT_MAXIMUM_CACHE_SIZE, 50L, this.executor)
+      .resolve(new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "a"), Integer.class));
+  }
+
+  @Test
+  public void testLastKnownGoodValueIsReturnedWhileSourceIsUnavailable() {
+    this.configurations.put("a", "1");
+    final GuardedConfigurations guarded = new GuardedConfigurations(this.source, 0L, 1, 60000L);
+    final ConfigurationValueResolver resolver = new ConfigurationValueResolver(new CompositeConfigurations(Collections.singletonList(guarded)));
+    final ConfigurationValueResolver.Key key =
+      new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(null, "a"), Integer.class);
+    assertEquals(Integer.valueOf(1), resolver.resolve(key));
+    this.source.failure = new IllegalStateException("down");
+    resolver.invalidate();
+    assertEquals(Integer.valueOf(1), resolver.resolve(key));
+    assertEquals(Integer.valueOf(1), resolver.resolveAll(Collections.singleton(key), null).get(key));
+    assertTrue(guarded.isOpen());
+  }
+
+  @Test
+  public void testOnlyGuardedConfigurationsNeedLastKnownGoodValues() {
+    final GuardedConfigurations guarded = new GuardedConfigurations(this.source, 0L, 1, 60000L);
+    assertTrue(ConfigurationValueResolver.isGuarded(guarded));
+    assertTrue(ConfigurationValueResolver.isGuarded(new CompositeConfigurations(Arrays.asList(this.configurations, guarded))));
+    assertFalse(ConfigurationValueResolver.isGuarded(this.source));
+    assertFalse(ConfigurationValueResolver.isGuarded(new CompositeConfigurations(Collections.singletonList(this.source))));
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A deliberately slow, and optionally failing, stand-in for a
+   * remote configuration source.
+   */
+  private static final class SlowConfigurations extends Configurations {
+
+    private final Configurations delegate;
+
+    private final AtomicInteger calls;
+
+    private volatile CountDownLatch gate;
+
+    private volatile RuntimeException failure;
+
+    private SlowConfigurations(final Configurations delegate) {
+      super();
+      this.delegate = delegate;
+      this.calls = new AtomicInteger();
+      this.gate = new CountDownLatch(0);
+    }
+
+    @Override
+    public final Set<Type> getConversionTypes() {
+      return this.delegate.getConversionTypes();
+    }
+
+    @Override
+    public final Map<String, String> getConfigurationCoordinates() {
+      return this.delegate.getConfigurationCoordinates();
+    }
+
+    @Override
+    public final Set<String> getNames() {
+      this.pause();
+      return this.delegate.getNames();
+    }
+
+    @Override
+    public final <T> T getValue(final Map<String, String> coordinates, final String name, final Type type, final String defaultValue) {
+      if (name != null) {
+        this.pause();
+      }
+      return this.delegate.getValue(coordinates, name, type, defaultValue);
+    }
+
+    private final void pause() {
+      this.calls.incrementAndGet();
+      final RuntimeException failure = this.failure;
+      if (failure != null) {
+        throw failure;
+      }
+      // Stuck until the test lets it go, deaf to interruption like a
+      // blocked socket read.
+      boolean interrupted = false;
+      while (true) {
+        try {
+          this.gate.await();
+          break;
+        } catch (final InterruptedException interruptedException) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+  }
+
+}
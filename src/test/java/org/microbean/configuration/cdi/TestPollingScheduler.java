@@ -0,0 +1,232 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java.util.function.Consumer;
+
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestPollingScheduler {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1L);
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestPollingScheduler() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Test
+  public void testBackoffAndSpeedup() {
+    try (final PollingScheduler scheduler = newScheduler(10L, 80L, 1D, p -> {})) {
+      long interval = 10L * MILLI;
+      interval = scheduler.computeNextInterval(false, interval, 0L, 1);
+      assertEquals(20L * MILLI, interval);
+      interval = scheduler.computeNextInterval(false, interval, 0L, 1);
+      assertEquals(40L * MILLI, interval);
+      interval = scheduler.computeNextInterval(false, interval, 0L, 1);
+      assertEquals(80L * MILLI, interval);
+      interval = scheduler.computeNextInterval(false, interval, 0L, 1);
+      assertEquals(80L * MILLI, interval);
+      interval = scheduler.computeNextInterval(true, interval, 0L, 1);
+      assertEquals(10L * MILLI, interval);
+    }
+  }
+
+  @Test
+  public void testDutyCycleBoundsTotalPollingWork() {
+    try (final PollingScheduler scheduler = newScheduler(10L, 80L, 0.1D, p -> {})) {
+      // Four sources each costing 5 ms with a 10% duty cycle must be
+      // spread out to at least 200 ms apart, even right after a
+      // change.
+      assertEquals(200L * MILLI, scheduler.computeNextInterval(true, 10L * MILLI, 5L * MILLI, 4));
+      // Cheap polls are unaffected.
+      assertEquals(10L * MILLI, scheduler.computeNextInterval(true, 10L * MILLI, 1000L, 4));
+    }
+  }
+
+  @Test
+  public void testSimulatedChangePattern() throws InterruptedException {
+    // Changes on each of the first three polls, then goes quiet.
+    final SimulatedSource source = new SimulatedSource(true, true, true);
+    final AtomicInteger changes = new AtomicInteger();
+    try (final PollingScheduler scheduler = newScheduler(1L, 8L, 1D, p -> changes.incrementAndGet())) {
+      final PollingScheduler.PolledSource polledSource = scheduler.add(source);
+      assertTrue(source.awaitPolls(3));
+      assertEquals(1L * MILLI, polledSource.getIntervalNanos());
+      assertTrue(source.awaitPolls(10));
+      assertEquals(3, changes.get());
+      assertEquals(8L * MILLI, polledSource.getIntervalNanos());
+
+      // A new change brings the interval back down.
+      source.changeAt(source.getPollCount() + 2);
+      assertTrue(source.awaitChange());
+      assertEquals(4, changes.get());
+      assertTrue(polledSource.getIntervalNanos() < 8L * MILLI);
+      assertTrue(scheduler.getPollCount() >= source.getPollCount() - 1);
+      assertEquals(4L, scheduler.getChangeCount());
+    }
+  }
+
+  @Test
+  public void testCloseDiscardsScheduledPolls() throws InterruptedException {
+    final SimulatedSource source = new SimulatedSource();
+    final PollingScheduler scheduler = newScheduler(50L, 50L, 1D, p -> {});
+    scheduler.add(source);
+    scheduler.close();
+    Thread.sleep(200L);
+    assertEquals(0, source.getPollCount());
+    try {
+      scheduler.add(new SimulatedSource());
+      fail();
+    } catch (final RejectedExecutionException expected) {
+
+    }
+  }
+
+  @Test
+  public void testCloseDuringPoll() throws InterruptedException {
+    final SimulatedSource source = new SimulatedSource(true);
+    final PollingScheduler[] scheduler = new PollingScheduler[1];
+    // The change listener runs on the polling thread, after the poll
+    // and before the next one is scheduled.
+    scheduler[0] = newScheduler(1L, 1L, 1D, p -> scheduler[0].close());
+    scheduler[0].add(source);
+    assertTrue(source.awaitPolls(1));
+    Thread.sleep(100L);
+    assertEquals(1, source.getPollCount());
+    assertEquals(1L, scheduler[0].getChangeCount());
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final PollingScheduler newScheduler(final long minimumIntervalMillis,
+                                                     final long maximumIntervalMillis,
+                                                     final double dutyCycle,
+                                                     final Consumer<? super Pollable> listener) {
+    return new PollingScheduler(Logger.getLogger(TestPollingScheduler.class.getName()),
+                                minimumIntervalMillis,
+                                maximumIntervalMillis,
+                                dutyCycle,
+                                listener);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An in-memory {@link Pollable} that reports changes according to
+   * a predetermined pattern.
+   */
+  private static final class SimulatedSource implements Pollable {
+
+    private final boolean[] initialPattern;
+
+    private final AtomicInteger pollCount;
+
+    private volatile int changeAt;
+
+    private volatile CountDownLatch changeLatch;
+
+    private SimulatedSource(final boolean... initialPattern) {
+      super();
+      this.initialPattern = initialPattern.clone();
+      this.pollCount = new AtomicInteger();
+      this.changeAt = -1;
+    }
+
+    @Override
+    public final boolean poll() {
+      final int poll = this.pollCount.incrementAndGet();
+      synchronized (this) {
+        this.notifyAll();
+      }
+      if (poll <= this.initialPattern.length) {
+        return this.initialPattern[poll - 1];
+      } else if (poll == this.changeAt) {
+        this.changeLatch.countDown();
+        return true;
+      }
+      return false;
+    }
+
+    private final int getPollCount() {
+      return this.pollCount.get();
+    }
+
+    private final void changeAt(final int poll) {
+      this.changeLatch = new CountDownLatch(1);
+      this.changeAt = poll;
+    }
+
+    private final boolean awaitChange() throws InterruptedException {
+      final boolean returnValue = this.changeLatch.await(10L, TimeUnit.SECONDS);
+      // Give the scheduler a moment to record the outcome of the poll.
+      this.awaitPolls(this.getPollCount() + 1);
+      return returnValue;
+    }
+
+    private final synchronized boolean awaitPolls(final int polls) throws InterruptedException {
+      final long deadline = System.currentTimeMillis() + 10000L;
+      while (this.pollCount.get() < polls) {
+        final long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0L) {
+          return false;
+        }
+        this.wait(remaining);
+      }
+      return true;
+    }
+
+  }
+
+}
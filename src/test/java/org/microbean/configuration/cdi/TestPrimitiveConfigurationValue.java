@@ -0,0 +1,158 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.management.ManagementFactory;
+
+import java.lang.reflect.Type;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class TestPrimitiveConfigurationValue {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private MapConfigurations configurations;
+
+  private ConfigurationValueResolver resolver;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestPrimitiveConfigurationValue() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Before
+  public void setUp() {
+    this.configurations = new MapConfigurations();
+    this.resolver = new ConfigurationValueResolver(this.configurations);
+  }
+
+  @Test
+  public void testValueIsRefreshedOnlyAfterInvalidation() {
+    this.configurations.put("size", "10");
+    final IntConfigurationValue size = new IntConfigurationValue(this.resolver, key(int.class, null, "size"));
+    assertEquals(10, size.getAsInt());
+    this.configurations.put("size", "20");
+    this.configurations.resetCounts();
+    assertEquals(10, size.getAsInt());
+    assertEquals(0, this.configurations.getTotalLookupCount());
+    this.resolver.invalidate();
+    assertEquals(20, size.getAsInt());
+  }
+
+  @Test
+  public void testAbsentValues() {
+    assertEquals(0L, new LongConfigurationValue(this.resolver, key(long.class, null, "absent")).getAsLong());
+    assertEquals(0D, new DoubleConfigurationValue(this.resolver, key(Double.class, null, "absent")).getAsDouble(), 0D);
+    assertFalse(new BooleanConfigurationValue(this.resolver, key(boolean.class, null, "absent")).getAsBoolean());
+    assertTrue(new BooleanConfigurationValue(this.resolver, key(boolean.class, "true", "absent")).getAsBoolean());
+  }
+
+  @Test
+  public void testFailedConversionIsRetried() {
+    this.configurations.put("size", "x");
+    final IntConfigurationValue size = new IntConfigurationValue(this.resolver, key(int.class, null, "size"));
+    try {
+      size.getAsInt();
+      fail();
+    } catch (final RuntimeException expected) {
+
+    }
+    this.configurations.put("size", "5");
+    assertEquals(5, size.getAsInt());
+  }
+
+  @Test
+  public void testGetHandledType() {
+    assertEquals(int.class,
+                 PrimitiveConfigurationValue.getHandledType(IntConfigurationValue.class,
+                                                            this.configurations.getConversionTypes()));
+    assertEquals(Long.class,
+                 PrimitiveConfigurationValue.getHandledType(LongConfigurationValue.class,
+                                                            Collections.<Type>singleton(Long.class)));
+    assertNull(PrimitiveConfigurationValue.getHandledType(DoubleConfigurationValue.class,
+                                                          Collections.<Type>singleton(Integer.class)));
+    assertNull(PrimitiveConfigurationValue.getHandledType(Integer.class, this.configurations.getConversionTypes()));
+    assertEquals(new HashSet<>(Arrays.asList(IntConfigurationValue.class,
+                                             LongConfigurationValue.class,
+                                             DoubleConfigurationValue.class,
+                                             BooleanConfigurationValue.class)),
+                 PrimitiveConfigurationValue.getHandleTypes());
+  }
+
+  @Test
+  public void testReadsDoNotAllocate() {
+    final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+    final com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean)threadMXBean;
+    assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported() && allocationMXBean.isThreadAllocatedMemoryEnabled());
+    final long threadId = Thread.currentThread().getId();
+    this.configurations.put("rate", "0.5");
+    final DoubleConfigurationValue rate = new DoubleConfigurationValue(this.resolver, key(double.class, null, "rate"));
+    double sum = 0D;
+    for (int i = 0; i < 1000; i++) {
+      sum += rate.getAsDouble();
+    }
+    final long before = allocationMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < 100000; i++) {
+      sum += rate.getAsDouble();
+    }
+    final long allocated = allocationMXBean.getThreadAllocatedBytes(threadId) - before;
+    assertEquals(50500D, sum, 0D);
+    // Allow for a little noise from the measurement itself, but far
+    // less than one byte per read.
+    assertTrue("Allocated " + allocated + " bytes", allocated < 10000L);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final ConfigurationValueResolver.Key key(final Type type, final String defaultValue, final String name) {
+    return new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(defaultValue, name), type);
+  }
+
+}
@@ -0,0 +1,244 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.lang.ref.WeakReference;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java.util.function.Consumer;
+
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import org.microbean.configuration.api.ConfigurationException;
+import org.microbean.configuration.api.Configurations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestSharedConfigurations {
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestSharedConfigurations() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Test
+  public void testSharingAndRelease() {
+    final SharedConfigurations.Key key = key("testSharingAndRelease");
+    final AtomicInteger creations = new AtomicInteger();
+    final SharedConfigurations.Lease first = SharedConfigurations.acquire(key, () -> create(creations));
+    final SharedConfigurations.Lease second = SharedConfigurations.acquire(key, () -> create(creations));
+    assertTrue(first.isCreator());
+    assertFalse(second.isCreator());
+    assertSame(first.getConfigurations().join(), second.getConfigurations().join());
+    assertEquals(1, creations.get());
+    assertEquals(2, SharedConfigurations.getReferenceCount(key));
+    first.close();
+    first.close();
+    assertEquals(1, SharedConfigurations.getReferenceCount(key));
+    second.close();
+    assertEquals(0, SharedConfigurations.getReferenceCount(key));
+    try (final SharedConfigurations.Lease third = SharedConfigurations.acquire(key, () -> create(creations))) {
+      assertTrue(third.isCreator());
+      assertNotSame(second.getConfigurations().join(), third.getConfigurations().join());
+      assertEquals(2, creations.get());
+    }
+  }
+
+  @Test
+  public void testDifferentSourcesAreNotShared() {
+    final AtomicInteger creations = new AtomicInteger();
+    try (final SharedConfigurations.Lease first = SharedConfigurations.acquire(key("a"), () -> create(creations));
+         final SharedConfigurations.Lease second = SharedConfigurations.acquire(key("b"), () -> create(creations))) {
+      assertNotSame(first.getConfigurations().join(), second.getConfigurations().join());
+      assertEquals(2, creations.get());
+    }
+  }
+
+  @Test
+  public void testFailedCreationIsRetried() {
+    final SharedConfigurations.Key key = key("testFailedCreationIsRetried");
+    final CompletableFuture<Configurations> failure = new CompletableFuture<>();
+    failure.completeExceptionally(new ConfigurationException("boom"));
+    try (final SharedConfigurations.Lease first = SharedConfigurations.acquire(key, () -> failure);
+         final SharedConfigurations.Lease second = SharedConfigurations.acquire(key, () -> create(new AtomicInteger()))) {
+      assertTrue(first.getConfigurations().isCompletedExceptionally());
+      assertTrue(second.isCreator());
+      assertFalse(second.getConfigurations().isCompletedExceptionally());
+    }
+    assertEquals(0, SharedConfigurations.getReferenceCount(key));
+  }
+
+  @Test
+  public void testConcurrentAcquisitionCreatesOnce() throws InterruptedException {
+    final SharedConfigurations.Key key = key("testConcurrentAcquisitionCreatesOnce");
+    final AtomicInteger creations = new AtomicInteger();
+    final List<SharedConfigurations.Lease> leases = new CopyOnWriteArrayList<>();
+    final CountDownLatch start = new CountDownLatch(1);
+    final Collection<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      final Thread thread = new Thread(() -> {
+          try {
+            start.await();
+          } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+          leases.add(SharedConfigurations.acquire(key, () -> create(creations)));
+        });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(8, leases.size());
+    assertEquals(1, creations.get());
+    assertEquals(8, SharedConfigurations.getReferenceCount(key));
+    for (final SharedConfigurations.Lease lease : leases) {
+      lease.close();
+    }
+    assertEquals(0, SharedConfigurations.getReferenceCount(key));
+  }
+
+
+  @Test
+  public void testSharedPollablesArePolledOnceForAllLeases() throws InterruptedException {
+    final SharedConfigurations.Key key = key("testSharedPollablesArePolledOnceForAllLeases");
+    final AtomicInteger schedulers = new AtomicInteger();
+    final AtomicBoolean polling = new AtomicBoolean();
+    final AtomicInteger concurrentPolls = new AtomicInteger();
+    final CountDownLatch firstNotified = new CountDownLatch(1);
+    final CountDownLatch secondNotified = new CountDownLatch(1);
+    // Reports a change exactly once, after both lessees have started
+    // polling; both must hear about it.
+    final AtomicBoolean changed = new AtomicBoolean();
+    final Pollable pollable = () -> {
+      if (!polling.compareAndSet(false, true)) {
+        concurrentPolls.incrementAndGet();
+      }
+      try {
+        return changed.getAndSet(false);
+      } finally {
+        polling.set(false);
+      }
+    };
+    final SharedConfigurations.Lease first = SharedConfigurations.acquire(key, () -> create(new AtomicInteger()));
+    final SharedConfigurations.Lease second = SharedConfigurations.acquire(key, () -> create(new AtomicInteger()));
+    try {
+      final PollingScheduler scheduler =
+        first.startPolling(Collections.singleton(pollable),
+                           p -> firstNotified.countDown(),
+                           l -> newScheduler(l, schedulers));
+      assertSame(scheduler,
+                 second.startPolling(Collections.singleton(pollable),
+                                     p -> secondNotified.countDown(),
+                                     l -> newScheduler(l, schedulers)));
+      assertEquals(1, schedulers.get());
+      changed.set(true);
+      assertTrue(firstNotified.await(10L, TimeUnit.SECONDS));
+      assertTrue(secondNotified.await(10L, TimeUnit.SECONDS));
+      assertEquals(0, concurrentPolls.get());
+      first.close();
+      assertSame(scheduler,
+                 second.startPolling(Collections.singleton(pollable), p -> {}, l -> newScheduler(l, schedulers)));
+    } finally {
+      first.close();
+      second.close();
+    }
+    assertEquals(1, schedulers.get());
+    try (final SharedConfigurations.Lease third = SharedConfigurations.acquire(key, () -> create(new AtomicInteger()))) {
+      assertNull(third.startPolling(Collections.<Pollable>emptySet(), p -> {}, l -> newScheduler(l, schedulers)));
+    }
+  }
+
+  @Test
+  public void testKeysDoNotHoldClassLoadersStrongly() throws InterruptedException {
+    ClassLoader classLoader = new ClassLoader() {};
+    final SharedConfigurations.Key key =
+      new SharedConfigurations.Key(classLoader, new LinkedHashSet<>(Collections.singleton("testKeysDoNotHoldClassLoadersStrongly")), false);
+    final SharedConfigurations.Key equalKey =
+      new SharedConfigurations.Key(classLoader, new LinkedHashSet<>(Collections.singleton("testKeysDoNotHoldClassLoadersStrongly")), false);
+    assertEquals(key, equalKey);
+    final WeakReference<ClassLoader> reference = new WeakReference<>(classLoader);
+    classLoader = null;
+    for (int i = 0; i < 100 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10L);
+    }
+    assertNull(reference.get());
+    // A key whose classloader is gone can match nothing else.
+    assertFalse(key.equals(equalKey));
+    assertEquals(key, key);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final PollingScheduler newScheduler(final Consumer<? super Pollable> listener,
+                                                     final AtomicInteger schedulers) {
+    schedulers.incrementAndGet();
+    return new PollingScheduler(Logger.getLogger(TestSharedConfigurations.class.getName()), 1L, 1L, 1D, listener);
+  }
+
+
+  private static final SharedConfigurations.Key key(final String providerClassName) {
+    return new SharedConfigurations.Key(TestSharedConfigurations.class.getClassLoader(),
+                                        new LinkedHashSet<>(Collections.singleton(providerClassName)),
+                                        false);
+  }
+
+  private static final CompletableFuture<Configurations> create(final AtomicInteger creations) {
+    creations.incrementAndGet();
+    return CompletableFuture.completedFuture(new MapConfigurations());
+  }
+
+}
@@ -0,0 +1,272 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2019 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.configuration.cdi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import java.lang.reflect.Type;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import java.nio.channels.ReadableByteChannel;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.microbean.configuration.api.ConfigurationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestStreamingConfigurationValues {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private MapConfigurations configurations;
+
+  private ConfigurationValueResolver resolver;
+
+  private StreamingConfigurationValues values;
+
+  private Path directory;
+
+  private Path file;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  public TestStreamingConfigurationValues() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Before
+  public void setUp() throws IOException {
+    this.configurations = new MapConfigurations();
+    this.resolver = new ConfigurationValueResolver(this.configurations);
+    // Copy files of up to eight bytes onto the heap; map larger ones.
+    this.values = new StreamingConfigurationValues(this.resolver, 8, 0L);
+    this.directory = Files.createTempDirectory("streaming");
+    this.file = this.directory.resolve("schema.json");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.file);
+    Files.deleteIfExists(this.directory);
+  }
+
+  @Test
+  public void testIsSupported() {
+    assertTrue(StreamingConfigurationValues.isSupported(Reader.class));
+    assertTrue(StreamingConfigurationValues.isSupported(InputStream.class));
+    assertTrue(StreamingConfigurationValues.isSupported(ReadableByteChannel.class));
+    assertTrue(StreamingConfigurationValues.isSupported(ByteBuffer.class));
+    assertFalse(StreamingConfigurationValues.isSupported(String.class));
+    assertFalse(StreamingConfigurationValues.isSupported(null));
+    assertTrue(StreamingConfigurationValues.isFile("FILE:/tmp/x"));
+    assertFalse(StreamingConfigurationValues.isFile("/tmp/x"));
+  }
+
+  @Test
+  public void testInlineValue() throws IOException {
+    this.configurations.put("greeting", "héllo");
+    assertEquals("héllo", read((Reader)this.values.get(key(Reader.class, null, "greeting"))));
+    assertEquals("héllo", new String(read((InputStream)this.values.get(key(InputStream.class, null, "greeting"))),
+                                          StandardCharsets.UTF_8));
+    final ByteBuffer buffer = (ByteBuffer)this.values.get(key(ByteBuffer.class, null, "greeting"));
+    assertTrue(buffer.isReadOnly());
+    assertEquals(6, buffer.remaining());
+    try (final ReadableByteChannel channel = (ReadableByteChannel)this.values.get(key(ReadableByteChannel.class, null, "greeting"))) {
+      final ByteBuffer target = ByteBuffer.allocate(4);
+      assertEquals(4, channel.read(target));
+      target.clear();
+      assertEquals(2, channel.read(target));
+      assertEquals(-1, channel.read(target));
+    }
+  }
+
+  @Test
+  public void testLargeFileIsMapped() throws IOException {
+    Files.write(this.file, "{ \"type\": \"object\" }".getBytes(StandardCharsets.UTF_8));
+    this.configurations.put("schema", this.file.toUri().toString());
+    final ByteBuffer first = (ByteBuffer)this.values.get(key(ByteBuffer.class, null, "schema"));
+    final ByteBuffer second = (ByteBuffer)this.values.get(key(ByteBuffer.class, null, "schema"));
+    assertTrue(first instanceof MappedByteBuffer);
+    assertTrue(first.isReadOnly());
+    assertNotSame(first, second);
+    first.get();
+    assertEquals(0, second.position());
+    assertEquals("{ \"type\": \"object\" }", read((Reader)this.values.get(key(Reader.class, null, "schema"))));
+    try (final BufferedReader reader = new BufferedReader((Reader)this.values.get(key(Reader.class, null, "schema")))) {
+      assertEquals("{ \"type\": \"object\" }", reader.readLine());
+    }
+  }
+
+  @Test
+  public void testMappedFileMayBeTruncated() throws IOException {
+    Files.write(this.file, "{ \"type\": \"object\" }".getBytes(StandardCharsets.UTF_8));
+    this.configurations.put("schema", this.file.toUri().toString());
+    final ByteBuffer buffer = (ByteBuffer)this.values.get(key(ByteBuffer.class, null, "schema"));
+    // Were the file itself mapped, reading past its new end would
+    // fail with an InternalError, or worse.
+    Files.write(this.file, new byte[0]);
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    assertEquals("{ \"type\": \"object\" }", new String(bytes, StandardCharsets.UTF_8));
+    assertEquals(0, ((ByteBuffer)this.values.get(key(ByteBuffer.class, null, "schema"))).remaining());
+  }
+
+  @Test
+  public void testSmallFileIsCopied() throws IOException {
+    Files.write(this.file, "{}".getBytes(StandardCharsets.UTF_8));
+    this.configurations.put("schema", this.file.toUri().toString());
+    final ByteBuffer buffer = (ByteBuffer)this.values.get(key(ByteBuffer.class, null, "schema"));
+    assertFalse(buffer instanceof MappedByteBuffer);
+    assertTrue(buffer.isReadOnly());
+    assertEquals(2, buffer.remaining());
+    assertEquals("{}", read((Reader)this.values.get(key(Reader.class, null, "schema"))));
+  }
+
+  @Test
+  public void testFileChecksAreThrottled() throws IOException {
+    final StreamingConfigurationValues values = new StreamingConfigurationValues(this.resolver, 8, 3600000L);
+    Files.write(this.file, "a".getBytes(StandardCharsets.UTF_8));
+    this.configurations.put("schema", this.file.toUri().toString());
+    assertEquals("a", read((Reader)values.get(key(Reader.class, null, "schema"))));
+    Files.write(this.file, "bc".getBytes(StandardCharsets.UTF_8));
+    // The file is not checked again within the hour.
+    assertEquals("a", read((Reader)values.get(key(Reader.class, null, "schema"))));
+    // A changed configuration value is always noticed.
+    final Path other = this.directory.resolve("other.json");
+    try {
+      Files.write(other, "d".getBytes(StandardCharsets.UTF_8));
+      this.configurations.put("schema", other.toUri().toString());
+      assertEquals("d", read((Reader)values.get(key(Reader.class, null, "schema"))));
+    } finally {
+      Files.deleteIfExists(other);
+    }
+  }
+
+  @Test
+  public void testChangedFileIsMappedAgain() throws IOException {
+    Files.write(this.file, "a".getBytes(StandardCharsets.UTF_8));
+    this.configurations.put("schema", this.file.toUri().toString());
+    assertEquals("a", read((Reader)this.values.get(key(Reader.class, null, "schema"))));
+    Files.write(this.file, "bc".getBytes(StandardCharsets.UTF_8));
+    assertEquals("bc", read((Reader)this.values.get(key(Reader.class, null, "schema"))));
+    assertEquals(2, ((ByteBuffer)this.values.get(key(ByteBuffer.class, null, "schema"))).remaining());
+  }
+
+  @Test
+  public void testMissingFile() {
+    this.configurations.put("schema", this.file.toUri().toString());
+    try {
+      this.values.get(key(InputStream.class, null, "schema"));
+      fail();
+    } catch (final ConfigurationException expected) {
+
+    }
+    try {
+      this.values.get(key(InputStream.class, "file:relative", "absent"));
+      fail();
+    } catch (final ConfigurationException expected) {
+
+    }
+  }
+
+  @Test
+  public void testAbsentAndDefaultValues() throws IOException {
+    assertNull(this.values.get(key(InputStream.class, null, "absent")));
+    assertEquals("x", read((Reader)this.values.get(key(Reader.class, "x", "absent"))));
+  }
+
+  @Test
+  public void testClosedStream() throws IOException {
+    this.configurations.put("greeting", "hello");
+    final InputStream stream = (InputStream)this.values.get(key(InputStream.class, null, "greeting"));
+    stream.close();
+    try {
+      stream.read();
+      fail();
+    } catch (final IOException expected) {
+
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final String read(final Reader reader) throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    try (final Reader r = reader) {
+      int c;
+      while ((c = r.read()) != -1) {
+        sb.append((char)c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static final byte[] read(final InputStream stream) throws IOException {
+    final byte[] bytes = new byte[64];
+    int size = 0;
+    try (final InputStream s = stream) {
+      int count;
+      while ((count = s.read(bytes, size, bytes.length - size)) > 0) {
+        size += count;
+      }
+    }
+    return Arrays.copyOf(bytes, size);
+  }
+
+  private static final ConfigurationValueResolver.Key key(final Type type, final String defaultValue, final String name) {
+    return new ConfigurationValueResolver.Key(TestConfigurationValueResolver.metadata(defaultValue, name), type);
+  }
+
+}